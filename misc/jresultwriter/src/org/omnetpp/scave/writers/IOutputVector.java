@@ -39,4 +39,19 @@ public interface IOutputVector {
      * Values MUST be recorded increasing timestamp order.
      */
     boolean record(Number time, double value);
+
+    /**
+     * Record a value with the given time stamp into the output vector.
+     * Like record(Number, double), but does not require boxing the time stamp.
+     */
+    boolean record(double time, double value);
+
+    /**
+     * Record a value into the output vector, with a time stamp given as a
+     * scaled integer: rawTime * 10^scaleExp. For example, rawTime=1500 and
+     * scaleExp=-3 denote 1.5s. This allows simulators that use fixed-point
+     * simulation time to record exact timestamps without boxing.
+     * Otherwise like record(Number, double).
+     */
+    boolean record(long rawTime, int scaleExp, double value);
 }
@@ -0,0 +1,37 @@
+package org.omnetpp.scave.writers;
+
+/**
+ * Extends ISimulationTimeProvider with methods that return the simulation
+ * time as a primitive value, so that recording a value with the current
+ * simulation time as timestamp does not need to allocate a Number object.
+ */
+public interface ISimulationTimeProvider2 extends ISimulationTimeProvider {
+    /**
+     * Return value of getSimulationTimeScaleExponent() for simulators
+     * that represent simulation time with a double.
+     */
+    int DOUBLE_TIME = Integer.MIN_VALUE;
+
+    /**
+     * Returns the decimal scale exponent of the simulation time if the
+     * simulator represents it as a scaled integer (e.g. -12 for picoseconds),
+     * and DOUBLE_TIME if it uses doubles. The result must not change during
+     * the simulation.
+     */
+    int getSimulationTimeScaleExponent();
+
+    /**
+     * Returns the current simulation time as a raw integer, to be multiplied
+     * by 10^getSimulationTimeScaleExponent(). If the simulator represents
+     * simulation time with a double (i.e. the exponent is DOUBLE_TIME), this
+     * should return the bits of the double (see Double.doubleToRawLongBits());
+     * result recording uses getSimulationTimeAsDouble() in that case, though.
+     */
+    long getRawSimulationTime();
+
+    /**
+     * Returns the current simulation time as a double. Only called if
+     * getSimulationTimeScaleExponent() returns DOUBLE_TIME.
+     */
+    double getSimulationTimeAsDouble();
+}
@@ -3,37 +3,46 @@ package org.omnetpp.scave.writers.example;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 
 import org.omnetpp.scave.writers.IOutputScalarManager;
 import org.omnetpp.scave.writers.IOutputVectorManager;
-import org.omnetpp.scave.writers.ISimulationTimeProvider;
+import org.omnetpp.scave.writers.ISimulationTimeProvider2;
+import org.omnetpp.scave.writers.example.fes.BinaryHeapEventSet;
+import org.omnetpp.scave.writers.example.fes.IFutureEventSet;
 import org.omnetpp.scave.writers.impl.FileOutputScalarManager;
 import org.omnetpp.scave.writers.impl.FileOutputVectorManager;
 
 public class SimulationManager {
     double now = 0.0;
-    PriorityQueue<Event> fes = new PriorityQueue<Event>();
+    IFutureEventSet<Event> fes;
     List<Component> components = new ArrayList<Component>();
 
     IOutputScalarManager scalarManager;
     IOutputVectorManager vectorManager;
 
     public SimulationManager(String runID, Map<String,String> runAttributes, String resultFilenameBase) {
+        this(runID, runAttributes, resultFilenameBase, new BinaryHeapEventSet<Event>());
+    }
+
+    public SimulationManager(String runID, Map<String,String> runAttributes, String resultFilenameBase, IFutureEventSet<Event> fes) {
+        this.fes = fes;
         scalarManager = new FileOutputScalarManager(resultFilenameBase+".sca");
         vectorManager = new FileOutputVectorManager(resultFilenameBase+".vec");
-        vectorManager.setSimtimeProvider(new ISimulationTimeProvider() {
+        vectorManager.setSimtimeProvider(new ISimulationTimeProvider2() {
             public long getEventNumber() { return 0; /*not counted*/ }
             public Number getSimulationTime() { return now; }
+            public int getSimulationTimeScaleExponent() { return DOUBLE_TIME; }
+            public long getRawSimulationTime() { return Double.doubleToRawLongBits(now); }
+            public double getSimulationTimeAsDouble() { return now; }
         });
         scalarManager.open(runID, runAttributes);
         vectorManager.open(runID, runAttributes);
     }
 
     void simulate(double timeLimit) {
-        while (!fes.isEmpty() && fes.peek().time < timeLimit) {
-            Event event = fes.remove();
-            now = event.time;
+        while (fes.peekFirstTime() < timeLimit) {
+            now = fes.peekFirstTime();
+            Event event = fes.removeFirst();
             event.execute();
         }
 
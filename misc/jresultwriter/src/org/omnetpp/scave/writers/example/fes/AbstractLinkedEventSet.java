@@ -0,0 +1,151 @@
+package org.omnetpp.scave.writers.example.fes;
+
+import java.util.Arrays;
+
+/**
+ * Base class for future event sets that keep events in linked lists (buckets).
+ * List nodes are not objects but indices into primitive arrays, and freed
+ * nodes are reused, so inserting an event does not allocate memory.
+ */
+abstract class AbstractLinkedEventSet<T> implements IFutureEventSet<T> {
+    protected static final int NIL = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    protected int[] next = new int[INITIAL_CAPACITY];
+    protected double[] times = new double[INITIAL_CAPACITY];
+    protected long[] sequences = new long[INITIAL_CAPACITY];
+    protected Object[] events = new Object[INITIAL_CAPACITY];
+    protected int numNodes;       // nodes ever allocated (high-water mark)
+    protected int freeList = NIL; // list of released nodes
+    protected int size;
+    protected long lastSequence;
+    protected long numSteps;      // list nodes visited by insertSorted(), for cost statistics
+
+    /**
+     * Allocates a node for the event, and assigns it the next sequence number.
+     */
+    protected int newNode(double time, T event) {
+        if (Double.isNaN(time))
+            throw new IllegalArgumentException("Event time cannot be NaN");
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = next[node];
+        }
+        else {
+            if (numNodes == next.length) {
+                int capacity = 2 * next.length;
+                next = Arrays.copyOf(next, capacity);
+                times = Arrays.copyOf(times, capacity);
+                sequences = Arrays.copyOf(sequences, capacity);
+                events = Arrays.copyOf(events, capacity);
+            }
+            node = numNodes++;
+        }
+        next[node] = NIL;
+        times[node] = time;
+        sequences[node] = ++lastSequence;
+        events[node] = event;
+        size++;
+        return node;
+    }
+
+    /**
+     * Releases the node, and returns its event.
+     */
+    @SuppressWarnings("unchecked")
+    protected T releaseNode(int node) {
+        T event = (T)events[node];
+        events[node] = null;
+        next[node] = freeList;
+        freeList = node;
+        size--;
+        return event;
+    }
+
+    /**
+     * Event order: by timestamp, then by insertion sequence.
+     */
+    protected final boolean isBefore(int a, int b) {
+        return times[a] < times[b] || (times[a] == times[b] && sequences[a] < sequences[b]);
+    }
+
+    /**
+     * Inserts the node into the sorted list, and returns the new list head.
+     */
+    protected int insertSorted(int head, int node) {
+        if (head == NIL || isBefore(node, head)) {
+            next[node] = head;
+            return node;
+        }
+        int prev = head;
+        while (next[prev] != NIL && isBefore(next[prev], node)) {
+            prev = next[prev];
+            numSteps++;
+        }
+        next[node] = next[prev];
+        next[prev] = node;
+        return head;
+    }
+
+    /**
+     * Sorts the list with bottom-up merge sort, and returns the new list head.
+     */
+    protected int sortList(int head) {
+        if (head == NIL || next[head] == NIL)
+            return head;
+        for (int runLength = 1; ; runLength *= 2) {
+            int p = head;
+            int tail = NIL;
+            int numMerges = 0;
+            head = NIL;
+            while (p != NIL) {
+                numMerges++;
+                int q = p;
+                int pLength = 0;
+                while (pLength < runLength && q != NIL) {
+                    pLength++;
+                    q = next[q];
+                }
+                int qLength = runLength;
+                while (pLength > 0 || (qLength > 0 && q != NIL)) {
+                    int node;
+                    if (pLength > 0 && (qLength == 0 || q == NIL || isBefore(p, q))) {
+                        node = p;
+                        p = next[p];
+                        pLength--;
+                    }
+                    else {
+                        node = q;
+                        q = next[q];
+                        qLength--;
+                    }
+                    if (tail == NIL)
+                        head = node;
+                    else
+                        next[tail] = node;
+                    tail = node;
+                }
+                p = q;
+            }
+            next[tail] = NIL;
+            if (numMerges <= 1)
+                return head;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(events, 0, numNodes, null);
+        numNodes = 0;
+        freeList = NIL;
+        size = 0;
+    }
+}
@@ -0,0 +1,114 @@
+package org.omnetpp.scave.writers.example.fes;
+
+import java.util.Arrays;
+
+/**
+ * A future event set implemented as a binary heap. Timestamps and insertion
+ * sequence numbers are kept in primitive arrays parallel to the event array,
+ * so comparisons do not dereference events or unbox timestamps. Insertion
+ * and removal take O(log n) time; this is a good general-purpose choice.
+ */
+public class BinaryHeapEventSet<T> implements IFutureEventSet<T> {
+    private static final int INITIAL_CAPACITY = 64;
+
+    // the heap is stored in elements 1..size (element 0 is unused)
+    private double[] times;
+    private long[] sequences;
+    private Object[] events;
+    private int size;
+    private long lastSequence;
+
+    public BinaryHeapEventSet() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public BinaryHeapEventSet(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1) + 1;
+        times = new double[capacity];
+        sequences = new long[capacity];
+        events = new Object[capacity];
+    }
+
+    public void insert(double time, T event) {
+        if (Double.isNaN(time))
+            throw new IllegalArgumentException("Event time cannot be NaN");
+        if (++size == times.length) {
+            int capacity = 2 * times.length;
+            times = Arrays.copyOf(times, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+            events = Arrays.copyOf(events, capacity);
+        }
+        long sequence = ++lastSequence;
+
+        // sift up
+        int i = size;
+        while (i > 1) {
+            int parent = i >>> 1;
+            if (times[parent] < time || (times[parent] == time && sequences[parent] < sequence))
+                break;
+            times[i] = times[parent];
+            sequences[i] = sequences[parent];
+            events[i] = events[parent];
+            i = parent;
+        }
+        times[i] = time;
+        sequences[i] = sequence;
+        events[i] = event;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T peekFirst() {
+        return size == 0 ? null : (T)events[1];
+    }
+
+    public double peekFirstTime() {
+        return size == 0 ? Double.POSITIVE_INFINITY : times[1];
+    }
+
+    @SuppressWarnings("unchecked")
+    public T removeFirst() {
+        if (size == 0)
+            return null;
+        T first = (T)events[1];
+
+        // move the last element to the root, and sift it down
+        double time = times[size];
+        long sequence = sequences[size];
+        Object event = events[size];
+        events[size] = null;
+        int n = --size;
+        int i = 1;
+        while (true) {
+            int child = i << 1;
+            if (child > n)
+                break;
+            if (child < n && (times[child+1] < times[child] || (times[child+1] == times[child] && sequences[child+1] < sequences[child])))
+                child++;
+            if (time < times[child] || (time == times[child] && sequence < sequences[child]))
+                break;
+            times[i] = times[child];
+            sequences[i] = sequences[child];
+            events[i] = events[child];
+            i = child;
+        }
+        if (n > 0) {
+            times[i] = time;
+            sequences[i] = sequence;
+            events[i] = event;
+        }
+        return first;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(events, 1, size + 1, null);
+        size = 0;
+    }
+}
@@ -0,0 +1,177 @@
+package org.omnetpp.scave.writers.example.fes;
+
+import java.util.Arrays;
+
+/**
+ * A future event set implemented as a calendar queue (R. Brown: Calendar
+ * queues: a fast O(1) priority queue implementation for the simulation event
+ * set problem, CACM 1988). Time is divided into "days" (buckets) of equal
+ * width, and the buckets are reused cyclically like the days of a year; each
+ * bucket holds a sorted list of its events. The number of buckets follows
+ * the number of events, and the bucket width is re-estimated from the
+ * separation of the first events whenever the calendar is resized.
+ *
+ * The bucket width is also re-estimated when the average number of buckets
+ * scanned and list nodes visited per operation becomes too high, because the
+ * timestamp distribution may change while the number of events stays the same.
+ * Insertion and removal take O(1) expected time if timestamps are reasonably
+ * evenly distributed, but performance degrades for skewed distributions;
+ * see LadderQueueEventSet for an alternative.
+ */
+public class CalendarQueueEventSet<T> extends AbstractLinkedEventSet<T> {
+    private static final int MIN_BUCKETS = 16;
+    private static final int WIDTH_SAMPLE_SIZE = 25;
+    private static final int MAX_AVERAGE_STEPS = 8; // per operation; more triggers re-estimating the bucket width
+
+    private int[] buckets;        // sorted lists
+    private int mask;             // number of buckets minus one (the number of buckets is a power of two)
+    private double width = 1.0;   // bucket width
+    private long currentBucket;   // virtual (non-wrapped) bucket number of the earliest event
+    private long numOperations;   // since the last resize; numSteps counts the work done in them
+
+    public CalendarQueueEventSet() {
+        buckets = new int[MIN_BUCKETS];
+        Arrays.fill(buckets, NIL);
+        mask = MIN_BUCKETS - 1;
+    }
+
+    private long virtualBucket(double time) {
+        return (long)Math.floor(time / width); // saturates for huge or infinite values
+    }
+
+    public void insert(double time, T event) {
+        int node = newNode(time, event);
+        long vb = virtualBucket(time);
+        int b = (int)(vb & mask);
+        buckets[b] = insertSorted(buckets[b], node);
+        if (size == 1 || vb < currentBucket)
+            currentBucket = vb;
+        if (size > 2 * buckets.length)
+            resize(2 * buckets.length);
+        else
+            checkCost();
+    }
+
+    private void checkCost() {
+        if (++numOperations >= buckets.length && numSteps > MAX_AVERAGE_STEPS * numOperations)
+            resize(buckets.length);
+    }
+
+    /**
+     * Returns the node of the first event (which is the head of its bucket), or NIL.
+     */
+    private int findFirst() {
+        if (size == 0)
+            return NIL;
+        // scan one "year" starting from the current bucket
+        for (int i=0; i<buckets.length; i++) {
+            int head = buckets[(int)(currentBucket & mask)];
+            if (head != NIL && virtualBucket(times[head]) <= currentBucket)
+                return head;
+            currentBucket++;
+            numSteps++;
+        }
+        // no event in the next year: find the earliest one directly
+        int first = NIL;
+        for (int head : buckets)
+            if (head != NIL && (first == NIL || isBefore(head, first)))
+                first = head;
+        numSteps += buckets.length;
+        currentBucket = virtualBucket(times[first]);
+        return first;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T peekFirst() {
+        int first = findFirst();
+        return first == NIL ? null : (T)events[first];
+    }
+
+    public double peekFirstTime() {
+        int first = findFirst();
+        return first == NIL ? Double.POSITIVE_INFINITY : times[first];
+    }
+
+    public T removeFirst() {
+        int first = findFirst();
+        if (first == NIL)
+            return null;
+        int b = (int)(currentBucket & mask);
+        buckets[b] = next[first];
+        T event = releaseNode(first);
+        if (size < buckets.length / 2 && buckets.length > MIN_BUCKETS)
+            resize(buckets.length / 2);
+        else
+            checkCost();
+        return event;
+    }
+
+    /**
+     * Changes the number of buckets, re-estimates the bucket width, and
+     * redistributes the events.
+     */
+    private void resize(int numBuckets) {
+        numOperations = numSteps = 0;
+
+        // collect all events into one sorted list
+        int all = NIL;
+        for (int head : buckets) {
+            int node = head;
+            while (node != NIL) {
+                int nextNode = next[node];
+                next[node] = all;
+                all = node;
+                node = nextNode;
+            }
+        }
+        all = sortList(all);
+
+        // new bucket width: three times the average separation of the first events, ignoring outliers
+        double sum = 0;
+        int count = 0;
+        double[] separations = new double[WIDTH_SAMPLE_SIZE];
+        for (int node = all; node != NIL && next[node] != NIL && count < WIDTH_SAMPLE_SIZE; node = next[node])
+            sum += separations[count++] = times[next[node]] - times[node];
+        if (count > 0 && sum > 0 && !Double.isInfinite(sum)) {
+            double average = sum / count;
+            double sum2 = 0;
+            int count2 = 0;
+            for (int i=0; i<count; i++) {
+                if (separations[i] <= 2 * average) {
+                    sum2 += separations[i];
+                    count2++;
+                }
+            }
+            if (sum2 > 0)
+                width = 3 * sum2 / count2;
+        }
+
+        // redistribute; as the list is sorted, nodes are appended to the bucket tails
+        buckets = new int[numBuckets];
+        int[] tails = new int[numBuckets];
+        Arrays.fill(buckets, NIL);
+        mask = numBuckets - 1;
+        if (all != NIL)
+            currentBucket = virtualBucket(times[all]);
+        for (int node = all; node != NIL; ) {
+            int nextNode = next[node];
+            int b = (int)(virtualBucket(times[node]) & mask);
+            next[node] = NIL;
+            if (buckets[b] == NIL)
+                buckets[b] = node;
+            else
+                next[tails[b]] = node;
+            tails[b] = node;
+            node = nextNode;
+        }
+    }
+
+    public void clear() {
+        super.clear();
+        buckets = new int[MIN_BUCKETS];
+        Arrays.fill(buckets, NIL);
+        mask = MIN_BUCKETS - 1;
+        width = 1.0;
+        numOperations = numSteps = 0;
+    }
+}
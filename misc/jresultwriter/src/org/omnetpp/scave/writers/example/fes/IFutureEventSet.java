@@ -0,0 +1,49 @@
+package org.omnetpp.scave.writers.example.fes;
+
+/**
+ * The future event set (FES) of a discrete event simulation: a priority queue
+ * of events, ordered by their timestamps. Events with equal timestamps are
+ * returned in the order they were inserted (FIFO), so simulations are
+ * deterministic. Timestamps are primitive doubles, so implementations can
+ * store them without boxing; events themselves can be of any type.
+ *
+ * Implementations are not thread-safe.
+ *
+ * @param <T> the event type
+ */
+public interface IFutureEventSet<T> {
+    /**
+     * Inserts an event with the given timestamp. The timestamp may not be NaN.
+     */
+    void insert(double time, T event);
+
+    /**
+     * Returns the first event without removing it, or null if the FES is empty.
+     */
+    T peekFirst();
+
+    /**
+     * Returns the timestamp of the first event, or +infinity if the FES is empty.
+     */
+    double peekFirstTime();
+
+    /**
+     * Removes and returns the first event, or returns null if the FES is empty.
+     */
+    T removeFirst();
+
+    /**
+     * Returns the number of events in the FES.
+     */
+    int size();
+
+    /**
+     * Returns true if the FES contains no events.
+     */
+    boolean isEmpty();
+
+    /**
+     * Removes all events.
+     */
+    void clear();
+}
@@ -0,0 +1,231 @@
+package org.omnetpp.scave.writers.example.fes;
+
+import java.util.Arrays;
+
+/**
+ * A future event set implemented as a ladder queue (W.T. Tang, R.S.M. Goh,
+ * I.L.-J. Thng: Ladder queue: an O(1) priority queue structure for large-scale
+ * discrete event simulation, ACM TOMACS 2005). Events are kept in three tiers:
+ *
+ * - Top: an unsorted list of events far in the future;
+ * - Ladder: rungs of buckets, each rung dividing one bucket of the rung above
+ *   into finer buckets; buckets are unsorted;
+ * - Bottom: a short sorted list of the earliest events.
+ *
+ * When Bottom runs empty, the first nonempty bucket of the lowest rung is
+ * either split into a new rung (if it holds more than THRESHOLD events), or
+ * sorted into Bottom. When the ladder runs empty, Top is spread onto a new
+ * rung. When inserts make Bottom longer than THRESHOLD, it is turned into a
+ * new rung as well, so that sorted insertion stays cheap. Events are only sorted in small batches, so insertion and removal
+ * take O(1) amortized time, even for skewed timestamp distributions.
+ */
+public class LadderQueueEventSet<T> extends AbstractLinkedEventSet<T> {
+    private static final int THRESHOLD = 50;  // bucket size above which buckets are split into a new rung
+    private static final int MAX_RUNGS = 8;
+    private static final int MAX_BUCKETS = 1 << 20;
+
+    // Top
+    private int topHead = NIL;
+    private int topCount;
+    private double topMin, topMax;
+    private double topStart = Double.NEGATIVE_INFINITY; // events at or after this time go into Top
+
+    // Ladder; rung 0 is the coarsest
+    private int numRungs;
+    private final double[] rungStart = new double[MAX_RUNGS];
+    private final double[] bucketWidth = new double[MAX_RUNGS];
+    private final int[] numBuckets = new int[MAX_RUNGS];
+    private final int[] currentBucket = new int[MAX_RUNGS];  // buckets before this one are already consumed
+    private final int[][] bucketHeads = new int[MAX_RUNGS][];
+    private final int[][] bucketCounts = new int[MAX_RUNGS][];
+
+    // Bottom
+    private int bottomHead = NIL;
+    private int bottomCount;
+    private int bottomLimit = THRESHOLD; // spill Bottom into a new rung above this size
+
+    public LadderQueueEventSet() {
+        resetTop();
+    }
+
+    private void resetTop() {
+        topHead = NIL;
+        topCount = 0;
+        topMin = Double.POSITIVE_INFINITY;
+        topMax = Double.NEGATIVE_INFINITY;
+    }
+
+    public void insert(double time, T event) {
+        int node = newNode(time, event);
+        if (size == 1) {
+            // the FES was empty: start over, so that the event goes into Top
+            numRungs = 0;
+            topStart = Double.NEGATIVE_INFINITY;
+        }
+        if (time >= topStart) {
+            next[node] = topHead;
+            topHead = node;
+            topCount++;
+            topMin = Math.min(topMin, time);
+            topMax = Math.max(topMax, time);
+            return;
+        }
+        for (int r=0; r<numRungs; r++) {
+            // skip exhausted rungs (they are only dropped in refillBottom()): an event
+            // that would go there belongs to a lower rung, or to Bottom
+            if (currentBucket[r] < numBuckets[r] && time >= rungStart[r] + currentBucket[r] * bucketWidth[r]) {
+                addToBucket(r, node);
+                return;
+            }
+        }
+        bottomHead = insertSorted(bottomHead, node);
+        if (++bottomCount > bottomLimit)
+            spillBottom();
+    }
+
+    /**
+     * Turns Bottom into a new rung, if its events can be spread. If they cannot
+     * (e.g. they have the same timestamp), the next attempt is made when Bottom
+     * has doubled in size.
+     */
+    private void spillBottom() {
+        int last = bottomHead;
+        while (next[last] != NIL)
+            last = next[last];
+        if (spawnRung(bottomHead, bottomCount, times[bottomHead], times[last])) {
+            bottomHead = NIL;
+            bottomCount = 0;
+            bottomLimit = THRESHOLD;
+        }
+        else
+            bottomLimit = 2 * bottomCount;
+    }
+
+    /**
+     * Adds the node to its bucket on rung r. The rung must not be exhausted, and the
+     * event must not be earlier than the current bucket; the bucket index is clamped
+     * to the unconsumed buckets against rounding errors.
+     */
+    private void addToBucket(int r, int node) {
+        double k = (times[node] - rungStart[r]) / bucketWidth[r];
+        int b = k >= numBuckets[r] ? numBuckets[r] - 1 : Math.max((int)k, currentBucket[r]);
+        next[node] = bucketHeads[r][b];
+        bucketHeads[r][b] = node;
+        bucketCounts[r][b]++;
+    }
+
+    /**
+     * Creates a new rung below the existing ones, and moves the events of the list into it.
+     * Returns false (and does nothing) if the events cannot be spread, e.g. because
+     * they all have the same timestamp.
+     */
+    private boolean spawnRung(int list, int count, double min, double max) {
+        double width = (max - min) / count;
+        if (!(width > 0) || Double.isInfinite(width) || numRungs == MAX_RUNGS)
+            return false;
+        int n = Math.min(count + 1, MAX_BUCKETS);
+        if (n < count + 1)
+            width = (max - min) / (n - 1);
+        int r = numRungs++;
+        rungStart[r] = min;
+        bucketWidth[r] = width;
+        numBuckets[r] = n;
+        currentBucket[r] = 0;
+        if (bucketHeads[r] == null || bucketHeads[r].length < n) {
+            bucketHeads[r] = new int[Math.max(n, 2 * THRESHOLD)];
+            bucketCounts[r] = new int[bucketHeads[r].length];
+        }
+        Arrays.fill(bucketHeads[r], 0, n, NIL);
+        Arrays.fill(bucketCounts[r], 0, n, 0);
+        for (int node = list; node != NIL; ) {
+            int nextNode = next[node];
+            addToBucket(r, node);
+            node = nextNode;
+        }
+        return true;
+    }
+
+    /**
+     * Moves events into Bottom if it is empty, spawning rungs as needed.
+     */
+    private void refillBottom() {
+        while (bottomHead == NIL) {
+            if (numRungs == 0) {
+                if (topCount == 0)
+                    return;
+                // spread Top onto the first rung; if that is not possible, sort it into Bottom
+                int list = topHead;
+                int count = topCount;
+                double min = topMin, max = topMax;
+                topStart = max;
+                resetTop();
+                if (!spawnRung(list, count, min, max)) {
+                    bottomHead = sortList(list);
+                    bottomCount = count;
+                    bottomLimit = Math.max(THRESHOLD, 2 * count);
+                }
+                continue;
+            }
+
+            // find the first nonempty bucket on the lowest rung
+            int r = numRungs - 1;
+            int b = currentBucket[r];
+            while (b < numBuckets[r] && bucketHeads[r][b] == NIL)
+                b++;
+            if (b == numBuckets[r]) {
+                numRungs--; // rung exhausted
+                continue;
+            }
+            int list = bucketHeads[r][b];
+            int count = bucketCounts[r][b];
+            bucketHeads[r][b] = NIL;
+            bucketCounts[r][b] = 0;
+            currentBucket[r] = b + 1;
+
+            // split large buckets into a new rung, sort small ones into Bottom
+            if (count > THRESHOLD && numRungs < MAX_RUNGS) {
+                double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+                for (int node = list; node != NIL; node = next[node]) {
+                    min = Math.min(min, times[node]);
+                    max = Math.max(max, times[node]);
+                }
+                if (spawnRung(list, count, min, max))
+                    continue;
+            }
+            bottomHead = sortList(list);
+            bottomCount = count;
+            bottomLimit = Math.max(THRESHOLD, 2 * count);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T peekFirst() {
+        refillBottom();
+        return bottomHead == NIL ? null : (T)events[bottomHead];
+    }
+
+    public double peekFirstTime() {
+        refillBottom();
+        return bottomHead == NIL ? Double.POSITIVE_INFINITY : times[bottomHead];
+    }
+
+    public T removeFirst() {
+        refillBottom();
+        if (bottomHead == NIL)
+            return null;
+        int first = bottomHead;
+        bottomHead = next[first];
+        bottomCount--;
+        return releaseNode(first);
+    }
+
+    public void clear() {
+        super.clear();
+        resetTop();
+        topStart = Double.NEGATIVE_INFINITY;
+        numRungs = 0;
+        bottomHead = NIL;
+        bottomCount = 0;
+        bottomLimit = THRESHOLD;
+    }
+}
@@ -0,0 +1,411 @@
+package org.omnetpp.scave.writers.impl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+import org.omnetpp.scave.writers.ResultRecordingException;
+import org.omnetpp.scave.writers.impl.FileOutputVectorManager.BackpressurePolicy;
+import org.omnetpp.scave.writers.impl.FileOutputVectorManager.OutputVector;
+
+/**
+ * Moves the buffering, formatting and writing of output vector data off the
+ * simulation thread(s). Recorded values and vector operations (create, flush,
+ * close) are put into single-producer single-consumer ring buffers, which are
+ * drained by a background thread that performs them the same way as
+ * FileOutputVectorManager does in synchronous mode.
+ *
+ * In single-producer mode, there is one ring, and except for run(), methods
+ * may only be called from the thread that records the data. In multi-producer
+ * mode, each recording thread gets its own ring. Entries from the same thread
+ * are processed in order, and so are the entries of a vector that is recorded
+ * by several threads one after the other: entries carry a per-vector sequence
+ * number, and the writer does not process an entry of a ring until the
+ * vector's earlier entries (in other rings) have been processed. Flushing or
+ * closing the manager first processes all entries that are in the rings of
+ * other threads at that time. The rings of terminated threads are released
+ * once they are empty, and all rings are released by close().
+ */
+class AsyncVectorWriter implements Runnable {
+    static final byte SAMPLE = 0;
+    static final byte CREATE = 1;
+    static final byte FLUSH = 2;
+    static final byte CLOSE = 3;
+    static final byte FLUSH_ALL = 4;
+    static final byte CLOSE_ALL = 5;
+
+    private static final int BATCH_SIZE = 1024; // entries to process from a ring before publishing progress
+    private static final long IDLE_PARK_NANOS = 1000000;
+    private static final long WAIT_PARK_NANOS = 10000;
+
+    private final FileOutputVectorManager manager;
+    private final BackpressurePolicy policy;
+    private final int capacity;
+    private final List<Ring> rings = new CopyOnWriteArrayList<Ring>();
+    private volatile long numDroppedInReleasedRings;
+    private volatile boolean closed;
+    private final Ring singleRing; // in single-producer mode
+    private final ThreadLocal<Ring> threadRing; // in multi-producer mode
+    private Thread thread;
+
+    private volatile boolean writerParked;
+    private volatile Throwable error;
+
+    /**
+     * Storage for ring entries. Positions grow monotonically, the index is
+     * position & mask. With the GROW policy, when a segment is full, the
+     * producer continues in a new segment of twice the size, and the writer
+     * thread follows once it has processed the entries of the old one.
+     */
+    private static class Segment {
+        final int capacity;
+        final int mask;
+        final byte[] ops;
+        final OutputVector[] vectors;
+        final int[] seqs;         // per-vector sequence numbers, see OutputVector.numQueued
+        final long[] times;
+        final byte[] timeScales;
+        final double[] values;
+        final long start;         // position of the first entry
+        volatile long end = Long.MAX_VALUE; // position after the last entry, once the producer has moved on
+        volatile Segment next;
+
+        Segment(int capacity, long start) {
+            this.capacity = capacity;
+            this.start = start;
+            mask = capacity - 1;
+            ops = new byte[capacity];
+            vectors = new OutputVector[capacity];
+            seqs = new int[capacity];
+            times = new long[capacity];
+            timeScales = new byte[capacity];
+            values = new double[capacity];
+        }
+    }
+
+    /**
+     * A single-producer single-consumer ring buffer, consisting of one segment
+     * (or a chain of segments with the GROW policy). Entries are visible to the
+     * writer thread as soon as they are put, even if the ring has grown; this
+     * matters when the entries of a thread's ring wait for another thread's.
+     */
+    private class Ring {
+        private final Thread producer;   // null in single-producer mode
+        private Segment producerSegment; // only accessed by the producer
+        private Segment consumerSegment; // only accessed by the writer thread
+        private volatile long head; // next position to consume; only written by the writer thread
+        private volatile long tail; // next position to fill; only written by the producer
+        private long cachedHead;    // the producer's last observed value of head
+        private boolean busy;       // whether the writer thread is processing an entry of this ring
+        private boolean blocked;    // whether the next entry waits for entries in other rings
+
+        private volatile long numDropped;
+
+        Ring(Thread producer) {
+            this.producer = producer;
+            producerSegment = consumerSegment = new Segment(capacity, 0);
+        }
+
+        void release() {
+            producerSegment = consumerSegment = null;
+        }
+
+        // --- producer side ---
+
+        boolean put(byte op, OutputVector vector, long time, byte timeScale, double value, boolean droppable) {
+            checkError();
+            int seq = vector == null ? 0 : vector.numQueued;
+            if (!hasRoom()) {
+                if (policy == BackpressurePolicy.GROW)
+                    startSegment(Math.min(2 * producerSegment.capacity, 1 << 30));
+                else if (policy == BackpressurePolicy.DROP && droppable) {
+                    numDropped++;
+                    return false;
+                }
+                else
+                    waitForRoom();
+            }
+            else if (producerSegment.capacity > capacity && tail == (cachedHead = head))
+                startSegment(capacity); // return to the original size when a grown ring becomes empty
+            append(op, vector, seq, time, timeScale, value);
+            if (vector != null)
+                vector.numQueued = seq + 1;
+            return true;
+        }
+
+        boolean hasRoom() {
+            Segment segment = producerSegment;
+            return tail - Math.max(cachedHead, segment.start) < segment.capacity ||
+                    tail - Math.max(cachedHead = head, segment.start) < segment.capacity;
+        }
+
+        void waitForRoom() {
+            while (!hasRoom()) {
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(WAIT_PARK_NANOS);
+            }
+        }
+
+        void startSegment(int segmentCapacity) {
+            Segment segment = new Segment(segmentCapacity, tail);
+            producerSegment.next = segment;
+            producerSegment.end = tail; // after setting next, see consume()
+            producerSegment = segment;
+        }
+
+        void append(byte op, OutputVector vector, int seq, long time, byte timeScale, double value) {
+            Segment segment = producerSegment;
+            long t = tail;
+            int i = (int)t & segment.mask;
+            segment.ops[i] = op;
+            segment.vectors[i] = vector;
+            segment.seqs[i] = seq;
+            segment.times[i] = time;
+            segment.timeScales[i] = timeScale;
+            segment.values[i] = value;
+            tail = t + 1;
+
+            // the writer polls while idle; wake it up early if there is an operation or the ring is filling up
+            if (writerParked && (op != SAMPLE || t + 1 - cachedHead >= segment.capacity / 2))
+                LockSupport.unpark(thread);
+        }
+
+        void waitUntilProcessed() {
+            long position = tail - 1;
+            while (head <= position) {
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(WAIT_PARK_NANOS);
+            }
+        }
+
+        // --- consumer side ---
+
+        /**
+         * Processes entries up to the given position (or the current tail), or
+         * until an entry that has to wait for entries in other rings. Returns the
+         * number of entries processed, or -1 if CLOSE_ALL was processed.
+         */
+        int consume(long limit) {
+            Segment segment = consumerSegment;
+            long h = head;
+            long t = Math.min(tail, limit);
+            int count = 0;
+            blocked = false;
+            for (; h < t; h++) {
+                if (h == segment.end)
+                    consumerSegment = segment = segment.next;
+                int i = (int)h & segment.mask;
+                byte op = segment.ops[i];
+                OutputVector vector = segment.vectors[i];
+                if (vector != null && vector.numProcessed != segment.seqs[i]) {
+                    // the vector was recorded by another thread before, and those entries are not processed yet
+                    blocked = true;
+                    break;
+                }
+                if (op == FLUSH_ALL || op == CLOSE_ALL) {
+                    // process what other threads recorded before this operation
+                    head = h;
+                    busy = true;
+                    consumeOtherRings();
+                    busy = false;
+                }
+                // after an error, only the files are closed; producers get the exception on their next call
+                if (error == null || op == CLOSE_ALL) {
+                    try {
+                        process(op, vector, segment.times[i], segment.timeScales[i], segment.values[i]);
+                    }
+                    catch (Throwable e) {
+                        if (error == null)
+                            error = e;
+                    }
+                }
+                segment.vectors[i] = null;
+                if (vector != null)
+                    vector.numProcessed++;
+                count++;
+                if (op == CLOSE_ALL) {
+                    head = h + 1;
+                    return -1;
+                }
+            }
+            head = h;
+            return count;
+        }
+    }
+
+    public AsyncVectorWriter(FileOutputVectorManager manager, BackpressurePolicy policy, int capacity, boolean multiProducer) {
+        if (capacity <= 0 || capacity > (1 << 30))
+            throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+        this.manager = manager;
+        this.policy = policy;
+        int size = 1;
+        while (size < capacity)
+            size <<= 1; // round up to a power of two
+        this.capacity = size;
+
+        if (!multiProducer) {
+            singleRing = new Ring(null);
+            rings.add(singleRing);
+            threadRing = null;
+        }
+        else {
+            singleRing = null;
+            threadRing = ThreadLocal.withInitial(() -> {
+                Ring ring = new Ring(Thread.currentThread());
+                rings.add(ring);
+                return ring;
+            });
+        }
+    }
+
+    public void start() {
+        thread = new Thread(this, "vector writer: " + manager.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private Ring ring() {
+        if (closed)
+            throw new IllegalStateException("Output vector manager already closed");
+        return singleRing != null ? singleRing : threadRing.get();
+    }
+
+    public long getNumDroppedSamples() {
+        long count = numDroppedInReleasedRings;
+        for (Ring ring : rings)
+            count += ring.numDropped;
+        return count;
+    }
+
+    /**
+     * Enqueues a value; returns false if it was dropped because of the DROP policy.
+     */
+    public boolean putSample(OutputVector vector, long time, byte timeScale, double value) {
+        return ring().put(SAMPLE, vector, time, timeScale, value, true);
+    }
+
+    /**
+     * Enqueues a vector operation without waiting for it to be carried out.
+     */
+    public void putOperation(byte op, OutputVector vector) {
+        ring().put(op, vector, 0, (byte)0, 0, false);
+    }
+
+    /**
+     * Enqueues a vector operation, and waits until the writer thread has carried it out.
+     */
+    public void putOperationAndWait(byte op, OutputVector vector) {
+        Ring ring = ring();
+        ring.put(op, vector, 0, (byte)0, 0, false);
+        ring.waitUntilProcessed();
+        checkError();
+    }
+
+    /**
+     * Lets the writer thread process all pending entries, close the files,
+     * and exit. Returns when this is done. Entries are not dropped here,
+     * regardless of the backpressure policy. In multi-producer mode, other
+     * threads must have finished recording.
+     */
+    public void close() {
+        // an earlier error must not prevent closing the files, so don't use put()
+        Ring ring = ring();
+        ring.waitForRoom();
+        ring.append(CLOSE_ALL, null, 0, 0, (byte)0, 0);
+        ring.waitUntilProcessed();
+        try {
+            thread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResultRecordingException("Interrupted while waiting for the vector writer thread to finish", e);
+        }
+
+        // release the rings; threads that are still alive keep only the empty Ring objects
+        closed = true;
+        for (Ring r : rings) {
+            numDroppedInReleasedRings += r.numDropped;
+            r.release();
+        }
+        rings.clear();
+        if (threadRing != null)
+            threadRing.remove();
+        checkError();
+    }
+
+    private void checkError() {
+        Throwable e = error;
+        if (e != null)
+            throw e instanceof ResultRecordingException ? (ResultRecordingException)e :
+                new ResultRecordingException("Error recording vector results: " + e.getMessage(), e);
+    }
+
+    public void run() {
+        while (true) {
+            boolean idle = true;
+            for (Ring ring : rings) {
+                int count = ring.consume(ring.head + BATCH_SIZE);
+                if (count == -1)
+                    return;
+                if (count > 0)
+                    idle = false;
+            }
+            if (idle) {
+                releaseRingsOfTerminatedThreads();
+                writerParked = true;
+                if (!hasPendingEntries())
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                writerParked = false;
+            }
+        }
+    }
+
+    /**
+     * Processes the entries that are in the other rings at the time of the
+     * call, including entries that have to wait for entries in another ring.
+     */
+    private void consumeOtherRings() {
+        Ring[] others = rings.toArray(new Ring[0]);
+        long[] limits = new long[others.length];
+        for (int i=0; i<others.length; i++)
+            limits[i] = others[i].tail;
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (int i=0; i<others.length; i++)
+                if (!others[i].busy && others[i].consume(limits[i]) > 0)
+                    progress = true;
+        }
+    }
+
+    /**
+     * Releases the rings of terminated threads after their entries have been processed.
+     */
+    private void releaseRingsOfTerminatedThreads() {
+        for (Ring ring : rings) {
+            if (ring.producer != null && !ring.producer.isAlive() && ring.head == ring.tail) {
+                numDroppedInReleasedRings += ring.numDropped;
+                rings.remove(ring);
+                ring.release();
+            }
+        }
+    }
+
+    private boolean hasPendingEntries() {
+        for (Ring ring : rings)
+            if (ring.tail != ring.head && !ring.blocked)
+                return true;
+        return false;
+    }
+
+    private void process(byte op, OutputVector vector, long time, byte timeScale, double value) {
+        switch (op) {
+            case SAMPLE: vector.store(time, timeScale, value); break;
+            case CREATE: manager.vectors.add(vector); break;
+            case FLUSH: vector.writeBlock(); break;
+            case CLOSE: vector.writeBlock(); manager.vectors.remove(vector); break;
+            case FLUSH_ALL: manager.doFlush(); break;
+            case CLOSE_ALL: manager.doClose(); break;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.omnetpp.scave.writers.impl;
+
+/**
+ * A histogram that determines its range from the data. The first few values
+ * are stored; then a range that covers them is chosen, with a "nice" cell
+ * size (1, 2 or 5 times a power of ten). Later values that fall outside the
+ * range extend it by doubling the cell size: adjacent pairs of cells are
+ * merged in place, and the range grows upwards or downwards. Thus, memory
+ * use stays constant and no value is ever counted as underflow or overflow,
+ * except for infinities.
+ *
+ * The number of cells must be even. The cells are also set up when the
+ * histogram is queried before enough values have been collected.
+ */
+public class AutoRangeHistogram extends Histogram {
+    public static final int DEFAULT_NUM_CELLS = 200;
+    public static final int DEFAULT_NUM_PRECOLLECT = 100;
+
+    private static final int[] NICE_FACTORS = {1, 2, 5, 10};
+
+    protected double[] precollectedValues;
+    protected double[] precollectedWeights;
+    protected int numPrecollected;
+    protected boolean cellsSetUp;
+
+    public AutoRangeHistogram() {
+        this(DEFAULT_NUM_CELLS, DEFAULT_NUM_PRECOLLECT);
+    }
+
+    public AutoRangeHistogram(int numCells, int numPrecollect) {
+        super(numCells);
+        if (numCells % 2 != 0)
+            throw new IllegalArgumentException("Number of cells must be even");
+        if (numPrecollect <= 0)
+            throw new IllegalArgumentException("Number of values to precollect must be positive");
+        precollectedValues = new double[numPrecollect];
+        precollectedWeights = new double[numPrecollect];
+    }
+
+    public void clear() {
+        super.clear();
+        numPrecollected = 0;
+        cellsSetUp = false;
+    }
+
+    protected void addToCell(double value, double weight) {
+        if (!cellsSetUp) {
+            precollectedValues[numPrecollected] = value;
+            precollectedWeights[numPrecollected] = weight;
+            if (++numPrecollected == precollectedValues.length)
+                setUpCells();
+            return;
+        }
+        if (!Double.isInfinite(value)) {
+            while (value < lo)
+                extendDownwards();
+            while ((value - lo) / cellSize >= cells.length)
+                extendUpwards();
+        }
+        super.addToCell(value, weight);
+    }
+
+    /**
+     * Chooses the histogram range based on the precollected values, and
+     * adds them to the cells.
+     */
+    protected void setUpCells() {
+        double minValue = Double.POSITIVE_INFINITY, maxValue = Double.NEGATIVE_INFINITY;
+        for (int i=0; i<numPrecollected; i++) {
+            double value = precollectedValues[i];
+            if (!Double.isInfinite(value)) {
+                minValue = Math.min(minValue, value);
+                maxValue = Math.max(maxValue, value);
+            }
+        }
+        if (minValue > maxValue) // no finite values
+            minValue = maxValue = 0;
+
+        double range = maxValue - minValue;
+        if (range == 0)
+            range = minValue == 0 ? 1 : Math.abs(minValue);
+        cellSize = niceCellSize(range / cells.length);
+        lo = Math.floor(minValue / cellSize) * cellSize;
+
+        cellsSetUp = true;
+        for (int i=0; i<numPrecollected; i++)
+            addToCell(precollectedValues[i], precollectedWeights[i]);
+        numPrecollected = 0;
+    }
+
+    /**
+     * Rounds up to 1, 2 or 5 times a power of ten.
+     */
+    protected static double niceCellSize(double size) {
+        double base = Math.pow(10, Math.floor(Math.log10(size)));
+        for (int factor : NICE_FACTORS)
+            if (factor * base >= size)
+                return factor * base;
+        return 10 * base;
+    }
+
+    protected void extendUpwards() {
+        int half = cells.length / 2;
+        for (int i=0; i<half; i++)
+            cells[i] = cells[2*i] + cells[2*i+1];
+        for (int i=half; i<cells.length; i++)
+            cells[i] = 0;
+        cellSize *= 2;
+    }
+
+    protected void extendDownwards() {
+        int half = cells.length / 2;
+        for (int i=half-1; i>=0; i--)
+            cells[half+i] = cells[2*i] + cells[2*i+1];
+        for (int i=0; i<half; i++)
+            cells[i] = 0;
+        lo -= cells.length * cellSize;
+        cellSize *= 2;
+    }
+
+    protected void ensureCellsSetUp() {
+        if (!cellsSetUp && numPrecollected > 0)
+            setUpCells();
+    }
+
+    public int getNumCells() {
+        ensureCellsSetUp();
+        return cellsSetUp ? cells.length : 0;
+    }
+
+    public double getCellBoundary(int k) {
+        ensureCellsSetUp();
+        return super.getCellBoundary(k);
+    }
+
+    public double getCellValue(int k) {
+        ensureCellsSetUp();
+        return super.getCellValue(k);
+    }
+
+    public double getCellPDF(int k) {
+        ensureCellsSetUp();
+        return super.getCellPDF(k);
+    }
+
+    public long getUnderflowCell() {
+        ensureCellsSetUp();
+        return super.getUnderflowCell();
+    }
+
+    public long getOverflowCell() {
+        ensureCellsSetUp();
+        return super.getOverflowCell();
+    }
+}
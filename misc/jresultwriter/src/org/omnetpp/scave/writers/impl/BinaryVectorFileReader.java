@@ -0,0 +1,308 @@
+package org.omnetpp.scave.writers.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.omnetpp.scave.writers.ResultRecordingException;
+
+/**
+ * Reads binary vector files written by FileOutputVectorManager (see
+ * setBinaryFormat() there for the format), one record at a time. Arrays
+ * are reused between records, so reading does not allocate memory except
+ * for text records. Usage:
+ *
+ * <pre>
+ * BinaryVectorFileReader reader = new BinaryVectorFileReader(file);
+ * while (reader.next()) {
+ *     if (reader.isBlock())
+ *         for (int i=0; i&lt;reader.getCount(); i++)
+ *             process(reader.getVectorId(), reader.getTime(i), reader.getValue(i));
+ * }
+ * reader.close();
+ * </pre>
+ *
+ * convertToText() converts a binary vector file into the text format (.vec
+ * and .vci), so that it can be used with the existing tools; it can also be
+ * invoked from the command line via main().
+ *
+ * Methods throw ResultRecordingException on I/O errors and invalid files.
+ */
+public class BinaryVectorFileReader {
+    public static final int DOUBLE_TIME = FileOutputVectorManager.DOUBLE_TIME;
+
+    private File file;
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1024*1024).order(ByteOrder.LITTLE_ENDIAN);
+    private long bufferStart; // file offset of the first byte in the buffer
+
+    // the current record
+    private long recordOffset;
+    private boolean isBlock;
+    private String text;
+    private int vectorId;
+    private int count;
+    private byte[] timeScales = new byte[0];
+    private long[] times = new long[0];
+    private double[] values = new double[0];
+
+    public BinaryVectorFileReader(File file) {
+        this.file = file;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot open " + file.getPath() + ": " + e.getMessage(), e);
+        }
+        buffer.limit(0);
+        byte[] magic = new byte[FileOutputVectorManager.BINARY_MAGIC.length];
+        if (!fill(magic.length))
+            throw new ResultRecordingException(file.getPath() + " is not a binary vector file");
+        buffer.get(magic);
+        if (!Arrays.equals(magic, FileOutputVectorManager.BINARY_MAGIC))
+            throw new ResultRecordingException(file.getPath() + " is not a binary vector file");
+    }
+
+    /**
+     * Makes sure that at least n bytes are available in the buffer; returns
+     * false if the end of the file is reached before that.
+     */
+    private boolean fill(int n) {
+        if (buffer.remaining() >= n)
+            return true;
+        bufferStart += buffer.position();
+        buffer.compact();
+        try {
+            while (buffer.position() < n)
+                if (channel.read(buffer) < 0)
+                    break;
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot read " + file.getPath() + ": " + e.getMessage(), e);
+        }
+        buffer.flip();
+        return buffer.remaining() >= n;
+    }
+
+    private void require(int n) {
+        if (!fill(n))
+            throw new ResultRecordingException("Truncated record at offset " + recordOffset + " in " + file.getPath());
+    }
+
+    /**
+     * Reads the next record. Returns false at the end of the file.
+     */
+    public boolean next() {
+        recordOffset = bufferStart + buffer.position();
+        if (!fill(1))
+            return false;
+        byte type = buffer.get();
+        if (type == FileOutputVectorManager.BINARY_TEXT_RECORD) {
+            require(4);
+            int length = buffer.getInt();
+            byte[] bytes = new byte[length];
+            for (int pos = 0; pos < length; ) {
+                require(1);
+                int n = Math.min(length - pos, buffer.remaining());
+                buffer.get(bytes, pos, n);
+                pos += n;
+            }
+            text = new String(bytes, StandardCharsets.UTF_8);
+            isBlock = false;
+        }
+        else if (type == FileOutputVectorManager.BINARY_BLOCK_RECORD || type == FileOutputVectorManager.BINARY_MIXED_BLOCK_RECORD) {
+            require(8);
+            vectorId = buffer.getInt();
+            count = buffer.getInt();
+            if (count < 0)
+                throw new ResultRecordingException("Invalid block record at offset " + recordOffset + " in " + file.getPath());
+            if (times.length < count) {
+                timeScales = new byte[count];
+                times = new long[count];
+                values = new double[count];
+            }
+            if (type == FileOutputVectorManager.BINARY_BLOCK_RECORD) {
+                require(1);
+                Arrays.fill(timeScales, 0, count, buffer.get());
+            }
+            else {
+                for (int i=0; i<count; ) {
+                    require(1);
+                    int n = Math.min(count - i, buffer.remaining());
+                    buffer.get(timeScales, i, n);
+                    i += n;
+                }
+            }
+            for (int i=0; i<count; ) {
+                require(8);
+                int end = Math.min(count, i + buffer.remaining() / 8);
+                for (; i<end; i++)
+                    times[i] = buffer.getLong();
+            }
+            for (int i=0; i<count; ) {
+                require(8);
+                int end = Math.min(count, i + buffer.remaining() / 8);
+                for (; i<end; i++)
+                    values[i] = buffer.getDouble();
+            }
+            text = null;
+            isBlock = true;
+        }
+        else
+            throw new ResultRecordingException("Invalid record type at offset " + recordOffset + " in " + file.getPath());
+        return true;
+    }
+
+    /**
+     * Returns the file offset of the current record.
+     */
+    public long getRecordOffset() {
+        return recordOffset;
+    }
+
+    /**
+     * Returns the size of the current record in bytes.
+     */
+    public long getRecordSize() {
+        return bufferStart + buffer.position() - recordOffset;
+    }
+
+    /**
+     * Returns true if the current record is a data block, and false if it is a text record.
+     */
+    public boolean isBlock() {
+        return isBlock;
+    }
+
+    /**
+     * Returns the contents of the current text record: lines in the text vector file format.
+     */
+    public String getText() {
+        return text;
+    }
+
+    public int getVectorId() {
+        return vectorId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the time scale exponent of the ith time, or DOUBLE_TIME if it is a double.
+     */
+    public int getTimeScaleExponent(int i) {
+        return timeScales[i];
+    }
+
+    /**
+     * Returns the ith time as an integer to be multiplied by 10^getTimeScaleExponent(i).
+     * Must not be called if the exponent is DOUBLE_TIME.
+     */
+    public long getRawTime(int i) {
+        if (timeScales[i] == DOUBLE_TIME)
+            throw new IllegalStateException("Time is stored as a double");
+        return times[i];
+    }
+
+    public double getTime(int i) {
+        int timeScale = timeScales[i];
+        if (timeScale == DOUBLE_TIME)
+            return Double.longBitsToDouble(times[i]);
+        return timeScale >= 0 ? times[i] * FileOutputVectorManager.pow10(timeScale) : times[i] / FileOutputVectorManager.pow10(-timeScale);
+    }
+
+    public double getValue(int i) {
+        return values[i];
+    }
+
+    public void close() {
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot close " + file.getPath() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Converts a binary vector file to a text vector file and its index file (.vci).
+     * The result is the same as if the data had been recorded in text format.
+     */
+    public static void convertToText(File binaryFile, File vectorFile) {
+        File indexFile = new File(vectorFile.getPath().replaceFirst("\\.[^./\\:]*$", "") + ".vci");
+        BinaryVectorFileReader reader = new BinaryVectorFileReader(binaryFile);
+        TextOutputFile out = new TextOutputFile(vectorFile, TextOutputFile.DEFAULT_BUFFER_SIZE);
+        TextOutputFile indexOut = new TextOutputFile(indexFile, FileOutputVectorManager.INDEX_BUFFER_SIZE);
+        indexOut.setFlushFirst(out);
+        try {
+            for (int i=0; i<64; i++)
+                indexOut.print(' '); // room for "file ...." line
+            indexOut.print('\n');
+
+            while (reader.next()) {
+                if (!reader.isBlock()) {
+                    out.print(reader.text);
+                    indexOut.print(reader.text);
+                    continue;
+                }
+                int id = reader.vectorId;
+                int n = reader.count;
+                if (n == 0)
+                    continue;
+                byte[] timeScales = reader.timeScales;
+                long[] times = reader.times;
+                double[] values = reader.values;
+
+                double min = Double.NaN, max = Double.NaN, sum = 0, sqrSum = 0;
+                long blockOffset = out.getPosition();
+                for (int i=0; i<n; i++) {
+                    double value = values[i];
+                    out.print(id).print(' ');
+                    FileOutputVectorManager.writeTime(out, times[i], timeScales[i]);
+                    out.print(' ').print(value).println();
+                    if (min > value || Double.isNaN(min))
+                        min = value;
+                    if (max < value || Double.isNaN(max))
+                        max = value;
+                    sum += value;
+                    sqrSum += value*value;
+                }
+                long blockSize = out.getPosition() - blockOffset;
+                FileOutputVectorManager.writeIndexEntry(indexOut, id, blockOffset, blockSize, times[0], timeScales[0], times[n-1], timeScales[n-1], n, min, max, sum, sqrSum);
+            }
+
+            out.close();
+            indexOut.flush();
+            indexOut.overwrite(0, "file " + vectorFile.length() + " " + vectorFile.lastModified()/1000);
+        }
+        finally {
+            reader.close();
+            out.close();
+            indexOut.close();
+        }
+    }
+
+    /**
+     * Usage: BinaryVectorFileReader &lt;input.vecb&gt; [&lt;output.vec&gt;]
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Converts a binary vector file to the text format (.vec and .vci)");
+            System.err.println("Usage: BinaryVectorFileReader <input.vecb> [<output.vec>]");
+            System.exit(1);
+        }
+        String output = args.length == 2 ? args[1] : args[0].replaceFirst("\\.[^./\\:]*$", "") + ".vec";
+        if (new File(output).getAbsoluteFile().equals(new File(args[0]).getAbsoluteFile())) {
+            System.err.println("Output file must differ from the input file");
+            System.exit(1);
+        }
+        convertToText(new File(args[0]), new File(output));
+    }
+}
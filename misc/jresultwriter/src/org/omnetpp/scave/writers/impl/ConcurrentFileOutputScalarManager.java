@@ -0,0 +1,40 @@
+package org.omnetpp.scave.writers.impl;
+
+import java.util.Map;
+
+import org.omnetpp.scave.writers.IStatisticalSummary;
+
+/**
+ * A thread-safe variant of FileOutputScalarManager. Scalars are recorded
+ * rarely compared to vector data, so simply serializing the calls suffices.
+ */
+public class ConcurrentFileOutputScalarManager extends FileOutputScalarManager {
+
+    public ConcurrentFileOutputScalarManager(String fileName) {
+        super(fileName);
+    }
+
+    public synchronized void open(String runID, Map<String, String> runAttributes) {
+        super.open(runID, runAttributes);
+    }
+
+    public synchronized void close() {
+        super.close();
+    }
+
+    public synchronized void flush() {
+        super.flush();
+    }
+
+    public synchronized void recordScalar(String componentPath, String name, double value, Map<String, String> attributes) {
+        super.recordScalar(componentPath, name, value, attributes);
+    }
+
+    public synchronized void recordScalar(String componentPath, String name, Number value, Map<String, String> attributes) {
+        super.recordScalar(componentPath, name, value, attributes);
+    }
+
+    public synchronized void recordStatistic(String componentPath, String name, IStatisticalSummary statistic, Map<String, String> attributes) {
+        super.recordStatistic(componentPath, name, statistic, attributes);
+    }
+}
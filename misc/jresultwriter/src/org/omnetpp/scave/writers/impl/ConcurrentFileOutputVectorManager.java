@@ -0,0 +1,313 @@
+package org.omnetpp.scave.writers.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.omnetpp.scave.writers.IOutputVector;
+import org.omnetpp.scave.writers.ResultRecordingException;
+
+/**
+ * A thread-safe variant of FileOutputVectorManager, for simulations that
+ * record results from several threads of the same JVM (e.g. replications or
+ * partitions running in parallel). Vector IDs are allocated atomically.
+ *
+ * By default, each recording thread puts values into its own ring buffer,
+ * and a single writer thread collects them into blocks and writes one
+ * .vec/.vci pair (see setAsync() for configuring the ring buffers).
+ *
+ * With setFilePerThread(true), each thread buffers and writes blocks itself,
+ * into a separate partial file, so formatting is done in parallel. close()
+ * copies the blocks of the partial files into the .vec file in the order of
+ * their start times, so that the blocks of a vector that was recorded by
+ * several threads one after the other are in time order (see StripedVector),
+ * and writes the .vci file with the new block offsets.
+ *
+ * An output vector may only be recorded from one thread at a time, as values
+ * must be recorded in increasing timestamp order. record(double) takes the time
+ * from the simulation time provider, which must be thread-aware in this case.
+ * close() may only be called after all threads have finished recording.
+ * Vector filters must be added before recording starts.
+ */
+public class ConcurrentFileOutputVectorManager extends FileOutputVectorManager {
+    public static final int DEFAULT_RING_CAPACITY = 64*1024;
+
+    protected AtomicInteger lastAtomicId = new AtomicInteger();
+    protected boolean filePerThread = false;
+
+    // file per thread mode
+    protected Map<Integer, String> vectorHeaders = new ConcurrentHashMap<Integer, String>();
+    protected List<Part> parts = new CopyOnWriteArrayList<Part>();
+    protected AtomicInteger lastPartIndex = new AtomicInteger();
+    protected ThreadLocal<Part> threadPart = new ThreadLocal<Part>();
+
+    /**
+     * The output of one thread in file per thread mode: a FileOutputVectorManager
+     * that writes a partial file, and the thread's instances of the output vectors.
+     */
+    protected class Part {
+        FileOutputVectorManager manager;
+        OutputVector[] vectorsById = new OutputVector[16];
+
+        Part(int index) {
+            String baseName = file.getPath().replaceFirst("\\.[^./\\:]*$", "");
+            manager = new FileOutputVectorManager(baseName + ".part" + index + ".vec");
+            manager.writeHeaders = false;
+            manager.setBinaryFormat(binaryFormat);
+            manager.setSimtimeProvider(simtimeProvider);
+            manager.setPerVectorBufferLimit(perVectorLimit);
+            manager.setTotalBufferLimit(totalLimit);
+            manager.setFlushPolicy(flushPolicy);
+            manager.setOutputBufferSize(bufferSize);
+            manager.open(runID, runAttributes);
+        }
+
+        OutputVector getVector(StripedVector vector) {
+            if (vector.id >= vectorsById.length)
+                vectorsById = Arrays.copyOf(vectorsById, Math.max(2 * vectorsById.length, vector.id + 1));
+            OutputVector localVector = vectorsById[vector.id];
+            if (localVector == null)
+                vectorsById[vector.id] = localVector = manager.createVector(vector.id, vector.componentPath, vector.vectorName, null);
+            return localVector;
+        }
+    }
+
+    /**
+     * Output vector in file per thread mode: delegates to the recording thread's
+     * instance of the vector. When the vector is recorded by another thread than
+     * the previous value, the thread's buffered values are written out first, so
+     * that each block holds values recorded in one go, and blocks of different
+     * threads do not overlap in time.
+     */
+    protected class StripedVector implements IOutputVector {
+        final int id;
+        final String componentPath;
+        final String vectorName;
+        Part lastPart; // the part of the thread that used the vector last
+
+        StripedVector(int id, String componentPath, String vectorName) {
+            this.id = id;
+            this.componentPath = componentPath;
+            this.vectorName = vectorName;
+        }
+
+        protected OutputVector getLocalVector() {
+            Part part = threadPart.get();
+            if (part == null) {
+                part = new Part(lastPartIndex.incrementAndGet());
+                parts.add(part);
+                threadPart.set(part);
+            }
+            OutputVector localVector = part.getVector(this);
+            if (lastPart != part) {
+                localVector.writeBlock();
+                lastPart = part;
+            }
+            return localVector;
+        }
+
+        public void flush() {
+            getLocalVector().flush();
+        }
+
+        public void close() {
+            getLocalVector().flush(); // data recorded by other threads are written when the manager is closed
+        }
+
+        public boolean record(double value) {
+            return getLocalVector().record(value);
+        }
+
+        public boolean record(Number time, double value) {
+            return getLocalVector().record(time, value);
+        }
+
+        public boolean record(double time, double value) {
+            return getLocalVector().record(time, value);
+        }
+
+        public boolean record(long rawTime, int scaleExp, double value) {
+            return getLocalVector().record(rawTime, scaleExp, value);
+        }
+    }
+
+    public ConcurrentFileOutputVectorManager(String fileName) {
+        super(fileName);
+        asyncWriter = new AsyncVectorWriter(this, BackpressurePolicy.BLOCK, DEFAULT_RING_CAPACITY, true);
+    }
+
+    /**
+     * Configures the per-thread ring buffers. Must be called before open().
+     */
+    public void setAsync(BackpressurePolicy policy, int capacity) {
+        if (runID != null)
+            throw new IllegalStateException("setAsync() must be called before open()");
+        asyncWriter = new AsyncVectorWriter(this, policy, capacity, true);
+    }
+
+    public boolean isFilePerThread() {
+        return filePerThread;
+    }
+
+    /**
+     * Selects file per thread mode, see the class description. Must be called before open().
+     */
+    public void setFilePerThread(boolean filePerThread) {
+        if (runID != null)
+            throw new IllegalStateException("setFilePerThread() must be called before open()");
+        this.filePerThread = filePerThread;
+    }
+
+    public void open(String runID, Map<String, String> runAttributes) {
+        if (filePerThread)
+            asyncWriter = null;
+        super.open(runID, runAttributes);
+    }
+
+    public IOutputVector createVector(String componentPath, String vectorName, Map<String, String> attributes) {
+        int id = lastAtomicId.incrementAndGet();
+        if (!filePerThread)
+            return addFilters(componentPath, vectorName, createVector(id, componentPath, vectorName, attributes));
+        vectorHeaders.put(id, makeVectorHeader(id, componentPath, vectorName, attributes));
+        return addFilters(componentPath, vectorName, new StripedVector(id, componentPath, vectorName));
+    }
+
+    /**
+     * In file per thread mode, this only flushes the data recorded by the calling thread.
+     */
+    public void flush() {
+        if (!filePerThread)
+            super.flush();
+        else if (threadPart.get() != null)
+            threadPart.get().manager.flush();
+    }
+
+    public void close() {
+        if (!filePerThread) {
+            super.close();
+            return;
+        }
+        closeFilters();
+        for (Part part : parts)
+            part.manager.close();
+        if (!parts.isEmpty()) {
+            mergeParts();
+            for (Part part : parts) {
+                part.manager.file.delete();
+                part.manager.indexFile.delete();
+            }
+        }
+        parts.clear();
+    }
+
+    /**
+     * A block in a partial file, as described by a line of its index.
+     */
+    protected static class PartBlock {
+        int partIndex;
+        String id;
+        long offset;
+        long size;
+        double startTime;
+        double endTime;
+        String rest; // index fields after the block size
+    }
+
+    protected void mergeParts() {
+        // declare the vectors that have data in any of the partial files
+        TreeSet<Integer> ids = new TreeSet<Integer>();
+        for (Part part : parts)
+            for (OutputVector v : part.vectorsById)
+                if (v != null && v.header == null) // i.e. written
+                    ids.add(v.id);
+        StringBuilder vectorHeaderLines = new StringBuilder();
+        for (int id : ids)
+            vectorHeaderLines.append(vectorHeaders.get(id));
+
+        // collect the blocks, and order them by time: the blocks of a vector recorded
+        // by several threads one after the other are in different partial files
+        List<PartBlock> blocks = new ArrayList<PartBlock>();
+        for (int i=0; i<parts.size(); i++)
+            if (parts.get(i).manager.file.exists())
+                readPartIndex(i, blocks);
+        Collections.sort(blocks, (a, b) -> a.startTime != b.startTime ? Double.compare(a.startTime, b.startTime) : Double.compare(a.endTime, b.endTime)); // stable
+
+        out = new TextOutputFile(file, bufferSize);
+        indexOut = new TextOutputFile(indexFile, INDEX_BUFFER_SIZE);
+        indexOut.setFlushFirst(out);
+        writePreamble(vectorHeaderLines.toString());
+
+        // copy the blocks (adjacent ones together), and write index lines with the new offsets
+        FileChannel[] channels = new FileChannel[parts.size()];
+        try {
+            for (int i=0; i<blocks.size(); ) {
+                PartBlock first = blocks.get(i);
+                if (channels[first.partIndex] == null)
+                    channels[first.partIndex] = FileChannel.open(parts.get(first.partIndex).manager.file.toPath(), StandardOpenOption.READ);
+                long base = out.getPosition() - first.offset;
+                long end = first.offset;
+                for (; i<blocks.size() && blocks.get(i).partIndex == first.partIndex && blocks.get(i).offset == end; i++) {
+                    PartBlock block = blocks.get(i);
+                    indexOut.print(block.id).print(' ').print(block.offset + base).print(' ').print(block.size).print(' ').println(block.rest);
+                    end += block.size;
+                }
+                out.append(channels[first.partIndex], first.offset, end - first.offset);
+            }
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot copy partial vector files into " + file.getPath() + ": " + e.getMessage(), e);
+        }
+        finally {
+            for (FileChannel channel : channels) {
+                try {
+                    if (channel != null)
+                        channel.close();
+                }
+                catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+
+        out.close();
+        indexOut.flush();
+        indexOut.overwrite(0, "file " + file.length() + " " + file.lastModified()/1000);
+        indexOut.close();
+    }
+
+    protected void readPartIndex(int partIndex, List<PartBlock> blocks) {
+        File partIndexFile = parts.get(partIndex).manager.indexFile;
+        try (BufferedReader reader = new BufferedReader(new FileReader(partIndexFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(" ", 6); // id, blockOffset, blockSize, startTime, endTime, rest
+                if (fields.length != 6)
+                    throw new ResultRecordingException("Invalid line in partial index file " + partIndexFile.getPath() + ": " + line);
+                PartBlock block = new PartBlock();
+                block.partIndex = partIndex;
+                block.id = fields[0];
+                block.offset = Long.parseLong(fields[1]);
+                block.size = Long.parseLong(fields[2]);
+                block.startTime = Double.parseDouble(fields[3]);
+                block.endTime = Double.parseDouble(fields[4]);
+                block.rest = fields[3] + " " + fields[4] + " " + fields[5];
+                blocks.add(block);
+            }
+        }
+        catch (IOException | NumberFormatException e) {
+            throw new ResultRecordingException("Cannot read partial index file " + partIndexFile.getPath() + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.omnetpp.scave.writers.impl;
+
+import org.omnetpp.scave.writers.IOutputVector;
+
+/**
+ * Passes on a value only if it differs from the last passed-on value by more
+ * than the deadband. The first value is always passed on. With a deadband of
+ * zero, only changes are recorded, which suits sample-hold vectors.
+ */
+public class DeadbandFilter extends OutputVectorFilter {
+    protected final double deadband;
+    protected double lastValue = Double.NaN;
+
+    public DeadbandFilter(IOutputVector target, double deadband) {
+        super(target);
+        if (!(deadband >= 0))
+            throw new IllegalArgumentException("Deadband must be non-negative");
+        this.deadband = deadband;
+    }
+
+    protected boolean needsTime() {
+        return false;
+    }
+
+    protected boolean accept(double time, double value) {
+        if (!Double.isNaN(lastValue) && !(Math.abs(value - lastValue) > deadband))
+            return false;
+        lastValue = value;
+        return true;
+    }
+}
@@ -0,0 +1,31 @@
+package org.omnetpp.scave.writers.impl;
+
+import org.omnetpp.scave.writers.IOutputVector;
+
+/**
+ * Passes on every nth value, starting with the first one.
+ */
+public class EveryNthFilter extends OutputVectorFilter {
+    protected final int n;
+    protected int count;
+
+    public EveryNthFilter(IOutputVector target, int n) {
+        super(target);
+        if (n <= 0)
+            throw new IllegalArgumentException("n must be positive");
+        this.n = n;
+    }
+
+    protected boolean needsTime() {
+        return false;
+    }
+
+    protected boolean accept(double time, double value) {
+        if (count == 0) {
+            count = n - 1;
+            return true;
+        }
+        count--;
+        return false;
+    }
+}
@@ -1,8 +1,6 @@
 package org.omnetpp.scave.writers.impl;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintStream;
 import java.util.Map;
 
 import org.omnetpp.scave.writers.IHistogramSummary;
@@ -25,7 +23,9 @@ public class FileOutputScalarManager extends OutputFileManager implements IOutpu
     protected String runID;
     protected Map<String, String> runAttributes;
     protected File file;
-    protected PrintStream out;
+    protected TextOutputFile out;
+
+    protected static final int BUFFER_SIZE = 64*1024;
 
     public FileOutputScalarManager(String fileName) {
         file = new File(fileName);
@@ -39,34 +39,24 @@ public class FileOutputScalarManager extends OutputFileManager implements IOutpu
     }
 
     protected void open() {
-        try {
-            out = new PrintStream(file);
-        }
-        catch (FileNotFoundException e) {
-            throw new ResultRecordingException("Cannot open output scalar file " + file.getPath() + e.getMessage(), e);
-        }
-
-        out.println("version " + FILE_VERSION);
-        out.println();
-        writeRunHeader(out, runID, runAttributes);
-        flushAndCheck();
+        out = new TextOutputFile(file, BUFFER_SIZE);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("version ").append(FILE_VERSION).append(NL);
+        sb.append(NL);
+        appendRunHeader(sb, runID, runAttributes);
+        out.print(sb);
+        out.flush();
     }
 
     public void close() {
-        if (out != null) {
-            flushAndCheck();
+        if (out != null)
             out.close();
-        }
     }
 
     public void flush() {
         if (out != null)
-            flushAndCheck();
-    }
-
-    protected void flushAndCheck() {
-        if (out.checkError()) // implies flush()
-            throw new ResultRecordingException("Cannot write output scalar file " + file.getPath());
+            out.flush();
     }
 
     public String getFileName() {
@@ -76,21 +66,21 @@ public class FileOutputScalarManager extends OutputFileManager implements IOutpu
     public void recordScalar(String componentPath, String name, double value, Map<String, String> attributes) {
         if (out == null)
             open();
-        out.println("scalar " + q(componentPath) + " " + q(name) + " " + value);
-        writeAttributes(out, attributes);
+        out.print("scalar ").print(q(componentPath)).print(' ').print(q(name)).print(' ').print(value).println();
+        writeAttributes(attributes);
     }
 
     public void recordScalar(String componentPath, String name, Number value, Map<String, String> attributes) {
         if (out == null)
             open();
-        out.println("scalar " + q(componentPath) + " " + q(name) + " " + value.toString());
-        writeAttributes(out, attributes);
+        out.print("scalar ").print(q(componentPath)).print(' ').print(q(name)).print(' ').print(value.toString()).println();
+        writeAttributes(attributes);
     }
 
     public void recordStatistic(String componentPath, String name, IStatisticalSummary statistic, Map<String, String> attributes) {
         if (out == null)
             open();
-        out.println("statistic " + q(componentPath) + " " + q(name));
+        out.print("statistic ").print(q(componentPath)).print(' ').print(q(name)).println();
         writeField("count", statistic.getN());
         writeField("mean", statistic.getMean());
         writeField("stddev", statistic.getStandardDeviation());
@@ -110,22 +100,30 @@ public class FileOutputScalarManager extends OutputFileManager implements IOutpu
             }
         }
 
-        writeAttributes(out, attributes);
+        writeAttributes(attributes);
 
         if (statistic instanceof IHistogramSummary) {
             IHistogramSummary histogram = (IHistogramSummary)statistic;
             int n = histogram.getNumCells();
             if (n > 0) {
-                out.println("bin -INF " + histogram.getUnderflowCell());
+                out.print("bin -INF ").print(histogram.getUnderflowCell()).println();
                 for (int i=0; i<n; i++)
-                    out.print("bin " + histogram.getCellBoundary(i) + " " + histogram.getCellValue(i));
-                out.println("bin " + histogram.getCellBoundary(n) + histogram.getOverflowCell());
+                    out.print("bin ").print(histogram.getCellBoundary(i)).print(' ').print(histogram.getCellValue(i)).println();
+                out.print("bin ").print(histogram.getCellBoundary(n)).print(' ').print(histogram.getOverflowCell()).println();
             }
         }
     }
 
     protected void writeField(String name, double value) {
         if (!Double.isNaN(value))
-            out.println("field " + q(name) + " " + value);
+            out.print("field ").print(q(name)).print(' ').print(value).println();
+    }
+
+    protected void writeAttributes(Map<String, String> attributes) {
+        if (attributes != null) {
+            StringBuilder sb = new StringBuilder();
+            appendAttributes(sb, attributes);
+            out.print(sb);
+        }
     }
 }
@@ -1,18 +1,21 @@
 package org.omnetpp.scave.writers.impl;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.PrintStream;
-import java.util.HashSet;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.omnetpp.scave.writers.IOutputVector;
 import org.omnetpp.scave.writers.IOutputVectorManager;
 import org.omnetpp.scave.writers.ISimulationTimeProvider;
+import org.omnetpp.scave.writers.ISimulationTimeProvider2;
 import org.omnetpp.scave.writers.ResultRecordingException;
 
 /**
@@ -20,43 +23,109 @@ import org.omnetpp.scave.writers.ResultRecordingException;
  * Recording event numbers ("ETV" vectors) is not supported, because it is
  * practically only useful for sequence charts.
  *
- * This class does not support filtering (of vectors or recorded data)
- * at all -- this functionality may be added via subclasses.
+ * Recorded data can be filtered per vector (e.g. decimated or aggregated)
+ * before buffering, by registering filters for vector name patterns with
+ * addVectorFilter(); see OutputVectorFilter.
+ *
+ * Recorded data are buffered in primitive arrays that are reused across
+ * blocks, so recording via the primitive record() methods (or record(double)
+ * with an ISimulationTimeProvider2) does not allocate memory. Blocks are
+ * formatted into a large output buffer (see TextOutputFile), which is written
+ * when it fills up or when flush() is called. In asynchronous
+ * mode (see setAsync()), blocks are formatted and written by a background
+ * thread.
+ *
+ * Timestamps given as doubles are written in the notation of Double.toString().
+ * Integer timestamps (Long, Integer, Short, Byte), scaled integer ones (see
+ * record(long, int, double) and ISimulationTimeProvider2) and BigDecimal ones
+ * are written in plain decimal notation without trailing zeroes, like the
+ * simulation times written by OMNeT++ itself: for example, the BigDecimal
+ * values 1.500 and 1E-7 are written as 1.5 and 0.0000001 (and not as 1.500
+ * and 1E-7, as BigDecimal.toString() would). Timestamps of other Number types
+ * (e.g. Float or BigInteger), and BigDecimal ones whose unscaled value does
+ * not fit into a long, are converted to double.
  *
  * @author Andras
  */
 public class FileOutputVectorManager extends OutputFileManager implements IOutputVectorManager {
     public static final int FILE_VERSION = 2;
 
+    /**
+     * What record() should do in asynchronous mode when the ring buffer is full:
+     * wait for the writer thread to make room; discard the value (record()
+     * returns false); or buffer the value in additional memory.
+     */
+    public enum BackpressurePolicy { BLOCK, DROP, GROW }
+
+    /**
+     * Which vectors to write out first when the total buffer limit is reached:
+     * the ones with the most buffered values (this produces the largest
+     * blocks, i.e. the smallest index), or the ones whose buffered data are
+     * the oldest (this keeps the data in the file more up to date).
+     */
+    public enum FlushPolicy { LARGEST_FIRST, OLDEST_FIRST }
+
     protected String runID;
     protected Map<String, String> runAttributes;
     protected File file;
-    protected FileOutputStream stream;
-    protected PrintStream out;
+    protected TextOutputFile out;
     protected File indexFile;
-    protected FileOutputStream indexStream;
-    protected PrintStream indexOut;
+    protected TextOutputFile indexOut;
+    protected int bufferSize = TextOutputFile.DEFAULT_BUFFER_SIZE;
 
     protected ISimulationTimeProvider simtimeProvider;
 
     protected int perVectorLimit = 1000;
     protected int totalLimit = 1000000;
 
+    protected FlushPolicy flushPolicy = FlushPolicy.LARGEST_FIRST;
+
     protected int lastId = 0;
     protected int nbuffered = 0;
+    protected long nrecorded = 0; // for FlushPolicy.OLDEST_FIRST
+
+    protected Set<OutputVector> vectors = new LinkedHashSet<OutputVector>(); // in creation order, so that blocks are written in a deterministic order
+
+    protected boolean binaryFormat = false;
+
+    protected List<FilterRule> filterRules = new ArrayList<FilterRule>();
+    protected Set<OutputVectorFilter> filteredVectors = new LinkedHashSet<OutputVectorFilter>(); // outermost filters of open vectors
 
-    protected Set<OutputVector> vectors = new HashSet<OutputVector>();
+    protected AsyncVectorWriter asyncWriter; // null in synchronous mode
+    protected boolean writeHeaders = true;    // false for partial files that are merged into a complete file later
+
+    protected static final byte DOUBLE_TIME = Byte.MIN_VALUE;  // see OutputVector.timeScales
+
+    // binary format; see setBinaryFormat()
+    static final byte[] BINARY_MAGIC = { 'O', 'P', 'P', 'V', 'E', 'C', 'B', '1' };
+    static final byte BINARY_TEXT_RECORD = 'T';
+    static final byte BINARY_BLOCK_RECORD = 'B';
+    static final byte BINARY_MIXED_BLOCK_RECORD = 'M';
+    protected static final int INDEX_BUFFER_SIZE = 64*1024;
+    protected static final int INITIAL_CAPACITY = 10;
+    private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
 
     class OutputVector implements IOutputVector {
         int id;
-        byte[] header;
+        String header;
 
+        // buffered data: times[i] holds either a raw integer time to be scaled by
+        // 10^timeScales[i], or if timeScales[i]==DOUBLE_TIME, the bits of a double.
+        // The arrays are reused for subsequent blocks.
         int n = 0;
-        Number[] times = new Number[10];
-        double[] values = new double[10];
-
-        Number blockStartTime = 0;
-        Number blockEndTime = 0;
+        long[] times = new long[INITIAL_CAPACITY];
+        byte[] timeScales = new byte[INITIAL_CAPACITY];
+        double[] values = new double[INITIAL_CAPACITY];
+        long firstRecorded;  // value of nrecorded when the first buffered value was stored
+        int avgBlockSize = 0;  // moving average, to adapt the buffer capacity
+
+        // in asynchronous mode: sequence numbers of the vector's entries in the ring buffers,
+        // so that entries put into different rings by successive threads are processed in order
+        int numQueued = 0;     // updated by the recording thread
+        int numProcessed = 0;  // updated by the writer thread
+
+        double lastTime = 0; // for checking timestamp order
         double min = Double.NaN;
         double max = Double.NaN;
         double sum = 0;
@@ -66,25 +135,29 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
             this.id = id;
 
             // postpone writing out vector declaration until there's actually something to record
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            PrintStream tmp = new PrintStream(bos);
-            tmp.println("vector " + id + " " + q(componentPath) + " " + q(vectorName) + " TV");
-            writeAttributes(tmp, attributes);
-            tmp.close();
-            header = bos.toByteArray();
+            header = makeVectorHeader(id, componentPath, vectorName, attributes);
         }
 
-        protected void writeVectorHeader() throws IOException {
+        protected void writeVectorHeader() {
             if (out == null)
                 open();
-            out.write(header);
-            indexOut.write(header);
+            if (writeHeaders) {
+                writeText(header);
+                indexOut.print(header);
+            }
             header = null;
         }
 
         public void close() {
-            flush();
-            vectors.remove(this);
+            if (asyncWriter == null) {
+                flush();
+                vectors.remove(this);
+            }
+            else {
+                if (id == -1)
+                    throw new IllegalStateException("Output vector already closed");
+                asyncWriter.putOperationAndWait(AsyncVectorWriter.CLOSE, this);
+            }
             id = -1; // i.e. dead object
         }
 
@@ -92,39 +165,78 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
             if (id == -1)
                 throw new IllegalStateException("Output vector already closed");
 
-            writeBlock();  // implies file flushing as well
+            if (asyncWriter == null)
+                writeBlock();  // implies file flushing as well
+            else
+                asyncWriter.putOperationAndWait(AsyncVectorWriter.FLUSH, this);
         }
 
         public boolean record(double value) {
             if (simtimeProvider == null)
                 throw new IllegalStateException("Simtime provider not yet specified");
 
+            if (simtimeProvider instanceof ISimulationTimeProvider2) {
+                ISimulationTimeProvider2 provider = (ISimulationTimeProvider2)simtimeProvider;
+                int scaleExp = provider.getSimulationTimeScaleExponent();
+                if (scaleExp == ISimulationTimeProvider2.DOUBLE_TIME)
+                    return record(provider.getSimulationTimeAsDouble(), value);
+                else
+                    return record(provider.getRawSimulationTime(), scaleExp, value);
+            }
+
             return record(simtimeProvider.getSimulationTime(), value);
         }
 
         public boolean record(Number time, double value) {
+            if (time instanceof Long || time instanceof Integer || time instanceof Short || time instanceof Byte)
+                return record(time.longValue(), 0, value);
+            if (time instanceof BigDecimal) {
+                BigDecimal d = (BigDecimal)time;
+                if (d.unscaledValue().bitLength() < 64 && d.scale() < -DOUBLE_TIME && d.scale() >= -Byte.MAX_VALUE)
+                    return record(d.unscaledValue().longValue(), -d.scale(), value);
+            }
+            return record(time.doubleValue(), value);
+        }
+
+        public boolean record(double time, double value) {
+            checkTime(time);
+            return append(Double.doubleToRawLongBits(time), DOUBLE_TIME, value);
+        }
+
+        public boolean record(long rawTime, int scaleExp, double value) {
+            if (scaleExp <= DOUBLE_TIME || scaleExp > Byte.MAX_VALUE)
+                throw new IllegalArgumentException("Time scale exponent out of range: " + scaleExp);
+            checkTime(scaleExp >= 0 ? rawTime * pow10(scaleExp) : rawTime / pow10(-scaleExp));
+            return append(rawTime, (byte)scaleExp, value);
+        }
+
+        protected void checkTime(double time) {
             if (id == -1)
                 throw new IllegalStateException("Attempt to write to an output vector that's already closed");
 
-            if (time.doubleValue() < blockEndTime.doubleValue())
-                throw new IllegalStateException("Vector data must be recorded in increasing timestamp order (t="+time+ "tprev="+blockEndTime+")");
-
-            if (n == times.length) {
-                int newSize = (n * 3) / 2;
-                Number[] newTimes = new Number[newSize];
-                double[] newValues = new double[newSize];
-                System.arraycopy(times, 0, newTimes, 0, n);
-                System.arraycopy(values, 0, newValues, 0, n);
-                times = newTimes;
-                values = newValues;
-            }
+            if (time < lastTime)
+                throw new IllegalStateException("Vector data must be recorded in increasing timestamp order (t="+time+ "tprev="+lastTime+")");
+            lastTime = time;
+        }
+
+        protected boolean append(long time, byte timeScale, double value) {
+            if (asyncWriter != null)
+                return asyncWriter.putSample(this, time, timeScale, value);
+            store(time, timeScale, value);
+            return true;
+        }
+
+        protected void store(long time, byte timeScale, double value) {
+            if (n == times.length)
+                resize(Math.max(n + 1, Math.min((n * 3) / 2, perVectorLimit)));
 
             // store
+            if (n == 0)
+                firstRecorded = nrecorded;
+            nrecorded++;
             times[n] = time;
+            timeScales[n] = timeScale;
             values[n] = value;
-            if (n == 0)
-                blockStartTime = time;
-            blockEndTime = time;
             n++;
 
             // update statistics
@@ -139,56 +251,91 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
 
             // flush if needed
             changed(this);
-
-            return false;
         }
 
         protected void writeBlock() {
-            try {
-                // write out vector declaration if not yet done
-                if (header != null)
-                    writeVectorHeader();
+            if (n == 0)
+                return;
+
+            // write out vector declaration if not yet done
+            if (header != null)
+                writeVectorHeader();
 
+            if (binaryFormat)
+                writeBinaryBlock();
+            else {
                 // write data
-                long blockOffset = stream.getChannel().position();
-                for (int i=0; i<n; i++)
-                    out.println(id + " " + times[i] + " " + values[i]);
-                long blockSize = stream.getChannel().position() - blockOffset;
-
-                // make sure that the offsets referred to by the index file are exists in the vector file
-                // so the index can be used to access the vector file while it is being written
-                out.flush();
-                if (out.checkError())
-                    throw new ResultRecordingException("Cannot write output vector file " + file.getPath());
-
-                // write index
-                indexOut.println(id + " " + blockOffset + " " + blockSize + " " +
-                        blockStartTime + " " + blockEndTime + " " +
-                        n + " " + min + " " + max + " " + sum + " " + sqrSum);
-
-
-                // reset block
-                nbuffered -= n;
-                n = 0;
-                min = Double.NaN;
-                max = Double.NaN;
-                sum = 0;
-                sqrSum = 0;
-                times = new Number[10];
-                values = new double[10];
-            }
-            catch (IOException e) {
-                throw new ResultRecordingException("Error recording vector results:" + e.getMessage(), e);
+                long blockOffset = out.getPosition();
+                for (int i=0; i<n; i++) {
+                    out.print(id).print(' ');
+                    writeTime(out, times[i], timeScales[i]);
+                    out.print(' ').print(values[i]).println();
+                }
+                long blockSize = out.getPosition() - blockOffset;
+
+                // write index; indexOut always flushes the vector file before itself, so the offsets
+                // in the index file refer to data that already exist in the vector file, and the index
+                // can be used to access the vector file while it is being written
+                writeIndexEntry(indexOut, id, blockOffset, blockSize, times[0], timeScales[0], times[n-1], timeScales[n-1], n, min, max, sum, sqrSum);
             }
+
+            // adapt buffer capacity to the typical block size: vectors flushed early
+            // because of the total limit should not keep large arrays allocated
+            avgBlockSize = avgBlockSize == 0 ? n : (3 * avgBlockSize + n) / 4;
+            int capacity = Math.max(INITIAL_CAPACITY, avgBlockSize + avgBlockSize / 2);
+            if (times.length > 2 * capacity)
+                resize(capacity);
+
+            // reset block
+            nbuffered -= n;
+            n = 0;
+            min = Double.NaN;
+            max = Double.NaN;
+            sum = 0;
+            sqrSum = 0;
+        }
+
+        /**
+         * Writes the buffered data as a binary block record; see setBinaryFormat().
+         */
+        protected void writeBinaryBlock() {
+            boolean mixedTimeScales = false;
+            for (int i=1; i<n && !mixedTimeScales; i++)
+                mixedTimeScales = timeScales[i] != timeScales[0];
+
+            // double times are stored as their bits, so they can be written as longs as well
+            long blockOffset = out.getPosition();
+            if (!mixedTimeScales)
+                out.writeByte(BINARY_BLOCK_RECORD).writeInt(id).writeInt(n).writeByte(timeScales[0]);
+            else
+                out.writeByte(BINARY_MIXED_BLOCK_RECORD).writeInt(id).writeInt(n).write(timeScales, 0, n);
+            out.writeLongs(times, 0, n);
+            out.writeDoubles(values, 0, n);
+            long blockSize = out.getPosition() - blockOffset;
+            writeIndexEntry(indexOut, id, blockOffset, blockSize, times[0], timeScales[0], times[n-1], timeScales[n-1], n, min, max, sum, sqrSum);
+        }
+
+        protected void resize(int capacity) {
+            times = Arrays.copyOf(times, capacity);
+            timeScales = Arrays.copyOf(timeScales, capacity);
+            values = Arrays.copyOf(values, capacity);
         }
     }
 
+    protected static class FilterRule {
+        Pattern pattern;
+        OutputVectorFilter.Factory factory;
+    }
+
     public FileOutputVectorManager(String fileName) {
         file = new File(fileName);
         if (file.exists() && !file.delete())
             throw new ResultRecordingException("Cannot delete old output vector file " + file.getPath());
 
-        String indexFileName = fileName.replaceFirst("\\.[^./\\:]*$", "") + ".vci";
+        setIndexFile(fileName.replaceFirst("\\.[^./\\:]*$", "") + ".vci");
+    }
+
+    protected void setIndexFile(String indexFileName) {
         indexFile = new File(indexFileName);
         if (indexFile.exists() && !indexFile.delete())
             throw new ResultRecordingException("Cannot delete old output vector index file " + indexFile.getPath());
@@ -202,6 +349,18 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
         this.simtimeProvider = simtimeProvider;
     }
 
+    public int getOutputBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Sets the size of the buffer used for writing the vector file. Must be
+     * called before the file is opened, i.e. before anything is recorded.
+     */
+    public void setOutputBufferSize(int bytes) {
+        this.bufferSize = bytes;
+    }
+
     public int getPerVectorBufferLimit() {
         return perVectorLimit;
     }
@@ -218,72 +377,169 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
         this.totalLimit = count;
     }
 
+    public FlushPolicy getFlushPolicy() {
+        return flushPolicy;
+    }
+
+    /**
+     * Sets which vectors to write out first when the total number of
+     * buffered values reaches the total buffer limit.
+     */
+    public void setFlushPolicy(FlushPolicy flushPolicy) {
+        this.flushPolicy = flushPolicy;
+    }
+
+    /**
+     * Switches to asynchronous mode: recorded values are put into a ring
+     * buffer, and buffering into blocks, formatting and file writing is done
+     * by a background thread. Flushing or closing a vector or the manager
+     * waits until the writer thread has finished all preceding work.
+     * Must be called before open(). In this mode, recording must be done
+     * from a single thread.
+     *
+     * @param policy  what to do when the ring buffer is full
+     * @param capacity  number of entries in the ring buffer; rounded up to a power of two
+     */
+    public void setAsync(BackpressurePolicy policy, int capacity) {
+        if (runID != null)
+            throw new IllegalStateException("setAsync() must be called before open()");
+        asyncWriter = new AsyncVectorWriter(this, policy, capacity, false);
+    }
+
+    public boolean isBinaryFormat() {
+        return binaryFormat;
+    }
+
+    /**
+     * Selects the binary file format, which is several times more compact and
+     * faster to write than text. Must be called before open(). The vector
+     * file (conventionally named *.vecb) starts with the 8-byte magic number
+     * "OPPVECB1", followed by records, with integers in little-endian byte order:
+     *
+     * <ul>
+     * <li>Text record: 'T', int32 length, UTF-8 text. This holds the lines
+     *     of the text format that are not data lines (version, run, attr and
+     *     vector lines, etc).</li>
+     * <li>Block record: 'B', int32 vector ID, int32 count, int8 time scale
+     *     exponent, then count times, then count values (8 bytes each). Times
+     *     are IEEE doubles if the exponent is -128, and integers to be
+     *     multiplied by 10^exponent otherwise.</li>
+     * <li>Block record with mixed time scales: 'M', int32 vector ID, int32
+     *     count, count int8 time scale exponents, then times and values as
+     *     above. This is used for blocks whose values were recorded with
+     *     timestamps of different forms.</li>
+     * </ul>
+     *
+     * The index file (*.vcib) has the same format as the text index (*.vci);
+     * its entries refer to block records. Use BinaryVectorFileReader to read
+     * the file or to convert it to the text format.
+     */
+    public void setBinaryFormat(boolean binaryFormat) {
+        if (runID != null)
+            throw new IllegalStateException("setBinaryFormat() must be called before open()");
+        if (binaryFormat != this.binaryFormat)
+            setIndexFile(indexFile.getPath().replaceFirst("\\.[^./\\:]*$", "") + (binaryFormat ? ".vcib" : ".vci"));
+        this.binaryFormat = binaryFormat;
+    }
+
+    public boolean isAsync() {
+        return asyncWriter != null;
+    }
+
+    /**
+     * Returns the number of values discarded in asynchronous mode with the DROP policy.
+     */
+    public long getNumDroppedSamples() {
+        return asyncWriter == null ? 0 : asyncWriter.getNumDroppedSamples();
+    }
+
     public void open(String runID, Map<String, String> runAttributes) {
         this.runID = runID;
         this.runAttributes = runAttributes;
+        if (asyncWriter != null)
+            asyncWriter.start();
     }
 
     protected void open() {
-        try {
-            stream = new FileOutputStream(file);
-        }
-        catch (FileNotFoundException e) {
-            throw new ResultRecordingException("Cannot open output vector file " + file.getPath(), e);
-        }
-        try {
-            indexStream = new FileOutputStream(indexFile);
-        }
-        catch (FileNotFoundException e) {
-            throw new ResultRecordingException("Cannot open output vector index file " + indexFile.getPath(), e);
-        }
+        out = new TextOutputFile(file, bufferSize);
+        indexOut = new TextOutputFile(indexFile, INDEX_BUFFER_SIZE);
+        indexOut.setFlushFirst(out);
 
-        out = new PrintStream(stream);
-        out.println("version " + FILE_VERSION);
-        out.println();
-        writeRunHeader(out, runID, runAttributes);
+        if (writeHeaders)
+            writePreamble(null);
+        indexOut.flush();
+    }
 
-        indexOut = new PrintStream(indexStream);
-        indexOut.format("%64s\n", " "); // room for "file ...." line
-        indexOut.println("version " + FILE_VERSION);
-        indexOut.println();
-        writeRunHeader(indexOut, runID, runAttributes);
+    /**
+     * Writes the file headers, followed by the given vector declarations
+     * (may be null).
+     */
+    protected void writePreamble(String vectorHeaders) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("version ").append(FILE_VERSION).append(NL);
+        sb.append(NL);
+        appendRunHeader(sb, runID, runAttributes);
+        if (vectorHeaders != null)
+            sb.append(vectorHeaders);
+
+        if (binaryFormat)
+            out.write(BINARY_MAGIC);
+        writeText(sb);
+        for (int i=0; i<64; i++)
+            indexOut.print(' '); // room for "file ...." line
+        indexOut.print('\n');
+        indexOut.print(sb);
+    }
 
-        flushAndCheck();
+    /**
+     * Writes non-data lines into the vector file, as a text record in binary format.
+     */
+    protected void writeText(CharSequence text) {
+        if (binaryFormat) {
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeByte(BINARY_TEXT_RECORD).writeInt(bytes.length).write(bytes);
+        }
+        else
+            out.print(text);
     }
 
     public void close() {
+        closeFilters();
+        if (asyncWriter != null)
+            asyncWriter.close();
+        else
+            doClose();
+    }
+
+    protected void doClose() {
+        doFlush(); // note: this opens the file if there's buffered data but nothing has been written yet
         if (out != null) {
-            flush();
             out.close();
 
             // record size and timestamp of the vector file, for up-to-date checks
-            try {
-                indexStream.getChannel().position(0);
-            }
-            catch (IOException e) {
-                throw new ResultRecordingException("Cannot rewind output vector index file " + indexFile.getPath(), e);
-            }
-            indexOut.print("file " + file.length() + " " + file.lastModified()/1000);
-            if (indexOut.checkError())
-                throw new ResultRecordingException("Cannot write output vector index file " + indexFile.getPath());
+            indexOut.flush();
+            if (writeHeaders)
+                indexOut.overwrite(0, "file " + file.length() + " " + file.lastModified()/1000);
             indexOut.close();
         }
         vectors.clear();
     }
 
     public void flush() {
+        if (asyncWriter != null)
+            asyncWriter.putOperationAndWait(AsyncVectorWriter.FLUSH_ALL, null);
+        else
+            doFlush();
+    }
+
+    protected void doFlush() {
         for (OutputVector v : vectors)
             v.writeBlock();
 
-        if (out != null)
-            flushAndCheck();
-    }
-
-    protected void flushAndCheck() {
-        if (out.checkError()) // implies flush()
-            throw new ResultRecordingException("Cannot write output vector file " + file.getPath());
-        if (indexOut.checkError())
-            throw new ResultRecordingException("Cannot write output vector index file " + indexFile.getPath());
+        if (out != null) {
+            out.flush();
+            indexOut.flush();
+        }
     }
 
     public String getFileName() {
@@ -291,18 +547,162 @@ public class FileOutputVectorManager extends OutputFileManager implements IOutpu
     }
 
     public IOutputVector createVector(String componentPath, String vectorName, Map<String, String> attributes) {
-        int id = ++lastId;
+        return addFilters(componentPath, vectorName, createVector(++lastId, componentPath, vectorName, attributes));
+    }
+
+    protected OutputVector createVector(int id, String componentPath, String vectorName, Map<String, String> attributes) {
         OutputVector vector = new OutputVector(id, componentPath, vectorName, attributes);
-        vectors.add(vector);
+        if (asyncWriter == null)
+            vectors.add(vector);
+        else
+            asyncWriter.putOperation(AsyncVectorWriter.CREATE, vector);
         return vector;
     }
 
+    protected String makeVectorHeader(int id, String componentPath, String vectorName, Map<String, String> attributes) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("vector ").append(id).append(' ').append(q(componentPath)).append(' ').append(q(vectorName)).append(" TV").append(NL);
+        appendAttributes(sb, attributes);
+        return sb.toString();
+    }
+
+    /**
+     * Adds a filter to output vectors created from now on whose full name
+     * (component path + "." + vector name) matches the given pattern. In the
+     * pattern, "?" matches any character except ".", "*" matches zero or more
+     * characters except ".", and "**" matches zero or more characters of any
+     * kind. If several patterns match, values pass through the filters in the
+     * order the filters were added. Example:
+     *
+     * <pre>
+     * manager.addVectorFilter("**.queueLength", v -> new TimeWindowFilter(v, 1.0, TimeWindowFilter.Aggregate.MAX));
+     * </pre>
+     */
+    public void addVectorFilter(String pattern, OutputVectorFilter.Factory factory) {
+        FilterRule rule = new FilterRule();
+        rule.pattern = compilePattern(pattern);
+        rule.factory = factory;
+        filterRules.add(rule);
+    }
+
+    protected static Pattern compilePattern(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (int i=0; i<pattern.length(); i++) {
+            char ch = pattern.charAt(i);
+            if (ch == '*' && i+1 < pattern.length() && pattern.charAt(i+1) == '*') {
+                regex.append(".*");
+                i++;
+            }
+            else if (ch == '*')
+                regex.append("[^.]*");
+            else if (ch == '?')
+                regex.append("[^.]");
+            else
+                regex.append(Pattern.quote(String.valueOf(ch)));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Wraps the vector into the filters whose pattern matches the vector name.
+     */
+    protected IOutputVector addFilters(String componentPath, String vectorName, IOutputVector vector) {
+        if (filterRules.isEmpty())
+            return vector;
+        String fullName = componentPath + "." + vectorName;
+        OutputVectorFilter outermost = null;
+        for (int i=filterRules.size()-1; i>=0; i--) {
+            FilterRule rule = filterRules.get(i);
+            if (rule.pattern.matcher(fullName).matches()) {
+                outermost = rule.factory.createFilter(vector);
+                outermost.setSimtimeProvider(simtimeProvider);
+                vector = outermost;
+            }
+        }
+        if (outermost != null) {
+            outermost.manager = this;
+            synchronized (filteredVectors) {
+                filteredVectors.add(outermost);
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Called by the outermost filter of a vector when it is closed.
+     */
+    protected void filterClosed(OutputVectorFilter filter) {
+        synchronized (filteredVectors) {
+            filteredVectors.remove(filter);
+        }
+    }
+
+    /**
+     * Closes filtered vectors, so that filters can record pending aggregates.
+     */
+    protected void closeFilters() {
+        OutputVectorFilter[] filters;
+        synchronized (filteredVectors) {
+            filters = filteredVectors.toArray(new OutputVectorFilter[filteredVectors.size()]);
+            filteredVectors.clear();
+        }
+        for (OutputVectorFilter filter : filters)
+            filter.close();
+    }
+
+    protected static double pow10(int exp) {
+        return exp < POW10.length ? POW10[exp] : Math.pow(10, exp);
+    }
+
+    /**
+     * Writes a time stored in OutputVector's buffer. Raw times are written
+     * in plain decimal notation, without trailing zeroes.
+     */
+    protected static void writeTime(TextOutputFile out, long time, byte timeScale) {
+        if (timeScale == DOUBLE_TIME)
+            out.print(Double.longBitsToDouble(time));
+        else
+            out.printScaled(time, timeScale);
+    }
+
+    /**
+     * Writes a block line into the index file.
+     */
+    protected static void writeIndexEntry(TextOutputFile indexOut, int id, long blockOffset, long blockSize,
+            long firstTime, byte firstTimeScale, long lastTime, byte lastTimeScale, int count, double min, double max, double sum, double sqrSum) {
+        indexOut.print(id).print(' ').print(blockOffset).print(' ').print(blockSize).print(' ');
+        writeTime(indexOut, firstTime, firstTimeScale);
+        indexOut.print(' ');
+        writeTime(indexOut, lastTime, lastTimeScale);
+        indexOut.print(' ').print(count).print(' ').print(min).print(' ').print(max).print(' ').print(sum).print(' ').print(sqrSum).println();
+    }
+
     protected void changed(OutputVector vector) {
-        if (vector.n > perVectorLimit)
+        if (vector.n >= perVectorLimit)
             vector.writeBlock();
-        else if (nbuffered > totalLimit) {
-            for (OutputVector v : vectors)
-                v.writeBlock();
+        else if (nbuffered >= totalLimit)
+            writeBlocksToLimit(totalLimit / 2);
+    }
+
+    /**
+     * Writes out the buffers of vectors in the order specified by the flush
+     * policy, until the total number of buffered values drops to the given
+     * count. Flushing down to well below the total limit (instead of just
+     * below it) makes blocks larger, as vectors get time to fill up again.
+     */
+    protected void writeBlocksToLimit(int count) {
+        List<OutputVector> candidates = new ArrayList<OutputVector>();
+        for (OutputVector v : vectors)
+            if (v.n > 0)
+                candidates.add(v);
+        if (flushPolicy == FlushPolicy.LARGEST_FIRST)
+            Collections.sort(candidates, (a, b) -> a.n != b.n ? Integer.compare(b.n, a.n) : Long.compare(a.firstRecorded, b.firstRecorded));
+        else
+            Collections.sort(candidates, (a, b) -> Long.compare(a.firstRecorded, b.firstRecorded));
+        for (OutputVector v : candidates) {
+            if (nbuffered <= count)
+                break;
+            v.writeBlock();
         }
     }
 }
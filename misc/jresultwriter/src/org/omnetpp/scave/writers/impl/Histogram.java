@@ -0,0 +1,87 @@
+package org.omnetpp.scave.writers.impl;
+
+import java.util.Arrays;
+
+import org.omnetpp.scave.writers.IHistogramSummary;
+
+/**
+ * A histogram with equal-sized cells over a fixed range [lo, hi), which
+ * also collects summary statistics. Values outside the range are counted
+ * in the underflow and overflow cells. With weighted values, cells hold
+ * the sum of weights. Memory use does not depend on the number of values.
+ *
+ * @see AutoRangeHistogram
+ */
+public class Histogram extends SummaryStatistics implements IHistogramSummary {
+    protected double lo;
+    protected double cellSize;
+    protected double[] cells;
+    protected double underflow, overflow;
+
+    public Histogram(double lo, double hi, int numCells) {
+        if (numCells <= 0)
+            throw new IllegalArgumentException("Number of cells must be positive");
+        if (!(lo < hi) || Double.isInfinite(hi - lo))
+            throw new IllegalArgumentException("Invalid histogram range: [" + lo + ", " + hi + ")");
+        this.lo = lo;
+        this.cellSize = (hi - lo) / numCells;
+        this.cells = new double[numCells];
+    }
+
+    /**
+     * For subclasses that set up the cells later.
+     */
+    protected Histogram(int numCells) {
+        if (numCells <= 0)
+            throw new IllegalArgumentException("Number of cells must be positive");
+        this.cells = new double[numCells];
+    }
+
+    public void clear() {
+        super.clear();
+        if (cells != null)
+            Arrays.fill(cells, 0);
+        underflow = overflow = 0;
+    }
+
+    protected void update(double value, double weight) {
+        super.update(value, weight);
+        addToCell(value, weight);
+    }
+
+    protected void addToCell(double value, double weight) {
+        if (value < lo)
+            underflow += weight;
+        else {
+            double k = (value - lo) / cellSize;
+            if (k >= cells.length)
+                overflow += weight;
+            else
+                cells[(int)k] += weight;
+        }
+    }
+
+    public int getNumCells() {
+        return cells.length;
+    }
+
+    public double getCellBoundary(int k) {
+        return k == cells.length ? lo + cells.length * cellSize : lo + k * cellSize;
+    }
+
+    public double getCellValue(int k) {
+        return cells[k];
+    }
+
+    public double getCellPDF(int k) {
+        return n == 0 ? 0 : cells[k] / cellSize / sumWeights;
+    }
+
+    public long getUnderflowCell() {
+        return Math.round(underflow);
+    }
+
+    public long getOverflowCell() {
+        return Math.round(overflow);
+    }
+}
@@ -1,6 +1,5 @@
 package org.omnetpp.scave.writers.impl;
 
-import java.io.PrintStream;
 import java.lang.management.ManagementFactory;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -12,6 +11,7 @@ import java.util.Map;
  * @author Andras
  */
 public abstract class OutputFileManager  {
+    protected static final String NL = TextOutputFile.LINE_SEPARATOR;
 
     public static String generateRunID(String baseString) {
         String dateTime = new SimpleDateFormat("yyyyMMdd-HH:mm:ss").format(new Date());
@@ -19,16 +19,16 @@ public abstract class OutputFileManager  {
         return baseString + "-" + dateTime + "-" + pid;
     }
 
-    protected void writeRunHeader(PrintStream out, String runID, Map<String, String> runAttributes) {
-        out.println("run " + q(runID));
-        writeAttributes(out, runAttributes);
-        out.println();
+    protected void appendRunHeader(StringBuilder sb, String runID, Map<String, String> runAttributes) {
+        sb.append("run ").append(q(runID)).append(NL);
+        appendAttributes(sb, runAttributes);
+        sb.append(NL);
     }
 
-    protected void writeAttributes(PrintStream out, Map<String, String> attributes) {
+    protected void appendAttributes(StringBuilder sb, Map<String, String> attributes) {
         if (attributes != null)
             for (String attr : attributes.keySet())
-                out.println("attr " + q(attr) + " " + q(attributes.get(attr)));
+                sb.append("attr ").append(q(attr)).append(' ').append(q(attributes.get(attr))).append(NL);
     }
 
     /**
@@ -0,0 +1,115 @@
+package org.omnetpp.scave.writers.impl;
+
+import org.omnetpp.scave.writers.IOutputVector;
+import org.omnetpp.scave.writers.ISimulationTimeProvider;
+import org.omnetpp.scave.writers.ISimulationTimeProvider2;
+
+/**
+ * Base class for recording-time filters. A filter is an output vector that
+ * wraps another output vector (possibly another filter), and passes on only
+ * part of the recorded values, or aggregated values. This reduces the amount
+ * of data at the source, before it is buffered and written.
+ *
+ * Values that are passed on are recorded via the same record() method that
+ * was called on the filter, so the timestamp keeps its form (double, raw
+ * integer or Number); record() returns false for values that are filtered
+ * out. Filters that need the timestamp of values recorded with record(double)
+ * take it from the simulation time provider.
+ *
+ * Filters are normally added to vectors by the output vector manager, see
+ * FileOutputVectorManager.addVectorFilter().
+ */
+public abstract class OutputVectorFilter implements IOutputVector {
+    protected final IOutputVector target;
+    protected ISimulationTimeProvider simtimeProvider;
+    protected boolean closed;
+    FileOutputVectorManager manager; // set on the outermost filter of a vector by the manager
+
+    /**
+     * Creates a filter for the given output vector.
+     */
+    public interface Factory {
+        OutputVectorFilter createFilter(IOutputVector target);
+    }
+
+    public OutputVectorFilter(IOutputVector target) {
+        this.target = target;
+    }
+
+    public IOutputVector getTarget() {
+        return target;
+    }
+
+    public ISimulationTimeProvider getSimtimeProvider() {
+        return simtimeProvider;
+    }
+
+    /**
+     * Sets the time provider used for record(double); the manager sets it
+     * when it adds the filter.
+     */
+    public void setSimtimeProvider(ISimulationTimeProvider simtimeProvider) {
+        this.simtimeProvider = simtimeProvider;
+    }
+
+    /**
+     * Returns the current simulation time as a double, for deciding about
+     * values recorded without a timestamp.
+     */
+    protected double now() {
+        if (simtimeProvider == null)
+            throw new IllegalStateException("Simtime provider not yet specified");
+        if (simtimeProvider instanceof ISimulationTimeProvider2)
+            return ((ISimulationTimeProvider2)simtimeProvider).getSimulationTimeAsDouble();
+        return simtimeProvider.getSimulationTime().doubleValue();
+    }
+
+    /**
+     * Whether accept() uses its time argument; if not, the current time is
+     * not queried for record(double).
+     */
+    protected boolean needsTime() {
+        return true;
+    }
+
+    /**
+     * Decides whether the value should be passed on to the target vector.
+     * Aggregating filters may also record values into the target here.
+     */
+    protected abstract boolean accept(double time, double value);
+
+    public boolean record(double value) {
+        return accept(needsTime() ? now() : Double.NaN, value) && target.record(value);
+    }
+
+    public boolean record(Number time, double value) {
+        return accept(time.doubleValue(), value) && target.record(time, value);
+    }
+
+    public boolean record(double time, double value) {
+        return accept(time, value) && target.record(time, value);
+    }
+
+    public boolean record(long rawTime, int scaleExp, double value) {
+        double time = scaleExp >= 0 ? rawTime * FileOutputVectorManager.pow10(scaleExp) : rawTime / FileOutputVectorManager.pow10(-scaleExp);
+        return accept(time, value) && target.record(rawTime, scaleExp, value);
+    }
+
+    public void flush() {
+        target.flush();
+    }
+
+    /**
+     * Closes the target vector. Further calls have no effect, so the manager
+     * can close filters of vectors that may have been closed already. The
+     * manager stops tracking the filter once it is closed.
+     */
+    public void close() {
+        if (!closed) {
+            closed = true;
+            target.close();
+            if (manager != null)
+                manager.filterClosed(this);
+        }
+    }
+}
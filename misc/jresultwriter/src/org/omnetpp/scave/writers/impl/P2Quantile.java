@@ -0,0 +1,117 @@
+package org.omnetpp.scave.writers.impl;
+
+/**
+ * Estimates a single quantile of a stream of values with the P-square
+ * algorithm (R. Jain, I. Chlamtac: The P2 algorithm for dynamic calculation
+ * of quantiles and histograms without storing observations, CACM 1985).
+ * It keeps five markers whose heights are adjusted with piecewise-parabolic
+ * interpolation as values arrive, so memory use is constant. Summary
+ * statistics are collected as well.
+ *
+ * Only unweighted values are supported.
+ *
+ * @see TDigest
+ */
+public class P2Quantile extends SummaryStatistics {
+    protected final double p;
+    protected final double[] heights = new double[5];   // marker heights
+    protected final double[] positions = new double[5]; // actual marker positions (1-based)
+    protected final double[] desired = new double[5];   // desired marker positions
+    protected final double[] increments;                // increments of desired positions
+
+    /**
+     * @param p  the quantile to estimate, e.g. 0.5 for the median
+     */
+    public P2Quantile(double p) {
+        if (!(p > 0 && p < 1))
+            throw new IllegalArgumentException("Quantile must be in (0,1): " + p);
+        this.p = p;
+        this.increments = new double[] {0, p/2, p, (1+p)/2, 1};
+    }
+
+    public double getP() {
+        return p;
+    }
+
+    public void collect(double value, double weight) {
+        if (weight != 1)
+            throw new UnsupportedOperationException("P2Quantile does not support weighted values");
+        collect(value);
+    }
+
+    protected void update(double value, double weight) {
+        super.update(value, weight);
+        if (n <= 5) {
+            // collect the first five values in sorted order
+            int i = (int)n - 1;
+            while (i > 0 && heights[i-1] > value) {
+                heights[i] = heights[i-1];
+                i--;
+            }
+            heights[i] = value;
+            if (n == 5)
+                for (int j=0; j<5; j++) {
+                    positions[j] = j + 1;
+                    desired[j] = 1 + 4 * increments[j];
+                }
+            return;
+        }
+
+        // find the cell of the value, adjusting the extreme markers
+        int k;
+        if (value < heights[0]) {
+            heights[0] = value;
+            k = 0;
+        }
+        else if (value >= heights[4]) {
+            heights[4] = Math.max(heights[4], value);
+            k = 3;
+        }
+        else {
+            k = 0;
+            while (value >= heights[k+1])
+                k++;
+        }
+
+        for (int i=k+1; i<5; i++)
+            positions[i]++;
+        for (int i=0; i<5; i++)
+            desired[i] += increments[i];
+
+        // adjust the heights of the middle markers if they are off their desired positions
+        for (int i=1; i<=3; i++) {
+            double d = desired[i] - positions[i];
+            if ((d >= 1 && positions[i+1] - positions[i] > 1) || (d <= -1 && positions[i-1] - positions[i] < -1)) {
+                int sign = d > 0 ? 1 : -1;
+                double h = parabolic(i, sign);
+                if (!(heights[i-1] < h && h < heights[i+1]))
+                    h = linear(i, sign);
+                heights[i] = h;
+                positions[i] += sign;
+            }
+        }
+    }
+
+    private double parabolic(int i, int d) {
+        double qi = heights[i], ni = positions[i];
+        return qi + d / (positions[i+1] - positions[i-1]) *
+                ((ni - positions[i-1] + d) * (heights[i+1] - qi) / (positions[i+1] - ni) +
+                 (positions[i+1] - ni - d) * (qi - heights[i-1]) / (ni - positions[i-1]));
+    }
+
+    private double linear(int i, int d) {
+        return heights[i] + d * (heights[i+d] - heights[i]) / (positions[i+d] - positions[i]);
+    }
+
+    /**
+     * Returns the estimated quantile, or NaN if no values have been collected.
+     * With fewer than five values, the exact value is returned (nearest rank).
+     */
+    public double getQuantile() {
+        if (n == 0)
+            return Double.NaN;
+        if (n < 5)
+            return heights[(int)Math.max(0, Math.ceil(p * n) - 1)];
+        return heights[2];
+    }
+}
@@ -0,0 +1,24 @@
+package org.omnetpp.scave.writers.impl;
+
+import org.omnetpp.scave.writers.IOutputVector;
+
+/**
+ * Passes on values whose timestamp is within the recording interval
+ * [start, end), e.g. to skip a warm-up period.
+ */
+public class RecordingIntervalFilter extends OutputVectorFilter {
+    protected final double start;
+    protected final double end;
+
+    public RecordingIntervalFilter(IOutputVector target, double start, double end) {
+        super(target);
+        if (!(start < end))
+            throw new IllegalArgumentException("Invalid recording interval: [" + start + ", " + end + ")");
+        this.start = start;
+        this.end = end;
+    }
+
+    protected boolean accept(double time, double value) {
+        return time >= start && time < end;
+    }
+}
@@ -0,0 +1,137 @@
+package org.omnetpp.scave.writers.impl;
+
+import org.omnetpp.scave.writers.IStatisticalSummary2;
+
+/**
+ * Collects basic (optionally weighted) statistics of a stream of values,
+ * in constant memory. Mean and variance are updated incrementally using
+ * Welford's algorithm (West's variant for weighted values), which does not
+ * suffer from the cancellation errors of the sum/sqrSum formula. Sums are
+ * also kept because the result file format records them.
+ *
+ * For weighted statistics, getMean() and getVariance() return the weighted
+ * mean and the unbiased weighted variance (with weights taken as reliability
+ * weights), while getN(), getSum() and getSqrSum() still refer to the plain
+ * observations.
+ *
+ * Instances can be passed to IOutputScalarManager.recordStatistic().
+ * This class is not thread-safe.
+ */
+public class SummaryStatistics implements IStatisticalSummary2 {
+    protected long n;
+    protected boolean weighted;
+    protected double min, max;
+    protected double sum, sqrSum;
+    protected double sumWeights, sqrSumWeights, weightedSum, weightedSqrSum;
+    protected double mean, m2; // running (weighted) mean, and sum of weighted squared differences from it
+
+    public SummaryStatistics() {
+        clear();
+    }
+
+    public void clear() {
+        n = 0;
+        weighted = false;
+        min = max = Double.NaN;
+        sum = sqrSum = 0;
+        sumWeights = sqrSumWeights = weightedSum = weightedSqrSum = 0;
+        mean = m2 = 0;
+    }
+
+    /**
+     * Adds a value with weight 1.
+     */
+    public void collect(double value) {
+        update(value, 1);
+    }
+
+    /**
+     * Adds a value with the given weight. The statistics becomes weighted
+     * after the first call to this method.
+     */
+    public void collect(double value, double weight) {
+        if (!(weight >= 0) || Double.isInfinite(weight))
+            throw new IllegalArgumentException("Invalid weight: " + weight);
+        weighted = true;
+        update(value, weight);
+    }
+
+    protected void update(double value, double weight) {
+        if (Double.isNaN(value))
+            throw new IllegalArgumentException("Cannot collect NaN");
+        if (n++ == 0)
+            min = max = value;
+        else if (value < min)
+            min = value;
+        else if (value > max)
+            max = value;
+        sum += value;
+        sqrSum += value * value;
+
+        sumWeights += weight;
+        sqrSumWeights += weight * weight;
+        weightedSum += weight * value;
+        weightedSqrSum += weight * value * value;
+
+        if (weight > 0) {
+            double delta = value - mean;
+            mean += delta * weight / sumWeights;
+            m2 += weight * delta * (value - mean);
+        }
+    }
+
+    public long getN() {
+        return n;
+    }
+
+    public boolean isWeighted() {
+        return weighted;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public double getSum() {
+        return n == 0 ? Double.NaN : sum;
+    }
+
+    public double getSqrSum() {
+        return n == 0 ? Double.NaN : sqrSum;
+    }
+
+    public double getMean() {
+        return n == 0 || sumWeights == 0 ? Double.NaN : mean;
+    }
+
+    public double getVariance() {
+        if (n == 0 || sumWeights == 0)
+            return Double.NaN;
+        double denominator = sumWeights - sqrSumWeights / sumWeights; // n-1 for unit weights
+        return denominator <= 0 ? 0 : Math.max(0, m2 / denominator);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    public double getWeights() {
+        return n == 0 ? Double.NaN : sumWeights;
+    }
+
+    public double getWeightedSum() {
+        return n == 0 ? Double.NaN : weightedSum;
+    }
+
+    public double getSqrSumWeights() {
+        return n == 0 ? Double.NaN : sqrSumWeights;
+    }
+
+    public double getWeightedSqrSum() {
+        return n == 0 ? Double.NaN : weightedSqrSum;
+    }
+}
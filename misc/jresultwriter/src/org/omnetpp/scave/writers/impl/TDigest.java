@@ -0,0 +1,230 @@
+package org.omnetpp.scave.writers.impl;
+
+/**
+ * Estimates arbitrary quantiles of a stream of (optionally weighted) values,
+ * using a merging t-digest (T. Dunning, O. Ertl: Computing extremely accurate
+ * quantiles using t-digests, 2019). Values are buffered, and when the buffer
+ * is full they are merged with the existing centroids; centroids are kept
+ * small near the tails (using the k1 scale function), so extreme quantiles
+ * are accurate. All arrays are allocated in the constructor, so memory use
+ * is constant and collecting values does not allocate. Summary statistics
+ * are collected as well.
+ *
+ * @see P2Quantile
+ */
+public class TDigest extends SummaryStatistics {
+    public static final double DEFAULT_COMPRESSION = 100;
+
+    protected final double compression;
+
+    // centroids, sorted by mean
+    protected int numCentroids;
+    protected double[] means;
+    protected double[] weights;
+
+    // values not yet merged into the centroids
+    protected int numBuffered;
+    protected double[] bufferedValues;
+    protected double[] bufferedWeights;
+
+    // work area for merging
+    protected double[] mergedMeans;
+    protected double[] mergedWeights;
+
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param compression  bounds the number of centroids (about compression/2
+     *      in practice); larger values give more accurate estimates
+     */
+    public TDigest(double compression) {
+        if (!(compression >= 10 && compression <= 1e6))
+            throw new IllegalArgumentException("Compression must be between 10 and 1e6: " + compression);
+        this.compression = compression;
+        int capacity = (int)Math.ceil(compression) + 10;
+        means = new double[capacity];
+        weights = new double[capacity];
+        bufferedValues = new double[5 * capacity];
+        bufferedWeights = new double[5 * capacity];
+        mergedMeans = new double[capacity + bufferedValues.length];
+        mergedWeights = new double[capacity + bufferedValues.length];
+    }
+
+    public double getCompression() {
+        return compression;
+    }
+
+    public void clear() {
+        super.clear();
+        numCentroids = 0;
+        numBuffered = 0;
+    }
+
+    protected void update(double value, double weight) {
+        super.update(value, weight);
+        if (weight == 0 || Double.isInfinite(value))
+            return; // infinities are only reflected in min/max
+        bufferedValues[numBuffered] = value;
+        bufferedWeights[numBuffered] = weight;
+        if (++numBuffered == bufferedValues.length)
+            merge();
+    }
+
+    /**
+     * Merges the buffered values into the centroids.
+     */
+    protected void merge() {
+        if (numBuffered == 0)
+            return;
+        sort(bufferedValues, bufferedWeights, 0, numBuffered - 1);
+
+        // merge the two sorted sequences
+        int i = 0, j = 0, count = 0;
+        double totalWeight = 0;
+        while (i < numCentroids || j < numBuffered) {
+            if (j == numBuffered || (i < numCentroids && means[i] <= bufferedValues[j])) {
+                mergedMeans[count] = means[i];
+                mergedWeights[count++] = weights[i++];
+            }
+            else {
+                mergedMeans[count] = bufferedValues[j];
+                mergedWeights[count++] = bufferedWeights[j++];
+            }
+            totalWeight += mergedWeights[count-1];
+        }
+        numBuffered = 0;
+
+        // compress: merge neighbors while the centroid fits into one unit of the scale function
+        int k = 0;
+        means[0] = mergedMeans[0];
+        weights[0] = mergedWeights[0];
+        double weightSoFar = 0;
+        double weightLimit = totalWeight * qLimit(0);
+        for (int m=1; m<count; m++) {
+            if (weightSoFar + weights[k] + mergedWeights[m] <= weightLimit) {
+                weights[k] += mergedWeights[m];
+                means[k] += (mergedMeans[m] - means[k]) * mergedWeights[m] / weights[k];
+            }
+            else {
+                weightSoFar += weights[k];
+                weightLimit = totalWeight * qLimit(weightSoFar / totalWeight);
+                k++;
+                means[k] = mergedMeans[m];
+                weights[k] = mergedWeights[m];
+            }
+        }
+        numCentroids = k + 1;
+    }
+
+    /**
+     * Returns the largest quantile the centroid starting at quantile q may extend to,
+     * i.e. q(k(q)+1) for the scale function k(q) = compression/(2*pi) * asin(2q-1).
+     */
+    protected double qLimit(double q) {
+        double k = compression / (2 * Math.PI) * Math.asin(2 * q - 1) + 1;
+        if (k >= compression / 4)
+            return 1;
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+
+    /**
+     * Sorts the values and the corresponding weights by value (quicksort with
+     * insertion sort for short ranges).
+     */
+    private static void sort(double[] values, double[] weights, int from, int to) {
+        while (to - from > 16) {
+            double pivot = values[(from + to) >>> 1];
+            int i = from, j = to;
+            while (i <= j) {
+                while (values[i] < pivot)
+                    i++;
+                while (values[j] > pivot)
+                    j--;
+                if (i <= j) {
+                    swap(values, i, j);
+                    swap(weights, i, j);
+                    i++;
+                    j--;
+                }
+            }
+            // recurse into the smaller part, loop on the larger one
+            if (j - from < to - i) {
+                sort(values, weights, from, j);
+                from = i;
+            }
+            else {
+                sort(values, weights, i, to);
+                to = j;
+            }
+        }
+        for (int i=from+1; i<=to; i++) {
+            double value = values[i], weight = weights[i];
+            int j = i - 1;
+            while (j >= from && values[j] > value) {
+                values[j+1] = values[j];
+                weights[j+1] = weights[j];
+                j--;
+            }
+            values[j+1] = value;
+            weights[j+1] = weight;
+        }
+    }
+
+    private static void swap(double[] a, int i, int j) {
+        double tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+
+    /**
+     * Returns the number of centroids (after merging buffered values).
+     */
+    public int getNumCentroids() {
+        merge();
+        return numCentroids;
+    }
+
+    /**
+     * Returns the estimated p-quantile (0 &lt;= p &lt;= 1), or NaN if no values
+     * have been collected. The estimate interpolates linearly between centroid
+     * means, and between the outermost centroids and the minimum/maximum.
+     */
+    public double getQuantile(double p) {
+        if (!(p >= 0 && p <= 1))
+            throw new IllegalArgumentException("Quantile must be in [0,1]: " + p);
+        merge();
+        if (numCentroids == 0)
+            return n == 0 ? Double.NaN : p < 0.5 ? min : max; // only infinities or zero weights
+        if (p == 0)
+            return min;
+        if (p == 1)
+            return max;
+        if (numCentroids == 1)
+            return means[0];
+
+        double totalWeight = 0;
+        for (int i=0; i<numCentroids; i++)
+            totalWeight += weights[i];
+        double index = p * totalWeight;
+
+        // before the center of the first centroid: interpolate from the minimum
+        if (index < weights[0] / 2)
+            return min + (means[0] - min) * index / (weights[0] / 2);
+
+        // between centroid centers
+        double weightSoFar = weights[0] / 2;
+        for (int i=0; i<numCentroids-1; i++) {
+            double distance = (weights[i] + weights[i+1]) / 2;
+            if (weightSoFar + distance > index)
+                return means[i] + (means[i+1] - means[i]) * (index - weightSoFar) / distance;
+            weightSoFar += distance;
+        }
+
+        // after the center of the last centroid: interpolate towards the maximum
+        double lastHalf = weights[numCentroids-1] / 2;
+        double last = means[numCentroids-1];
+        return last + (max - last) * Math.min(1, (index - weightSoFar) / lastHalf);
+    }
+}
@@ -0,0 +1,411 @@
+package org.omnetpp.scave.writers.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.omnetpp.scave.writers.ResultRecordingException;
+
+/**
+ * Buffered text output for result files. Text is encoded directly into a
+ * (large) direct ByteBuffer which is written to a FileChannel, and numbers
+ * are formatted straight into the buffer, without creating String objects.
+ * Doubles are written in the same notation as Double.toString(), using the
+ * shortest digit string that reads back as the same value.
+ *
+ * Binary data can be written as well (see writeInt() etc.), in little-endian
+ * byte order.
+ *
+ * getPosition() returns the file offset of the next character to be written,
+ * regardless of how much has actually been written to the file.
+ *
+ * Methods throw ResultRecordingException on I/O errors.
+ */
+public class TextOutputFile {
+    public static final int DEFAULT_BUFFER_SIZE = 1024*1024;
+    public static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static final long[] LONG_POW10 = new long[19];
+    private static final double[] POW10 = new double[23]; // exactly representable powers of ten
+    private static final double[] DECADES = { 1e-3, 1e-2, 1e-1, 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6 };
+    private static final double TWO_POW_53 = 9007199254740992.0;
+
+    static {
+        LONG_POW10[0] = 1;
+        for (int i=1; i<LONG_POW10.length; i++)
+            LONG_POW10[i] = 10 * LONG_POW10[i-1];
+        POW10[0] = 1;
+        for (int i=1; i<POW10.length; i++)
+            POW10[i] = 10 * POW10[i-1];
+    }
+
+    private File file;
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private long bufferStart; // file offset of the first byte in the buffer
+    private TextOutputFile flushFirst;
+    private byte[] digits = new byte[20];
+    private StringBuilder fallback = new StringBuilder(32);
+
+    /**
+     * Creates (or truncates) the given file.
+     */
+    public TextOutputFile(File file, int bufferSize) {
+        this.file = file;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot open " + file.getPath() + ": " + e.getMessage(), e);
+        }
+        buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 64)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Makes flushing this file flush the other file first. This is useful
+     * when this file refers to offsets in the other one, e.g. for index files.
+     */
+    public void setFlushFirst(TextOutputFile other) {
+        this.flushFirst = other;
+    }
+
+    /**
+     * Returns the file offset where the next character will be written.
+     */
+    public long getPosition() {
+        return bufferStart + buffer.position();
+    }
+
+    public TextOutputFile print(char ch) {
+        if (ch < 0x80) {
+            ensureRoom(1);
+            buffer.put((byte)ch);
+        }
+        else
+            printNonAscii(ch);
+        return this;
+    }
+
+    public TextOutputFile print(CharSequence s) {
+        int len = s.length();
+        for (int i=0; i<len; i++) {
+            char ch = s.charAt(i);
+            if (ch < 0x80) {
+                if (!buffer.hasRemaining())
+                    writeBuffer();
+                buffer.put((byte)ch);
+            }
+            else
+                printNonAscii(ch);
+        }
+        return this;
+    }
+
+    public TextOutputFile println(CharSequence s) {
+        return print(s).println();
+    }
+
+    public TextOutputFile println() {
+        return print(LINE_SEPARATOR);
+    }
+
+    public TextOutputFile write(byte[] bytes) {
+        return write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes elements [from, to) of the array.
+     */
+    public TextOutputFile write(byte[] bytes, int from, int to) {
+        for (int start=from; start<to; ) {
+            ensureRoom(Math.min(to - start, buffer.capacity()));
+            int n = Math.min(to - start, buffer.remaining());
+            buffer.put(bytes, start, n);
+            start += n;
+        }
+        return this;
+    }
+
+    public TextOutputFile writeByte(int value) {
+        ensureRoom(1);
+        buffer.put((byte)value);
+        return this;
+    }
+
+    public TextOutputFile writeInt(int value) {
+        ensureRoom(4);
+        buffer.putInt(value);
+        return this;
+    }
+
+    /**
+     * Writes elements [from, to) of the array as 8-byte integers.
+     */
+    public TextOutputFile writeLongs(long[] array, int from, int to) {
+        for (int i=from; i<to; ) {
+            ensureRoom(8);
+            int end = Math.min(to, i + buffer.remaining() / 8);
+            for (; i<end; i++)
+                buffer.putLong(array[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Writes elements [from, to) of the array as 8-byte IEEE doubles.
+     */
+    public TextOutputFile writeDoubles(double[] array, int from, int to) {
+        for (int i=from; i<to; ) {
+            ensureRoom(8);
+            int end = Math.min(to, i + buffer.remaining() / 8);
+            for (; i<end; i++)
+                buffer.putDouble(array[i]);
+        }
+        return this;
+    }
+
+    public TextOutputFile print(long value) {
+        ensureRoom(20);
+        if (value < 0) {
+            if (value == Long.MIN_VALUE)
+                return print(Long.toString(value));
+            buffer.put((byte)'-');
+            value = -value;
+        }
+        putDigits(value, 1);
+        return this;
+    }
+
+    /**
+     * Prints rawValue * 10^scaleExp in plain decimal notation, without trailing zeroes.
+     */
+    public TextOutputFile printScaled(long rawValue, int scaleExp) {
+        if (rawValue == 0)
+            return print('0');
+        if (scaleExp >= 0) {
+            print(rawValue);
+            for (int i=0; i<scaleExp; i++)
+                print('0');
+            return this;
+        }
+        if (rawValue == Long.MIN_VALUE || -scaleExp >= LONG_POW10.length)
+            return print(new BigDecimal(BigInteger.valueOf(rawValue), -scaleExp).stripTrailingZeros().toPlainString());
+
+        int fracDigits = -scaleExp;
+        ensureRoom(23 + fracDigits);
+        if (rawValue < 0) {
+            buffer.put((byte)'-');
+            rawValue = -rawValue;
+        }
+        long intPart = rawValue / LONG_POW10[fracDigits];
+        long fracPart = rawValue % LONG_POW10[fracDigits];
+        putDigits(intPart, 1);
+        if (fracPart != 0) {
+            while (fracPart % 10 == 0) {
+                fracPart /= 10;
+                fracDigits--;
+            }
+            buffer.put((byte)'.');
+            putDigits(fracPart, fracDigits);
+        }
+        return this;
+    }
+
+    /**
+     * Prints the value in the same notation as Double.toString().
+     */
+    public TextOutputFile print(double value) {
+        if (!printPlain(value)) {
+            fallback.setLength(0);
+            fallback.append(value);
+            print(fallback);
+        }
+        return this;
+    }
+
+    /**
+     * Handles the common case: values that Double.toString() writes without
+     * an exponent (0.001 <= |value| < 10^7). Finds the smallest number of
+     * fractional digits k for which round(|value|*10^k)/10^k converts back
+     * to the same double; as division is correctly rounded, this gives the
+     * shortest representation that round-trips. If k digits round-trip, so
+     * do k+1, so binary search is used after trying the first few k. Returns
+     * false if the value was not printed because it is out of range or needs
+     * more digits than what a double can hold exactly (i.e. 2^53).
+     */
+    private boolean printPlain(double value) {
+        if (value == 0) {
+            print(1/value < 0 ? "-0.0" : "0.0");
+            return true;
+        }
+        double abs = Math.abs(value);
+        if (!(abs >= 1e-3 && abs < 1e7))
+            return false;
+
+        // values with only a few fractional digits are typical (e.g. timestamps), try those first
+        for (int k=1; k<=3; k++)
+            if (roundTrips(abs, k))
+                return putPlain(value < 0, abs, k);
+
+        // find the largest usable k, and check that it round-trips
+        int exp = 6;
+        while (abs < DECADES[exp + 3]) // i.e. abs < 10^exp
+            exp--;
+        int hi = 15 - exp;
+        if (abs * POW10[hi] >= TWO_POW_53)
+            hi--;
+        if (!roundTrips(abs, hi))
+            return false;
+
+        int lo = 4;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (roundTrips(abs, mid))
+                hi = mid;
+            else
+                lo = mid + 1;
+        }
+        return putPlain(value < 0, abs, lo);
+    }
+
+    private boolean putPlain(boolean negative, double abs, int k) {
+        long digitString = Math.round(abs * POW10[k]);
+        ensureRoom(26);
+        if (negative)
+            buffer.put((byte)'-');
+        putDigits(digitString / LONG_POW10[k], 1);
+        buffer.put((byte)'.');
+        putDigits(digitString % LONG_POW10[k], k);
+        return true;
+    }
+
+    private static boolean roundTrips(double abs, int k) {
+        return Math.round(abs * POW10[k]) / POW10[k] == abs;
+    }
+
+    /**
+     * Puts the decimal digits of the non-negative value, left-padded with zeroes
+     * to minDigits. The caller must ensure there is enough room in the buffer.
+     */
+    private void putDigits(long value, int minDigits) {
+        int pos = digits.length;
+        do {
+            digits[--pos] = (byte)('0' + (value % 10));
+            value /= 10;
+        } while (value != 0);
+        for (int i=digits.length-pos; i<minDigits; i++)
+            buffer.put((byte)'0');
+        buffer.put(digits, pos, digits.length - pos);
+    }
+
+    private void printNonAscii(char ch) {
+        ensureRoom(3);
+        if (ch < 0x800) {
+            buffer.put((byte)(0xc0 | (ch >> 6)));
+            buffer.put((byte)(0x80 | (ch & 0x3f)));
+        }
+        else if (Character.isSurrogate(ch)) {
+            buffer.put((byte)'?'); // surrogate pairs are not expected in result files
+        }
+        else {
+            buffer.put((byte)(0xe0 | (ch >> 12)));
+            buffer.put((byte)(0x80 | ((ch >> 6) & 0x3f)));
+            buffer.put((byte)(0x80 | (ch & 0x3f)));
+        }
+    }
+
+    private void ensureRoom(int n) {
+        if (buffer.remaining() < n)
+            writeBuffer();
+    }
+
+    private void writeBuffer() {
+        if (flushFirst != null)
+            flushFirst.flush();
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot write " + file.getPath() + ": " + e.getMessage(), e);
+        }
+        bufferStart += buffer.limit();
+        buffer.clear();
+    }
+
+    /**
+     * Writes buffered data to the file (and that of the file set with setFlushFirst()).
+     */
+    public void flush() {
+        if (buffer.position() > 0)
+            writeBuffer();
+    }
+
+    /**
+     * Appends the contents of the given file.
+     */
+    public void append(File source) {
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            append(in, 0, in.size());
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot append " + source.getPath() + " to " + file.getPath() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Appends the given range of the source channel.
+     */
+    public void append(FileChannel source, long position, long count) throws IOException {
+        flush();
+        for (long done = 0; done < count; ) {
+            long n = source.transferTo(position + done, count - done, channel);
+            if (n == 0 && position + done >= source.size())
+                throw new IOException("Unexpected end of file");
+            done += n;
+        }
+        bufferStart += count;
+    }
+
+    /**
+     * Overwrites the file contents at the given offset, which must be
+     * already written (i.e. flushed) to the file. The string must be ASCII.
+     */
+    public void overwrite(long position, String s) {
+        if (position + s.length() > bufferStart)
+            throw new IllegalArgumentException("Can only overwrite already flushed file contents");
+        ByteBuffer tmp = ByteBuffer.allocate(s.length());
+        for (int i=0; i<s.length(); i++)
+            tmp.put((byte)s.charAt(i));
+        tmp.flip();
+        try {
+            while (tmp.hasRemaining())
+                channel.write(tmp, position + tmp.position());
+        }
+        catch (IOException e) {
+            throw new ResultRecordingException("Cannot write " + file.getPath() + ": " + e.getMessage(), e);
+        }
+    }
+
+    public void close() {
+        if (channel.isOpen()) {
+            flush();
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                throw new ResultRecordingException("Cannot close " + file.getPath() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+}
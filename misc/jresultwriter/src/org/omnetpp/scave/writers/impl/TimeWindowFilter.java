@@ -0,0 +1,61 @@
+package org.omnetpp.scave.writers.impl;
+
+import org.omnetpp.scave.writers.IOutputVector;
+
+/**
+ * Aggregates values over time windows of fixed length, and records one value
+ * (the mean, minimum or maximum) per window that contains data. Windows are
+ * aligned to multiples of the window length, and the aggregate is recorded
+ * with the start time of the window, so that it can be plotted with sample-hold
+ * interpolation. The aggregate of a window is recorded when a value after
+ * the window arrives or when the vector is closed; flush() does not record
+ * the aggregate of the current window.
+ *
+ * As recorded values are replaced by aggregates, record() always returns false.
+ */
+public class TimeWindowFilter extends OutputVectorFilter {
+    public enum Aggregate { MEAN, MIN, MAX }
+
+    protected final double windowLength;
+    protected final Aggregate aggregate;
+
+    protected long window = Long.MIN_VALUE; // index of the current window
+    protected int count;
+    protected double result; // sum, min or max
+
+    public TimeWindowFilter(IOutputVector target, double windowLength, Aggregate aggregate) {
+        super(target);
+        if (!(windowLength > 0) || Double.isInfinite(windowLength))
+            throw new IllegalArgumentException("Invalid window length: " + windowLength);
+        this.windowLength = windowLength;
+        this.aggregate = aggregate;
+    }
+
+    protected boolean accept(double time, double value) {
+        long w = (long)Math.floor(time / windowLength);
+        if (w != window) {
+            recordWindow();
+            window = w;
+        }
+        if (count++ == 0)
+            result = value;
+        else if (aggregate == Aggregate.MEAN)
+            result += value;
+        else if (aggregate == Aggregate.MIN ? value < result : value > result)
+            result = value;
+        return false;
+    }
+
+    protected void recordWindow() {
+        if (count > 0) {
+            target.record(window * windowLength, aggregate == Aggregate.MEAN ? result / count : result);
+            count = 0;
+        }
+    }
+
+    public void close() {
+        if (!closed)
+            recordWindow();
+        super.close();
+    }
+}
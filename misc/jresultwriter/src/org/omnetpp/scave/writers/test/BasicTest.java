@@ -1,24 +1,33 @@
 package org.omnetpp.scave.writers.test;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.omnetpp.scave.writers.IOutputScalarManager;
 import org.omnetpp.scave.writers.IOutputVector;
 import org.omnetpp.scave.writers.IOutputVectorManager;
+import org.omnetpp.scave.writers.impl.AutoRangeHistogram;
 import org.omnetpp.scave.writers.impl.FileOutputScalarManager;
 import org.omnetpp.scave.writers.impl.FileOutputVectorManager;
 
 public class BasicTest {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        File directory = Files.createTempDirectory("basictest").toFile();
         String runID = FileOutputScalarManager.generateRunID("test1");
-        IOutputScalarManager scalarManager = new FileOutputScalarManager("1.sca");
+        IOutputScalarManager scalarManager = new FileOutputScalarManager(new File(directory, "1.sca").getPath());
         scalarManager.open(runID, null);
         scalarManager.recordScalar("top.node1", "pk-sent", 632, null);
         scalarManager.recordScalar("top.node2", "pk-rcvd", 578, null);
+        AutoRangeHistogram histogram = new AutoRangeHistogram();
+        for (int i=0; i<10000; i++)
+            histogram.collect(-Math.log(Math.random()));
+        scalarManager.recordStatistic("top.node1", "eed", histogram, null);
         scalarManager.close();
 
-        IOutputVectorManager vectorManager = new FileOutputVectorManager("1.vec");
+        IOutputVectorManager vectorManager = new FileOutputVectorManager(new File(directory, "1.vec").getPath());
         vectorManager.open(runID, null);
 
         List<IOutputVector> vectors = new ArrayList<IOutputVector>();
@@ -31,5 +40,7 @@ public class BasicTest {
                 v.record(i, 0.1001*i);
             }
         }
+        vectorManager.close();
+        System.out.println("Result files written to " + directory);
     }
 }
@@ -0,0 +1,181 @@
+package org.omnetpp.scave.writers.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.omnetpp.scave.writers.IOutputVector;
+import org.omnetpp.scave.writers.ISimulationTimeProvider2;
+import org.omnetpp.scave.writers.impl.BinaryVectorFileReader;
+import org.omnetpp.scave.writers.impl.FileOutputScalarManager;
+import org.omnetpp.scave.writers.impl.FileOutputVectorManager;
+
+/**
+ * Records the same data in text and in binary format, and checks that
+ * BinaryVectorFileReader reads back the recorded values, and that
+ * converting the binary file with BinaryVectorFileReader.convertToText()
+ * yields the same .vec and .vci files as recording in text format. Also
+ * checks that blocks flushed together are written in vector creation order.
+ *
+ * Usage: BinaryFormatTest [directory]   (default: the temp directory)
+ *
+ * Exits with a nonzero status if any of the checks fails.
+ */
+public class BinaryFormatTest {
+    static final int NUM_VECTORS = 3;
+    static long rawNow; // in nanoseconds
+
+    static List<String> errors = new ArrayList<String>();
+
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"));
+        File textFile = new File(directory, "binaryformattest.vec");
+        File binaryFile = new File(directory, "binaryformattest-bin.vecb");
+        File convertedFile = new File(directory, "binaryformattest-conv.vec");
+
+        String runID = FileOutputScalarManager.generateRunID("binaryformattest");
+        FileOutputVectorManager textManager = createManager(textFile, false, runID);
+        FileOutputVectorManager binaryManager = createManager(binaryFile, true, runID);
+
+        // record with all forms of timestamps, mixed within blocks
+        List<List<double[]>> expected = new ArrayList<List<double[]>>();
+        Random random = new Random(1);
+        for (int k=0; k<1000; k++) {
+            int i = random.nextInt(NUM_VECTORS);
+            double value = k % 97 == 0 ? Double.NaN : k % 89 == 0 ? Double.NEGATIVE_INFINITY : random.nextGaussian() * 1e3;
+            rawNow = k * 1250000L;
+            for (FileOutputVectorManager manager : new FileOutputVectorManager[] { textManager, binaryManager }) {
+                IOutputVector vector = vectorsOf.get(manager).get(i);
+                switch (k % 4) {
+                    case 0: vector.record(value); break;
+                    case 1: vector.record(rawNow * 1e-9, value); break;
+                    case 2: vector.record(rawNow, -9, value); break;
+                    case 3: vector.record(BigDecimal.valueOf(rawNow, 9), value); break;
+                }
+            }
+            while (expected.size() <= i)
+                expected.add(new ArrayList<double[]>());
+            expected.get(i).add(new double[] { rawNow * 1e-9, value });
+        }
+        textManager.close();
+        binaryManager.close();
+
+        // read back the binary file
+        List<List<double[]>> actual = new ArrayList<List<double[]>>();
+        for (int i=0; i<NUM_VECTORS; i++)
+            actual.add(new ArrayList<double[]>());
+        BinaryVectorFileReader reader = new BinaryVectorFileReader(binaryFile);
+        while (reader.next())
+            if (reader.isBlock())
+                for (int j=0; j<reader.getCount(); j++)
+                    actual.get(reader.getVectorId() - 1).add(new double[] { reader.getTime(j), reader.getValue(j) });
+        reader.close();
+        for (int i=0; i<NUM_VECTORS; i++) {
+            List<double[]> exp = expected.get(i), act = actual.get(i);
+            if (exp.size() != act.size())
+                errors.add("Vector " + (i+1) + ": read " + act.size() + " values, expected " + exp.size());
+            else
+                for (int j=0; j<exp.size(); j++)
+                    if (Math.abs(act.get(j)[0] - exp.get(j)[0]) > 1e-12 || Double.compare(act.get(j)[1], exp.get(j)[1]) != 0) {
+                        errors.add("Vector " + (i+1) + ", item " + j + ": read (" + act.get(j)[0] + ", " + act.get(j)[1] + "), expected (" + exp.get(j)[0] + ", " + exp.get(j)[1] + ")");
+                        break;
+                    }
+        }
+
+        // convert, and compare with the text recording; the "file" line of the index holds the file's modification time
+        BinaryVectorFileReader.convertToText(binaryFile, convertedFile);
+        compareLines(textFile, convertedFile, 0);
+        compareLines(indexFileOf(textFile, ".vci"), indexFileOf(convertedFile, ".vci"), 1);
+
+        checkFlushOrder(binaryFile, runID);
+
+        for (File file : new File[] { textFile, binaryFile, convertedFile })
+            file.delete();
+        indexFileOf(textFile, ".vci").delete();
+        indexFileOf(binaryFile, ".vcib").delete();
+        indexFileOf(convertedFile, ".vci").delete();
+
+        if (!errors.isEmpty()) {
+            for (String error : errors)
+                System.out.println(error);
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    static Map<FileOutputVectorManager, List<IOutputVector>> vectorsOf = new HashMap<FileOutputVectorManager, List<IOutputVector>>();
+
+    static FileOutputVectorManager createManager(File file, boolean binary, String runID) {
+        FileOutputVectorManager manager = new FileOutputVectorManager(file.getPath());
+        manager.setBinaryFormat(binary);
+        manager.setPerVectorBufferLimit(7); // many interleaved blocks
+        manager.setSimtimeProvider(new ISimulationTimeProvider2() {
+            public long getEventNumber() { return -1; }
+            public Number getSimulationTime() { return BigDecimal.valueOf(rawNow, 9); }
+            public int getSimulationTimeScaleExponent() { return -9; }
+            public long getRawSimulationTime() { return rawNow; }
+            public double getSimulationTimeAsDouble() { return rawNow * 1e-9; }
+        });
+        Map<String, String> runAttributes = new HashMap<String, String>();
+        runAttributes.put("configname", "General");
+        manager.open(runID, runAttributes);
+
+        List<IOutputVector> vectors = new ArrayList<IOutputVector>();
+        for (int i=0; i<NUM_VECTORS; i++) {
+            Map<String, String> attributes = new HashMap<String, String>();
+            attributes.put("unit", "s");
+            vectors.add(manager.createVector("net.host[" + i + "]", "delay", attributes));
+        }
+        vectorsOf.put(manager, vectors);
+        return manager;
+    }
+
+    /**
+     * Creates many vectors with one buffered value each, and checks that
+     * closing the manager writes their blocks in vector creation order.
+     */
+    static void checkFlushOrder(File binaryFile, String runID) {
+        FileOutputVectorManager manager = new FileOutputVectorManager(binaryFile.getPath());
+        manager.setBinaryFormat(true);
+        manager.open(runID, null);
+        for (int i=0; i<50; i++)
+            manager.createVector("net.host[" + i + "]", "delay", null).record(i, i);
+        manager.close();
+
+        List<Integer> ids = new ArrayList<Integer>();
+        BinaryVectorFileReader reader = new BinaryVectorFileReader(binaryFile);
+        while (reader.next())
+            if (reader.isBlock())
+                ids.add(reader.getVectorId());
+        reader.close();
+        for (int i=0; i<ids.size(); i++)
+            if (ids.size() != 50 || ids.get(i) != i+1) {
+                errors.add("Blocks not in vector creation order: " + ids);
+                break;
+            }
+    }
+
+    static File indexFileOf(File file, String extension) {
+        return new File(file.getPath().replaceFirst("\\.[^./\\:]*$", "") + extension);
+    }
+
+    static void compareLines(File expectedFile, File actualFile, int skipLines) throws IOException {
+        List<String> expected = Files.readAllLines(expectedFile.toPath());
+        List<String> actual = Files.readAllLines(actualFile.toPath());
+        expected = expected.subList(Math.min(skipLines, expected.size()), expected.size());
+        actual = actual.subList(Math.min(skipLines, actual.size()), actual.size());
+        if (!actual.equals(expected)) {
+            int i = 0;
+            while (i < expected.size() && i < actual.size() && expected.get(i).equals(actual.get(i)))
+                i++;
+            errors.add(actualFile.getName() + " differs from " + expectedFile.getName() + " at line " + (skipLines+i+1) + ": \"" +
+                    (i < actual.size() ? actual.get(i) : "<eof>") + "\" vs \"" + (i < expected.size() ? expected.get(i) : "<eof>") + "\"");
+        }
+    }
+}
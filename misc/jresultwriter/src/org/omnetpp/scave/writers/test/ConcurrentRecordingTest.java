@@ -0,0 +1,186 @@
+package org.omnetpp.scave.writers.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.omnetpp.scave.writers.IOutputVector;
+import org.omnetpp.scave.writers.impl.ConcurrentFileOutputVectorManager;
+import org.omnetpp.scave.writers.impl.FileOutputScalarManager;
+import org.omnetpp.scave.writers.impl.FileOutputVectorManager.BackpressurePolicy;
+
+/**
+ * Records vectors from several threads with ConcurrentFileOutputVectorManager,
+ * and checks that the resulting .vec and .vci files are in time order. Each
+ * vector is recorded by all threads, one at a time (threads take turns under
+ * the vector's lock), and the threads are replaced by new ones several times
+ * during the run, so the vectors are handed off between threads and rings or
+ * partial files of terminated threads are exercised as well.
+ *
+ * Every vector records the values 0, 1, 2, ... at the same times, so the
+ * check is that the data lines of each vector contain exactly this sequence,
+ * and that the index lists the blocks of each vector in file and time order,
+ * with block contents (count, start and end time) matching the index.
+ *
+ * Usage: ConcurrentRecordingTest [samplesPerThread [directory]]
+ *     (default: 100000 samples, the temp directory)
+ *
+ * Exits with a nonzero status on the first error.
+ */
+public class ConcurrentRecordingTest {
+    static final int NUM_VECTORS = 20;
+    static final int NUM_THREADS = 4;
+    static final int NUM_GENERATIONS = 3;
+
+    static class SharedVector {
+        IOutputVector vector;
+        long count;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int samplesPerThread = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        File directory = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+
+        String[] configs = { "ring/BLOCK", "ring/GROW", "file-per-thread" };
+        for (String config : configs) {
+            File file = new File(directory, "concurrenttest.vec");
+            Map<Integer,Long> counts = record(file, config, samplesPerThread);
+            String error = check(file, new File(directory, "concurrenttest.vci"), counts);
+            if (error != null) {
+                System.out.println(config + ": " + error);
+                System.exit(1);
+            }
+            System.out.println(config + ": OK");
+        }
+    }
+
+    /**
+     * Records the file, and returns the number of values per vector ID.
+     */
+    static Map<Integer,Long> record(File file, String config, final int samplesPerThread) throws InterruptedException {
+        ConcurrentFileOutputVectorManager manager = new ConcurrentFileOutputVectorManager(file.getPath());
+        if (config.equals("file-per-thread"))
+            manager.setFilePerThread(true);
+        else
+            manager.setAsync(BackpressurePolicy.valueOf(config.substring(config.indexOf('/') + 1)), 256); // small, to make rings fill up
+        manager.setPerVectorBufferLimit(100);
+        manager.open(FileOutputScalarManager.generateRunID("concurrenttest"), null);
+
+        final SharedVector[] vectors = new SharedVector[NUM_VECTORS];
+        for (int i=0; i<NUM_VECTORS; i++) {
+            vectors[i] = new SharedVector();
+            vectors[i].vector = manager.createVector("net.node" + i, "value", null);
+        }
+
+        final Throwable[] error = new Throwable[1];
+        for (int generation=0; generation<NUM_GENERATIONS; generation++) {
+            Thread[] threads = new Thread[NUM_THREADS];
+            for (int t=0; t<NUM_THREADS; t++) {
+                final long seed = generation * NUM_THREADS + t;
+                threads[t] = new Thread(() -> {
+                    try {
+                        Random random = new Random(seed);
+                        for (int n=0; n<samplesPerThread; ) {
+                            SharedVector v = vectors[random.nextInt(NUM_VECTORS)];
+                            int burst = 1 + random.nextInt(50);
+                            synchronized (v) {
+                                for (int k=0; k<burst; k++, n++) {
+                                    v.vector.record((double)v.count, (double)v.count);
+                                    v.count++;
+                                }
+                                if (random.nextInt(100) == 0)
+                                    v.vector.flush();
+                            }
+                        }
+                    }
+                    catch (Throwable e) {
+                        synchronized (error) {
+                            if (error[0] == null)
+                                error[0] = e;
+                        }
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads)
+                thread.join();
+        }
+        if (error[0] != null)
+            throw new RuntimeException("Recording failed", error[0]);
+        manager.close();
+
+        Map<Integer,Long> counts = new HashMap<Integer,Long>();
+        for (int i=0; i<NUM_VECTORS; i++)
+            counts.put(i + 1, vectors[i].count); // IDs are allocated from 1
+        return counts;
+    }
+
+    /**
+     * Checks the files, and returns an error message or null.
+     */
+    static String check(File vecFile, File indexFile, Map<Integer,Long> counts) throws IOException {
+        // data lines: the values of each vector must be 0, 1, 2, ..., and the times equal to the values
+        Map<Integer,Long> next = new HashMap<Integer,Long>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(vecFile))) {
+            String line;
+            for (int lineNumber=1; (line = reader.readLine()) != null; lineNumber++) {
+                if (line.isEmpty() || !Character.isDigit(line.charAt(0)))
+                    continue;
+                String[] fields = line.split(" ");
+                int id = Integer.parseInt(fields[0]);
+                long expected = next.getOrDefault(id, 0L);
+                if (Double.parseDouble(fields[1]) != expected || Double.parseDouble(fields[2]) != expected)
+                    return vecFile.getName() + " line " + lineNumber + ": expected time and value " + expected + " for vector " + id + ", got: " + line;
+                next.put(id, expected + 1);
+            }
+        }
+        if (!next.equals(counts))
+            return "wrong number of values per vector in " + vecFile.getName() + ": " + next + ", expected " + counts;
+
+        // index: blocks of each vector in increasing offset and time order, consistent with the data
+        Map<Integer,double[]> lastBlock = new HashMap<Integer,double[]>(); // offset, end time
+        Map<Integer,Long> indexedCounts = new HashMap<Integer,Long>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(indexFile));
+             RandomAccessFile data = new RandomAccessFile(vecFile, "r")) {
+            String line = reader.readLine();
+            if (line == null || !line.trim().equals("file " + vecFile.length() + " " + vecFile.lastModified()/1000))
+                return indexFile.getName() + ": wrong or missing file line: " + line;
+            for (int lineNumber=2; (line = reader.readLine()) != null; lineNumber++) {
+                if (line.isEmpty() || !Character.isDigit(line.charAt(0)))
+                    continue;
+                String[] fields = line.split(" ");
+                int id = Integer.parseInt(fields[0]);
+                long offset = Long.parseLong(fields[1]);
+                int size = Integer.parseInt(fields[2]);
+                double startTime = Double.parseDouble(fields[3]);
+                double endTime = Double.parseDouble(fields[4]);
+                long count = Long.parseLong(fields[5]);
+                String where = indexFile.getName() + " line " + lineNumber + ": ";
+
+                double[] last = lastBlock.get(id);
+                if (last != null && (offset <= last[0] || startTime < last[1]))
+                    return where + "block of vector " + id + " is out of order: " + line;
+                lastBlock.put(id, new double[] {offset, endTime});
+                indexedCounts.put(id, indexedCounts.getOrDefault(id, 0L) + count);
+
+                byte[] bytes = new byte[size];
+                data.seek(offset);
+                data.readFully(bytes);
+                String[] dataLines = new String(bytes, StandardCharsets.US_ASCII).split("\r?\n");
+                String firstLine = dataLines[0], lastLine = dataLines[dataLines.length-1];
+                if (dataLines.length != count || !firstLine.startsWith(id + " ") || !lastLine.startsWith(id + " ") ||
+                        Double.parseDouble(firstLine.split(" ")[1]) != startTime || Double.parseDouble(lastLine.split(" ")[1]) != endTime)
+                    return where + "block does not match the data in " + vecFile.getName() + ": " + line;
+            }
+        }
+        if (!indexedCounts.equals(counts))
+            return "wrong number of values per vector in " + indexFile.getName() + ": " + indexedCounts + ", expected " + counts;
+        return null;
+    }
+}
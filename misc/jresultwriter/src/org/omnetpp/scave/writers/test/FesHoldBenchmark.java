@@ -0,0 +1,73 @@
+package org.omnetpp.scave.writers.test;
+
+import java.util.Random;
+
+import org.omnetpp.scave.writers.example.fes.BinaryHeapEventSet;
+import org.omnetpp.scave.writers.example.fes.CalendarQueueEventSet;
+import org.omnetpp.scave.writers.example.fes.IFutureEventSet;
+import org.omnetpp.scave.writers.example.fes.LadderQueueEventSet;
+
+/**
+ * Measures the future event set implementations with the classic "hold"
+ * model: the FES is filled with N events, then each hold operation removes
+ * the first event and inserts a new one at its time plus a random increment.
+ * The FES size stays N, and the timestamp distribution reaches a steady state
+ * that depends on the increment distribution.
+ *
+ * Usage: FesHoldBenchmark [N...]   (default: 1000 100000 1000000)
+ *
+ * Use a large heap (e.g. -Xmx4g) for 10^7 events.
+ */
+public class FesHoldBenchmark {
+    static final String[] DISTRIBUTIONS = {"exponential", "uniform", "bimodal", "triangular"};
+    static final Object EVENT = new Object();
+
+    public static void main(String[] args) {
+        int[] sizes = args.length == 0 ? new int[] {1000, 100000, 1000000} : new int[args.length];
+        for (int i=0; i<args.length; i++)
+            sizes[i] = Integer.parseInt(args[i]);
+
+        System.out.println("N\tdistribution\tFES\tns/hold");
+        for (int n : sizes) {
+            for (String distribution : DISTRIBUTIONS) {
+                for (int i=0; i<3; i++) {
+                    IFutureEventSet<Object> fes = i == 0 ? new BinaryHeapEventSet<Object>() :
+                        i == 1 ? new CalendarQueueEventSet<Object>() : new LadderQueueEventSet<Object>();
+                    double nanos = run(fes, n, distribution);
+                    System.out.printf("%d\t%s\t%s\t%.1f%n", n, distribution, fes.getClass().getSimpleName(), nanos);
+                }
+            }
+        }
+    }
+
+    static double run(IFutureEventSet<Object> fes, int n, String distribution) {
+        Random random = new Random(1);
+        for (int i=0; i<n; i++)
+            fes.insert(increment(random, distribution), EVENT);
+
+        // warm up and reach steady state, then measure
+        int numHolds = Math.max(10 * n, 1000000);
+        hold(fes, random, distribution, numHolds);
+        long start = System.nanoTime();
+        hold(fes, random, distribution, numHolds);
+        return (System.nanoTime() - start) / (double)numHolds;
+    }
+
+    static void hold(IFutureEventSet<Object> fes, Random random, String distribution, int count) {
+        for (int i=0; i<count; i++) {
+            double now = fes.peekFirstTime();
+            Object event = fes.removeFirst();
+            fes.insert(now + increment(random, distribution), event);
+        }
+    }
+
+    static double increment(Random random, String distribution) {
+        switch (distribution) {
+            case "exponential": return -Math.log(1 - random.nextDouble());
+            case "uniform": return 2 * random.nextDouble();
+            case "bimodal": return random.nextDouble() < 0.9 ? 0.1 * random.nextDouble() : 9.1 + random.nextDouble();
+            case "triangular": return 1.5 * Math.sqrt(random.nextDouble());
+            default: throw new IllegalArgumentException(distribution);
+        }
+    }
+}
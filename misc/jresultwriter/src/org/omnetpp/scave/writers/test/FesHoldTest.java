@@ -0,0 +1,132 @@
+package org.omnetpp.scave.writers.test;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.omnetpp.scave.writers.example.fes.BinaryHeapEventSet;
+import org.omnetpp.scave.writers.example.fes.CalendarQueueEventSet;
+import org.omnetpp.scave.writers.example.fes.IFutureEventSet;
+import org.omnetpp.scave.writers.example.fes.LadderQueueEventSet;
+
+/**
+ * Checks the future event set implementations against java.util.PriorityQueue
+ * with randomized hold models (see FesHoldBenchmark): every removed event and
+ * timestamp must match the reference, including the FIFO order of events with
+ * equal timestamps. Besides holds, the FES size is varied by bursts of inserts
+ * and removals, and the FES is drained completely at the end.
+ *
+ * Usage: FesHoldTest [numSeeds [numHolds]]   (default: 5 seeds, 200000 holds)
+ *
+ * Exits with a nonzero status on the first mismatch.
+ */
+public class FesHoldTest {
+    static final int[] SIZES = {1, 10, 859, 10000};
+
+    /**
+     * Reference entry: ordered by time, then by insertion order.
+     */
+    static class Entry implements Comparable<Entry> {
+        final double time;
+        final long seq;
+
+        Entry(double time, long seq) {
+            this.time = time;
+            this.seq = seq;
+        }
+
+        public int compareTo(Entry other) {
+            int c = Double.compare(time, other.time);
+            return c != 0 ? c : Long.compare(seq, other.seq);
+        }
+    }
+
+    public static void main(String[] args) {
+        int numSeeds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int numHolds = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+        int numRuns = 0;
+        for (int seed=1; seed<=numSeeds; seed++)
+            for (int size : SIZES)
+                for (String distribution : FesHoldBenchmark.DISTRIBUTIONS)
+                    for (int i=0; i<3; i++) {
+                        IFutureEventSet<Entry> fes = i == 0 ? new BinaryHeapEventSet<Entry>() :
+                            i == 1 ? new CalendarQueueEventSet<Entry>() : new LadderQueueEventSet<Entry>();
+                        String error = run(fes, seed, size, distribution, numHolds);
+                        if (error != null) {
+                            System.out.println(fes.getClass().getSimpleName() + ", seed " + seed + ", N=" + size + ", " + distribution + ": " + error);
+                            System.exit(1);
+                        }
+                        numRuns++;
+                    }
+        System.out.println("OK, " + numRuns + " runs");
+    }
+
+    /**
+     * Runs the hold model, and returns an error message or null.
+     */
+    static String run(IFutureEventSet<Entry> fes, long seed, int size, String distribution, int numHolds) {
+        Random random = new Random(seed);
+        PriorityQueue<Entry> reference = new PriorityQueue<Entry>();
+        long seq = 0;
+        for (int i=0; i<size; i++)
+            seq = insert(fes, reference, FesHoldBenchmark.increment(random, distribution), seq);
+
+        for (int step=0; step<numHolds; step++) {
+            int action = random.nextInt(1000);
+            if (action < 1 || reference.isEmpty()) {
+                // burst of inserts, some with the same timestamp as the first event (or earlier)
+                double now = reference.isEmpty() ? 0 : reference.peek().time;
+                for (int i = random.nextInt(size + 1); i >= 0; i--) {
+                    double time = random.nextInt(16) == 0 ? now : now + FesHoldBenchmark.increment(random, distribution);
+                    seq = insert(fes, reference, time, seq);
+                }
+            }
+            else if (action < 2) {
+                // burst of removals (half of the events on average, so the size stays around N)
+                for (int i = random.nextInt(reference.size() + 1); i > 0; i--) {
+                    String error = remove(fes, reference, step);
+                    if (error != null)
+                        return error;
+                }
+            }
+            else {
+                // hold
+                double now = reference.peek().time;
+                String error = remove(fes, reference, step);
+                if (error != null)
+                    return error;
+                seq = insert(fes, reference, now + FesHoldBenchmark.increment(random, distribution), seq);
+            }
+        }
+
+        // drain
+        while (!reference.isEmpty()) {
+            String error = remove(fes, reference, numHolds);
+            if (error != null)
+                return error;
+        }
+        if (!fes.isEmpty() || fes.removeFirst() != null)
+            return "not empty after draining, size()=" + fes.size();
+        return null;
+    }
+
+    static long insert(IFutureEventSet<Entry> fes, PriorityQueue<Entry> reference, double time, long seq) {
+        Entry entry = new Entry(time, seq);
+        fes.insert(time, entry);
+        reference.add(entry);
+        return seq + 1;
+    }
+
+    static String remove(IFutureEventSet<Entry> fes, PriorityQueue<Entry> reference, int step) {
+        Entry expected = reference.poll();
+        if (fes.size() != reference.size() + 1)
+            return "step " + step + ": size()=" + fes.size() + ", expected " + (reference.size() + 1);
+        double time = fes.peekFirstTime();
+        if (fes.peekFirst() != expected || time != expected.time)
+            return "step " + step + ": peekFirst() returned the wrong event (time " + time + ", expected " + expected.time + ")";
+        Entry actual = fes.removeFirst();
+        if (actual != expected)
+            return "step " + step + ": removeFirst() returned " + (actual == null ? "null" : "the wrong event (time " + actual.time + ")") + ", expected time " + expected.time;
+        return null;
+    }
+}
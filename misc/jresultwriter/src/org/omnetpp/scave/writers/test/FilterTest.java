@@ -0,0 +1,175 @@
+package org.omnetpp.scave.writers.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.omnetpp.scave.writers.IOutputVector;
+import org.omnetpp.scave.writers.ISimulationTimeProvider2;
+import org.omnetpp.scave.writers.impl.DeadbandFilter;
+import org.omnetpp.scave.writers.impl.EveryNthFilter;
+import org.omnetpp.scave.writers.impl.FileOutputScalarManager;
+import org.omnetpp.scave.writers.impl.FileOutputVectorManager;
+import org.omnetpp.scave.writers.impl.RecordingIntervalFilter;
+import org.omnetpp.scave.writers.impl.TimeWindowFilter;
+
+/**
+ * Checks recording-time vector filters added with
+ * FileOutputVectorManager.addVectorFilter(): that filters are selected by
+ * pattern and chained in the order they were added, that the recorded data
+ * is as expected, and that the manager stops tracking a filtered vector once
+ * it is closed.
+ *
+ * Usage: FilterTest [directory]   (default: the temp directory)
+ *
+ * Exits with a nonzero status if any of the checks fails.
+ */
+public class FilterTest {
+    static double now;
+
+    static List<String> errors = new ArrayList<String>();
+
+    /**
+     * Gives access to the set of tracked filtered vectors.
+     */
+    static class TestManager extends FileOutputVectorManager {
+        public TestManager(String fileName) {
+            super(fileName);
+        }
+
+        public int getNumFilteredVectors() {
+            synchronized (filteredVectors) {
+                return filteredVectors.size();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"));
+        File file = new File(directory, "filtertest.vec");
+
+        TestManager manager = new TestManager(file.getPath());
+        manager.setSimtimeProvider(new ISimulationTimeProvider2() {
+            public long getEventNumber() { return -1; }
+            public Number getSimulationTime() { return BigDecimal.valueOf(now); }
+            public int getSimulationTimeScaleExponent() { return -12; }
+            public long getRawSimulationTime() { return Math.round(now * 1e12); }
+            public double getSimulationTimeAsDouble() { return now; }
+        });
+        manager.addVectorFilter("**.queue*", v -> new RecordingIntervalFilter(v, 10, 100));
+        manager.addVectorFilter("net.*.queueLength", v -> new EveryNthFilter(v, 2));
+        manager.addVectorFilter("**.queueLength", v -> new TimeWindowFilter(v, 10, TimeWindowFilter.Aggregate.MAX));
+        manager.addVectorFilter("**.delay", v -> new DeadbandFilter(v, 0.5));
+        manager.open(FileOutputScalarManager.generateRunID("filtertest"), null);
+
+        IOutputVector queueLength = manager.createVector("net.host", "queueLength", null);
+        IOutputVector queueSize = manager.createVector("net.host", "queueSize", null);
+        IOutputVector delay = manager.createVector("net.host", "delay", null);
+        IOutputVector other = manager.createVector("net.host", "other", null);
+        check("filtered vectors after creation", manager.getNumFilteredVectors(), 3);
+
+        // interval [10,100), then every 2nd value, then the maximum of 10s windows
+        Map<String, List<String>> expected = new HashMap<String, List<String>>();
+        int numPassed = 0;
+        for (int t=0; t<200; t++)
+            if (queueLength.record(t, t))
+                numPassed++;
+        check("values passed on by the aggregating filter", numPassed, 0);
+        List<String> lines = new ArrayList<String>();
+        for (int w=10; w<100; w+=10)
+            lines.add(w + " " + (w+8));
+        expected.put("queueLength", lines);
+
+        // interval only
+        numPassed = 0;
+        for (int t=0; t<200; t++)
+            if (queueSize.record(t, t))
+                numPassed++;
+        check("values passed on by the interval filter", numPassed, 90);
+        lines = new ArrayList<String>();
+        for (int t=10; t<100; t++)
+            lines.add(t + " " + t);
+        expected.put("queueSize", lines);
+
+        // deadband; timestamps come from the simtime provider
+        double[] values = { 0, 0.2, 0.6, 0.7, 1.2, 1.0, 0.5 };
+        for (int i=0; i<values.length; i++) {
+            now = i;
+            delay.record(values[i]);
+        }
+        expected.put("delay", lines("0 0", "2 0.6", "4 1.2", "6 0.5"));
+
+        // no filter
+        other.record(1, 1);
+        expected.put("other", lines("1 1"));
+
+        // closing a filtered vector stops its tracking, also when closed twice
+        queueSize.close();
+        check("filtered vectors after closing one", manager.getNumFilteredVectors(), 2);
+        queueSize.close();
+        check("filtered vectors after closing it again", manager.getNumFilteredVectors(), 2);
+        other.close();
+        check("filtered vectors after closing an unfiltered vector", manager.getNumFilteredVectors(), 2);
+
+        // closing the manager closes the rest, which records the last window of queueLength
+        manager.close();
+        check("filtered vectors after closing the manager", manager.getNumFilteredVectors(), 0);
+
+        Map<String, List<String>> actual = readVectors(file);
+        file.delete();
+        new File(directory, "filtertest.vci").delete();
+
+        for (String name : expected.keySet())
+            if (!expected.get(name).equals(actual.get(name)))
+                errors.add("Wrong data in " + name + ": " + actual.get(name) + ", expected " + expected.get(name));
+
+        if (!errors.isEmpty()) {
+            for (String error : errors)
+                System.out.println(error);
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    static void check(String what, int actual, int expected) {
+        if (actual != expected)
+            errors.add("Wrong number of " + what + ": " + actual + ", expected " + expected);
+    }
+
+    static List<String> lines(String... lines) {
+        List<String> result = new ArrayList<String>();
+        for (String line : lines)
+            result.add(line);
+        return result;
+    }
+
+    /**
+     * Returns the "time value" pairs of the vectors in the file, by vector name.
+     * Numbers are normalized, so that e.g. "10.0" becomes "10".
+     */
+    static Map<String, List<String>> readVectors(File file) throws IOException {
+        Map<String, String> names = new HashMap<String, String>();
+        Map<String, List<String>> result = new HashMap<String, List<String>>();
+        for (String line : Files.readAllLines(file.toPath())) {
+            String[] fields = line.split(" ");
+            if (fields[0].equals("vector"))
+                names.put(fields[1], fields[3]);
+            else if (names.containsKey(fields[0])) {
+                String name = names.get(fields[0]);
+                if (!result.containsKey(name))
+                    result.put(name, new ArrayList<String>());
+                result.get(name).add(normalize(fields[1]) + " " + normalize(fields[2]));
+            }
+        }
+        return result;
+    }
+
+    static String normalize(String number) {
+        return new BigDecimal(number).stripTrailingZeros().toPlainString();
+    }
+}
@@ -0,0 +1,294 @@
+package org.omnetpp.scave.writers.test;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.omnetpp.scave.writers.IOutputScalarManager;
+import org.omnetpp.scave.writers.IOutputVector;
+import org.omnetpp.scave.writers.impl.FileOutputScalarManager;
+import org.omnetpp.scave.writers.impl.FileOutputVectorManager;
+import org.omnetpp.scave.writers.impl.Histogram;
+
+/**
+ * Measures the recording throughput of FileOutputVectorManager and
+ * FileOutputScalarManager over a matrix of parameters: number of vectors,
+ * sample rate (samples per simulated second, which determines how long the
+ * printed timestamps are), per-vector buffer limit and number of attributes
+ * per result. For each configuration it prints:
+ *
+ * <ul>
+ * <li>results/s and MB/s written (vector and index file together), averaged
+ *     over the measured iterations, after a warm-up iteration. Opening the
+ *     file, creating the vectors and closing are included, so attributes
+ *     and many vectors show up in all figures;</li>
+ * <li>bytes allocated per recorded result and the number of GCs (allocation is
+ *     measured on the recording thread, if the JVM supports it);</li>
+ * <li>the latency distribution of individual record() calls (median, 99%,
+ *     99.9%, max). Latencies are measured in a separate iteration, so the
+ *     nanoTime() calls do not distort the throughput figures.</li>
+ * </ul>
+ *
+ * Output is tab-separated, for easy comparison of two runs.
+ *
+ * Usage: RecordingBenchmark [numSamples [iterations [directory]]]
+ *     (default: 2000000 samples, 3 iterations, the temp directory)
+ */
+public class RecordingBenchmark {
+    static final int[] NUM_VECTORS = {10, 1000, 100000};
+    static final double[] SAMPLE_RATES = {1, 1e6};
+    static final int[] BUFFER_LIMITS = {100, 1000, 10000};
+    static final int[] NUM_ATTRIBUTES = {0, 20};
+
+    static int numSamples = 2000000;
+    static int iterations = 3;
+    static File directory = new File(System.getProperty("java.io.tmpdir"));
+
+    static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        if (args.length > 0)
+            numSamples = Integer.parseInt(args[0]);
+        if (args.length > 1)
+            iterations = Integer.parseInt(args[1]);
+        if (args.length > 2)
+            directory = new File(args[2]);
+
+        System.out.println("test\tvectors\trate\tlimit\tattrs\tresults/s\tMB/s\talloc B/result\tGCs\tp50 ns\tp99 ns\tp99.9 ns\tmax ns");
+        for (int numVectors : NUM_VECTORS)
+            for (double rate : SAMPLE_RATES)
+                for (int limit : BUFFER_LIMITS)
+                    for (int numAttributes : NUM_ATTRIBUTES)
+                        measure(new VectorTest(numVectors, rate, limit, numAttributes));
+        for (int numAttributes : NUM_ATTRIBUTES) {
+            measure(new ScalarTest(numAttributes, false));
+            measure(new ScalarTest(numAttributes, true));
+        }
+    }
+
+    /**
+     * One benchmark configuration. run() records getNumResults() results, and
+     * returns the number of bytes written.
+     */
+    static abstract class Test {
+        abstract String getDescription();
+        abstract long getNumResults();
+        abstract long run(LatencyHistogram latencies);
+    }
+
+    static class VectorTest extends Test {
+        int numVectors;
+        double rate;
+        int limit;
+        int numAttributes;
+        int[] vectorIndices; // precomputed random order, so Random does not show up in the results
+
+        VectorTest(int numVectors, double rate, int limit, int numAttributes) {
+            this.numVectors = numVectors;
+            this.rate = rate;
+            this.limit = limit;
+            this.numAttributes = numAttributes;
+            Random random = new Random(1);
+            vectorIndices = new int[1<<16];
+            for (int i=0; i<vectorIndices.length; i++)
+                vectorIndices[i] = random.nextInt(numVectors);
+        }
+
+        String getDescription() {
+            return "vector\t" + numVectors + "\t" + rate + "\t" + limit + "\t" + numAttributes;
+        }
+
+        long getNumResults() {
+            return numSamples;
+        }
+
+        long run(LatencyHistogram latencies) {
+            File file = new File(directory, "recordingbenchmark.vec");
+            File indexFile = new File(directory, "recordingbenchmark.vci");
+            FileOutputVectorManager manager = new FileOutputVectorManager(file.getPath());
+            manager.setPerVectorBufferLimit(limit);
+            manager.open(FileOutputVectorManager.generateRunID("bench"), makeAttributes(numAttributes, "run"));
+            IOutputVector[] vectors = new IOutputVector[numVectors];
+            for (int i=0; i<numVectors; i++)
+                vectors[i] = manager.createVector("net.host[" + i % 100 + "].app", "value" + i / 100, makeAttributes(numAttributes, "vector"));
+
+            int mask = vectorIndices.length - 1;
+            double timeStep = 1 / rate;
+            if (latencies == null) {
+                for (int i=0; i<numSamples; i++)
+                    vectors[vectorIndices[i & mask]].record(i * timeStep, i);
+            }
+            else {
+                for (int i=0; i<numSamples; i++) {
+                    IOutputVector vector = vectors[vectorIndices[i & mask]];
+                    long start = System.nanoTime();
+                    vector.record(i * timeStep, i);
+                    latencies.add(System.nanoTime() - start);
+                }
+            }
+            manager.close();
+
+            long bytes = file.length() + indexFile.length();
+            file.delete();
+            indexFile.delete();
+            return bytes;
+        }
+    }
+
+    static class ScalarTest extends Test {
+        int numAttributes;
+        boolean statistics;
+        Histogram histogram = new Histogram(0, 100, 10);
+
+        ScalarTest(int numAttributes, boolean statistics) {
+            this.numAttributes = numAttributes;
+            this.statistics = statistics;
+            for (int i=0; i<100; i++)
+                histogram.collect(i);
+        }
+
+        String getDescription() {
+            return (statistics ? "statistic" : "scalar") + "\t-\t-\t-\t" + numAttributes;
+        }
+
+        long run(LatencyHistogram latencies) {
+            File file = new File(directory, "recordingbenchmark.sca");
+            IOutputScalarManager manager = new FileOutputScalarManager(file.getPath());
+            manager.open(FileOutputScalarManager.generateRunID("bench"), makeAttributes(numAttributes, "run"));
+            Map<String, String> attributes = makeAttributes(numAttributes, "scalar");
+            long count = getNumResults();
+            String[] componentPaths = new String[1000];
+            for (int i=0; i<componentPaths.length; i++)
+                componentPaths[i] = "net.host[" + i + "].app";
+
+            for (int i=0; i<count; i++) {
+                long start = latencies == null ? 0 : System.nanoTime();
+                if (statistics)
+                    manager.recordStatistic(componentPaths[i % 1000], "delay", histogram, attributes);
+                else
+                    manager.recordScalar(componentPaths[i % 1000], "numPackets", i, attributes);
+                if (latencies != null)
+                    latencies.add(System.nanoTime() - start);
+            }
+            manager.close();
+
+            long bytes = file.length();
+            file.delete();
+            return bytes;
+        }
+
+        long getNumResults() {
+            return statistics ? numSamples / 100 : numSamples / 10; // statistics produce many lines each
+        }
+    }
+
+    static Map<String, String> makeAttributes(int numAttributes, String prefix) {
+        if (numAttributes == 0)
+            return null;
+        Map<String, String> attributes = new HashMap<String, String>();
+        for (int i=0; i<numAttributes; i++)
+            attributes.put(prefix + "-attr" + i, "value of attribute " + i + " of some " + prefix);
+        return attributes;
+    }
+
+    static void measure(Test test) {
+        long numResults = test.getNumResults();
+        test.run(null); // warm-up
+
+        long gcsBefore = getGCCount();
+        long allocatedBefore = getAllocatedBytes();
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (int i=0; i<iterations; i++)
+            bytes += test.run(null);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocated = getAllocatedBytes() - allocatedBefore;
+        long gcs = getGCCount() - gcsBefore;
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        test.run(latencies);
+
+        System.out.printf("%s\t%.0f\t%.1f\t%s\t%d\t%d\t%d\t%d\t%d%n",
+                test.getDescription(),
+                numResults * iterations / seconds,
+                bytes / seconds / 1e6,
+                allocated < 0 ? "n/a" : String.format("%.1f", allocated / (double)(numResults * iterations)),
+                gcs,
+                latencies.getPercentile(0.5),
+                latencies.getPercentile(0.99),
+                latencies.getPercentile(0.999),
+                latencies.getMax());
+    }
+
+    static long getGCCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, bean.getCollectionCount());
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far, or -1 if not supported.
+     */
+    static long getAllocatedBytes() {
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)threadBean;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled())
+                return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Counts latencies in logarithmic buckets: 16 buckets per power of two,
+     * i.e. about 4% resolution, with constant memory and no allocation.
+     */
+    static class LatencyHistogram {
+        static final int SUB_BUCKETS = 16;
+        long[] counts = new long[64 * SUB_BUCKETS];
+        long total;
+        long max;
+
+        void add(long nanos) {
+            counts[bucketOf(Math.max(nanos, 0))]++;
+            total++;
+            max = Math.max(max, nanos);
+        }
+
+        static int bucketOf(long value) {
+            if (value < SUB_BUCKETS)
+                return (int)value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value) - 4; // value >> exponent is in [16,32)
+            return (exponent + 1) * SUB_BUCKETS + (int)((value >> exponent) - SUB_BUCKETS);
+        }
+
+        /**
+         * Returns the upper bound of the bucket.
+         */
+        static long valueOf(int bucket) {
+            if (bucket < SUB_BUCKETS)
+                return bucket;
+            int exponent = bucket / SUB_BUCKETS - 1;
+            return ((long)(bucket % SUB_BUCKETS + SUB_BUCKETS + 1) << exponent) - 1;
+        }
+
+        long getPercentile(double p) {
+            long rank = (long)Math.ceil(p * total);
+            long sum = 0;
+            for (int i=0; i<counts.length; i++) {
+                sum += counts[i];
+                if (sum >= rank && sum > 0)
+                    return Math.min(valueOf(i), max);
+            }
+            return max;
+        }
+
+        long getMax() {
+            return max;
+        }
+    }
+}
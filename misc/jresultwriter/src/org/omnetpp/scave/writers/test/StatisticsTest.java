@@ -0,0 +1,222 @@
+package org.omnetpp.scave.writers.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.omnetpp.scave.writers.impl.AutoRangeHistogram;
+import org.omnetpp.scave.writers.impl.P2Quantile;
+import org.omnetpp.scave.writers.impl.SummaryStatistics;
+import org.omnetpp.scave.writers.impl.TDigest;
+
+/**
+ * Checks the streaming statistics classes: SummaryStatistics against values
+ * computed from all observations, AutoRangeHistogram range growth and cell
+ * counts, and the quantile estimates of TDigest and P2Quantile on known
+ * distributions. Quantile errors are measured in rank, i.e. as the
+ * difference between p and the fraction of observations below the estimate.
+ *
+ * Usage: StatisticsTest
+ *
+ * Exits with a nonzero status if any of the checks fails.
+ */
+public class StatisticsTest {
+    static final int N = 100000;
+
+    static List<String> errors = new ArrayList<String>();
+
+    interface Distribution {
+        double next(Random random);
+    }
+
+    public static void main(String[] args) {
+        testSummaryStatistics();
+        testWeightedSummaryStatistics();
+        testAutoRangeHistogram();
+
+        Distribution uniform = r -> r.nextDouble();
+        Distribution normal = r -> r.nextGaussian();
+        Distribution exponential = r -> -Math.log(1 - r.nextDouble());
+        testTDigest("uniform", uniform);
+        testTDigest("normal", normal);
+        testTDigest("exponential", exponential);
+        testP2Quantile("uniform", uniform);
+        testP2Quantile("normal", normal);
+        testP2Quantile("exponential", exponential);
+
+        if (!errors.isEmpty()) {
+            for (String error : errors)
+                System.out.println(error);
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    static void check(String what, double actual, double expected, double tolerance) {
+        if (!(Math.abs(actual - expected) <= tolerance))
+            errors.add(what + ": " + actual + ", expected " + expected + " (tolerance " + tolerance + ")");
+    }
+
+    static void testSummaryStatistics() {
+        // a large offset makes the sum/sqrSum variance formula useless
+        Random random = new Random(1);
+        double[] values = new double[N];
+        SummaryStatistics stat = new SummaryStatistics();
+        for (int i=0; i<N; i++) {
+            values[i] = 1e9 + random.nextGaussian();
+            stat.collect(values[i]);
+        }
+
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY, sum = 0;
+        for (double value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value - 1e9; // the offset is added back after averaging, to keep rounding errors small
+        }
+        double mean = 1e9 + sum / N, m2 = 0;
+        for (double value : values)
+            m2 += (value - mean) * (value - mean);
+        double stddev = Math.sqrt(m2 / (N - 1));
+
+        check("summary: n", stat.getN(), N, 0);
+        check("summary: min", stat.getMin(), min, 0);
+        check("summary: max", stat.getMax(), max, 0);
+        check("summary: mean", stat.getMean(), mean, 1e-6);
+        check("summary: stddev", stat.getStandardDeviation(), stddev, 1e-6);
+
+        stat.clear();
+        check("summary: n after clear()", stat.getN(), 0, 0);
+        if (!Double.isNaN(stat.getMean()) || !Double.isNaN(stat.getStandardDeviation()))
+            errors.add("summary: mean and stddev must be NaN without values");
+        stat.collect(42);
+        check("summary: stddev of one value", stat.getStandardDeviation(), 0, 0);
+    }
+
+    static void testWeightedSummaryStatistics() {
+        Random random = new Random(2);
+        SummaryStatistics stat = new SummaryStatistics();
+        double sumWeights = 0, sqrSumWeights = 0, weightedSum = 0;
+        double[] values = new double[1000], weights = new double[1000];
+        for (int i=0; i<values.length; i++) {
+            values[i] = 100 + 10 * random.nextGaussian();
+            weights[i] = random.nextDouble() * 5;
+            stat.collect(values[i], weights[i]);
+            sumWeights += weights[i];
+            sqrSumWeights += weights[i] * weights[i];
+            weightedSum += weights[i] * values[i];
+        }
+        double mean = weightedSum / sumWeights, m2 = 0;
+        for (int i=0; i<values.length; i++)
+            m2 += weights[i] * (values[i] - mean) * (values[i] - mean);
+        double variance = m2 / (sumWeights - sqrSumWeights / sumWeights);
+
+        check("weighted: n", stat.getN(), values.length, 0);
+        check("weighted: weights", stat.getWeights(), sumWeights, 1e-9);
+        check("weighted: mean", stat.getMean(), mean, 1e-9);
+        check("weighted: variance", stat.getVariance(), variance, 1e-6);
+    }
+
+    static void testAutoRangeHistogram() {
+        AutoRangeHistogram histogram = new AutoRangeHistogram(10, 5);
+        List<Double> values = new ArrayList<Double>();
+        for (double value : new double[] { 1, 2, 3, 4, 5 }) {
+            histogram.collect(value);
+            values.add(value);
+        }
+        // range chosen from the precollected values: 1..5 in 10 cells of 0.5
+        check("histogram: initial cell size", histogram.getCellBoundary(1) - histogram.getCellBoundary(0), 0.5, 1e-12);
+        check("histogram: initial lower bound", histogram.getCellBoundary(0), 1, 1e-12);
+
+        double lo = histogram.getCellBoundary(0), hi = histogram.getCellBoundary(histogram.getNumCells());
+        for (double value : new double[] { 7.25, 100, -30, 0.5, 1e4, -1e4 }) {
+            histogram.collect(value);
+            values.add(value);
+            double newLo = histogram.getCellBoundary(0), newHi = histogram.getCellBoundary(histogram.getNumCells());
+            if (newLo > lo || newHi < hi)
+                errors.add("histogram: range shrank from [" + lo + "," + hi + ") to [" + newLo + "," + newHi + ")");
+            if (!(value >= newLo && value < newHi))
+                errors.add("histogram: range [" + newLo + "," + newHi + ") does not contain " + value);
+            lo = newLo;
+            hi = newHi;
+        }
+        histogram.collect(Double.POSITIVE_INFINITY);
+        histogram.collect(Double.NEGATIVE_INFINITY);
+
+        int numCells = histogram.getNumCells();
+        check("histogram: number of cells", numCells, 10, 0);
+        double growth = (histogram.getCellBoundary(1) - histogram.getCellBoundary(0)) / 0.5;
+        if (growth != Math.pow(2, Math.round(Math.log(growth) / Math.log(2))))
+            errors.add("histogram: cell size must grow by doubling, but it grew " + growth + " times");
+        for (int k=0; k<numCells; k++) {
+            int count = 0;
+            for (double value : values)
+                if (value >= histogram.getCellBoundary(k) && value < histogram.getCellBoundary(k+1))
+                    count++;
+            check("histogram: cell " + k, histogram.getCellValue(k), count, 0);
+        }
+        check("histogram: underflows", histogram.getUnderflowCell(), 1, 0);
+        check("histogram: overflows", histogram.getOverflowCell(), 1, 0);
+    }
+
+    /**
+     * Returns the fraction of the (sorted) values that are less than x.
+     */
+    static double rank(double[] sortedValues, double x) {
+        int i = Arrays.binarySearch(sortedValues, x);
+        if (i < 0)
+            i = -i - 1;
+        while (i > 0 && sortedValues[i-1] == x)
+            i--;
+        return i / (double)sortedValues.length;
+    }
+
+    static void testTDigest(String name, Distribution distribution) {
+        Random random = new Random(3);
+        double[] values = new double[N];
+        TDigest digest = new TDigest();
+        for (int i=0; i<N; i++) {
+            values[i] = distribution.next(random);
+            digest.collect(values[i]);
+        }
+        Arrays.sort(values);
+
+        if (digest.getNumCentroids() > 2 * digest.getCompression())
+            errors.add("t-digest " + name + ": too many centroids: " + digest.getNumCentroids());
+        check("t-digest " + name + ": p=0", digest.getQuantile(0), values[0], 0);
+        check("t-digest " + name + ": p=1", digest.getQuantile(1), values[N-1], 0);
+        // centroids at p span 2*pi*sqrt(p*(1-p))/compression in rank (the inverse slope of the
+        // scale function), so the error must be well below that, and much smaller near the tails
+        for (double p : new double[] { 0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999 }) {
+            double centroidWidth = 2 * Math.PI * Math.sqrt(p * (1 - p)) / digest.getCompression();
+            check("t-digest " + name + ": rank of p=" + p, rank(values, digest.getQuantile(p)), p, centroidWidth / 4);
+        }
+    }
+
+    static void testP2Quantile(String name, Distribution distribution) {
+        for (double p : new double[] { 0.1, 0.5, 0.9, 0.99 }) {
+            Random random = new Random(4);
+            double[] values = new double[N];
+            P2Quantile quantile = new P2Quantile(p);
+            for (int i=0; i<N; i++) {
+                values[i] = distribution.next(random);
+                quantile.collect(values[i]);
+            }
+            Arrays.sort(values);
+            check("P2 " + name + ": rank of p=" + p, rank(values, quantile.getQuantile()), p, 0.005);
+        }
+
+        // exact with at most five values
+        P2Quantile median = new P2Quantile(0.5);
+        for (double value : new double[] { 5, 1, 4, 2, 3 })
+            median.collect(value);
+        check("P2 " + name + ": median of five values", median.getQuantile(), 3, 0);
+
+        try {
+            median.collect(1, 2);
+            errors.add("P2: weighted values must be rejected");
+        }
+        catch (UnsupportedOperationException e) {
+        }
+    }
+}
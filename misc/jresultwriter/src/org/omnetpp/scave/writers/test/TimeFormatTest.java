@@ -0,0 +1,70 @@
+package org.omnetpp.scave.writers.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.omnetpp.scave.writers.IOutputVector;
+import org.omnetpp.scave.writers.ISimulationTimeProvider2;
+import org.omnetpp.scave.writers.impl.FileOutputScalarManager;
+import org.omnetpp.scave.writers.impl.FileOutputVectorManager;
+
+/**
+ * Checks how FileOutputVectorManager writes timestamps given in different
+ * forms (see the class description of FileOutputVectorManager).
+ *
+ * Usage: TimeFormatTest [directory]   (default: the temp directory)
+ *
+ * Exits with a nonzero status if the output differs from the expected one.
+ */
+public class TimeFormatTest {
+    static long rawNow; // in picoseconds
+
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args.length > 0 ? args[0] : System.getProperty("java.io.tmpdir"));
+        File file = new File(directory, "timeformattest.vec");
+
+        FileOutputVectorManager manager = new FileOutputVectorManager(file.getPath());
+        manager.setSimtimeProvider(new ISimulationTimeProvider2() {
+            public long getEventNumber() { return -1; }
+            public Number getSimulationTime() { return BigDecimal.valueOf(rawNow, 12); }
+            public int getSimulationTimeScaleExponent() { return -12; }
+            public long getRawSimulationTime() { return rawNow; }
+            public double getSimulationTimeAsDouble() { return rawNow * 1e-12; }
+        });
+        manager.open(FileOutputScalarManager.generateRunID("timeformattest"), null);
+        IOutputVector vector = manager.createVector("net.host", "value", null);
+
+        List<String> expected = new ArrayList<String>();
+        vector.record(new BigDecimal("1E-7"), 0);               expected.add("0.0000001");
+        vector.record(new BigDecimal("1.500"), 0);              expected.add("1.5");
+        vector.record(Long.valueOf(2), 0);                      expected.add("2");
+        vector.record(Integer.valueOf(3), 0);                   expected.add("3");
+        vector.record(3.25, 0);                                 expected.add("3.25");
+        vector.record(4125, -3, 0);                             expected.add("4.125");
+        rawNow = 5000000000000L;
+        vector.record(0);                                       expected.add("5");
+        vector.record(Double.valueOf(6), 0);                    expected.add("6.0");
+        vector.record(new BigDecimal("7.0E+2"), 0);             expected.add("700");
+        vector.record(new BigDecimal(BigInteger.ONE.shiftLeft(70), 18), 0); expected.add("1180.5916207174114"); // unscaled value too large for a long
+        vector.record(1e9, 0);                                  expected.add("1.0E9");
+        manager.close();
+
+        List<String> actual = new ArrayList<String>();
+        for (String line : Files.readAllLines(file.toPath()))
+            if (line.startsWith("1 "))
+                actual.add(line.split(" ")[1]);
+        file.delete();
+        new File(directory, "timeformattest.vci").delete();
+
+        if (!actual.equals(expected)) {
+            System.out.println("Wrong timestamps: " + actual + ", expected " + expected);
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+}
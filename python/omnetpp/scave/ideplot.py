@@ -158,6 +158,16 @@ def get_supported_property_keys():
     """
     return impl.get_supported_property_keys(**locals())
 
+def get_plot_width():
+    """
+    Returns the width of the plotting area in pixels, or `None` if it cannot
+    be determined.
+
+    Note: This method has no equivalent in `pyplot`. Outside the IDE, the width
+    of the current Matplotlib figure is returned.
+    """
+    return impl.get_plot_width()
+
 def set_warning(warning: str):
     """
     Displays the given warning text in the plot.
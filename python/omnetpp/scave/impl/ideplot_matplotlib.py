@@ -13,6 +13,13 @@ def get_supported_property_keys():
     return [] # TODO
 
 
+def get_plot_width():
+    # the whole figure: creating axes here would interfere with subplots created later
+    fig = plt.gcf()
+    width = fig.get_figwidth() * fig.dpi
+    return int(width) if width > 0 else None
+
+
 def set_warning(warning):
     print("WARNING:", warning)
     # TODO this might not always work, depending on whether it's called before or after plotting?
@@ -360,7 +360,7 @@ def get_scalars(filter_expression, include_attrs, include_fields, include_runatt
     return df
 
 
-def get_vectors(filter_expression, include_attrs, include_runattrs, include_itervars, include_param_assignments, include_config_entries, start_time, end_time):
+def get_vectors(filter_expression, include_attrs, include_runattrs, include_itervars, include_param_assignments, include_config_entries, start_time, end_time, max_points=None):
     vectors = _global_rfm.getAllVectors()
     vectors = _global_rfm.filterIDList(vectors, filter_expression)
     n = vectors.size()
@@ -372,7 +372,10 @@ def get_vectors(filter_expression, include_attrs, include_runattrs, include_iter
     vecvalues = np.empty(n, dtype=np.object_)
 
     # TODO: memory limit? interrupt flag? precise X? event numbers?
-    arrays = sb.readVectorsIntoArrays(_global_rfm, vectors, False, False, simTimeStart = start_time, simTimeEnd = end_time)
+    if max_points is None:
+        arrays = sb.readVectorsIntoArrays(_global_rfm, vectors, False, False, simTimeStart = start_time, simTimeEnd = end_time)
+    else:
+        arrays, decimated = sb.readDecimatedVectorsIntoArrays(_global_rfm, vectors, int(max_points), simTimeStart = start_time, simTimeEnd = end_time)
     for i, v in enumerate(vectors):
         vector = _global_rfm.getVector(v)
         runIDs[i] = vector.getRun().getRunName()
@@ -390,6 +393,8 @@ def get_vectors(filter_expression, include_attrs, include_runattrs, include_iter
         vecvalues[i] = values
 
     df = pd.DataFrame({"runID" : runIDs, "module": modules, "name": names, "vectime": vectimes, "vecvalue": vecvalues})
+    if max_points is not None:
+        df["decimated"] = np.array(decimated, dtype=np.bool_)
 
     attrmode = _AttributeMode.ENSURE_UNIT_INCLUDED if include_attrs else _AttributeMode.ENSURE_ONLY_UNIT
     attrs = _collect_attrs(vectors, attrmode)
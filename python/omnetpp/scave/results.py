@@ -608,8 +608,33 @@ def get_parameters(filter_or_dataframe="", include_attrs=False, include_runattrs
     return result
 
 
+def _decimate(t, v, max_points):
+    """
+    Reduces the (t,v) arrays to at most `max_points` points by keeping the
+    first, last, min and max points in each of `max_points/4` time buckets.
+    Returns the new arrays, and whether the data was actually reduced.
+    """
+    n = len(t)
+    if n <= max_points:
+        return t, v, False
+    num_buckets = max(1, max_points // 4)
+    span = t[-1] - t[0]
+    if span > 0 and np.isfinite(span):
+        buckets = np.minimum(((t - t[0]) / span * num_buckets).astype(np.int64), num_buckets-1)
+    else:
+        buckets = np.zeros(n, dtype=np.int64)
+    starts = np.flatnonzero(np.r_[True, buckets[1:] != buckets[:-1]])
+    ends = np.r_[starts[1:], n] - 1
+    def nanarg(func, a): # NaNs are never the min/max, unless the bucket is all NaN
+        return 0 if np.isnan(a).all() else func(a)
+    mins = starts + np.array([nanarg(np.nanargmin, v[s:e+1]) for s, e in zip(starts, ends)], dtype=np.int64)
+    maxs = starts + np.array([nanarg(np.nanargmax, v[s:e+1]) for s, e in zip(starts, ends)], dtype=np.int64)
+    indices = np.unique(np.concatenate([starts, ends, mins, maxs]))
+    return t[indices], v[indices], True
+
+
 @_guarded_result_query_func
-def get_vectors(filter_or_dataframe="", include_attrs=False, include_runattrs=False, include_itervars=False, include_param_assignments=False, include_config_entries=False, start_time=-inf, end_time=inf, convert_to_base_unit=True):
+def get_vectors(filter_or_dataframe="", include_attrs=False, include_runattrs=False, include_itervars=False, include_param_assignments=False, include_config_entries=False, start_time=-inf, end_time=inf, convert_to_base_unit=True, max_points=None):
     """
     Returns a filtered list of vector results.
 
@@ -632,6 +657,12 @@ def get_vectors(filter_or_dataframe="", include_attrs=False, include_runattrs=Fa
       right-open.
     - `convert_to_base_unit` (bool): Optional. If `True`, the values in the
       vectors are converted to their base unit (e.g. `ms` to `s`, `mW` to `W`, etc.)
+    - `max_points` (int): Optional. If given, vectors with more data points in
+      the time interval are decimated to at most this many points, while they
+      are being read: the interval is divided into `max_points/4` buckets, and
+      the first, last, minimum and maximum points of each bucket are kept. This
+      makes plotting huge vectors feasible; query again with a narrower time
+      interval (e.g. after zooming) to get more detail.
 
     Columns of the returned DataFrame:
 
@@ -641,15 +672,19 @@ def get_vectors(filter_or_dataframe="", include_attrs=False, include_runattrs=Fa
     - `name` (string): The name of the vector
     - `vectime`, `vecvalue` (np.array): The simulation times and the
       corresponding values in the vector
+    - `decimated` (bool): Only if `max_points` was given: whether the data of
+      the vector was reduced
     - Additional metadata items (result attributes, run attributes, iteration
       variables, etc.), as requested
     """
     if type(filter_or_dataframe) is str:
-        params = locals().copy()
+        query = locals().copy()
+        params = query.copy()
         params["filter_expression"] = filter_or_dataframe
         del params["filter_or_dataframe"]
         del params["convert_to_base_unit"]
         result = impl.get_vectors(**params)
+        result.attrs["vector_query"] = query # all arguments, for refetching the data in another time interval
     else:
         df = filter_or_dataframe
         row_types = ["vector", "itervar", "runattr", "config", "attr"]
@@ -670,6 +705,12 @@ def get_vectors(filter_or_dataframe="", include_attrs=False, include_runattrs=Fa
                 return row
             result = result.transform(crop, axis='columns')
 
+        if max_points is not None:
+            decimated = [_decimate(t, v, max_points) for t, v in zip(result['vectime'], result['vecvalue'])]
+            result['vectime'] = [d[0] for d in decimated]
+            result['vecvalue'] = [d[1] for d in decimated]
+            result['decimated'] = [d[2] for d in decimated]
+
     _dropna_except(result, VECTOR_COLUMN_NAMES)
     _ensure_columns_exist(result, VECTOR_COLUMN_NAMES)
     _fix_ndarray_shapes(result, ["vectime", "vecvalue"])
@@ -539,6 +539,37 @@ def plot_bars(df, errors_df=None, meta_df=None, props={}, sort=True):
         set_plot_title(title)
 
 
+def get_vector_max_points(props):
+    """
+    Returns a point budget for the `max_points` parameter of
+    `results.get_vectors()` that is suitable for line plots of the current
+    plot width: four points (the first, last, minimum and maximum) per
+    horizontal pixel, which makes a decimated line look identical to the full
+    one. On Matplotlib plots, `plot_vectors()` and `plot_vectors_separate()`
+    query decimated vectors again when the plot is zoomed, but native plots
+    cannot do that, so they get enough points for zooming in 16x without
+    visible loss of detail.
+
+    Returns `None` (i.e. no decimation) when the data would not only be
+    displayed, that is, when it is transformed by vector operations or is
+    going to be exported, or when the plot width is not known.
+
+    Parameters:
+
+    - `props` (dict): The chart properties.
+    """
+    def get_prop(k):
+        return props[k] if k in props else None
+
+    if (get_prop("vector_operations") or "").strip() or _parse_optional_bool(get_prop("export_data")):
+        return None
+    width = ideplot.get_plot_width()
+    if not width:
+        return None
+    zoom_headroom = 16 if chart.is_native_chart() else 1
+    return 4 * width * zoom_headroom
+
+
 def plot_vectors(df, props, legend_func=make_legend_label, sort=True):
     """
     Creates a line plot from the dataframe, with styling and additional input
@@ -588,9 +619,15 @@ def plot_vectors(df, props, legend_func=make_legend_label, sort=True):
     if sort:
         df.sort_values(by=legend_cols, inplace=True)
 
+    lines = dict()
     for t in df.itertuples(index=False):
         style = _make_line_args(props, t, df)
-        p.plot(t.vectime, t.vecvalue, label=legend_func(legend_cols, t, props), **style)
+        line = p.plot(t.vectime, t.vecvalue, label=legend_func(legend_cols, t, props), **style)
+        if not chart.is_native_chart():
+            lines[(t.runID, t.module, t.name)] = line[0]
+
+    if not chart.is_native_chart():
+        _refetch_vectors_on_zoom(plt.gca(), df, lines)
 
     title = get_prop("title") or make_chart_title(df, title_cols)
     set_plot_title(title)
@@ -602,6 +639,41 @@ def plot_vectors(df, props, legend_func=make_legend_label, sort=True):
     p.ylabel(ylabel)
 
 
+def _refetch_vectors_on_zoom(ax, df, lines):
+    """
+    If the vectors in the dataframe were decimated (see the `max_points`
+    parameter of `results.get_vectors()`), arranges that when the x axis
+    limits change (e.g. on zooming), the data of the lines is queried again
+    for the visible part of the originally queried time interval, with the
+    same query arguments (including the point budget), so that more detail
+    becomes visible. `lines` maps (runID, module, name) to Line2D.
+    """
+    query = df.attrs.get("vector_query")
+    if not query or "decimated" not in df or not df["decimated"].any():
+        return
+
+    from omnetpp.scave import results
+    timer = ax.figure.canvas.new_timer(interval=300) # don't refetch on every step of a pan/zoom
+    timer.single_shot = True
+
+    def refetch():
+        start, end = ax.get_xlim()
+        start, end = max(start, query["start_time"]), min(end, query["end_time"])
+        new_df = results.get_vectors(**dict(query, start_time=start, end_time=end))
+        for t in new_df.itertuples(index=False):
+            line = lines.get((t.runID, t.module, t.name))
+            if line is not None:
+                line.set_data(t.vectime, t.vecvalue)
+        ax.figure.canvas.draw_idle()
+
+    def xlim_changed(ax):
+        timer.stop()
+        timer.start()
+
+    timer.add_callback(refetch)
+    ax.callbacks.connect("xlim_changed", xlim_changed)
+
+
 def plot_vectors_separate(df, props, legend_func=make_legend_label, sort=True):
     """
     This is very similar to `plot_vectors`, with identical usage.
@@ -618,6 +690,7 @@ def plot_vectors_separate(df, props, legend_func=make_legend_label, sort=True):
         df.sort_values(by=legend_cols, inplace=True)
 
     ax = None
+    lines = dict()
     for i, t in enumerate(df.itertuples(index=False)):
         style = _make_line_args(props, t, df)
         ax = plt.subplot(df.shape[0], 1, i+1, sharex=ax)
@@ -629,7 +702,11 @@ def plot_vectors_separate(df, props, legend_func=make_legend_label, sort=True):
         if hasattr(t, "enum") and isinstance(t.enum, str) and t.enum and props.get("enum_as_strip") == "true":
             _plot_enum(t.vectime, t.vecvalue, t.enum.split(","), label=legend_func(legend_cols, t, props))
         else:
-            plt.plot(t.vectime, t.vecvalue, label=legend_func(legend_cols, t, props), **style)
+            line = plt.plot(t.vectime, t.vecvalue, label=legend_func(legend_cols, t, props), **style)
+            lines[(t.runID, t.module, t.name)] = line[0]
+
+    if ax is not None:
+        _refetch_vectors_on_zoom(ax, df, lines) # the x axis is shared, so one callback covers all subplots
 
     plt.subplot(df.shape[0], 1, 1)
 
@@ -1783,6 +1860,9 @@ def perform_vector_ops(df, operations: str):
         except Exception as e:
             context = " in Vector Operations line " + str(line_num) + " \"" + line.strip() + "\""
             raise chart.ChartScriptError(str(e) + context) from e # re-throw with context
+    if "vector_query" in df.attrs:
+        # the data no longer corresponds to the query, so it must not be refetched on zoom
+        df.attrs = {k: v for k, v in df.attrs.items() if k != "vector_query"}
     return df
 
 
@@ -1983,7 +2063,7 @@ def extract_label_columns(df, props):
                  "count", "sumweights", "mean", "stddev", "min", "max",
                  "processid", "datetime", "datetimef", "runnumber", "seedset",
                  "iterationvars", "iterationvarsf", "iterationvarsd", "repetition",
-                 "source", "recordingmode", "interpolationmode", "enum", "unit"])
+                 "source", "recordingmode", "interpolationmode", "enum", "unit", "decimated"])
 
     # if unsuccessful, try to pick from all columns, except a few that we don't like
     legend_col_candidates = [col for col in list(df.columns.values) if col not in blacklist and col not in title_cols]
@@ -108,6 +108,25 @@ bool IDList::isSubsetOf(IDList& ids)
     return std::includes(ids.v.begin(), ids.v.end(), v.begin(), v.end()); // "ids includes this"
 }
 
+void IDList::toArray(ID *outArray, int n) const
+{
+    if (n != (int)v.size())
+        throw opp_runtime_error("IDList::toArray(): array size does not match IDList size");
+    std::copy(v.begin(), v.end(), outArray);
+}
+
+void IDList::getMembershipFlags(IDList& ids, int *outArray, int n) const
+{
+    if (n != (int)v.size())
+        throw opp_runtime_error("IDList::getMembershipFlags(): array size does not match IDList size");
+
+    // sort the other vector so that we can use binary search
+    sort(ids.v);
+
+    for (int i = 0; i < n; i++)
+        outArray[i] = std::binary_search(ids.v.begin(), ids.v.end(), v[i]) ? 1 : 0;
+}
+
 IDList IDList::getRange(int startIndex, int endIndex) const
 {
     if (startIndex < 0 || endIndex > v.size() || startIndex > endIndex)
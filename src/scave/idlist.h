@@ -94,6 +94,7 @@ class SCAVE_API IDList
         ID get(int i) const {return v.at(i);} // at() includes bounds check
         int indexOf(ID x) const;
         const std::vector<ID>& asVector() const {return v;}
+        void toArray(ID *outArray, int n) const; // copies the IDs into outArray; n must be equal to size()
 
         // support for range-based for loops
         V::const_iterator begin() const {return v.begin();}
@@ -104,6 +105,7 @@ class SCAVE_API IDList
         IDList subtract(IDList& ids) const;
         IDList intersect(IDList& ids) const;
         bool isSubsetOf(IDList& ids);
+        void getMembershipFlags(IDList& ids, int *outArray, int n) const; // outArray[i] = 1 if get(i) is in ids, 0 otherwise; n must be equal to size()
 
         // filtering
         IDList getRange(int startIndex, int endIndex) const;
@@ -55,7 +55,11 @@ IndexFileWriter::~IndexFileWriter()
 void IndexFileWriter::writeAll(const VectorFileIndex& index)
 {
     openFile();
-    writeFingerprint(index.vectorFileName);
+    FileFingerprint fingerprint = index.fingerprint;
+    if (fingerprint.isEmpty())
+        writeFingerprint(index.vectorFileName);
+    else
+        writeFingerprint(fingerprint); // e.g. the file was indexed while being written
     writeRun(index.run);
 
     int numOfVectors = index.getNumberOfVectors();
@@ -69,8 +73,11 @@ void IndexFileWriter::writeAll(const VectorFileIndex& index)
 
 void IndexFileWriter::writeFingerprint(std::string vectorFileName)
 {
-    FileFingerprint fingerprint = readFileFingerprint(vectorFileName.c_str());
+    writeFingerprint(readFileFingerprint(vectorFileName.c_str()));
+}
 
+void IndexFileWriter::writeFingerprint(const FileFingerprint& fingerprint)
+{
     if (file == nullptr)
         openFile();
 
@@ -63,6 +63,7 @@ class SCAVE_API IndexFileWriter
          * Writes out the fingerprint of the vector file this index file belongs to.
          */
         void writeFingerprint(std::string vectorFileName);
+        void writeFingerprint(const FileFingerprint& fingerprint);
         /**
          * Writes out the run attributes.
          */
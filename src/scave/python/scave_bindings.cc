@@ -251,6 +251,19 @@ NB_MODULE(MODULENAME, m) {
         nb::arg("interrupted").none() = nullptr)
         ;
 
+    // returns the arrays, and whether each vector was actually decimated
+    m.def("readDecimatedVectorsIntoArrays", [](ResultFileManager *manager, const IDList& idlist, size_t maxPointsPerVector, size_t memoryLimitBytes, double simTimeStart, double simTimeEnd, InterruptedFlag *interrupted) {
+            std::vector<bool> decimatedFlags;
+            std::vector<XYArray *> arrays = readDecimatedVectorsIntoArrays(manager, idlist, maxPointsPerVector, memoryLimitBytes, simTimeStart, simTimeEnd, interrupted, &decimatedFlags);
+            return std::make_pair(arrays, decimatedFlags);
+        },
+        nb::arg(), nb::arg(),
+        nb::arg("maxPointsPerVector"),
+        nb::arg("memoryLimitBytes") = std::numeric_limits<size_t>::max(),
+        nb::arg("simTimeStart") = -INFINITY, nb::arg("simTimeEnd") = INFINITY,
+        nb::arg("interrupted").none() = nullptr)
+        ;
+
     nb::class_<XYArray>(m, "XYArray")
         .def("length", &XYArray::length)
         .def("getX", &XYArray::getX)
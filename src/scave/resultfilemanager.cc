@@ -274,6 +274,69 @@ StringSet ResultFileManager::getUniqueResultNames(const IDList& ids) const
     return result;
 }
 
+void ResultFileManager::getModuleNameIndices(const IDList& ids, int *outArray, int n, StringVector& namesOut) const
+{
+    collectNameIndices(ids, true, outArray, n, namesOut);
+}
+
+void ResultFileManager::getResultNameIndices(const IDList& ids, int *outArray, int n, StringVector& namesOut) const
+{
+    collectNameIndices(ids, false, outArray, n, namesOut);
+}
+
+void ResultFileManager::collectNameIndices(const IDList& ids, bool moduleName, int *outArray, int n, StringVector& namesOut) const
+{
+    READER_MUTEX
+    if (n != ids.size())
+        throw opp_runtime_error("ResultFileManager::collectNameIndices(): array size does not match IDList size");
+
+    std::unordered_map<const std::string*,int> indexOf;  // all strings are stringpooled, so we can use pointers as keys
+    namesOut.clear();
+    ScalarResult buffer;
+    const std::string *lastName = nullptr;
+    int lastIndex = -1;
+    for (int i = 0; i < n; i++) {
+        const ResultItem *item = getItem(ids.get(i), buffer);
+        const std::string *name = moduleName ? &item->getModuleName() : &item->getName();
+        if (name != lastName) {
+            auto it = indexOf.find(name);
+            if (it == indexOf.end()) {
+                it = indexOf.insert(std::make_pair(name, (int)namesOut.size())).first;
+                namesOut.push_back(*name);
+            }
+            lastName = name;
+            lastIndex = it->second;
+        }
+        outArray[i] = lastIndex;
+    }
+}
+
+void ResultFileManager::getItemPropertyIndices(const IDList& ids, const char *propertyName, int *outArray, int n, StringVector& valuesOut) const
+{
+    READER_MUTEX
+    if (n != ids.size())
+        throw opp_runtime_error("ResultFileManager::getItemPropertyIndices(): array size does not match IDList size");
+
+    // values are not necessarily pooled (e.g. run attributes), so look them up by content
+    std::unordered_map<std::string,int> indexOf;
+    valuesOut.clear();
+    std::string lastValue;
+    int lastIndex = -1;
+    for (int i = 0; i < n; i++) {
+        const char *value = getItemProperty(ids.get(i), propertyName);
+        if (lastIndex == -1 || lastValue != value) {
+            lastValue = value;
+            auto it = indexOf.find(lastValue);
+            if (it == indexOf.end()) {
+                it = indexOf.insert(std::make_pair(lastValue, (int)valuesOut.size())).first;
+                valuesOut.push_back(lastValue);
+            }
+            lastIndex = it->second;
+        }
+        outArray[i] = lastIndex;
+    }
+}
+
 StringSet ResultFileManager::getUniqueModuleAndResultNamePairs(const IDList& ids) const
 {
     READER_MUTEX
@@ -1371,6 +1434,131 @@ void ResultFileManager::unloadFile(ResultFile *file)
     delete file;
 }
 
+bool ResultFileManager::isFileUpToDate(const char *displayName, const char *fileSystemFileName) const
+{
+    READER_MUTEX
+
+    ResultFile *file = getFile(displayName);
+    if (file == nullptr)
+        return false;
+    if (fileSystemFileName == nullptr)
+        fileSystemFileName = displayName;
+    return file->fingerprint == readFileFingerprint(fileSystemFileName);
+}
+
+template <typename T>
+void ResultFileManager::rebindItems(std::vector<T>& items, FileRun *fileRun)
+{
+    // re-pool strings and attributes in this instance, as the staging instance will be deleted
+    for (T& item : items) {
+        item.fileRunRef = fileRun;
+        item.moduleNameRef = moduleNames.insert(*item.moduleNameRef);
+        item.nameRef = names.insert(*item.nameRef);
+        item.setAttributes(*item.attributes);
+    }
+}
+
+ResultFile *ResultFileManager::adoptFile(ResultFileManager *staging, ResultFile *file)
+{
+    WRITER_MUTEX
+#ifdef THREADED
+    Mutex __staging_writer_mutex_(staging->getWriteLock());
+#endif
+
+    if (staging == this || file->resultFileManager != staging)
+        throw opp_runtime_error("ResultFileManager::adoptFile(): file does not belong to the given staging instance");
+
+    // check that runs also present in other loaded files agree on run attributes and
+    // iteration variables (same as in the loaders); do it before modifying anything
+    ResultFile *oldFile = getFile(file->getFilePath().c_str());
+    for (FileRun *stagedFileRun : file->fileRuns) {
+        Run *stagedRun = stagedFileRun->runRef;
+        Run *run = getRunByName(stagedRun->getRunName().c_str());
+        if (!run)
+            continue;
+        bool onlyInOldFile = true;
+        for (FileRun *fileRun : run->fileRuns)
+            if (fileRun->fileRef != oldFile)
+                onlyInOldFile = false;
+        if (onlyInOldFile)
+            continue; // the run goes away together with the old version of the file
+        for (auto& pair : stagedRun->attributes) {
+            StringMap::const_iterator oldPairRef = run->attributes.find(pair.first);
+            if (oldPairRef != run->attributes.end() && oldPairRef->second != pair.second)
+                throw opp_runtime_error("ResultFileManager::adoptFile(): value of run attribute '%s' in run '%s' of file '%s' conflicts with previously loaded value",
+                        pair.first.c_str(), run->getRunName().c_str(), file->getFilePath().c_str());
+        }
+        for (auto& pair : stagedRun->itervars) {
+            StringMap::const_iterator oldPairRef = run->itervars.find(pair.first);
+            if (oldPairRef != run->itervars.end() && oldPairRef->second != pair.second)
+                throw opp_runtime_error("ResultFileManager::adoptFile(): value of iteration variable '%s' in run '%s' of file '%s' conflicts with previously loaded value",
+                        pair.first.c_str(), run->getRunName().c_str(), file->getFilePath().c_str());
+        }
+    }
+
+    serial++;
+    staging->serial++;
+
+    // replace the previously loaded version, if any
+    if (oldFile)
+        unloadFile(oldFile);
+
+    // move over the ResultFile object itself
+    staging->filesByDisplayName.erase(staging->filesByDisplayName.find(file->getFilePath()));
+    staging->fileList.erase(file);
+    FileRunList stagedFileRuns;
+    stagedFileRuns.swap(file->fileRuns);
+    file->resultFileManager = this;
+    fileList.insert(file);
+    filesByDisplayName[file->getFilePath()] = file;
+
+    // re-create FileRuns (their ids are positions in fileRunList), and move the results over into them
+    for (FileRun *stagedFileRun : stagedFileRuns) {
+        Run *stagedRun = stagedFileRun->runRef;
+        Run *run = getRunByName(stagedRun->getRunName().c_str());
+        if (!run) {
+            run = addRun(stagedRun->getRunName());
+            run->attributes = stagedRun->attributes;
+            run->itervars = stagedRun->itervars;
+            run->configEntries = stagedRun->configEntries;
+        }
+        else {
+            // values are consistent (checked above), just add the missing ones
+            run->attributes.insert(stagedRun->attributes.begin(), stagedRun->attributes.end());
+            run->itervars.insert(stagedRun->itervars.begin(), stagedRun->itervars.end());
+            if (run->configEntries.empty())
+                run->configEntries = stagedRun->configEntries;
+        }
+
+        FileRun *fileRun = addFileRun(file, run);
+        fileRun->scalarResults = std::move(stagedFileRun->scalarResults);
+        fileRun->parameterResults = std::move(stagedFileRun->parameterResults);
+        fileRun->vectorResults = std::move(stagedFileRun->vectorResults);
+        fileRun->statisticsResults = std::move(stagedFileRun->statisticsResults);
+        fileRun->histogramResults = std::move(stagedFileRun->histogramResults);
+        rebindItems(fileRun->scalarResults, fileRun);
+        rebindItems(fileRun->parameterResults, fileRun);
+        rebindItems(fileRun->vectorResults, fileRun);
+        rebindItems(fileRun->statisticsResults, fileRun);
+        rebindItems(fileRun->histogramResults, fileRun);
+
+        // remove the FileRun from the staging instance, together with its Run if it was the last one
+        staging->fileRunList[stagedFileRun->id] = nullptr;
+        FileRunList& runFileRuns = stagedRun->fileRuns;
+        auto it = find(runFileRuns, stagedFileRun);
+        assert(it != runFileRuns.end());
+        runFileRuns.erase(it);
+        if (runFileRuns.empty()) {
+            staging->runsByName.erase(staging->runsByName.find(stagedRun->getRunName()));
+            staging->runList.erase(stagedRun);
+            delete stagedRun;
+        }
+        delete stagedFileRun;
+    }
+
+    return file;
+}
+
 /*--------------------------------------------------------------------------
  *                        compute filter hints
  *--------------------------------------------------------------------------*/
@@ -212,6 +212,8 @@ class SCAVE_API ResultFileManager
 
     void fillFieldScalar(ScalarResult& scalar, ID id) const;
     const std::string *getPooledNameWithSuffix(const std::string *name, FieldNum fieldId) const;
+    void collectNameIndices(const IDList& ids, bool moduleName, int *outArray, int n, StringVector& namesOut) const;
+    template <typename T> void rebindItems(std::vector<T>& items, FileRun *fileRun);
     static const char *getNameSuffixForFieldScalar(FieldNum fieldId);
 
   public:
@@ -283,6 +285,12 @@ class SCAVE_API ResultFileManager
     IDListsByRun getPartitionByRun(const IDList& ids) const;
     IDListsByFile getPartitionByFile(const IDList& ids) const;
 
+    // bulk columnar access (for the IDE): fills outArray[i] with the index of the module name
+    // (resp. result name) of the ith ID within namesOut; n must be equal to ids.size()
+    void getModuleNameIndices(const IDList& ids, int *outArray, int n, StringVector& namesOut) const;
+    void getResultNameIndices(const IDList& ids, int *outArray, int n, StringVector& namesOut) const;
+    void getItemPropertyIndices(const IDList& ids, const char *propertyName, int *outArray, int n, StringVector& valuesOut) const; // like getItemProperty()
+
     // getting lists of data items
     IDList getItems(const FileRunList& fileRuns, int types, bool includeFields=false) const;
     IDList getItems(int types, bool includeFields=false) const {return getItems(fileRunList, types, includeFields);};
@@ -360,6 +368,11 @@ class SCAVE_API ResultFileManager
     void unloadFile(ResultFile *file);
     void unloadFile(const char *displayName);
 
+    // support for parallel loading: files may be loaded into separate "staging" instances (e.g. one
+    // per worker thread, without locking this one), and then moved over into this one with adoptFile()
+    bool isFileUpToDate(const char *displayName, const char *fileSystemFileName) const; // loaded and unchanged since
+    ResultFile *adoptFile(ResultFileManager *staging, ResultFile *stagedFile); // replaces the previously loaded version, if any; throws on run attribute/itervar conflicts
+
     bool isFileLoaded(const char *displayName) const;
     ResultFile *getFile(const char *displayName) const;
     Run *getRunByName(const char *runName) const;
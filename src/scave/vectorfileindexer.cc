@@ -17,6 +17,8 @@
 #include <sstream>
 #include <ostream>
 #include <cstdlib>
+#include <cstring>
+#include <algorithm>
 #include "common/opp_ctype.h"
 #include "common/stringutil.h"
 #include "common/filereader.h"
@@ -29,6 +31,7 @@
 #include "vectorfileindexer.h"
 #include "indexedvectorfilereader.h"
 #include "vectorfileindex.h"
+#include "filefingerprint.h"
 
 using namespace std;
 using namespace omnetpp::common;
@@ -54,21 +57,179 @@ static string createTempFileName(const string& baseFileName)
     return tmpFileName;
 }
 
+/**
+ * Parsing state for indexing a vector file. Lines may be fed to it in several
+ * rounds; the last block is only closed in finishBlock().
+ */
+class VectorFileIndexingState
+{
+  public:
+    using VectorInfo = VectorFileIndex::VectorInfo;
+    using Block = VectorFileIndex::Block;
+
+    std::string vectorFileName;
+    VectorFileIndex index;
+    VectorInfo *currentVectorRef = nullptr;
+    VectorInfo *lastVectorDecl = nullptr;
+    Block *currentBlock = new Block();
+    int numOfUnrecognizedLines = 0;
+
+  public:
+    VectorFileIndexingState(const char *vectorFileName) : vectorFileName(vectorFileName) {index.vectorFileName = vectorFileName;}
+    ~VectorFileIndexingState() {delete currentBlock;}
+    void processLine(char **tokens, int numTokens, int64_t lineNo, file_offset_t lineStartOffset);
+    void finishBlock(file_offset_t endOffset);
+};
+
+void VectorFileIndexingState::processLine(char **tokens, int numTokens, int64_t lineNo, file_offset_t lineStartOffset)
+{
+    const char *vectorFileName = this->vectorFileName.c_str();
+
+    if (numTokens == 0 || tokens[0][0] == '#')
+        return;
+    else if ((tokens[0][0] == 'r' && strcmp(tokens[0], "run") == 0) ||
+             (tokens[0][0] == 'c' && strcmp(tokens[0], "config") == 0) ||
+             (tokens[0][0] == 'p' && strcmp(tokens[0], "param") == 0) ||
+             (tokens[0][0] == 'i' && strcmp(tokens[0], "itervar") == 0))
+    {
+        index.run.parseLine(tokens, numTokens, vectorFileName, lineNo);
+    }
+    else if (tokens[0][0] == 'a' && strcmp(tokens[0], "attr") == 0) {
+        if (lastVectorDecl == nullptr) {  // run attribute
+            index.run.parseLine(tokens, numTokens, vectorFileName, lineNo);
+        }
+        else {  // vector attribute
+            if (numTokens < 3)
+                throw ResultFileFormatException("Vector file indexer: Missing attribute name or value", vectorFileName, lineNo);
+            lastVectorDecl->attributes[tokens[1]] = tokens[2];
+        }
+    }
+    else if (tokens[0][0] == 'v' && strcmp(tokens[0], "vector") == 0) {
+        if (numTokens < 4)
+            throw ResultFileFormatException("Vector file indexer: Broken vector declaration", vectorFileName, lineNo);
+
+        VectorInfo vector;
+        if (!parseInt(tokens[1], vector.vectorId))
+            throw ResultFileFormatException("Vector file indexer: Malformed vector in vector declaration", vectorFileName, lineNo);
+        vector.moduleName = tokens[2];
+        vector.name = tokens[3];
+        vector.columns = (numTokens < 5 || opp_isdigit(tokens[4][0]) ? "TV" : tokens[4]);
+        vector.blockSize = 0;
+
+        int currentVectorId = currentVectorRef != nullptr ? currentVectorRef->vectorId : -1; // remember id
+
+        index.addVector(vector);
+        lastVectorDecl = index.getVectorAt(index.getNumberOfVectors() - 1);
+
+        if (currentVectorRef != nullptr)
+            currentVectorRef = index.getVectorById(currentVectorId); // refresh currentVectorRef, as index.addVector() might have invalidated it due to std::vector reallocation
+    }
+    else if (tokens[0][0] == 'v' && strcmp(tokens[0], "version") == 0) {
+        int version;
+        if (numTokens < 2)
+            throw ResultFileFormatException("Vector file indexer: Missing version number", vectorFileName, lineNo);
+        if (!parseInt(tokens[1], version))
+            throw ResultFileFormatException("Vector file indexer: Version is not a number", vectorFileName, lineNo);
+        if (version != 2 && version != 3)
+            throw ResultFileFormatException("Vector file indexer: Expects version 2 or version 3", vectorFileName, lineNo);
+    }
+    else {  // data line
+        int vectorId;
+        simultime_t simTime;
+        double value;
+        eventnumber_t eventNum = -1;
+
+        if (!parseInt(tokens[0], vectorId)) {
+            numOfUnrecognizedLines++;
+            return;
+        }
+
+        if (currentVectorRef == nullptr || vectorId != currentVectorRef->vectorId) {
+            finishBlock(lineStartOffset);
+            currentBlock->startOffset = lineStartOffset;
+            currentVectorRef = index.getVectorById(vectorId);
+            if (currentVectorRef == nullptr)
+                throw ResultFileFormatException("Vector file indexer: Missing vector declaration", vectorFileName, lineNo);
+        }
+
+        for (int i = 0; i < (int)currentVectorRef->columns.size(); ++i) {
+            char column = currentVectorRef->columns[i];
+            if (i+1 >= numTokens)
+                throw ResultFileFormatException("Vector file indexer: Data line too short", vectorFileName, lineNo);
+
+            char *token = tokens[i+1];
+            switch (column) {
+                case 'T':
+                    if (!parseSimtime(token, simTime))
+                        throw ResultFileFormatException("Vector file indexer: Malformed simulation time", vectorFileName, lineNo);
+                    break;
+
+                case 'V':
+                    if (!parseDouble(token, value))
+                        throw ResultFileFormatException("Vector file indexer: Malformed data value", vectorFileName, lineNo);
+                    break;
+
+                case 'E':
+                    if (!parseInt64(token, eventNum))
+                        throw ResultFileFormatException("Vector file indexer: Malformed event number", vectorFileName, lineNo);
+                    break;
+            }
+        }
+
+        currentBlock->collect(eventNum, simTime, value);
+    }
+}
+
+void VectorFileIndexingState::finishBlock(file_offset_t endOffset)
+{
+    if (currentVectorRef == nullptr) {
+        Assert(currentBlock->getCount() == 0);
+        return;
+    }
+
+    currentBlock->size = (int64_t)(endOffset - currentBlock->startOffset);
+    if (currentBlock->size > currentVectorRef->blockSize)
+        currentVectorRef->blockSize = currentBlock->size;
+    currentVectorRef->addBlock(currentBlock);
+    index.addBlock(currentBlock);
+    currentBlock = new Block();
+    currentVectorRef = nullptr;
+}
+
+// generate index file: first write it to a temp file then rename it to .vci;
+// we do this in order to prevent race conditions from other processes/threads
+// reading an incomplete .vci file
+static void writeIndexFile(const VectorFileIndex& index, const char *vectorFileName)
+{
+    string indexFileName = IndexFileUtils::getIndexFileName(vectorFileName);
+    string tempIndexFileName = createTempFileName(indexFileName);
+
+    try {
+        IndexFileWriter writer(tempIndexFileName.c_str());
+        writer.writeAll(index);
+
+        // rename generated index file
+        if (unlink(indexFileName.c_str()) != 0 && errno != ENOENT)
+            throw opp_runtime_error("Cannot remove original index file '%s': %s", indexFileName.c_str(), strerror(errno));
+        if (rename(tempIndexFileName.c_str(), indexFileName.c_str()) != 0)
+            throw opp_runtime_error("Cannot rename index file from '%s' to '%s': %s", tempIndexFileName.c_str(), indexFileName.c_str(), strerror(errno));
+    }
+    catch (exception&) {
+        // if something wrong happened, we remove the temp files
+        unlink(indexFileName.c_str());
+        unlink(tempIndexFileName.c_str());
+        throw;
+    }
+}
+
 // TODO: adjacent blocks are merged
 void VectorFileIndexer::generateIndex(const char *vectorFileName, IProgressMonitor *monitor)
 {
     FileReader reader(vectorFileName);
     LineTokenizer tokenizer(1024);
-    VectorFileIndex index;
-    index.vectorFileName = vectorFileName;
+    VectorFileIndexingState state(vectorFileName);
 
     char *line;
-    char **tokens;
-    int64_t lineNo;
-    int numTokens, numOfUnrecognizedLines = 0;
-    VectorInfo *currentVectorRef = nullptr;
-    VectorInfo *lastVectorDecl = nullptr;
-    Block *currentBlock = new Block();
 
     int64_t onePercentFileSize = reader.getFileSize() / 100;
     int readPercentage = 0;
@@ -94,138 +255,17 @@ void VectorFileIndexer::generateIndex(const char *vectorFileName, IProgressMonit
             }
 
             tokenizer.tokenize(line, reader.getCurrentLineLength());
-            numTokens = tokenizer.numTokens();
-            tokens = tokenizer.tokens();
-            lineNo = reader.getNumReadLines();
-
-            if (numTokens == 0 || tokens[0][0] == '#')
-                continue;
-            else if ((tokens[0][0] == 'r' && strcmp(tokens[0], "run") == 0) ||
-                     (tokens[0][0] == 'c' && strcmp(tokens[0], "config") == 0) ||
-                     (tokens[0][0] == 'p' && strcmp(tokens[0], "param") == 0) ||
-                     (tokens[0][0] == 'i' && strcmp(tokens[0], "itervar") == 0))
-            {
-                index.run.parseLine(tokens, numTokens, vectorFileName, lineNo);
-            }
-            else if (tokens[0][0] == 'a' && strcmp(tokens[0], "attr") == 0) {
-                if (lastVectorDecl == nullptr) {  // run attribute
-                    index.run.parseLine(tokens, numTokens, vectorFileName, lineNo);
-                }
-                else {  // vector attribute
-                    if (numTokens < 3)
-                        throw ResultFileFormatException("Vector file indexer: Missing attribute name or value", vectorFileName, lineNo);
-                    lastVectorDecl->attributes[tokens[1]] = tokens[2];
-                }
-            }
-            else if (tokens[0][0] == 'v' && strcmp(tokens[0], "vector") == 0) {
-                if (numTokens < 4)
-                    throw ResultFileFormatException("Vector file indexer: Broken vector declaration", vectorFileName, lineNo);
-
-                VectorInfo vector;
-                if (!parseInt(tokens[1], vector.vectorId))
-                    throw ResultFileFormatException("Vector file indexer: Malformed vector in vector declaration", vectorFileName, lineNo);
-                vector.moduleName = tokens[2];
-                vector.name = tokens[3];
-                vector.columns = (numTokens < 5 || opp_isdigit(tokens[4][0]) ? "TV" : tokens[4]);
-                vector.blockSize = 0;
-
-                int currentVectorId = currentVectorRef != nullptr ? currentVectorRef->vectorId : -1; // remember id
-
-                index.addVector(vector);
-                lastVectorDecl = index.getVectorAt(index.getNumberOfVectors() - 1);
-
-                if (currentVectorRef != nullptr)
-                    currentVectorRef = index.getVectorById(currentVectorId); // refresh currentVectorRef, as index.addVector() might have invalidated it due to std::vector reallocation
-            }
-            else if (tokens[0][0] == 'v' && strcmp(tokens[0], "version") == 0) {
-                int version;
-                if (numTokens < 2)
-                    throw ResultFileFormatException("Vector file indexer: Missing version number", vectorFileName, lineNo);
-                if (!parseInt(tokens[1], version))
-                    throw ResultFileFormatException("Vector file indexer: Version is not a number", vectorFileName, lineNo);
-                if (version != 2 && version != 3)
-                    throw ResultFileFormatException("Vector file indexer: Expects version 2 or version 3", vectorFileName, lineNo);
-            }
-            else {  // data line
-                int vectorId;
-                simultime_t simTime;
-                double value;
-                eventnumber_t eventNum = -1;
-
-                if (!parseInt(tokens[0], vectorId)) {
-                    numOfUnrecognizedLines++;
-                    continue;
-                }
-
-                if (currentVectorRef == nullptr || vectorId != currentVectorRef->vectorId) {
-                    if (currentVectorRef != nullptr) {
-                        currentBlock->size = (int64_t)(reader.getCurrentLineStartOffset() - currentBlock->startOffset);
-                        if (currentBlock->size > currentVectorRef->blockSize)
-                            currentVectorRef->blockSize = currentBlock->size;
-                        currentVectorRef->addBlock(currentBlock);
-                        index.addBlock(currentBlock);
-                    }
-                    else {
-                        Assert(currentBlock->getCount() == 0);
-                        delete currentBlock;
-                    }
-
-                    currentBlock = new Block();
-                    currentBlock->startOffset = reader.getCurrentLineStartOffset();
-                    currentVectorRef = index.getVectorById(vectorId);
-                    if (currentVectorRef == nullptr)
-                        throw ResultFileFormatException("Vector file indexer: Missing vector declaration", vectorFileName, lineNo);
-                }
-
-                for (int i = 0; i < (int)currentVectorRef->columns.size(); ++i) {
-                    char column = currentVectorRef->columns[i];
-                    if (i+1 >= numTokens)
-                        throw ResultFileFormatException("Vector file indexer: Data line too short", vectorFileName, lineNo);
-
-                    char *token = tokens[i+1];
-                    switch (column) {
-                        case 'T':
-                            if (!parseSimtime(token, simTime))
-                                throw ResultFileFormatException("Vector file indexer: Malformed simulation time", vectorFileName, lineNo);
-                            break;
-
-                        case 'V':
-                            if (!parseDouble(token, value))
-                                throw ResultFileFormatException("Vector file indexer: Malformed data value", vectorFileName, lineNo);
-                            break;
-
-                        case 'E':
-                            if (!parseInt64(token, eventNum))
-                                throw ResultFileFormatException("Vector file indexer: Malformed event number", vectorFileName, lineNo);
-                            break;
-                    }
-                }
-
-                currentBlock->collect(eventNum, simTime, value);
-            }
+            state.processLine(tokenizer.tokens(), tokenizer.numTokens(), reader.getNumReadLines(), reader.getCurrentLineStartOffset());
         }
 
         // finish last block
-        if (currentBlock->getCount() == 0) {
-            delete currentBlock;
-            currentBlock = nullptr;
-        }
-        else {
-            Assert(currentVectorRef != nullptr);
-            currentBlock->size = (int64_t)(reader.getFileSize() - currentBlock->startOffset);
-            if (currentBlock->size > currentVectorRef->blockSize)
-                currentVectorRef->blockSize = currentBlock->size;
-            currentVectorRef->addBlock(currentBlock);
-            index.addBlock(currentBlock);
-            currentBlock = nullptr;
-        }
+        state.finishBlock(reader.getFileSize());
 
-        if (numOfUnrecognizedLines > 0) {
-            fprintf(stderr, "Found %d unrecognized lines in %s.\n", numOfUnrecognizedLines, vectorFileName);
+        if (state.numOfUnrecognizedLines > 0) {
+            fprintf(stderr, "Found %d unrecognized lines in %s.\n", state.numOfUnrecognizedLines, vectorFileName);
         }
     }
     catch (exception&) {
-        delete currentBlock;
         if (monitor)
             monitor->done();
         throw;
@@ -239,38 +279,104 @@ void VectorFileIndexer::generateIndex(const char *vectorFileName, IProgressMonit
             monitor->worked(100 - readPercentage);
     }
 
-    // generate index file: first write it to a temp file then rename it to .vci;
-    // we do this in order to prevent race conditions from other processes/threads
-    // reading an incomplete .vci file
-    string indexFileName = IndexFileUtils::getIndexFileName(vectorFileName);
-    string tempIndexFileName = createTempFileName(indexFileName);
-
     try {
-        IndexFileWriter writer(tempIndexFileName.c_str());
-        writer.writeAll(index);
-
+        writeIndexFile(state.index, vectorFileName);
         if (monitor)
             monitor->worked(10);
-
-        // rename generated index file
-        if (unlink(indexFileName.c_str()) != 0 && errno != ENOENT)
-            throw opp_runtime_error("Cannot remove original index file '%s': %s", indexFileName.c_str(), strerror(errno));
-        if (rename(tempIndexFileName.c_str(), indexFileName.c_str()) != 0)
-            throw opp_runtime_error("Cannot rename index file from '%s' to '%s': %s", tempIndexFileName.c_str(), indexFileName.c_str(), strerror(errno));
     }
     catch (exception&) {
         if (monitor)
             monitor->done();
-
-        // if something wrong happened, we remove the temp files
-        unlink(indexFileName.c_str());
-        unlink(tempIndexFileName.c_str());
         throw;
     }
     if (monitor)
         monitor->done();
 }
 
+TailingVectorFileIndexer::TailingVectorFileIndexer(const char *filename) : vectorFileName(filename)
+{
+    state = new VectorFileIndexingState(filename);
+}
+
+TailingVectorFileIndexer::~TailingVectorFileIndexer()
+{
+    delete state;
+}
+
+// returns the offset after the last newline in [from, fileSize), or 'from' if there is none
+static int64_t findEndOfLastCompleteLine(const char *fileName, int64_t from, int64_t fileSize)
+{
+    FILE *f = fopen(fileName, "rb");
+    if (!f)
+        throw opp_runtime_error("Cannot open '%s' for read: %s", fileName, strerror(errno));
+    char buffer[4096];
+    int64_t end = fileSize;
+    int64_t result = from;
+    while (end > from) {
+        int64_t start = std::max(from, end - (int64_t)sizeof(buffer));
+        size_t len = (size_t)(end - start);
+        if (opp_fseek(f, start, SEEK_SET) != 0 || fread(buffer, 1, len, f) != len)
+            break; // treat as no complete line yet
+        size_t i = len;
+        while (i > 0 && buffer[i-1] != '\n')
+            i--;
+        if (i > 0) {
+            result = start + i;
+            break;
+        }
+        end = start;
+    }
+    fclose(f);
+    return result;
+}
+
+bool TailingVectorFileIndexer::update()
+{
+    FileFingerprint fingerprint = readFileFingerprint(vectorFileName.c_str());
+    if (fingerprint.fileSize < processedUpTo)
+        throw opp_runtime_error("Vector file '%s' was truncated while being indexed", vectorFileName.c_str());
+
+    int64_t end = findEndOfLastCompleteLine(vectorFileName.c_str(), processedUpTo, fingerprint.fileSize);
+    bool hasNewLines = end > processedUpTo;
+
+    if (hasNewLines) {
+        FileReader reader(vectorFileName.c_str());
+        reader.setCheckFileForChanges(false); // we know it is being appended to
+        reader.seekTo(processedUpTo);
+        LineTokenizer tokenizer(1024);
+        char *line;
+        while ((line = reader.getNextLineBufferPointer()) != nullptr) {
+            file_offset_t lineStartOffset = reader.getCurrentLineStartOffset();
+            if (lineStartOffset >= end)
+                break;
+            tokenizer.tokenize(line, reader.getCurrentLineLength());
+            state->processLine(tokenizer.tokens(), tokenizer.numTokens(), ++numLines, lineStartOffset);
+        }
+        processedUpTo = end;
+    }
+
+    // record the fingerprint only if we have seen the whole file, so that an index written
+    // from a partially processed file is not mistaken for an up-to-date one
+    state->index.fingerprint = (end == fingerprint.fileSize) ? fingerprint : FileFingerprint();
+    return hasNewLines;
+}
+
+void TailingVectorFileIndexer::writeIndex()
+{
+    // close the current block so that it gets into the index; if the same vector
+    // continues, its further data will go into a new block
+    state->finishBlock(processedUpTo);
+
+    if (state->index.fingerprint.isEmpty()) {
+        // file not fully processed: write a fingerprint that is never up to date
+        FileFingerprint fingerprint;
+        fingerprint.fileSize = processedUpTo;
+        fingerprint.lastModified = -1;
+        state->index.fingerprint = fingerprint;
+    }
+    writeIndexFile(state->index, vectorFileName.c_str());
+}
+
 }  // namespace scave
 }  // namespace omnetpp
 
@@ -37,6 +37,49 @@ class SCAVE_API VectorFileIndexer
         void generateIndex(const char *filename, IProgressMonitor *monitor = nullptr);
 };
 
+class VectorFileIndexingState;
+
+/**
+ * Indexes an output vector file (.vec) while it is still being written, e.g. by
+ * a running simulation. Every update() call processes the lines appended since
+ * the previous call (only complete lines, i.e. up to the last newline), and
+ * writeIndex() writes the index file (.vci) of the data processed so far. This
+ * way the index is ready soon after the vector file is finished, without
+ * having to read the whole file again.
+ */
+class SCAVE_API TailingVectorFileIndexer
+{
+    private:
+        VectorFileIndexingState *state;
+        std::string vectorFileName;
+        int64_t processedUpTo = 0; // file offset; always at a line start
+        int64_t numLines = 0;
+
+    public:
+        TailingVectorFileIndexer(const char *filename);
+        TailingVectorFileIndexer(const TailingVectorFileIndexer&) = delete;
+        ~TailingVectorFileIndexer();
+
+        /**
+         * Processes the complete lines appended to the file since the previous call.
+         * Returns true if there were any. Throws an error if the file content is
+         * invalid, or the file was truncated (e.g. overwritten by a new run).
+         */
+        bool update();
+
+        /**
+         * Writes the index file for the data processed so far. The index file is
+         * only considered up to date if the vector file has not changed since
+         * the last update() call.
+         */
+        void writeIndex();
+
+        /**
+         * Returns the number of bytes of the vector file processed so far.
+         */
+        int64_t getNumProcessedBytes() const {return processedUpTo;}
+};
+
 }  // namespace scave
 }  // namespace omnetpp
 
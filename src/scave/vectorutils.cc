@@ -16,6 +16,10 @@
 #include "vectorutils.h"
 
 #include <set>
+#include <memory>
+#include <cmath>
+#include <algorithm>
+#include <functional>
 #include "common/opp_ctype.h"
 #include "common/commonutil.h"
 #include "common/stringutil.h"
@@ -35,23 +39,15 @@ namespace omnetpp {
 using namespace common;
 namespace scave {
 
-vector<XYArray *> readVectorsIntoArrays(ResultFileManager *manager, const IDList& idlist, bool includePreciseX, bool includeEventNumbers, size_t memoryLimitBytes, double simTimeStart, double simTimeEnd, InterruptedFlag *interrupted)
-{
-    std::vector<XYArray *> result;
-    result.resize(idlist.size());
-
-    for (int i = 0; i < result.size(); ++i) {
-        result[i] = new XYArray();
-        // TODO: reserve vectors, only those that are needed, taking time limit into account
-    }
-
-    size_t memoryUsedBytes = 0;
+typedef std::function<void (int index, const std::vector<VectorDatum>& data)> VectorDataConsumer;
 
+// Reads the data of the vectors in the IDList file by file, and passes them to the
+// consumer in chunks, along with the index of the vector in the IDList
+static void readVectorData(ResultFileManager *manager, const IDList& idlist, bool includeEventNumbers, double simTimeStart, double simTimeEnd, InterruptedFlag *interrupted, const VectorDataConsumer& consumer)
+{
     ResultFileList filteredVectorFileList = manager->getUniqueFiles(idlist);
 
-    StringMap attrs;
     for (ResultFile *resultFile : filteredVectorFileList) {
-        std::vector<int> vectorIds; // local to each file
         RunList runs = manager->getRunsInFile(resultFile);
 
         if (runs.size() > 1)
@@ -70,22 +66,8 @@ vector<XYArray *> readVectorsIntoArrays(ResultFileManager *manager, const IDList
             vectorIdToIndex[vectorID] = idlist.indexOf(id);
         }
 
-        const int elementSize = sizeof(double) + sizeof(double) + (includePreciseX ? sizeof(BigDecimal) : 0) + (includeEventNumbers ? sizeof(eventnumber_t) : 0);
-
         auto adapter = [&](int vectorId, const std::vector<VectorDatum>& data) {
-            memoryUsedBytes += data.size() * elementSize;
-            if (memoryUsedBytes > memoryLimitBytes)
-                throw opp_runtime_error("Memory limit exceeded during vector data loading");
-
-            XYArray *array = result[vectorIdToIndex.at(vectorId)];
-            for (const VectorDatum &vd : data) {
-                array->xs.push_back(vd.simtime.dbl());
-                array->ys.push_back(vd.value);
-                if (includePreciseX)
-                    array->xps.push_back(vd.simtime);
-                if (includeEventNumbers)
-                    array->ens.push_back(vd.eventNumber);
-            }
+            consumer(vectorIdToIndex.at(vectorId), data);
 
             if (interrupted != nullptr && interrupted->flag)
                 throw InterruptedException("Vector loading interrupted");
@@ -106,15 +88,185 @@ vector<XYArray *> readVectorsIntoArrays(ResultFileManager *manager, const IDList
         }
         catch (std::exception &e) {
             delete reader;
+            throw;
+        }
+    }
+}
 
-            for (XYArray *a : result)
-                delete a;
-            result.clear();
-            result.shrink_to_fit();
-            malloc_trim(); // TODO needed? effective?
+static void deleteArrays(std::vector<XYArray *>& result)
+{
+    for (XYArray *a : result)
+        delete a;
+    result.clear();
+    result.shrink_to_fit();
+    malloc_trim(); // TODO needed? effective?
+}
 
-            throw;
+vector<XYArray *> readVectorsIntoArrays(ResultFileManager *manager, const IDList& idlist, bool includePreciseX, bool includeEventNumbers, size_t memoryLimitBytes, double simTimeStart, double simTimeEnd, InterruptedFlag *interrupted)
+{
+    std::vector<XYArray *> result;
+    result.resize(idlist.size());
+
+    for (int i = 0; i < result.size(); ++i) {
+        result[i] = new XYArray();
+        // TODO: reserve vectors, only those that are needed, taking time limit into account
+    }
+
+    size_t memoryUsedBytes = 0;
+    const int elementSize = sizeof(double) + sizeof(double) + (includePreciseX ? sizeof(BigDecimal) : 0) + (includeEventNumbers ? sizeof(eventnumber_t) : 0);
+
+    auto consumer = [&](int index, const std::vector<VectorDatum>& data) {
+        memoryUsedBytes += data.size() * elementSize;
+        if (memoryUsedBytes > memoryLimitBytes)
+            throw opp_runtime_error("Memory limit exceeded during vector data loading");
+
+        XYArray *array = result[index];
+        for (const VectorDatum &vd : data) {
+            array->xs.push_back(vd.simtime.dbl());
+            array->ys.push_back(vd.value);
+            if (includePreciseX)
+                array->xps.push_back(vd.simtime);
+            if (includeEventNumbers)
+                array->ens.push_back(vd.eventNumber);
+        }
+    };
+
+    try {
+        readVectorData(manager, idlist, includeEventNumbers, simTimeStart, simTimeEnd, interrupted, consumer);
+    }
+    catch (std::exception &e) {
+        deleteArrays(result);
+        throw;
+    }
+
+    return result;
+}
+
+VectorDecimator::VectorDecimator(XYArray *target, double xmin, double xmax, size_t maxPoints) : target(target), maxPoints(maxPoints), xmin(xmin)
+{
+    numBuckets = std::max((size_t)1, maxPoints / 4);
+    bucketWidth = (xmax > xmin && std::isfinite(xmax - xmin)) ? (xmax - xmin) / numBuckets : 0;
+}
+
+void VectorDecimator::add(double x, double y)
+{
+    Point point{x, y, numInputPoints++};
+    if (decimating)
+        addToBucket(point);
+    else {
+        pending.push_back(point);
+        if (pending.size() > maxPoints) {
+            decimating = true;
+            for (const Point& p : pending)
+                addToBucket(p);
+            pending.clear();
+            pending.shrink_to_fit();
+        }
+    }
+}
+
+void VectorDecimator::addToBucket(const Point& point)
+{
+    int bucket = bucketWidth == 0 ? 0 : (int)std::min((double)(numBuckets - 1), std::max(0.0, std::floor((point.x - xmin) / bucketWidth)));
+    if (bucket != currentBucket) {
+        if (currentBucket != -1)
+            emitBucket();
+        currentBucket = bucket;
+        first = last = min = max = point;
+        return;
+    }
+    last = point;
+    // note: NaNs never become the min/max (unless all points are NaN so far), infinities do
+    if (!std::isnan(point.y) && (std::isnan(min.y) || point.y < min.y))
+        min = point;
+    if (!std::isnan(point.y) && (std::isnan(max.y) || point.y > max.y))
+        max = point;
+}
+
+void VectorDecimator::emitBucket()
+{
+    Point points[4] = {first, min, max, last};
+    std::sort(points, points+4, [](const Point& a, const Point& b) {return a.seq < b.seq;});
+    for (int i = 0; i < 4; i++) {
+        if (i > 0 && points[i].seq == points[i-1].seq)
+            continue;
+        target->xs.push_back(points[i].x);
+        target->ys.push_back(points[i].y);
+    }
+}
+
+void VectorDecimator::flush()
+{
+    if (!decimating) {
+        for (const Point& p : pending) {
+            target->xs.push_back(p.x);
+            target->ys.push_back(p.y);
         }
+        pending.clear();
+    }
+    else if (currentBucket != -1)
+        emitBucket();
+    currentBucket = -1;
+}
+
+vector<XYArray *> readDecimatedVectorsIntoArrays(ResultFileManager *manager, const IDList& idlist, size_t maxPointsPerVector, size_t memoryLimitBytes, double simTimeStart, double simTimeEnd, InterruptedFlag *interrupted, std::vector<bool> *decimatedFlags)
+{
+    int n = idlist.size();
+    std::vector<XYArray *> result(n);
+    std::vector<std::unique_ptr<VectorDecimator>> decimators(n);
+
+    for (int i = 0; i < n; ++i) {
+        result[i] = new XYArray();
+        const VectorResult *vector = manager->getVector(idlist.get(i));
+        if (vector->getStatistics().getCount() > (int64_t)maxPointsPerVector) {
+            // note: bucket boundaries must be known in advance, so take them from the index
+            double xmin = std::max(simTimeStart, vector->getStartTime().dbl());
+            double xmax = std::min(simTimeEnd, vector->getEndTime().dbl());
+            decimators[i].reset(new VectorDecimator(result[i], xmin, xmax, maxPointsPerVector));
+        }
+    }
+
+    // decimated vectors take at most maxPointsPerVector points each
+    const int elementSize = 2 * sizeof(double);
+    size_t memoryUsedBytes = 0;
+    for (int i = 0; i < n; ++i)
+        if (decimators[i])
+            memoryUsedBytes += maxPointsPerVector * elementSize;
+
+    auto consumer = [&](int index, const std::vector<VectorDatum>& data) {
+        XYArray *array = result[index];
+        VectorDecimator *decimator = decimators[index].get();
+        if (decimator) {
+            for (const VectorDatum &vd : data)
+                decimator->add(vd.simtime.dbl(), vd.value);
+            // note: the decimator holds at most maxPointsPerVector points, so no need to count
+        }
+        else {
+            for (const VectorDatum &vd : data) {
+                array->xs.push_back(vd.simtime.dbl());
+                array->ys.push_back(vd.value);
+            }
+            memoryUsedBytes += data.size() * elementSize;
+        }
+        if (memoryUsedBytes > memoryLimitBytes)
+            throw opp_runtime_error("Memory limit exceeded during vector data loading");
+    };
+
+    try {
+        readVectorData(manager, idlist, false, simTimeStart, simTimeEnd, interrupted, consumer);
+    }
+    catch (std::exception &e) {
+        deleteArrays(result);
+        throw;
+    }
+
+    if (decimatedFlags)
+        decimatedFlags->resize(n);
+    for (int i = 0; i < n; ++i) {
+        if (decimators[i])
+            decimators[i]->flush();
+        if (decimatedFlags)
+            (*decimatedFlags)[i] = decimators[i] && decimators[i]->isDecimated();
     }
 
     return result;
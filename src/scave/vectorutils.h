@@ -31,6 +31,54 @@ namespace scave {
  */
 SCAVE_API std::vector<XYArray *> readVectorsIntoArrays(ResultFileManager *manager, const IDList& idlist, bool includePreciseX, bool includeEventNumbers, size_t memoryLimitBytes = std::numeric_limits<size_t>::max(), double simTimeStart = -INFINITY, double simTimeEnd = INFINITY, InterruptedFlag *interrupted=nullptr);
 
+/**
+ * Reduces a stream of (x,y) points (with nondecreasing x) into an XYArray of
+ * at most maxPoints points, for plotting. The [xmin,xmax] interval is divided
+ * into maxPoints/4 equal buckets, and from each bucket, the first, the last,
+ * the minimum and the maximum points are kept, in their original order. A line
+ * plot of the result looks identical to that of the full data as long as there
+ * are at least as many buckets as horizontal pixels. Points are processed as
+ * they arrive, so the full data never needs to be in memory. If there are at
+ * most maxPoints points in total, they are all kept. NaN values are ignored
+ * when looking for the minimum and maximum (so they only survive as the first
+ * or last point of a bucket), while infinite values are kept as extremes.
+ * Note that a maxPoints below 4 still means one bucket of up to 4 points.
+ */
+class SCAVE_API VectorDecimator
+{
+  private:
+    struct Point {double x, y; int64_t seq;};
+    XYArray *target;
+    size_t maxPoints;
+    double xmin, bucketWidth;
+    int numBuckets;
+    std::vector<Point> pending; // until more than maxPoints points arrive, they are just collected
+    bool decimating = false;
+    int currentBucket = -1;
+    Point first, last, min, max;
+    int64_t numInputPoints = 0;
+
+    void addToBucket(const Point& point);
+    void emitBucket();
+
+  public:
+    VectorDecimator(XYArray *target, double xmin, double xmax, size_t maxPoints);
+    void add(double x, double y);
+    void flush(); // must be called after the last add()
+    int64_t getNumInputPoints() const {return numInputPoints;}
+    bool isDecimated() const {return decimating;}
+};
+
+/**
+ * Like readVectorsIntoArrays(), but the data of each vector is reduced to at most
+ * maxPointsPerVector points using VectorDecimator, while the vector files are
+ * being read. Vectors that have at most maxPointsPerVector values are returned
+ * in full resolution. If decimatedFlags is not null, it is filled with whether
+ * each vector was actually decimated, i.e. whether re-reading a narrower time
+ * interval may yield more detail.
+ */
+SCAVE_API std::vector<XYArray *> readDecimatedVectorsIntoArrays(ResultFileManager *manager, const IDList& idlist, size_t maxPointsPerVector, size_t memoryLimitBytes = std::numeric_limits<size_t>::max(), double simTimeStart = -INFINITY, double simTimeEnd = INFINITY, InterruptedFlag *interrupted=nullptr, std::vector<bool> *decimatedFlags=nullptr);
+
 /**
   * This class simply wraps the std::vector<XYArray *> to make it usable from Java.
  */
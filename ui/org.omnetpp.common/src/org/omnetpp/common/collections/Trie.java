@@ -1,5 +1,7 @@
 package org.omnetpp.common.collections;
 
+import java.util.Collection;
+
 /**
  * Trie implementation (see http://en.wikipedia.org/wiki/Trie).
  *
@@ -73,6 +75,54 @@ public class Trie<V> {
         return node != null ? node.value : null;
     }
 
+    /**
+     * Returns the value associated with exactly the given key, or null.
+     */
+    public V get(String key)
+    {
+        Node<V> node = findNode(key);
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Adds the values of all keys that start with the given prefix to the
+     * result collection. The cost is proportional to the length of the prefix
+     * plus the size of the subtree under it.
+     */
+    public void collectValuesWithPrefix(String prefix, Collection<? super V> result)
+    {
+        Node<V> node = findNode(prefix);
+        if (node != null)
+            collectValues(node, result);
+    }
+
+    private Node<V> findNode(String key)
+    {
+        int len = key.length();
+        Node<V> node = root;
+
+        for (int i = 0; i < len; i++)
+        {
+            char ch = key.charAt(i);
+            if (ch < START || ch >= END || node.links == null)
+                return null;
+            node = node.links[ch-START];
+            if (node == null)
+                return null;
+        }
+        return node;
+    }
+
+    private void collectValues(Node<V> node, Collection<? super V> result)
+    {
+        if (node.value != null)
+            result.add(node.value);
+        if (node.links != null)
+            for (Node<V> child : node.links)
+                if (child != null)
+                    collectValues(child, result);
+    }
+
     public String toDebugString() {
         StringBuilder sb = new StringBuilder();
         sb.append("{");
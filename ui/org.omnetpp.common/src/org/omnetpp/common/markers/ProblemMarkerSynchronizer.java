@@ -144,6 +144,18 @@ public class ProblemMarkerSynchronizer {
         markerTable.get(file).add(markerData);
     }
 
+    /**
+     * Adds the files and would-be markers collected by another synchronizer
+     * to this one. This allows several threads to collect markers into their
+     * own synchronizers, and merge them before synchronization.
+     */
+    public void addAll(ProblemMarkerSynchronizer other) {
+        for (Map.Entry<IResource, List<MarkerData>> entry : other.markerTable.entrySet()) {
+            register(entry.getKey());
+            markerTable.get(entry.getKey()).addAll(entry.getValue());
+        }
+    }
+
     public String getBaseMarkerType() {
         return markerBaseType;
     }
@@ -25,6 +25,12 @@ namespace omnetpp { namespace scave {
     return (int)(h ^ (h>>>32));
   }
 
+  public long[] toArray() {
+      long[] array = new long[size()];
+      toArray(array);
+      return array;
+  }
+
   @Override
   public String toString() {
       String result = "IDList of size " + size() + ", first elements: ";
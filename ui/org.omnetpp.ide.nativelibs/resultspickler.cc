@@ -27,12 +27,20 @@ using namespace omnetpp::common;
 namespace omnetpp {
 namespace scave {
 
-std::pair<ShmSendBufferPtr, ShmSendBufferPtr> ResultsPickler::readVectorIntoShm(const ID& id, double simTimeStart, double simTimeEnd)
+std::pair<ShmSendBufferPtr, ShmSendBufferPtr> ResultsPickler::readVectorIntoShm(const ID& id, double simTimeStart, double simTimeEnd, int maxPoints, bool *decimated)
 {
     size_t memoryLimitBytes = getSizeLimit();
     IDList vectorList(id);
 
-    std::vector<XYArray *> vectorData = readVectorsIntoArrays(rfm, vectorList, false, false, memoryLimitBytes, simTimeStart, simTimeEnd, interrupted);
+    std::vector<XYArray *> vectorData;
+    if (maxPoints < 0)
+        vectorData = readVectorsIntoArrays(rfm, vectorList, false, false, memoryLimitBytes, simTimeStart, simTimeEnd, interrupted);
+    else {
+        std::vector<bool> decimatedFlags;
+        vectorData = readDecimatedVectorsIntoArrays(rfm, vectorList, maxPoints, memoryLimitBytes, simTimeStart, simTimeEnd, interrupted, &decimatedFlags);
+        if (decimated)
+            *decimated = decimatedFlags[0];
+    }
     // ASSERT(vectorData.size() == 1);
     auto array = std::unique_ptr<XYArray>(vectorData[0]);
     size_t size = array->length() * sizeof(double);
@@ -351,14 +359,14 @@ ShmSendBufferPtr ResultsPickler::getScalarsPickle(const char *filterExpression,
     }
 }
 
-std::vector<ShmSendBufferPtr> ResultsPickler::getVectorsPickle(const char *filterExpression, bool includeAttrs, double simTimeStart, double simTimeEnd)
+std::vector<ShmSendBufferPtr> ResultsPickler::getVectorsPickle(const char *filterExpression, bool includeAttrs, double simTimeStart, double simTimeEnd, int maxPointsPerVector)
 {
     if (opp_isempty(filterExpression))
-        return getVectorsPickle(IDList(), includeAttrs, simTimeStart, simTimeEnd);
+        return getVectorsPickle(IDList(), includeAttrs, simTimeStart, simTimeEnd, maxPointsPerVector);
     else {
         IDList allVectors = rfm->getAllVectors();
         IDList vectors = rfm->filterIDList(allVectors, filterExpression, -1, interrupted);
-        return getVectorsPickle(vectors, includeAttrs, simTimeStart, simTimeEnd);
+        return getVectorsPickle(vectors, includeAttrs, simTimeStart, simTimeEnd, maxPointsPerVector);
     }
 }
 
@@ -435,7 +443,7 @@ ShmSendBufferPtr ResultsPickler::getScalarsPickle(const IDList& scalars, bool in
 }
 
 
-std::vector<ShmSendBufferPtr> ResultsPickler::getVectorsPickle(const IDList& vectors, bool includeAttrs, double simTimeStart, double simTimeEnd)
+std::vector<ShmSendBufferPtr> ResultsPickler::getVectorsPickle(const IDList& vectors, bool includeAttrs, double simTimeStart, double simTimeEnd, int maxPointsPerVector)
 {
     size_t sizeLimit = getSizeLimit();
     ShmPickler p(shmManager->create("vectors", 0, true), sizeLimit);
@@ -455,12 +463,14 @@ std::vector<ShmSendBufferPtr> ResultsPickler::getVectorsPickle(const IDList& vec
         p.pushString(result->getModuleName());
         p.pushString(result->getName());
 
-        auto shmBuffers = readVectorIntoShm(vectors.get(i), simTimeStart, simTimeEnd);
+        bool decimated = false;
+        auto shmBuffers = readVectorIntoShm(vectors.get(i), simTimeStart, simTimeEnd, maxPointsPerVector, &decimated);
 
         p.pushInt(buffers.size());
         buffers.push_back(shmBuffers.first); // vectime
         p.pushInt(buffers.size());
         buffers.push_back(shmBuffers.second); // vecvalue
+        p.pushBool(decimated);
 
         p.endTuple();
 
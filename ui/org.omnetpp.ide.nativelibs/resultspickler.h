@@ -42,7 +42,7 @@ protected:
 
     size_t getSizeLimit(); // available space, based on free physical memory
 
-    std::pair<ShmSendBufferPtr, ShmSendBufferPtr> readVectorIntoShm(const ID& id, double simTimeStart = -INFINITY, double simTimeEnd = INFINITY);
+    std::pair<ShmSendBufferPtr, ShmSendBufferPtr> readVectorIntoShm(const ID& id, double simTimeStart = -INFINITY, double simTimeEnd = INFINITY, int maxPoints = -1, bool *decimated = nullptr);
 
     void pickleResultAttrs(Pickler& p, const IDList& resultIDs, bool onlyUnit);
 
@@ -53,13 +53,13 @@ public:
     ShmSendBufferPtrVector getCsvResultsPickle(const IDList& results, std::vector<std::string> rowTypes, bool omitUnusedColumns, double simTimeStart, double simTimeEnd);
 
     ShmSendBufferPtr getScalarsPickle(const char *filterExpression, bool includeAttrs, bool includeFields);
-    ShmSendBufferPtrVector getVectorsPickle(const char *filterExpression, bool includeAttrs, double simTimeStart, double simTimeEnd);
+    ShmSendBufferPtrVector getVectorsPickle(const char *filterExpression, bool includeAttrs, double simTimeStart, double simTimeEnd, int maxPointsPerVector = -1);
     ShmSendBufferPtr getStatisticsPickle(const char *filterExpression, bool includeAttrs);
     ShmSendBufferPtr getHistogramsPickle(const char *filterExpression, bool includeAttrs);
     ShmSendBufferPtr getParamValuesPickle(const char *filterExpression, bool includeAttrs);
 
     ShmSendBufferPtr getScalarsPickle(const IDList& scalars, bool includeAttrs);
-    ShmSendBufferPtrVector getVectorsPickle(const IDList& vectors, bool includeAttrs, double simTimeStart, double simTimeEnd);
+    ShmSendBufferPtrVector getVectorsPickle(const IDList& vectors, bool includeAttrs, double simTimeStart, double simTimeEnd, int maxPointsPerVector = -1); // maxPointsPerVector=-1: full resolution
     ShmSendBufferPtr getStatisticsPickle(const IDList& statistics, bool includeAttrs);
     ShmSendBufferPtr getHistogramsPickle(const IDList& histograms, bool includeAttrs);
     ShmSendBufferPtr getParamValuesPickle(const IDList& params, bool includeAttrs);
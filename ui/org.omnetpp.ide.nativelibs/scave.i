@@ -245,6 +245,39 @@ namespace omnetpp { namespace scave {
 %typemap(jstype) (int *array, int n) "int[]"
 %typemap(javain) (int *array, int n) "$javainput"
 
+//
+// The following code is for ResultFileManager::getModuleNameIndices() and similar
+// methods that fill a caller-allocated int[] (contents are copied back on release):
+//
+%typemap(in) (int *outArray, int n) {
+    $2 = jenv->GetArrayLength($input);
+    $1 = (int *)jenv->GetIntArrayElements($input, 0);
+}
+
+%typemap(freearg) (int *outArray, int n) {
+    jenv->ReleaseIntArrayElements($input, (jint *)$1, 0);
+}
+
+%typemap(jni)    (int *outArray, int n) "jintArray"
+%typemap(jtype)  (int *outArray, int n) "int[]"
+%typemap(jstype) (int *outArray, int n) "int[]"
+%typemap(javain) (int *outArray, int n) "$javainput"
+
+// the same for IDList::toArray()
+%typemap(in) (omnetpp::scave::ID *outArray, int n) {
+    $2 = jenv->GetArrayLength($input);
+    $1 = (omnetpp::scave::ID *)jenv->GetLongArrayElements($input, 0);
+}
+
+%typemap(freearg) (omnetpp::scave::ID *outArray, int n) {
+    jenv->ReleaseLongArrayElements($input, (jlong *)$1, 0);
+}
+
+%typemap(jni)    (omnetpp::scave::ID *outArray, int n) "jlongArray"
+%typemap(jtype)  (omnetpp::scave::ID *outArray, int n) "long[]"
+%typemap(jstype) (omnetpp::scave::ID *outArray, int n) "long[]"
+%typemap(javain) (omnetpp::scave::ID *outArray, int n) "$javainput"
+
 
 /*--------------------------------------------------------------------------
  *                     check ResultFileFormatException
@@ -422,6 +455,9 @@ CHECK_RESULTFILE_FORMAT_EXCEPTION(ResultFileManager::loadFile)
 /* ------------- vectorfileindexer.h  ----------------- */
 namespace omnetpp { namespace scave {
 CHECK_RESULTFILE_FORMAT_EXCEPTION(VectorFileIndexer::generateIndex)
+CHECK_RESULTFILE_FORMAT_EXCEPTION(TailingVectorFileIndexer::update)
+CHECK_RESULTFILE_FORMAT_EXCEPTION(TailingVectorFileIndexer::writeIndex)
+%ignore VectorFileIndexingState;
 } } // namespaces
 
 %include "scave/vectorfileindexer.h"
@@ -505,6 +541,8 @@ namespace omnetpp { namespace scave {
 
 namespace omnetpp { namespace scave {
 %ignore readVectorsIntoArrays;
+%ignore readDecimatedVectorsIntoArrays;
+%ignore VectorDecimator;
 %newobject readVectorsIntoArrays2;
 
 } } // namespaces
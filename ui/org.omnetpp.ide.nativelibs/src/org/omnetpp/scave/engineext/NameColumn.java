@@ -0,0 +1,59 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2020 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.scave.engineext;
+
+/**
+ * Columnar representation of a string property (module name, result name)
+ * of the items in an IDList. Every distinct string occurs only once in
+ * names[], and indices[i] is the index of the string for the ith ID of the
+ * IDList, so grouping and sorting can be done on primitive arrays without
+ * fetching ResultItem objects through JNI.
+ */
+public class NameColumn {
+    private final int[] indices;
+    private final String[] names;
+
+    public NameColumn(int[] indices, String[] names) {
+        this.indices = indices;
+        this.names = names;
+    }
+
+    /**
+     * Returns the number of IDs; same as the size of the originating IDList.
+     */
+    public int size() {
+        return indices.length;
+    }
+
+    /**
+     * Returns the number of distinct names.
+     */
+    public int getNumNames() {
+        return names.length;
+    }
+
+    /**
+     * For each ID, the index of its name in the array returned by getNames().
+     * The array is not copied, callers must not modify it.
+     */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    /**
+     * The distinct names, in the order of first occurrence in the IDList.
+     * The array is not copied, callers must not modify it.
+     */
+    public String[] getNames() {
+        return names;
+    }
+
+    public String getName(int pos) {
+        return names[indices[pos]];
+    }
+}
@@ -7,16 +7,113 @@
 
 package org.omnetpp.scave.engineext;
 
+import java.util.Collections;
+import java.util.Set;
+
+import org.omnetpp.scave.engine.IDList;
 import org.omnetpp.scave.engine.ResultFileManager;
 
+/**
+ * Describes a change in the set of loaded result files. If the change is
+ * known in detail (see isFullChange()), the event carries a delta: the files
+ * that were added, removed or replaced by a newer version (reloaded), the
+ * result items that disappeared and those that appeared, and the names of
+ * the runs that were affected.
+ *
+ * Note that the IDs in getRemovedItems() are no longer valid in the manager,
+ * they may only be compared to previously obtained IDs (e.g. with
+ * IDList.getMembershipFlags()). Items of reloaded files appear both as
+ * removed and as added items, as they get new IDs.
+ */
 public class ResultFileManagerChangeEvent {
     private ResultFileManager manager;
+    private boolean fullChange;
+    private Set<String> addedFiles = Collections.emptySet();
+    private Set<String> removedFiles = Collections.emptySet();
+    private Set<String> changedFiles = Collections.emptySet();
+    private Set<String> affectedRunNames = Collections.emptySet();
+    private IDList addedItems = new IDList();
+    private IDList removedItems = new IDList();
 
+    /**
+     * Creates an event without a delta, i.e. anything may have changed.
+     */
     public ResultFileManagerChangeEvent(ResultFileManager manager) {
         this.manager = manager;
+        this.fullChange = true;
+    }
+
+    /**
+     * Creates an event with a delta. Files are identified with their
+     * workspace paths.
+     */
+    public ResultFileManagerChangeEvent(ResultFileManager manager, Set<String> addedFiles, Set<String> removedFiles, Set<String> changedFiles,
+            Set<String> affectedRunNames, IDList addedItems, IDList removedItems) {
+        this.manager = manager;
+        this.fullChange = false;
+        this.addedFiles = Collections.unmodifiableSet(addedFiles);
+        this.removedFiles = Collections.unmodifiableSet(removedFiles);
+        this.changedFiles = Collections.unmodifiableSet(changedFiles);
+        this.affectedRunNames = Collections.unmodifiableSet(affectedRunNames);
+        this.addedItems = addedItems;
+        this.removedItems = removedItems;
     }
 
     public ResultFileManager getResultFileManager() {
         return manager;
     }
+
+    /**
+     * Returns true if the event carries no delta, and any data derived from
+     * the manager's content should be considered out of date.
+     */
+    public boolean isFullChange() {
+        return fullChange;
+    }
+
+    /**
+     * Returns true if nothing has changed (only possible for events with a delta).
+     */
+    public boolean isEmpty() {
+        return !fullChange && addedFiles.isEmpty() && removedFiles.isEmpty() && changedFiles.isEmpty();
+    }
+
+    public Set<String> getAddedFiles() {
+        return addedFiles;
+    }
+
+    public Set<String> getRemovedFiles() {
+        return removedFiles;
+    }
+
+    /**
+     * Returns the files that were reloaded because they changed on the disk.
+     */
+    public Set<String> getChangedFiles() {
+        return changedFiles;
+    }
+
+    /**
+     * Returns the names of the runs that had data in the added, removed or
+     * changed files.
+     */
+    public Set<String> getAffectedRunNames() {
+        return affectedRunNames;
+    }
+
+    /**
+     * Returns the items (including fields) of the added files and of the new
+     * versions of the changed files.
+     */
+    public IDList getAddedItems() {
+        return addedItems;
+    }
+
+    /**
+     * Returns the items (including fields) of the removed files and of the
+     * old versions of the changed files. These IDs are no longer valid.
+     */
+    public IDList getRemovedItems() {
+        return removedItems;
+    }
 }
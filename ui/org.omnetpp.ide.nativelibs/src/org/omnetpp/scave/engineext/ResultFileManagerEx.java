@@ -73,6 +73,13 @@ public class ResultFileManagerEx extends ResultFileManager {
         super.unloadFile(fileName);
     }
 
+    @Override
+    public ResultFile adoptFile(ResultFileManager staging, ResultFile stagedFile) {
+        checkNotDeleted();
+        checkWriteLock();
+        return super.adoptFile(staging, stagedFile);
+    }
+
 
     /*-------------------------------------------
      *               Reader methods
@@ -327,6 +334,30 @@ public class ResultFileManagerEx extends ResultFileManager {
         return super.getUniqueRunAttributeNames(runList);
     }
 
+    /**
+     * Returns the module names of the items in the given IDList in columnar form,
+     * using a single JNI call.
+     */
+    public NameColumn getModuleNameColumn(IDList ids) {
+        checkNotDeleted();
+        int[] indices = new int[ids.size()];
+        StringVector names = new StringVector();
+        getModuleNameIndices(ids, indices, names);
+        return new NameColumn(indices, names.toArray());
+    }
+
+    /**
+     * Returns the result names of the items in the given IDList in columnar form,
+     * using a single JNI call.
+     */
+    public NameColumn getResultNameColumn(IDList ids) {
+        checkNotDeleted();
+        int[] indices = new int[ids.size()];
+        StringVector names = new StringVector();
+        getResultNameIndices(ids, indices, names);
+        return new NameColumn(indices, names.toArray());
+    }
+
     @Override
     public boolean isFileLoaded(String fileName) {
         checkNotDeleted();
@@ -1,6 +1,11 @@
 package org.omnetpp.ned.core;
 
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
 import org.omnetpp.ned.model.ex.NedFileElementEx;
+import org.omnetpp.ned.model.interfaces.INedTypeResolver;
 import org.omnetpp.ned.model.notification.INedChangeListener;
 import org.omnetpp.ned.model.notification.NedMarkerChangeEvent;
 import org.omnetpp.ned.model.notification.NedModelEvent;
@@ -8,26 +13,53 @@ import org.omnetpp.ned.model.notification.NedModelEvent;
 /**
  * Default implementation of INedTypeResolver
  *
+ * Instances may share NED file trees with an earlier copy (see the cloning
+ * constructors of NedTypeResolver); since the trees are immutable, this is
+ * safe as long as the shared trees do not refer to types in changed files.
+ *
  * @author Andras
  */
 public class ImmutableNedTypeResolver extends NedTypeResolver {
-    private INedChangeListener listener = new INedChangeListener() {
+    // shared by all instances, so that shared trees do not keep obsolete copies alive
+    private static INedChangeListener listener = new INedChangeListener() {
         public void modelChanged(NedModelEvent event) {
-            ImmutableNedTypeResolver.this.modelChanged(event);
+            if (event instanceof NedMarkerChangeEvent)
+                return; // that's OK
+            throw new RuntimeException("Attempt to modify element in an immutable type resolver: " + event.toString());
         }
     };
 
+    // number of distinct resolvers that created our trees (including this one)
+    private int numGenerations;
+
     protected ImmutableNedTypeResolver(NedTypeResolver other) {
-        super(other);
+        this(other, null, null);
+    }
+
+    /**
+     * Clones the files in filesToCopy (or all files if previousCopy is null),
+     * and shares the trees of the other files with previousCopy.
+     */
+    protected ImmutableNedTypeResolver(NedTypeResolver other, ImmutableNedTypeResolver previousCopy, Set<IFile> filesToCopy) {
+        super(other, previousCopy, filesToCopy);
 
-        // add change listeners
-        for (NedFileElementEx fileElement : nedElementFiles.keySet())
-            fileElement.addNedChangeListener(listener);
+        // add change listeners to the trees we created
+        Set<INedTypeResolver> owners = new HashSet<INedTypeResolver>();
+        owners.add(this);
+        for (NedFileElementEx fileElement : nedElementFiles.keySet()) {
+            if (fileElement.getResolver() == this)
+                fileElement.addNedChangeListener(listener);
+            else
+                owners.add(fileElement.getResolver());
+        }
+        numGenerations = owners.size();
     }
 
-    protected void modelChanged(NedModelEvent event) {
-        if (event instanceof NedMarkerChangeEvent)
-            return; // that's OK
-        throw new RuntimeException("Attempt to modify element in an immutable type resolver: " + event.toString());
+    /**
+     * Returns the number of copies the NED file trees of this resolver come from.
+     * Obsolete copies are kept in memory as long as their trees are shared.
+     */
+    public int getNumGenerations() {
+        return numGenerations;
     }
-}
\ No newline at end of file
+}
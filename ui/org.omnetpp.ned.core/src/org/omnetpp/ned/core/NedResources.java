@@ -9,8 +9,10 @@ package org.omnetpp.ned.core;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
@@ -89,6 +91,18 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
     // can be used for computations in a background thread without locking NedResources
     private ImmutableNedTypeResolver immutableCopy = null;
 
+    // the most recently created immutable copy (possibly obsolete), and the changes since then;
+    // the next copy shares the trees of unaffected files with it
+    private ImmutableNedTypeResolver lastImmutableCopy = null;
+    private PendingChanges changesSinceLastImmutableCopy = new PendingChanges(true);
+
+    // make a full immutable copy when shared trees would come from more copies than this,
+    // so that obsolete copies can be garbage collected
+    private static final int MAX_IMMUTABLE_COPY_GENERATIONS = 8;
+
+    // changes not yet covered by a successful NED validation, see takePendingValidation()
+    private PendingChanges pendingValidation = new PendingChanges(true);
+
     // caches the result of expression parsing
     private Map<String,INedElement> expressionCache = new HashMap<String, INedElement>();
     private static final INedElement BOGUS_EXPRESSION = NedElementFactoryEx.getInstance().createElement(INedElement.NED_UNKNOWN); // special value to signal syntax error
@@ -178,7 +192,7 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
                 markerSync.runAsWorkspaceJob();
 
                 // force rehash now, so that validation errors appear soon
-                rehash();
+                rehash(file);
             }
 
             long dt = System.currentTimeMillis() - startTime;
@@ -235,7 +249,7 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         ProblemMarkerSynchronizer markerSync = new ProblemMarkerSynchronizer();
         doReadNedFile(file, markerSync);
         markerSync.runAsWorkspaceJob();
-        rehash();
+        rehash(file);
     }
 
     /**
@@ -277,7 +291,7 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         if (isSourceFolderPackageNedFile(file))
             rebuildProjectsTable();
 
-        invalidate();
+        invalidate(file);
     }
 
     /**
@@ -298,7 +312,7 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
             // unregister
             nedFiles.remove(file);
             nedElementFiles.remove(nedFileElement);
-            invalidate();
+            invalidate(file);
 
             // if this was a package.ned, expected package names might have changed
             if (isSourceFolderPackageNedFile(file))
@@ -318,9 +332,9 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         Assert.isTrue(!connectCount.containsKey(file), "cannot replace the tree while an editor is open");
 
         NedFileElementEx oldTree = nedFiles.get(file);
-        // if the new tree has changed, we have to rehash everything
+        // if the new tree has changed, its types have to be rehashed
         if (oldTree == null || !NedTreeUtil.isNedTreeEqual(oldTree, tree)) {
-            invalidate();
+            invalidate(file);
             nedFiles.put(file, tree);
             nedElementFiles.put(tree, file);
             // add ourselves to the tree root as a listener
@@ -351,21 +365,64 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
     }
 
     public synchronized void invalidate() {
-        lastChangeSerial++;
-        needsRehash = true;
-        nedTypeLookupCache.clear();
-        nedLikeTypeLookupCache.clear();
+        needsFullRehash = true;
+        pendingValidation.full = true;
+        changesSinceLastImmutableCopy.full = true;
+        immutableCopy = null;
+        invalidateInternal();
 
         // invalidate all inherited members on all typeInfo objects
         for (NedFileElementEx file : nedElementFiles.keySet())
             invalidateTypeInfo(file);
     }
 
+    /**
+     * Like invalidate(), but declares that only the given file has changed
+     * (or has been added or removed), so the next rehash only needs to process
+     * the types in that file. Inherited members are invalidated on the types
+     * of this file now, and on those of the files depending on it when the
+     * rehash has determined the changed types (see typesChanged()).
+     */
+    public synchronized void invalidate(IFile file) {
+        changedFiles.add(file);
+        invalidateInternal();
+
+        NedFileElementEx tree = nedFiles.get(file);
+        if (tree != null)
+            invalidateTypeInfo(tree);
+    }
+
+    private void invalidateInternal() {
+        lastChangeSerial++;
+        needsRehash = true;
+        // note: lookup caches are purged in internalRehash()
+    }
+
+    @Override
+    protected void typesChanged(Set<IFile> files, Set<String> qualifiedNames) {
+        pendingValidation.files.addAll(files);
+        pendingValidation.typeNames.addAll(qualifiedNames);
+        changesSinceLastImmutableCopy.files.addAll(files);
+        changesSinceLastImmutableCopy.typeNames.addAll(qualifiedNames);
+
+        // invalidate inherited members on the types that may depend on the changed ones
+        for (IFile file : getDependentFiles(files, qualifiedNames)) {
+            NedFileElementEx tree = nedFiles.get(file);
+            if (tree != null)
+                invalidateTypeInfo(tree);
+        }
+    }
+
     protected void rehash() {
         invalidate();
         rehashIfNeeded();
     }
 
+    protected void rehash(IFile file) {
+        invalidate(file);
+        rehashIfNeeded();
+    }
+
     protected void invalidateTypeInfo(INedElement parent) {
         for (INedElement element : parent) {
             if (element instanceof INedTypeElement) {
@@ -526,12 +583,74 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
         }
     }
 
+    /**
+     * Returns an immutable copy of the current state. Copies are cheap to create
+     * after small changes: only the changed files and the files that depend on them
+     * are cloned, the trees of other files are shared with the previous copy.
+     */
     public synchronized INedTypeResolver getImmutableCopy() {
-        if (immutableCopy == null)
-            immutableCopy = new ImmutableNedTypeResolver(this);
+        rehashIfNeeded(); // also brings pendingValidation and changesSinceLastImmutableCopy up to date
+        if (immutableCopy == null) {
+            Set<IFile> filesToCopy = getFilesToCopy();
+            immutableCopy = new ImmutableNedTypeResolver(this, filesToCopy == null ? null : lastImmutableCopy, filesToCopy);
+            lastImmutableCopy = immutableCopy;
+            changesSinceLastImmutableCopy = new PendingChanges(false);
+        }
         return immutableCopy;
     }
 
+    /**
+     * Returns the files that need to be cloned for the next immutable copy, or null
+     * if all of them should be (i.e. nothing should be shared with lastImmutableCopy).
+     */
+    private Set<IFile> getFilesToCopy() {
+        PendingChanges changes = changesSinceLastImmutableCopy;
+        if (lastImmutableCopy == null || changes.full || lastImmutableCopy.getNumGenerations() >= MAX_IMMUTABLE_COPY_GENERATIONS)
+            return null;
+        for (IFile file : changes.files)
+            if (file.getName().equals(PACKAGE_NED_FILENAME))
+                return null; // may affect the package of all files in the folder tree
+        Set<IFile> files = getDependentFiles(changes.files, changes.typeNames);
+        if (files.size() > nedFiles.size() / 2)
+            return null; // sharing would save little, and a full copy lets older copies go
+        return files;
+    }
+
+    /**
+     * Changes to be processed: either everything, or the given files and types
+     * (and their dependents, see getDependentFiles()).
+     */
+    static class PendingChanges {
+        boolean full;
+        final Set<IFile> files = new HashSet<IFile>();
+        final Set<String> typeNames = new HashSet<String>();
+
+        PendingChanges(boolean full) {
+            this.full = full;
+        }
+    }
+
+    /**
+     * For NedValidationJob: returns the changes since the last validation, and
+     * starts collecting changes anew. Call it together with getImmutableCopy(),
+     * while holding the lock. If validation does not complete, the returned
+     * object must be given back via restorePendingValidation().
+     */
+    synchronized PendingChanges takePendingValidation() {
+        PendingChanges result = pendingValidation;
+        pendingValidation = new PendingChanges(false);
+        return result;
+    }
+
+    /**
+     * For NedValidationJob: merges back changes that could not be validated.
+     */
+    synchronized void restorePendingValidation(PendingChanges pending) {
+        pendingValidation.full |= pending.full;
+        pendingValidation.files.addAll(pending.files);
+        pendingValidation.typeNames.addAll(pending.typeNames);
+    }
+
     public synchronized boolean isImmutableCopyUpToDate(INedTypeResolver copy) {
         return immutableCopy == copy;
     }
@@ -553,16 +672,29 @@ public class NedResources extends NedTypeResolver implements INedResources, IRes
      * Respond to model changes
      */
     protected void nedModelChanged(NedModelEvent event) {
-        if (event instanceof NedModelChangeEvent)
+        if (event instanceof NedModelChangeEvent) {
             immutableCopy = null; // invalidate
 
+            // the changed tree must not be shared with the next copy, even if notifications are disabled
+            INedElement source = ((NedModelChangeEvent)event).getSource();
+            IFile file = source == null ? null : nedElementFiles.get(source.getContainingNedFileElement());
+            if (file != null)
+                changesSinceLastImmutableCopy.files.add(file);
+            else
+                changesSinceLastImmutableCopy.full = true;
+        }
+
         if (nedModelChangeNotificationDisabled)
             return;
 
         if (event instanceof NedModelChangeEvent) {
             INedElement source = ((NedModelChangeEvent)event).getSource();
             Assert.isTrue(source==null || refactoringInProgress || source instanceof NedFileElementEx || hasConnectedEditor(getNedFile(source.getContainingNedFileElement())), "NED trees not opened in any editor must NOT be changed");
-            invalidate();
+            IFile file = source == null ? null : nedElementFiles.get(source.getContainingNedFileElement());
+            if (file != null)
+                invalidate(file);
+            else
+                invalidate();
             nedValidationStarterJob.restartTimer(); //FIXME obey begin/end notifications too!
         }
 
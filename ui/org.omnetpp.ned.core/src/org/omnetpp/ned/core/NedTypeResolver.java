@@ -1,12 +1,16 @@
 package org.omnetpp.ned.core;
 
 import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.eclipse.core.resources.IContainer;
@@ -30,10 +34,15 @@ import org.omnetpp.ned.model.ex.CompoundModuleElementEx;
 import org.omnetpp.ned.model.ex.NedElementUtilEx;
 import org.omnetpp.ned.model.ex.NedFileElementEx;
 import org.omnetpp.ned.model.ex.PropertyElementEx;
+import org.omnetpp.ned.model.interfaces.IHasResolver;
 import org.omnetpp.ned.model.interfaces.INedTypeElement;
 import org.omnetpp.ned.model.interfaces.INedTypeInfo;
 import org.omnetpp.ned.model.interfaces.INedTypeLookupContext;
 import org.omnetpp.ned.model.interfaces.INedTypeResolver;
+import org.omnetpp.ned.model.interfaces.ISubmoduleOrConnection;
+import org.omnetpp.ned.model.pojo.ExtendsElement;
+import org.omnetpp.ned.model.pojo.ImportElement;
+import org.omnetpp.ned.model.pojo.InterfaceNameElement;
 import org.omnetpp.ned.model.pojo.NedElementTags;
 import org.omnetpp.ned.model.pojo.NedFileElement;
 
@@ -52,6 +61,25 @@ public class NedTypeResolver implements INedTypeResolver {
     protected Map<INedTypeLookupContext, Map<String, INedTypeInfo>> nedTypeLookupCache = new HashMap<INedTypeLookupContext, Map<String,INedTypeInfo>>();
     protected Map<IProject, Map<INedTypeInfo, Map<String, INedTypeInfo>>> nedLikeTypeLookupCache = new HashMap<IProject, Map<INedTypeInfo,Map<String,INedTypeInfo>>>();
 
+    // toplevel types of each NED file, as registered during the last rehash
+    protected final Map<IFile, List<TypeRegistration>> registeredTypes = new HashMap<IFile, List<TypeRegistration>>();
+
+    // files whose types need to be re-registered on the next rehash; see needsFullRehash
+    protected final Set<IFile> changedFiles = new HashSet<IFile>();
+
+    // if true, the next rehash rebuilds all tables from scratch instead of processing changedFiles only
+    protected boolean needsFullRehash = true;
+
+    // reverse dependency graph: simple type name -> files that refer to a type with that name
+    // (via extends, like, interface, submodule type, connection type or import)
+    protected final Map<String, Set<IFile>> referringFiles = new HashMap<String, Set<IFile>>();
+
+    // the simple type names each file refers to (keys in referringFiles)
+    protected final Map<IFile, Set<String>> referencedNames = new HashMap<IFile, Set<String>>();
+
+    // wildcard imports of each file, as regular expressions; only files that have any
+    protected final Map<IFile, List<Pattern>> wildcardImports = new HashMap<IFile, List<Pattern>>();
+
     // file element to contain built-in declarations (does not correspond to any physical file)
     protected NedFileElementEx builtInDeclarationsFile;
 
@@ -78,6 +106,10 @@ public class NedTypeResolver implements INedTypeResolver {
         // reserved (used) fully qualified names (contains all names including duplicates)
         final Set<String> reservedNames = new HashSet<String>();
 
+        // all definitions (built-in and toplevel types) of each reserved name, in registration order;
+        // the above three tables are derived from this one
+        final Map<String, List<INedTypeElement>> definitions = new HashMap<String, List<INedTypeElement>>();
+
         @Override
         public String toString() {
             return "references: " + StringUtils.join(referencedProjects, ",") +
@@ -87,6 +119,18 @@ public class NedTypeResolver implements INedTypeResolver {
         }
     }
 
+    // a toplevel type, together with the fully qualified name it was registered under
+    // (the name may change by the time the registration is removed)
+    protected static class TypeRegistration {
+        final String qualifiedName;
+        final INedTypeElement typeElement;
+
+        TypeRegistration(String qualifiedName, INedTypeElement typeElement) {
+            this.qualifiedName = qualifiedName;
+            this.typeElement = typeElement;
+        }
+    }
+
     /**
      * Empty constructor, for subclasses
      */
@@ -97,16 +141,40 @@ public class NedTypeResolver implements INedTypeResolver {
      * Cloning constructor, for getImmutableCopy()
      */
     protected NedTypeResolver(NedTypeResolver other) {
-        // clone NED file parse trees
-        for (IFile file : other.nedFiles.keySet())
-            nedFiles.put(file, (NedFileElementEx)other.nedFiles.get(file).deepDup(this, true, true));
+        this(other, null, null);
+    }
+
+    /**
+     * Cloning constructor that shares NED file trees with an earlier copy: files
+     * in filesToCopy, and files not present in previousCopy are cloned from other;
+     * the trees (and the built-in declarations) of all other files are taken over
+     * from previousCopy. The caller must ensure that previousCopy's trees are
+     * still equivalent to the ones in other, and that they do not refer to types
+     * in files being cloned (see getDependentFiles()), because shared trees keep
+     * resolving type names via the resolver that created them. Lookups via this
+     * resolver accept elements of shared trees as well, see isOwnElement().
+     *
+     * If previousCopy is null, all files are cloned.
+     */
+    protected NedTypeResolver(NedTypeResolver other, NedTypeResolver previousCopy, Set<IFile> filesToCopy) {
+        // clone NED file parse trees, or share them with the previous copy
+        for (IFile file : other.nedFiles.keySet()) {
+            NedFileElementEx sharedTree = previousCopy == null || filesToCopy.contains(file) ? null : previousCopy.nedFiles.get(file);
+            if (sharedTree != null)
+                nedFiles.put(file, sharedTree);
+            else
+                nedFiles.put(file, (NedFileElementEx)other.nedFiles.get(file).deepDup(this, true, true));
+        }
 
         // fill in reverse mapping
         for (Map.Entry<IFile, NedFileElementEx> entry : nedFiles.entrySet())
             nedElementFiles.put(entry.getValue(), entry.getKey());
 
         // clone other fields (note: no need to clone nedTypeLookupCache)
-        builtInDeclarationsFile = (NedFileElementEx) other.builtInDeclarationsFile.deepDup(this, true, true);
+        if (previousCopy != null)
+            builtInDeclarationsFile = previousCopy.builtInDeclarationsFile; // never changes
+        else
+            builtInDeclarationsFile = (NedFileElementEx) other.builtInDeclarationsFile.deepDup(this, true, true);
         lastChangeSerial = other.lastChangeSerial;
 
         // clone projects table
@@ -123,73 +191,363 @@ public class NedTypeResolver implements INedTypeResolver {
         internalRehash();
     }
 
+    /**
+     * Brings the projects tables up to date. If only some NED files have
+     * changed since the last rehash (see changedFiles), only the types of those
+     * files are re-registered, and only in the projects that see them; the
+     * lookup caches are then purged selectively. Otherwise (needsFullRehash)
+     * everything is rebuilt from scratch.
+     */
     protected void internalRehash() {
         long startMillis = System.currentTimeMillis();
+        int numFiles = needsFullRehash ? nedFiles.size() : changedFiles.size();
+
+        if (needsFullRehash)
+            fullRehash();
+        else
+            incrementalRehash();
+        needsFullRehash = false;
+        changedFiles.clear();
+
+        if (debug) {
+            long dt = System.currentTimeMillis() - startMillis;
+            Debug.println("rehash(): " + dt + "ms, " + numFiles + (numFiles == nedFiles.size() ? "" : " changed") + " files, " + projects.size() + " projects");
+        }
+    }
 
+    protected void fullRehash() {
         // clear tables and re-register built-in declarations for all projects
+        registeredTypes.clear();
+        referringFiles.clear();
+        referencedNames.clear();
+        wildcardImports.clear();
         for (ProjectData projectData : projects.values()) {
+            projectData.definitions.clear();
             projectData.components.clear();
             projectData.duplicates.clear();
             projectData.reservedNames.clear();
             for (INedElement child : builtInDeclarationsFile) {
                 if (child instanceof INedTypeElement) {
-                    INedTypeInfo typeInfo = ((INedTypeElement)child).getNedTypeInfo();
-                    projectData.components.put(typeInfo.getFullyQualifiedName(), typeInfo);
+                    INedTypeElement typeElement = (INedTypeElement)child;
+                    addDefinition(projectData, typeElement.getNedTypeInfo().getFullyQualifiedName(), typeElement);
                 }
             }
-            projectData.reservedNames.addAll(projectData.components.keySet());
         }
 
-        // register NED types in all projects
+        // register NED types of all files in all projects
+        for (IFile file : nedFiles.keySet()) {
+            registerTypes(file, null);
+            addReferences(file);
+        }
+
+        // compute the components, duplicates and reservedNames tables
         for (IProject project : projects.keySet()) {
             ProjectData projectData = projects.get(project);
+            for (String name : projectData.definitions.keySet())
+                updateTables(projectData, name);
 
-            // find NED types in each file, and register them
-            for (IFile file : nedFiles.keySet()) {
-                // file must be in this project or a referenced project
-                if (file.getProject().equals(project) || ArrayUtils.contains(projectData.referencedProjects, file.getProject())) {
-
-                    // collect toplevel types from the NED file, and process them one by one
-                    for (INedElement child : nedFiles.get(file)) {
-                        if (child instanceof INedTypeElement) {
-                            INedTypeElement typeElement = (INedTypeElement) child;
-                            Assert.isTrue(typeElement.getResolver() == this);
-                            INedTypeInfo typeInfo = typeElement.getNedTypeInfo();
-                            String qualifiedName = typeInfo.getFullyQualifiedName();
-
-                            if (projectData.reservedNames.contains(qualifiedName)) {
-                                if (!projectData.duplicates.containsKey(qualifiedName))
-                                    projectData.duplicates.put(qualifiedName, new ArrayList<INedTypeElement>());
-                                projectData.duplicates.get(qualifiedName).add(typeElement);
-                            }
-                            else {
-                                // normal case: not duplicate. Add the type info to our tables.
-                                projectData.components.put(qualifiedName, typeInfo);
-                            }
-
-                            // add to the name list even if it was duplicate
-                            projectData.reservedNames.add(qualifiedName);
-                        }
-                    }
+            if (debug)
+                Debug.println("types in project " + project.getName() + ": " + StringUtils.join(projectData.components.keySet(), ", ", " and "));
+        }
+
+        nedTypeLookupCache.clear();
+        nedLikeTypeLookupCache.clear();
+    }
+
+    protected void incrementalRehash() {
+        // replace the old registrations of changed files with the current ones
+        Set<String> changedNames = new HashSet<String>();
+        Set<IProject> affectedProjects = new HashSet<IProject>();
+        for (IFile file : changedFiles) {
+            List<TypeRegistration> oldRegistrations = registeredTypes.remove(file);
+            for (IProject project : projects.keySet()) {
+                if (isVisibleFrom(file, project)) {
+                    affectedProjects.add(project);
+                    if (oldRegistrations != null)
+                        for (TypeRegistration registration : oldRegistrations)
+                            removeDefinition(projects.get(project), registration.qualifiedName, registration.typeElement);
                 }
             }
+            if (oldRegistrations != null)
+                for (TypeRegistration registration : oldRegistrations)
+                    changedNames.add(registration.qualifiedName);
+            removeReferences(file);
+            if (nedFiles.containsKey(file)) {
+                registerTypes(file, changedNames);
+                addReferences(file);
+            }
+        }
 
-            // now we should remove all types that were duplicates
-            for (String name : projectData.duplicates.keySet()) {
-                projectData.duplicates.get(name).add(projectData.components.get(name).getNedElement());
-                projectData.components.remove(name);
+        // update the tables for the affected names only
+        for (IProject project : affectedProjects) {
+            ProjectData projectData = projects.get(project);
+            for (String name : changedNames)
+                updateTables(projectData, name);
+        }
+
+        purgeLookupCaches(affectedProjects, changedNames);
+        typesChanged(changedFiles, changedNames);
+    }
+
+    /**
+     * Called at the end of an incremental rehash, with the files that were
+     * processed and the fully qualified names of all types the files defined
+     * before or after the change. Does nothing by default.
+     */
+    protected void typesChanged(Set<IFile> files, Set<String> qualifiedNames) {
+    }
+
+    /**
+     * Returns true if types in the given file are visible from the given project,
+     * i.e. the file is in the project or a referenced project.
+     */
+    protected boolean isVisibleFrom(IFile file, IProject project) {
+        ProjectData projectData = projects.get(project);
+        return file.getProject().equals(project) || ArrayUtils.contains(projectData.referencedProjects, file.getProject());
+    }
+
+    /**
+     * Registers the toplevel types in the given file in all projects that see it.
+     * Fully qualified names of the types are added to changedNames if it is not null.
+     */
+    protected void registerTypes(IFile file, Set<String> changedNames) {
+        // collect toplevel types from the NED file
+        List<TypeRegistration> registrations = new ArrayList<TypeRegistration>();
+        for (INedElement child : nedFiles.get(file)) {
+            if (child instanceof INedTypeElement) {
+                INedTypeElement typeElement = (INedTypeElement) child;
+                Assert.isTrue(isOwnElement(typeElement));
+                String qualifiedName = typeElement.getNedTypeInfo().getFullyQualifiedName();
+                registrations.add(new TypeRegistration(qualifiedName, typeElement));
+                if (changedNames != null)
+                    changedNames.add(qualifiedName);
             }
+        }
+        registeredTypes.put(file, registrations);
 
-            if (debug)
-                Debug.println("types in project " + project.getName() + ": " + StringUtils.join(projectData.components.keySet(), ", ", " and "));
+        for (IProject project : projects.keySet())
+            if (isVisibleFrom(file, project))
+                for (TypeRegistration registration : registrations)
+                    addDefinition(projects.get(project), registration.qualifiedName, registration.typeElement);
+    }
+
+    protected static void addDefinition(ProjectData projectData, String qualifiedName, INedTypeElement typeElement) {
+        List<INedTypeElement> list = projectData.definitions.get(qualifiedName);
+        if (list == null)
+            projectData.definitions.put(qualifiedName, list = new ArrayList<INedTypeElement>(1));
+        list.add(typeElement);
+    }
+
+    protected static void removeDefinition(ProjectData projectData, String qualifiedName, INedTypeElement typeElement) {
+        List<INedTypeElement> list = projectData.definitions.get(qualifiedName);
+        if (list != null) {
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i) == typeElement) {
+                    list.remove(i);
+                    break;
+                }
+            }
+            if (list.isEmpty())
+                projectData.definitions.remove(qualifiedName);
+        }
+    }
+
+    /**
+     * Updates the components, duplicates and reservedNames tables of the project
+     * for the given name, based on its definitions.
+     */
+    protected static void updateTables(ProjectData projectData, String qualifiedName) {
+        List<INedTypeElement> list = projectData.definitions.get(qualifiedName);
+        if (list == null) {
+            projectData.components.remove(qualifiedName);
+            projectData.duplicates.remove(qualifiedName);
+            projectData.reservedNames.remove(qualifiedName);
+        }
+        else if (list.size() == 1) {
+            // normal case: not duplicate
+            projectData.components.put(qualifiedName, list.get(0).getNedTypeInfo());
+            projectData.duplicates.remove(qualifiedName);
+            projectData.reservedNames.add(qualifiedName);
+        }
+        else {
+            // duplicates: list the first definition last (this is where built-in types end up)
+            List<INedTypeElement> duplicateList = new ArrayList<INedTypeElement>(list.subList(1, list.size()));
+            duplicateList.add(list.get(0));
+            projectData.components.remove(qualifiedName);
+            projectData.duplicates.put(qualifiedName, duplicateList);
+            projectData.reservedNames.add(qualifiedName);
+        }
+    }
 
+    /**
+     * Adds the type references in the given file to the reverse dependency graph.
+     */
+    protected void addReferences(IFile file) {
+        Set<String> names = new HashSet<String>();
+        List<Pattern> patterns = new ArrayList<Pattern>();
+        collectReferences(nedFiles.get(file), names, patterns);
+        referencedNames.put(file, names);
+        for (String name : names) {
+            Set<IFile> files = referringFiles.get(name);
+            if (files == null)
+                referringFiles.put(name, files = new HashSet<IFile>());
+            files.add(file);
         }
+        if (!patterns.isEmpty())
+            wildcardImports.put(file, patterns);
+    }
 
-        if (debug) {
-            long dt = System.currentTimeMillis() - startMillis;
-            Debug.println("rehash(): " + dt + "ms, " + nedFiles.size() + " files, " + projects.size() + " projects");
+    protected void removeReferences(IFile file) {
+        Set<String> names = referencedNames.remove(file);
+        if (names != null) {
+            for (String name : names) {
+                Set<IFile> files = referringFiles.get(name);
+                files.remove(file);
+                if (files.isEmpty())
+                    referringFiles.remove(name);
+            }
         }
+        wildcardImports.remove(file);
+    }
+
+    /**
+     * Collects the simple names of the types the element and its descendants refer to,
+     * and the regexes of wildcard imports. Names are collected syntactically, so that
+     * references that currently do not resolve are also included.
+     */
+    protected static void collectReferences(INedElement element, Set<String> names, List<Pattern> patterns) {
+        for (INedElement child : element) {
+            if (child instanceof ExtendsElement)
+                addSimpleName(((ExtendsElement)child).getName(), names);
+            else if (child instanceof InterfaceNameElement)
+                addSimpleName(((InterfaceNameElement)child).getName(), names);
+            else if (child instanceof ISubmoduleOrConnection) {
+                addSimpleName(((ISubmoduleOrConnection)child).getType(), names);
+                addSimpleName(((ISubmoduleOrConnection)child).getLikeType(), names);
+            }
+            else if (child instanceof ImportElement) {
+                String importSpec = ((ImportElement)child).getImportSpec();
+                if (importSpec.contains("*"))
+                    patterns.add(Pattern.compile(NedElementUtilEx.importToRegex(importSpec)));
+                else
+                    addSimpleName(importSpec, names);
+            }
+            collectReferences(child, names, patterns);
+        }
+    }
 
+    private static void addSimpleName(String typeName, Set<String> names) {
+        if (!StringUtils.isEmpty(typeName))
+            names.add(typeName.substring(typeName.lastIndexOf('.') + 1));
+    }
+
+    /**
+     * Returns the given files together with all files whose consistency may depend
+     * on them, directly or indirectly: files that refer to a type defined in one of
+     * them (extends, like, interface, submodule or connection type, import), files
+     * that refer to types in those files, and so on. Files that define a type with
+     * the same name (i.e. potential duplicates) are included as well.
+     *
+     * Type references are tracked by simple name, so the result may contain some
+     * files that do not actually depend on the given ones, but it never misses one.
+     *
+     * @param files  the changed files (files no longer in the resolver are ignored)
+     * @param changedTypeNames  fully qualified names of types that were added, removed
+     *          or modified, including ones that no longer exist
+     */
+    public synchronized Set<IFile> getDependentFiles(Collection<IFile> files, Collection<String> changedTypeNames) {
+        rehashIfNeeded();
+        Set<IFile> result = new HashSet<IFile>();
+        Deque<String> namesToProcess = new ArrayDeque<String>(changedTypeNames);
+        for (IFile file : files)
+            if (nedFiles.containsKey(file) && result.add(file))
+                addRegisteredNames(file, namesToProcess);
+
+        Set<String> processedNames = new HashSet<String>();
+        while (!namesToProcess.isEmpty()) {
+            String qualifiedName = namesToProcess.removeFirst();
+            if (!processedNames.add(qualifiedName))
+                continue;
+
+            // files that refer to it
+            Set<IFile> dependents = referringFiles.get(qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1));
+            if (dependents != null)
+                for (IFile file : dependents)
+                    if (result.add(file))
+                        addRegisteredNames(file, namesToProcess);
+            for (Map.Entry<IFile, List<Pattern>> entry : wildcardImports.entrySet())
+                if (!result.contains(entry.getKey()))
+                    for (Pattern pattern : entry.getValue())
+                        if (pattern.matcher(qualifiedName).matches() && result.add(entry.getKey()))
+                            addRegisteredNames(entry.getKey(), namesToProcess);
+
+            // files that define a type with the same name
+            for (ProjectData projectData : projects.values()) {
+                List<INedTypeElement> definitions = projectData.definitions.get(qualifiedName);
+                if (definitions != null) {
+                    for (INedTypeElement typeElement : definitions) {
+                        IFile file = nedElementFiles.get(typeElement.getContainingNedFileElement());
+                        if (file != null && result.add(file))
+                            addRegisteredNames(file, namesToProcess);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void addRegisteredNames(IFile file, Collection<String> names) {
+        List<TypeRegistration> registrations = registeredTypes.get(file);
+        if (registrations != null)
+            for (TypeRegistration registration : registrations)
+                names.add(registration.qualifiedName);
+    }
+
+    /**
+     * Removes the lookup cache entries that may be affected by changes to the
+     * given type names in the given projects, and those for lookup contexts in
+     * changed files.
+     */
+    protected void purgeLookupCaches(Set<IProject> affectedProjects, Set<String> changedNames) {
+        Set<String> changedSimpleNames = new HashSet<String>();
+        for (String qualifiedName : changedNames)
+            changedSimpleNames.add(qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1));
+
+        for (Iterator<Map.Entry<INedTypeLookupContext, Map<String, INedTypeInfo>>> it = nedTypeLookupCache.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<INedTypeLookupContext, Map<String, INedTypeInfo>> entry = it.next();
+            IFile file = nedElementFiles.get(entry.getKey().getContainingNedFileElement());
+            if (file == null || changedFiles.contains(file))
+                it.remove(); // imports, package or inner types may have changed
+            else if (affectedProjects.contains(file.getProject()))
+                removeAffectedNames(entry.getValue(), changedNames, changedSimpleNames);
+        }
+
+        for (IProject project : affectedProjects) {
+            Map<INedTypeInfo, Map<String, INedTypeInfo>> map = nedLikeTypeLookupCache.get(project);
+            if (map == null)
+                continue;
+            for (Iterator<Map.Entry<INedTypeInfo, Map<String, INedTypeInfo>>> it = map.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<INedTypeInfo, Map<String, INedTypeInfo>> entry = it.next();
+                if (changedSimpleNames.contains(entry.getKey().getName()))
+                    it.remove(); // the interface itself may have changed or may resolve differently
+                else
+                    removeAffectedNames(entry.getValue(), changedNames, changedSimpleNames);
+            }
+        }
+    }
+
+    /**
+     * Removes entries whose lookup result may depend on the given type names. A simple
+     * name may resolve to any type with that simple name (via imports or the package);
+     * a qualified name to the type with that name, or to an inner type of it.
+     */
+    protected static void removeAffectedNames(Map<String, INedTypeInfo> map, Set<String> changedNames, Set<String> changedSimpleNames) {
+        for (Iterator<String> it = map.keySet().iterator(); it.hasNext(); ) {
+            String name = it.next();
+            int lastDot = name.lastIndexOf('.');
+            if (lastDot == -1 ? changedSimpleNames.contains(name) : changedNames.contains(name) || changedNames.contains(name.substring(0, lastDot)))
+                it.remove();
+        }
     }
 
     /**
@@ -202,8 +560,21 @@ public class NedTypeResolver implements INedTypeResolver {
         Assert.isTrue(errorStore.getNumProblems()==0);
     }
 
+    /**
+     * Returns true if the element was created by this resolver, or it is in one of
+     * our NED file trees. The latter is needed for immutable copies, which may share
+     * trees with earlier copies (see the cloning constructor): elements in shared
+     * trees return the earlier copy from getResolver().
+     */
+    protected boolean isOwnElement(IHasResolver element) {
+        if (element.getResolver() == this)
+            return true;
+        NedFileElementEx fileElement = element.getContainingNedFileElement();
+        return fileElement != null && (fileElement == builtInDeclarationsFile || nedElementFiles.containsKey(fileElement));
+    }
+
     public boolean isBuiltInDeclaration(INedTypeInfo typeInfo) {
-        Assert.isTrue(typeInfo.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isOwnElement(typeInfo.getNedElement()), "cannot use another resolver for lookups than the one that created the element");
         return typeInfo.getNedElement().getContainingNedFileElement() == builtInDeclarationsFile;
     }
 
@@ -248,7 +619,7 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public synchronized IFile getNedFile(NedFileElementEx nedFileElement) {
-        Assert.isTrue(nedFileElement.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isOwnElement(nedFileElement), "cannot use another resolver for lookups than the one that created the element");
         Assert.isTrue(nedElementFiles.containsKey(nedFileElement) || nedFileElement==builtInDeclarationsFile, "NedFileElement is not in the resolver");
         return nedElementFiles.get(nedFileElement);
     }
@@ -351,7 +722,7 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public synchronized Collection<INedTypeInfo> getToplevelNedTypesThatImplement(INedTypeInfo interfaceType, IProject context) {
-        Assert.isTrue(interfaceType.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isOwnElement(interfaceType.getNedElement()), "cannot use another resolver for lookups than the one that created the element");
         Collection<INedTypeInfo> result = new ArrayList<INedTypeInfo>();
         for (INedTypeInfo type : getToplevelNedTypesInternal(context))
             if (type.getInterfaces().contains(interfaceType.getNedElement()))
@@ -487,7 +858,8 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public synchronized INedTypeInfo lookupNedType(String name, INedTypeLookupContext lookupContext) {
-        Assert.isTrue(lookupContext.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isOwnElement(lookupContext), "cannot use another resolver for lookups than the one that created the element");
+        rehashIfNeeded(); // caches are purged during rehash
         // return cached value if exists, otherwise call doLookupNedType()
         Map<String, INedTypeInfo> map = nedTypeLookupCache.get(lookupContext);
         if (map == null)
@@ -578,8 +950,9 @@ public class NedTypeResolver implements INedTypeResolver {
         return null;
     }
 
-    public INedTypeInfo lookupLikeType(String name, INedTypeInfo interfaceType, IProject context) {
-        Assert.isTrue(interfaceType.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+    public synchronized INedTypeInfo lookupLikeType(String name, INedTypeInfo interfaceType, IProject context) {
+        Assert.isTrue(isOwnElement(interfaceType.getNedElement()), "cannot use another resolver for lookups than the one that created the element");
+        rehashIfNeeded(); // caches are purged during rehash
         // return cached value if exists, otherwise call doLookupLikeType()
         Map<INedTypeInfo, Map<String, INedTypeInfo>> map = nedLikeTypeLookupCache.get(context);
         if (map == null)
@@ -615,7 +988,7 @@ public class NedTypeResolver implements INedTypeResolver {
     }
 
     public synchronized Set<String> getLocalTypeNames(INedTypeLookupContext lookupContext, IPredicate predicate) {
-        Assert.isTrue(lookupContext.getResolver() == this, "cannot use another resolver for lookups than the one that created the element");
+        Assert.isTrue(isOwnElement(lookupContext), "cannot use another resolver for lookups than the one that created the element");
         Set<String> result = new HashSet<String>();
         if (lookupContext instanceof NedFileElement) {
             List<INedTypeElement> topLevelTypeNodes = lookupContext.getContainingNedFileElement().getTopLevelTypeNodes();
@@ -764,6 +1137,22 @@ public class NedTypeResolver implements INedTypeResolver {
         // redefine
     }
 
+    /**
+     * Returns the files that contain types involved in duplicate type definitions,
+     * i.e. those that addErrorsForDuplicates() puts errors into.
+     */
+    public Set<IFile> getFilesWithDuplicates() {
+        Set<IFile> result = new HashSet<IFile>();
+        for (ProjectData projectData : projects.values())
+            for (List<INedTypeElement> duplicateList : projectData.duplicates.values())
+                for (INedTypeElement element : duplicateList) {
+                    IFile file = getNedFile(element.getContainingNedFileElement());
+                    if (file != null)
+                        result.add(file);
+                }
+        return result;
+    }
+
     public void addErrorsForDuplicates(INedErrorStore errorStore) {
         // issue error message for duplicates
         for (IProject project : projects.keySet()) {
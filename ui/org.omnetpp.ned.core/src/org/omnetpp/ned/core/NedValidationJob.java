@@ -1,5 +1,19 @@
 package org.omnetpp.ned.core;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -8,7 +22,10 @@ import org.eclipse.core.runtime.jobs.Job;
 import org.omnetpp.common.Debug;
 import org.omnetpp.common.markers.ProblemMarkerSynchronizer;
 import org.omnetpp.ned.model.INedElement;
+import org.omnetpp.ned.model.ex.CompoundModuleElementEx;
 import org.omnetpp.ned.model.ex.NedFileElementEx;
+import org.omnetpp.ned.model.interfaces.INedTypeElement;
+import org.omnetpp.ned.model.interfaces.INedTypeInfo;
 import org.omnetpp.ned.model.interfaces.INedTypeResolver;
 
 
@@ -16,8 +33,30 @@ import org.omnetpp.ned.model.interfaces.INedTypeResolver;
  * Validates all NED files for consistency (no such parameter/gate/module-type, redeclarations,
  * duplicate types, cycles in the inheritance chain, etc). All consistency problem markers
  * (NEDCONSISTENCYPROBLEM_MARKERID) are managed within this job.
+ *
+ * After the first run, only files affected by the changes since the previous successful run
+ * are validated: the changed files, and files that depend on types defined in them (see
+ * NedTypeResolver.getDependentFiles()). Markers and problem severities of other files are
+ * kept, and their NED trees are not touched. A full validation is done after changes that affect everything (e.g. project
+ * references or NED source folders).
+ *
+ * Files are validated in parallel by a pool of worker threads. This is safe because
+ * validation works on an immutable copy of NedResources, whose lazily computed data
+ * is filled in before the workers start.
  */
 public class NedValidationJob extends Job {
+    // do not start more worker threads than what this number of files keeps busy
+    private static final int MIN_FILES_PER_WORKER = 20;
+
+    private static final ThreadFactory threadFactory = new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "NED validation worker " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
     private boolean validateOpenNedFilesOnly = false; //TODO such preference might be useful for netbooks
     private int retryCount = 0;
 
@@ -53,40 +92,108 @@ public class NedValidationJob extends Job {
         long startTime = System.currentTimeMillis();
         Debug.println("NED validation job started working");
 
-        INedResources nedResources = NedResourcesPlugin.getNedResources();
+        NedResources nedResources = NedResources.getInstance();
 
-        int numWorkUnits = 3 + nedResources.getNedFiles().size();
-        monitor.beginTask(getName(), numWorkUnits);
+        // we'll analyze an immutable copy, so that NedResources doesn't need to be locked;
+        // the changes to be validated are taken atomically with it
+        NedTypeResolver immutableResolver;
+        NedResources.PendingChanges pending;
+        synchronized (nedResources) {
+            immutableResolver = (NedTypeResolver)nedResources.getImmutableCopy();
+            pending = nedResources.takePendingValidation();
+        }
 
-        // we'll analyze an immutable copy, so that NedResources doesn't need to be locked
-        INedTypeResolver immutableResolver = nedResources.getImmutableCopy();
-        monitor.worked(1);
+        boolean success = false;
+        try {
+            success = validate(nedResources, immutableResolver, pending, startTime, monitor);
+            return success;
+        }
+        finally {
+            if (!success)
+                nedResources.restorePendingValidation(pending); // validate them next time
+        }
+    }
 
+    private boolean validate(NedResources nedResources, NedTypeResolver immutableResolver, NedResources.PendingChanges pending, long startTime, IProgressMonitor monitor) {
         ProblemMarkerSynchronizer markerSync = new ProblemMarkerSynchronizer(INedTypeResolver.NEDCONSISTENCYPROBLEM_MARKERID);
         NedMarkerErrorStore errorStore = new NedMarkerErrorStore(markerSync);
 
-        // clear old consistency error markers from NED trees
-        clearConsistencyProblemSeverities(immutableResolver);
+        // determine the files to validate: the changed files and their dependents, plus files
+        // with duplicate types, because those get markers below, so they must be validated fully
+        Set<IFile> filesToValidate;
+        if (pending.full)
+            filesToValidate = immutableResolver.getNedFiles();
+        else {
+            filesToValidate = immutableResolver.getDependentFiles(pending.files, pending.typeNames);
+            filesToValidate.addAll(immutableResolver.getFilesWithDuplicates());
+        }
+
+        // clear old consistency error markers from the NED trees to be validated; only
+        // the severities of elements in these files are copied back into NedResources
+        clearConsistencyProblemSeverities(immutableResolver, filesToValidate);
 
         // issue error message for duplicates
         immutableResolver.addErrorsForDuplicates(errorStore);
-        monitor.worked(1);
+        Debug.println("NED validation job: validating " + filesToValidate.size() + " of " + immutableResolver.getNedFiles().size() + " files");
 
-        // validate all files
-        for (IFile file : immutableResolver.getNedFiles()) {
-            NedFileElementEx nedFileElement = immutableResolver.getNedFileElement(file);
-            errorStore.setFile(file);
-            new NedValidator(immutableResolver, file.getProject(), errorStore).validate(nedFileElement);
-            monitor.worked(1);
+        monitor.beginTask(getName(), 2 + filesToValidate.size());
+        if (filesToValidate.isEmpty()) {
+            monitor.worked(2);
+            return true; // nothing changed that could affect consistency markers
+        }
 
-            if (!nedResources.isImmutableCopyUpToDate(immutableResolver)) {
-                Debug.println("NED validation job: NED trees changed meanwhile, abandoning after " + (System.currentTimeMillis()-startTime) + "ms of work");
-                return false;
+        // compute lazily computed data now, so that worker threads only read shared state
+        prepareForConcurrentAccess(immutableResolver, filesToValidate);
+        monitor.worked(1);
+
+        // validate the files, using several threads
+        List<IFile> files = new ArrayList<IFile>(filesToValidate);
+        AtomicInteger nextFileIndex = new AtomicInteger();
+        AtomicInteger numFilesDone = new AtomicInteger();
+        AtomicBoolean abort = new AtomicBoolean();
+        int numWorkers = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, files.size() / MIN_FILES_PER_WORKER));
+        List<Worker> workers = new ArrayList<Worker>();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        ExecutorService executor = Executors.newFixedThreadPool(numWorkers, threadFactory);
+        try {
+            for (int i = 0; i < numWorkers; i++) {
+                Worker worker = new Worker(immutableResolver, files, nextFileIndex, numFilesDone, abort);
+                workers.add(worker);
+                futures.add(executor.submit(worker));
             }
-            if (monitor.isCanceled()) {
-                Debug.println("NED validation job: cancelled after " + (System.currentTimeMillis()-startTime) + "ms of work");
-                return false;
+
+            // report progress and check for obsolete copy or cancellation while the workers run
+            int numFilesReported = 0;
+            for (Future<?> future : futures) {
+                while (!waitFor(future, 50)) {
+                    int done = numFilesDone.get();
+                    monitor.worked(done - numFilesReported);
+                    numFilesReported = done;
+
+                    if (!abort.get() && !nedResources.isImmutableCopyUpToDate(immutableResolver)) {
+                        Debug.println("NED validation job: NED trees changed meanwhile, abandoning after " + (System.currentTimeMillis()-startTime) + "ms of work");
+                        abort.set(true);
+                    }
+                    if (!abort.get() && monitor.isCanceled()) {
+                        Debug.println("NED validation job: cancelled after " + (System.currentTimeMillis()-startTime) + "ms of work");
+                        abort.set(true);
+                    }
+                }
             }
+            monitor.worked(numFilesDone.get() - numFilesReported);
+        }
+        finally {
+            abort.set(true); // in case of an exception
+            executor.shutdown();
+        }
+        if (numFilesDone.get() < files.size())
+            return false; // aborted
+
+        // merge the results of the workers
+        Set<INedElement> affectedElements = new HashSet<INedElement>(errorStore.getAffectedElements());
+        for (Worker worker : workers) {
+            markerSync.addAll(worker.markerSync);
+            affectedElements.addAll(worker.errorStore.getAffectedElements());
         }
 
         // lock NedResources while we copy marker severities onto NED trees in it
@@ -100,11 +207,11 @@ public class NedValidationJob extends Job {
 
                 nedResources.fireBeginChangeEvent();
 
-                // clear old consistency error markers from NED trees
-                clearConsistencyProblemSeverities(nedResources);
+                // clear old consistency error markers from the validated NED trees
+                clearConsistencyProblemSeverities(nedResources, filesToValidate);
 
                 // put validation errors
-                for (INedElement element : errorStore.getAffectedElements()) {
+                for (INedElement element : affectedElements) {
                     INedElement original = element.getOriginal();
                     original.setConsistencyProblemMaxLocalSeverity(element.getConsistencyProblemMaxLocalSeverity());
                 }
@@ -112,7 +219,7 @@ public class NedValidationJob extends Job {
                 // we need to do the synchronization in a background job, to avoid deadlocks
                 markerSync.runAsWorkspaceJob();
 
-                Debug.println("NED validation job completed: spent " + (midTime-startTime) + "ms in background, " + (System.currentTimeMillis()-midTime) + "ms blocking, " + markerSync.getNumberOfMarkers() + " markers on " + markerSync.getNumberOfFiles() + " files");
+                Debug.println("NED validation job completed: spent " + (midTime-startTime) + "ms in background (" + numWorkers + " threads), " + (System.currentTimeMillis()-midTime) + "ms blocking, " + markerSync.getNumberOfMarkers() + " markers on " + markerSync.getNumberOfFiles() + " files");
                 monitor.worked(1);
 
                 return true;
@@ -123,9 +230,106 @@ public class NedValidationJob extends Job {
         }
     }
 
-    private void clearConsistencyProblemSeverities(INedTypeResolver resolver) {
-        for (IFile file : resolver.getNedFiles())
+    private void clearConsistencyProblemSeverities(INedTypeResolver resolver, Set<IFile> files) {
+        for (IFile file : files)
             resolver.getNedFileElement(file).clearConsistencyProblemMarkerSeverities();
     }
 
+    /**
+     * Validates files from the shared list until all of them are taken or abort is set.
+     * Each worker collects markers into its own error store, because the marker
+     * synchronizer is not thread-safe; they are merged when all workers are done.
+     * Elements are only modified in the file being validated (problem severities).
+     */
+    private static class Worker implements Runnable {
+        final INedTypeResolver resolver;
+        final List<IFile> files;
+        final AtomicInteger nextFileIndex;
+        final AtomicInteger numFilesDone;
+        final AtomicBoolean abort;
+        final ProblemMarkerSynchronizer markerSync = new ProblemMarkerSynchronizer(INedTypeResolver.NEDCONSISTENCYPROBLEM_MARKERID);
+        final NedMarkerErrorStore errorStore = new NedMarkerErrorStore(markerSync);
+
+        Worker(INedTypeResolver resolver, List<IFile> files, AtomicInteger nextFileIndex, AtomicInteger numFilesDone, AtomicBoolean abort) {
+            this.resolver = resolver;
+            this.files = files;
+            this.nextFileIndex = nextFileIndex;
+            this.numFilesDone = numFilesDone;
+            this.abort = abort;
+        }
+
+        public void run() {
+            int i;
+            while (!abort.get() && (i = nextFileIndex.getAndIncrement()) < files.size()) {
+                IFile file = files.get(i);
+                NedFileElementEx nedFileElement = resolver.getNedFileElement(file);
+                errorStore.setFile(file);
+                new NedValidator(resolver, file.getProject(), errorStore).validate(nedFileElement);
+                numFilesDone.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Waits until the future completes or the timeout expires, and returns whether it has
+     * completed. Exceptions thrown by the task are rethrown, so that they terminate the job.
+     */
+    private static boolean waitFor(Future<?> future, long timeoutMillis) {
+        try {
+            future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        }
+        catch (TimeoutException e) {
+            return false;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Computes all data in the resolver and the NED trees that would otherwise be computed
+     * on demand during validation (inherited members of type infos, connection caches, etc.)
+     * for the types in the given files, and for the types they extend, implement or use,
+     * because the validator also looks into those. The resolver is immutable, so after this,
+     * validator threads only read shared data; the resolver's lookup methods are synchronized.
+     */
+    private static void prepareForConcurrentAccess(INedTypeResolver resolver, Set<IFile> files) {
+        Set<INedTypeElement> visited = new HashSet<INedTypeElement>();
+        for (IFile file : files)
+            for (INedElement child : resolver.getNedFileElement(file))
+                if (child instanceof INedTypeElement)
+                    prepareForConcurrentAccess((INedTypeElement)child, visited);
+    }
+
+    private static void prepareForConcurrentAccess(INedTypeElement typeElement, Set<INedTypeElement> visited) {
+        if (!visited.add(typeElement))
+            return;
+        INedTypeInfo typeInfo = typeElement.getNedTypeInfo();
+        typeInfo.getFullyQualifiedName();
+        typeInfo.getMembers(); // refreshes local and inherited members
+        typeInfo.getLocalUsedTypes();
+        for (INedTypeInfo superType : typeInfo.getInheritanceChain())
+            prepareForConcurrentAccess(superType.getNedElement(), visited);
+        for (INedTypeElement interfaceType : typeInfo.getInterfaces())
+            prepareForConcurrentAccess(interfaceType, visited);
+        for (INedTypeElement usedType : typeInfo.getUsedTypes())
+            prepareForConcurrentAccess(usedType, visited);
+        if (typeElement instanceof CompoundModuleElementEx) {
+            CompoundModuleElementEx compoundModule = (CompoundModuleElementEx)typeElement;
+            compoundModule.getSrcConnectionsFor(""); // fills the connection cache
+            for (INedTypeElement innerType : typeInfo.getLocalInnerTypes().values())
+                prepareForConcurrentAccess(innerType, visited);
+        }
+    }
+
 }
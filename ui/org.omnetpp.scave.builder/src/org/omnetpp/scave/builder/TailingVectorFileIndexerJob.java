@@ -0,0 +1,184 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2020 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.scave.builder;
+
+import static org.omnetpp.scave.common.ScaveMarkers.MARKERTYPE_SCAVEPROBLEM;
+import static org.omnetpp.scave.common.ScaveMarkers.addMarker;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.omnetpp.common.Debug;
+import org.omnetpp.scave.engine.TailingVectorFileIndexer;
+import org.omnetpp.scave.engineext.ResultFileFormatException;
+
+/**
+ * Indexes a vector file while it is still being written (e.g. by a running
+ * simulation), by periodically processing the newly appended lines. The index
+ * file is rewritten every now and then, so that it is ready (and up to date)
+ * shortly after the simulation finishes writing the file.
+ *
+ * As the simulation does not signal when it has finished with the file, the
+ * job ends when the file has stopped growing and no simulation is running in
+ * the IDE, when the file has not grown for a while (see idleTimeoutMillis),
+ * when the file is removed, or when the job is canceled.
+ *
+ * VectorFileIndexBuilder starts the job (via startFor()) for vector files
+ * that change while a simulation is running, and leaves the files that are
+ * being tailed alone.
+ */
+public class TailingVectorFileIndexerJob extends Job {
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 500;
+    public static final long DEFAULT_WRITE_INTERVAL_MILLIS = 5000;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30000;
+
+    // job family of simulations launched from the IDE (SimulationLauncherJob.SIMULATION_JOB_FAMILY;
+    // not referenced directly, as this plug-in does not depend on the launcher)
+    private static final String SIMULATION_JOB_FAMILY = "simulation";
+
+    private static Set<IFile> tailedFiles = new HashSet<IFile>();
+
+    private IFile vectorFile;
+    private long pollIntervalMillis = DEFAULT_POLL_INTERVAL_MILLIS;
+    private long writeIntervalMillis = DEFAULT_WRITE_INTERVAL_MILLIS;
+    private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+
+    public TailingVectorFileIndexerJob(IFile vectorFile) {
+        super("Indexing " + vectorFile.getName());
+        this.vectorFile = vectorFile;
+        setPriority(Job.LONG);
+        setSystem(true);
+    }
+
+    /**
+     * Schedules a job for the given file, unless there is one already.
+     * Returns the new job, or null.
+     */
+    public static TailingVectorFileIndexerJob startFor(IFile vectorFile) {
+        synchronized (tailedFiles) {
+            if (!tailedFiles.add(vectorFile))
+                return null;
+        }
+        TailingVectorFileIndexerJob job = new TailingVectorFileIndexerJob(vectorFile);
+        job.schedule();
+        return job;
+    }
+
+    /**
+     * Returns true if a job started with startFor() is indexing the given file.
+     */
+    public static boolean isTailing(IFile vectorFile) {
+        synchronized (tailedFiles) {
+            return tailedFiles.contains(vectorFile);
+        }
+    }
+
+    /**
+     * Returns true if a simulation launched from the IDE is running.
+     */
+    public static boolean isSimulationRunning() {
+        return Job.getJobManager().find(SIMULATION_JOB_FAMILY).length > 0;
+    }
+
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    /**
+     * Sets the minimum time between rewriting the index file while the vector file keeps growing.
+     */
+    public void setWriteIntervalMillis(long writeIntervalMillis) {
+        this.writeIntervalMillis = writeIntervalMillis;
+    }
+
+    /**
+     * Sets how long the file may stay unchanged before we consider it finished.
+     */
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        try {
+            return doRun(monitor);
+        }
+        finally {
+            synchronized (tailedFiles) {
+                tailedFiles.remove(vectorFile);
+            }
+        }
+    }
+
+    protected IStatus doRun(IProgressMonitor monitor) {
+        String osFileName = vectorFile.getLocation().toFile().getAbsolutePath();
+        try {
+            vectorFile.deleteMarkers(MARKERTYPE_SCAVEPROBLEM, true, IResource.DEPTH_ZERO);
+        }
+        catch (CoreException e) {
+            Activator.logError(e);
+        }
+
+        Debug.println("started tailing " + vectorFile);
+        TailingVectorFileIndexer indexer = new TailingVectorFileIndexer(osFileName);
+        try {
+            long now = System.currentTimeMillis();
+            long lastGrowthTime = now, lastWriteTime = now;
+            boolean unwrittenData = false;
+            while (!monitor.isCanceled() && vectorFile.getLocation().toFile().isFile()) {
+                boolean grown = indexer.update();
+                if (grown) {
+                    lastGrowthTime = System.currentTimeMillis();
+                    unwrittenData = true;
+                }
+                now = System.currentTimeMillis();
+                if (!grown && !isSimulationRunning())
+                    break;
+                if (unwrittenData && now - lastWriteTime >= writeIntervalMillis) {
+                    indexer.writeIndex();
+                    lastWriteTime = now;
+                    unwrittenData = false;
+                }
+                if (now - lastGrowthTime >= idleTimeoutMillis)
+                    break;
+                Thread.sleep(pollIntervalMillis);
+            }
+
+            if (vectorFile.getLocation().toFile().isFile()) {
+                indexer.update();
+                indexer.writeIndex();
+            }
+            Debug.println("finished tailing " + vectorFile + ", " + indexer.getNumProcessedBytes() + " bytes indexed");
+            return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+        }
+        catch (InterruptedException e) {
+            return Status.CANCEL_STATUS;
+        }
+        catch (ResultFileFormatException e) {
+            addMarker(vectorFile, MARKERTYPE_SCAVEPROBLEM, IMarker.SEVERITY_ERROR, "Wrong file: "+e.getMessage(), e.getLineNo());
+            Activator.logError("Vector file format error: " + e.getMessage(), e);
+            return Status.OK_STATUS;
+        }
+        catch (Throwable e) {
+            addMarker(vectorFile, MARKERTYPE_SCAVEPROBLEM, IMarker.SEVERITY_WARNING, "Indexing failed: "+e.getMessage(), -1);
+            Activator.logError("Cannot create index file for: "+vectorFile.toString(), e);
+            return Status.OK_STATUS;
+        }
+        finally {
+            indexer.delete();
+        }
+    }
+}
@@ -31,6 +31,8 @@ import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
 public class VectorFileIndexBuilder extends IncrementalProjectBuilder {
+    // files modified more recently than this while a simulation is running are considered being written
+    private static final long RECENT_CHANGE_MILLIS = 10000;
 
     private Queue<IFile> filesToBeIndexed = new ConcurrentLinkedQueue<IFile>();
 
@@ -112,8 +114,13 @@ public class VectorFileIndexBuilder extends IncrementalProjectBuilder {
                 monitor.subTask("Indexing "+file.getName());
                 try {
                     File path = file.getLocation().toFile();
-                    if (path.exists() && isExistingVectorFile(file) && !isIndexFileUpToDate(file))
+                    if (path.exists() && isExistingVectorFile(file) && !isIndexFileUpToDate(file) && !TailingVectorFileIndexerJob.isTailing(file))
                     {
+                        if (isBeingWritten(file)) {
+                            // index incrementally while the simulation writes it, instead of reindexing on every change
+                            TailingVectorFileIndexerJob.startFor(file);
+                            continue;
+                        }
                         IProgressMonitor subMonitor = new SubProgressMonitor(monitor, 1);
                         performIndexing(file, subMonitor);
                         if (subMonitor.isCanceled())
@@ -131,6 +138,15 @@ public class VectorFileIndexBuilder extends IncrementalProjectBuilder {
         }
     }
 
+    /**
+     * Returns true if the file has been modified recently while a simulation
+     * is running, i.e. the simulation is probably still writing it.
+     */
+    protected boolean isBeingWritten(IFile file) {
+        long age = System.currentTimeMillis() - file.getLocation().toFile().lastModified();
+        return age < RECENT_CHANGE_MILLIS && TailingVectorFileIndexerJob.isSimulationRunning();
+    }
+
     protected boolean toBeIndexed(IFile file) {
         if (isExistingVectorFile(file) && !file.getParent().isDerived()) {
             return !isIndexFileUpToDate(file);
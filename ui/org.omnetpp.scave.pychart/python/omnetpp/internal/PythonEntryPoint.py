@@ -70,6 +70,22 @@ def _extract_message(exception):
     return line, msg
 
 
+def _get_memory_usage():
+    """ Returns the resident set size of this process in bytes, or -1 if unknown. """
+    try:
+        with open("/proc/self/statm") as f:
+            return int(f.read().split()[1]) * os.sysconf("SC_PAGE_SIZE")
+    except Exception:
+        pass
+    try:
+        import resource
+        # this is the peak, not the current value, but it's the best we have
+        maxrss = resource.getrusage(resource.RUSAGE_SELF).ru_maxrss
+        return maxrss if sys.platform == "darwin" else maxrss * 1024
+    except Exception:
+        return -1
+
+
 class PythonEntryPoint(object):
     """
     An implementation of the Java interface org.omnetpp.scave.pychart.IPythonEntryPoint
@@ -86,6 +102,7 @@ class PythonEntryPoint(object):
             "print": print,
             "exit": sys.exit
         }
+        self.cleanState = None
 
     def check(self):
         return True
@@ -105,6 +122,55 @@ class PythonEntryPoint(object):
     def setWarningAnnotator(self, warning_annotator):
         Gateway.warning_annotator = warning_annotator
 
+    def warmUp(self, statements):
+        if statements:
+            exec(statements, {})
+        self.cleanState = {
+            "modules": set(sys.modules.keys()),
+            "path": list(sys.path),
+            "cwd": os.getcwd(),
+            "rcParams": dict(mpl.rcParams.copy())
+        }
+
+    def reset(self):
+        import gc
+
+        plt.close("all")
+
+        Gateway.chart_provider = None
+        Gateway.results_provider = None
+        Gateway.widget_provider = None
+        Gateway.chart_plotter = None
+        Gateway.warning_annotator = None
+
+        self.execContext = {
+            "print": print,
+            "exit": sys.exit
+        }
+
+        state = self.cleanState
+        if state:
+            # Unload pure Python modules imported by the previous script: the ones
+            # from new top-level packages (e.g. from the chart's directory), and ours
+            # (e.g. omnetpp.scave.ideplot selects its implementation on import).
+            # Extension modules cannot be reliably reloaded, so those are kept.
+            known_packages = {name.split(".")[0] for name in state["modules"]}
+            for name in list(sys.modules.keys()):
+                if name not in state["modules"]:
+                    file = getattr(sys.modules[name], "__file__", None) or ""
+                    if file.endswith(".py") and (name.split(".")[0] not in known_packages or name.startswith("omnetpp.")):
+                        module = sys.modules.pop(name)
+                        # also unbind it from its parent package, otherwise "from package import module" would still find it
+                        parent, _, child = name.rpartition(".")
+                        if parent in sys.modules and getattr(sys.modules[parent], child, None) is module:
+                            delattr(sys.modules[parent], child)
+            sys.path[:] = state["path"]
+            os.chdir(state["cwd"])
+            dict.update(mpl.rcParams, state["rcParams"]) # the same way as matplotlib.rc_context() does it
+
+        gc.collect()
+        return _get_memory_usage()
+
     # @TimeAndGuard(measureTime=False)
     def execute(self, chartInput):
         # these imports must be lazy, to allow correct module initialization
@@ -248,6 +248,7 @@ class FigureCanvasSWTAgg(FigureCanvasSWT, FigureCanvasAgg):
         self.num = num
         self.useSharedMemory = True
         self.shm = None
+        self._shm_frame_size = None # (w, h) of the last frame written into shm
 
         super().__init__(figure)
         self._agg_draw_pending = False
@@ -286,7 +287,6 @@ class FigureCanvasSWTAgg(FigureCanvasSWT, FigureCanvasAgg):
             self.figure.canvas.toolbar.push_current()
 
     def blit(self, bbox=None):
-        # TODO use SHM here as well!
         if bbox is None and self.figure:
             bbox = self.figure.bbox
 
@@ -297,11 +297,46 @@ class FigureCanvasSWTAgg(FigureCanvasSWT, FigureCanvasAgg):
         h = int(t) - int(b)
         t = int(b) + h
 
+        if self.useSharedMemory and self._blit_shared(l, int(self.renderer.height - t), w, h):
+            return
+
         reg = self.copy_from_bbox(bbox)
         pixelBuffer = reg.to_string_argb()
 
         self.widget.blit(pixelBuffer, l, int(self.renderer.height - t), w, h)
 
+    def _blit_shared(self, x, y, w, h):
+        """
+        Copies the given region of the rendered image into the shared memory
+        (at the same place where the last full frame has it), and tells the
+        widget to pick up only those rows. Returns False if this is not possible,
+        e.g. because the frame size has changed since the last draw().
+        """
+        if self.shm is None or self._shm_frame_size is None:
+            return False
+
+        fw, fh = self._shm_frame_size
+        buffer = self.buffer_rgba()
+        bl = len(buffer) if isinstance(buffer, bytes) else buffer.nbytes
+        if bl != fw * fh * 4:
+            return False
+
+        # clip to the frame
+        x0, y0 = max(x, 0), max(y, 0)
+        x1, y1 = min(x + w, fw), min(y + h, fh)
+        if x0 >= x1 or y0 >= y1:
+            return True
+
+        bc = buffer if isinstance(buffer, bytes) else buffer.cast("B", [bl])
+        stride = fw * 4
+        for row in range(y0, y1):
+            start = row * stride + x0 * 4
+            end = row * stride + x1 * 4
+            self.shm.buf[start:end] = bc[start:end]
+
+        self.widget.blitShared(x0, y0, x1 - x0, y1 - y0, fw, fh)
+        return True
+
     def print_figure(self, *args, **kwargs):
         FigureCanvasAgg.print_figure(self, *args, **kwargs)
         self.draw()
@@ -342,6 +377,7 @@ class FigureCanvasSWTAgg(FigureCanvasSWT, FigureCanvasAgg):
             bc = buffer if isinstance(buffer, bytes) else buffer.cast("B", [bl])
             # shm object may be oversized (after the widget is made smaller), hence the [:bl]
             self.shm.buf[:bl] = bc[:]
+            self._shm_frame_size = (w, h) if bl == w * h * 4 else None
 
             self.widget.setPixelsShared(w, h)
         else:
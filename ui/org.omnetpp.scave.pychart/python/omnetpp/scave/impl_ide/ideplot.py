@@ -12,6 +12,7 @@ set_property = swtplot.set_property
 set_properties = swtplot.set_properties
 get_supported_property_keys = swtplot.get_supported_property_keys
 set_warning = swtplot.set_warning
+get_plot_width = swtplot.get_plot_width
 
 
 def plot(xs, ys, key, label, drawstyle, linestyle, linewidth, color, marker, markersize):
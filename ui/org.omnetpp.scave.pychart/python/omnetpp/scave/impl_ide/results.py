@@ -228,10 +228,13 @@ def get_parameters(filter_expression, include_attrs, include_runattrs, include_i
     return df
 
 
-def get_vectors(filter_expression, include_attrs, include_runattrs, include_itervars, include_param_assignments, include_config_entries, start_time, end_time):
-    shmnames = Gateway.results_provider.getVectorsPickle(filter_expression, include_attrs, float(start_time), float(end_time))
+def get_vectors(filter_expression, include_attrs, include_runattrs, include_itervars, include_param_assignments, include_config_entries, start_time, end_time, max_points=None):
+    max_points_per_vector = -1 if max_points is None else int(max_points)
+    shmnames = Gateway.results_provider.getVectorsPickle(filter_expression, include_attrs, float(start_time), float(end_time), max_points_per_vector)
     vectors, attrs = _load_pickle_from_shm(shmnames[0])
-    df = pd.DataFrame(vectors, columns=["runID", "module", "name", "vectime", "vecvalue"])
+    df = pd.DataFrame(vectors, columns=["runID", "module", "name", "vectime", "vecvalue", "decimated"])
+    if max_points is None:
+        df.drop(columns=["decimated"], inplace=True)
 
     def getter(v):
         return _get_array_from_shm(shmnames[int(v)])
@@ -72,6 +72,16 @@ def get_supported_property_keys():
     return set(Gateway.chart_plotter.getSupportedPropertyKeys())
 
 
+def get_plot_width():
+    """
+    Returns the width of the native plot widget in pixels, or `None` if it is
+    not known yet (e.g. the widget has not been laid out).
+    """
+    assert_is_native_chart()
+    width = Gateway.chart_plotter.getPlotWidth()
+    return width if width > 0 else None
+
+
 def set_warning(warning):
     """
     Displays the given warning text in the plot.
@@ -47,6 +47,14 @@ public interface IMatplotlibWidget {
      * */
     void blit(byte[] pixels, int x, int y, int w, int h);
 
+    /**
+     * Like blit(), but the pixels of the given region were written into the
+     * shared memory region, at the same place where they are in a full frame of
+     * the given size. If the frame size is not that of the last frame received,
+     * the call is ignored, as a new frame is expected to arrive soon anyway.
+     */
+    void blitShared(int x, int y, int w, int h, int frameWidth, int frameHeight);
+
     /**
      * Sets the "selection rectangle" to draw on top of the image.
      * Used when the "zoom" tool is active.
@@ -31,4 +31,6 @@ public interface INativeChartPlotter {
     void setGroupTitles(List<String> titles);
 
     Set<String> getSupportedPropertyKeys();
+
+    int getPlotWidth(); // in pixels
 }
@@ -71,6 +71,20 @@ public interface IPythonEntryPoint {
      */
     void setGlobalObjectPickle(String name, byte[] pickle);
 
+    /**
+     * Executes the given Python statements (typically imports), then records the
+     * state of the interpreter (loaded modules, sys.path, working directory,
+     * Matplotlib rcParams) as the clean state to be restored by reset().
+     */
+    void warmUp(String statements) throws Py4JException;
+
+    /**
+     * Returns the interpreter to the clean state recorded by warmUp(), so that
+     * it can run the next chart script unaffected by the previous one. Returns
+     * the resident memory size of the process in bytes, or -1 if unknown.
+     */
+    Number reset() throws Py4JException;
+
     /**
      * Executes any Python code given in command, using exec()
      */
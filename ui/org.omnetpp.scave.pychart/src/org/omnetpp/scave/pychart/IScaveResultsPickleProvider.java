@@ -42,6 +42,7 @@ public interface IScaveResultsPickleProvider {
     // simple format
     String getScalarsPickle(String filterExpression, boolean includeAttrs, boolean includeFields) throws PickleException, IOException;
     List<String> getVectorsPickle(String filterExpression, boolean includeAttrs, double simTimeStart, double simTimeEnd) throws PickleException, IOException;
+    List<String> getVectorsPickle(String filterExpression, boolean includeAttrs, double simTimeStart, double simTimeEnd, int maxPointsPerVector) throws PickleException, IOException; // maxPointsPerVector=-1: full resolution
     String getStatisticsPickle(String filterExpression, boolean includeAttrs) throws PickleException, IOException;
     String getHistogramsPickle(String filterExpression, boolean includeAttrs) throws PickleException, IOException;
     String getParamValuesPickle(String filter, boolean include_attrs) throws PickleException, IOException;
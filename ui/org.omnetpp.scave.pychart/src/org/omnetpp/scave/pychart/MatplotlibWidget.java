@@ -31,6 +31,7 @@ import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.graphics.PaletteData;
 import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.graphics.TextLayout;
 import org.eclipse.swt.widgets.Canvas;
 import org.eclipse.swt.widgets.Composite;
@@ -70,8 +71,18 @@ import org.omnetpp.scave.engine.ScaveEngine;
  *   portion of the canvas image, which can potentially increase performance
  *   when only a small part of it changes, for example with some animations,
  *   custom cursor lines, interactively showing-hiding annotations, etc..
- *   At the moment, these "subimage" pixels are transferred as byte[] objects
- *   straight through the Py4J connection, without using shared memory.
+ *   These "subimage" pixels are written into the same shared memory buffer, at
+ *   the same place where the full frame has them, and only the affected rows are
+ *   copied from it (blitShared). The byte[] based blit() is only a fallback.
+ *
+ * - imageData acts as a back buffer which is updated in the calling (Py4J) thread,
+ *   and image is the front buffer which is drawn on screen. The latter is updated
+ *   in the Display thread, once for any number of frames/blits that arrived in the
+ *   meantime, and only in the dirty region if there was no full frame among them.
+ *   A full frame is not copied for this: the back buffer itself is handed over to
+ *   the Display thread, and is swapped with a spare one (the previously handed
+ *   over frame). The new back buffer is refreshed from the shared memory when a
+ *   blit arrives into it before the next full frame.
  *
  * - It seems that SWT has to internally convert our pixels into a different
  *   format - at least when using Cairo. (Maybe even twice: when we submit them,
@@ -96,6 +107,18 @@ public class MatplotlibWidget extends Canvas implements IMatplotlibWidget {
      */
     private ImageData imageData;
 
+    /**
+     * A back buffer which was handed over to the Display thread as a full frame,
+     * and can be reused once the image has been created from it; or null.
+     */
+    private ImageData spareImageData;
+
+    /**
+     * Whether imageData does not contain the current frame, because it was just
+     * swapped in for the back buffer handed over to the Display thread.
+     */
+    private boolean imageDataStale;
+
     /**
      * Used to draw the contents of imageData on screen.
      * The imageData is submitted to the SWT Display (and automatically
@@ -103,6 +126,25 @@ public class MatplotlibWidget extends Canvas implements IMatplotlibWidget {
      */
     private Image image;
 
+    /**
+     * The region of imageData which was changed by blits since the image was
+     * last updated from it, or null if none. Guarded by the monitor of this object,
+     * together with imageData, spareImageData, imageDataStale, fullFrameDirty and
+     * imageUpdateScheduled.
+     */
+    private Rectangle dirtyRect;
+
+    /**
+     * Whether a full new frame arrived into imageData since the image was last
+     * updated from it.
+     */
+    private boolean fullFrameDirty;
+
+    /**
+     * Whether an asyncExec to update the image from imageData is already pending.
+     */
+    private boolean imageUpdateScheduled;
+
     /**
      * Whether to draw the last received frame stretched during resizing,
      * until the new image with correct size arrives.
@@ -402,38 +444,169 @@ public class MatplotlibWidget extends Canvas implements IMatplotlibWidget {
         if (buf == null || buf.capacity() == 0)
             return; // avoids InvalidArgumentException
 
-        // copy the data synchronously
-        Display.getDefault().syncExec(() -> {
-            if (imageData == null || w != imageData.width || h != imageData.height) {
-                PaletteData palette = new PaletteData(0xFF000000, 0xFF0000, 0xFF00);
-                imageData = new ImageData(w, h, 32, palette);
-            }
+        // copy the data synchronously into the back buffer; no need to wait
+        // for the Display thread for this, only for the lock
+        synchronized (this) {
+            if (imageData == null || w != imageData.width || h != imageData.height)
+                imageData = createImageData(w, h);
             // Have to up-cast buf because Java 9 added a covariant
             // override of rewind to ByteBuffer, so we weren't always
             // compatible (got NoSuchMethodException).
             // see: https://github.com/eclipse/jetty.project/issues/3244
             ((Buffer)buf).rewind();
             buf.get(imageData.data);
-
-        });
+            imageDataStale = false;
+            fullFrameDirty = true;
+            dirtyRect = null;
+        }
 
         // then update the image itself and redraw asynchronously, because this part takes longer
+        scheduleImageUpdate();
+    }
+
+    @Override
+    public void blitShared(int x, int y, int w, int h, int frameWidth, int frameHeight) {
+        if (isRefreshing)
+            setMessage(null);
+        isRefreshing = false;
+
+        if (buf == null || buf.capacity() == 0)
+            return;
+
+        synchronized (this) {
+            // a new frame with a different size is on its way, this blit would be overwritten anyway
+            if (imageData == null || frameWidth != imageData.width || frameHeight != imageData.height)
+                return;
+
+            x = Math.max(x, 0);
+            y = Math.max(y, 0);
+            w = Math.min(w, frameWidth - x);
+            h = Math.min(h, frameHeight - y);
+            if (w <= 0 || h <= 0)
+                return;
+
+            if (imageDataStale) {
+                // the back buffer was swapped out, refresh it from the shared
+                // memory, which contains the whole frame with this blit applied
+                ((Buffer)buf).rewind();
+                buf.get(imageData.data);
+                imageDataStale = false;
+            }
+            else {
+                // copy only the affected part of each affected row; the layout of
+                // the shared memory is the same as that of imageData.data
+                int stride = imageData.bytesPerLine;
+                for (int row = y; row < y + h; row++) {
+                    int offset = row * stride + x * 4;
+                    ((Buffer)buf).position(offset);
+                    buf.get(imageData.data, offset, w * 4);
+                }
+            }
+
+            if (!fullFrameDirty) {
+                Rectangle r = new Rectangle(x, y, w, h);
+                dirtyRect = dirtyRect == null ? r : dirtyRect.union(r);
+            }
+        }
+
+        scheduleImageUpdate();
+    }
+
+    /**
+     * Makes sure that the image (the front buffer) is updated from imageData (the
+     * back buffer) in the Display thread. Consecutive updates which arrive before
+     * that happens are coalesced into a single one, covering the union of the
+     * dirty regions.
+     */
+    private void scheduleImageUpdate() {
+        synchronized (this) {
+            if (imageUpdateScheduled)
+                return;
+            imageUpdateScheduled = true;
+        }
         Display.getDefault().asyncExec(() -> {
-            if (!isDisposed()) {
+            ImageData fullFrame = null;
+            ImageData subImage = null;
+            Rectangle r;
+            synchronized (this) {
+                imageUpdateScheduled = false;
+                r = dirtyRect;
+                if (fullFrameDirty || image == null || !isSameSize(image, imageData)) {
+                    // hand over the back buffer instead of copying it, and continue with the spare one
+                    fullFrame = imageData;
+                    imageData = spareImageData != null && isSameSize(spareImageData, fullFrame) ?
+                            spareImageData : createImageData(fullFrame.width, fullFrame.height);
+                    spareImageData = null;
+                    imageDataStale = true;
+                }
+                else if (r != null)
+                    subImage = extractRegion(imageData, r);
+                fullFrameDirty = false;
+                dirtyRect = null;
+            }
+
+            if (isDisposed())
+                return;
+
+            if (fullFrame != null) {
                 if (image != null)
                     image.dispose();
-
                 // this is actually the slowest part... consider using BufferedImage or
                 // something like that?
-                image = new Image(getDisplay(), imageData);
-
+                image = new Image(getDisplay(), fullFrame);
+                synchronized (this) {
+                    spareImageData = fullFrame;
+                }
                 redraw();
                 update();
             }
-
+            else if (subImage != null) {
+                Image im = new Image(getDisplay(), subImage);
+                GC gc = new GC(image);
+                gc.drawImage(im, r.x, r.y);
+                gc.dispose();
+                im.dispose();
+                redrawImageRegion(r.x, r.y, r.width, r.height);
+            }
         });
     }
 
+    /**
+     * Repaints the part of the canvas that shows the given region of the image,
+     * or all of it if the image is stretched to a different size.
+     */
+    private void redrawImageRegion(int x, int y, int width, int height) {
+        Rectangle bounds = image.getBounds();
+        Point size = getSize();
+        if (stretchOnResize && (bounds.width != size.x || bounds.height != size.y))
+            redraw();
+        else
+            redraw(x, y, width, height, false);
+        update();
+    }
+
+    private static boolean isSameSize(Image image, ImageData imageData) {
+        Rectangle bounds = image.getBounds();
+        return bounds.width == imageData.width && bounds.height == imageData.height;
+    }
+
+    private static boolean isSameSize(ImageData a, ImageData b) {
+        return a.width == b.width && a.height == b.height;
+    }
+
+    private static ImageData createImageData(int w, int h) {
+        PaletteData palette = new PaletteData(0xFF000000, 0xFF0000, 0xFF00);
+        return new ImageData(w, h, 32, palette);
+    }
+
+    private static ImageData extractRegion(ImageData source, Rectangle r) {
+        ImageData result = new ImageData(r.width, r.height, source.depth, source.palette);
+        int rowBytes = r.width * 4;
+        for (int row = 0; row < r.height; row++)
+            System.arraycopy(source.data, (r.y + row) * source.bytesPerLine + r.x * 4, result.data, row * result.bytesPerLine, rowBytes);
+        return result;
+    }
+
     protected void onDispose() {
         if (buf != null)
             ScaveEngine.unmapSharedMemory(buf);
@@ -471,6 +644,14 @@ public class MatplotlibWidget extends Canvas implements IMatplotlibWidget {
         });
     }
 
+    /**
+     * Stops forwarding events to the Python process, e.g. because it was given
+     * back to the process pool. The last image remains displayed.
+     */
+    public void unbindProcess() {
+        this.pythonProcess = null;
+    }
+
     public void rebindToNewProcess(PythonProcess pythonProcess, IMatplotlibFigureCanvas canvas) {
         this.pythonProcess = pythonProcess;
         this.pyCanvas = canvas;
@@ -505,9 +686,9 @@ public class MatplotlibWidget extends Canvas implements IMatplotlibWidget {
                 gc.drawImage(im, x, y);
 
                 gc.dispose();
+                im.dispose();
 
-                redraw();
-                update();
+                redrawImageRegion(x, y, w, h);
             }
         });
     }
@@ -49,6 +49,7 @@ public class PyChartPlugin extends AbstractUIPlugin {
      * @see org.eclipse.ui.plugin.AbstractUIPlugin#stop(org.osgi.framework.BundleContext)
      */
     public void stop(BundleContext context) throws Exception {
+        PythonProcessPool.disposeSharedPools();
         plugin = null;
         super.stop(context);
     }
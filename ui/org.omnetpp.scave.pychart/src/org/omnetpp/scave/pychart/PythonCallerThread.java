@@ -39,6 +39,7 @@ public class PythonCallerThread extends Thread {
 
     private PythonProcess proc;
     private ConcurrentLinkedQueue<EventStreamRunnable> queue = new ConcurrentLinkedQueue<EventStreamRunnable>();
+    private boolean running = false; // whether a Runnable is being executed; guarded by queue
 
     public interface ExceptionHandler {
         void handle(PythonProcess proc, Exception e);
@@ -102,7 +103,7 @@ public class PythonCallerThread extends Thread {
             if (eventStream >= 0)
                 queue.removeIf(icr -> icr.getEventStream() == eventStream);
             queue.add(cr);
-            queue.notify();
+            queue.notifyAll(); // not notify(), as waitUntilIdle() also waits on queue
         }
     }
 
@@ -127,6 +128,38 @@ public class PythonCallerThread extends Thread {
         asyncExec(runnable, -1, runAfterDone, errorHandler);
     }
 
+    /**
+     * Returns true if there is no Runnable being executed or waiting in the queue.
+     */
+    public boolean isIdle() {
+        synchronized (queue) {
+            return queue.isEmpty() && !running;
+        }
+    }
+
+    /**
+     * Waits until isIdle() becomes true, at most for the given number of milliseconds.
+     * Returns the final value of isIdle().
+     */
+    public boolean waitUntilIdle(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (queue) {
+            while (!(queue.isEmpty() && !running)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !isAlive())
+                    return false;
+                try {
+                    queue.wait(remaining);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     @Override
     public void run() {
         outer: while (proc.isAlive()) {
@@ -145,8 +178,10 @@ public class PythonCallerThread extends Thread {
                 Runnable r = null;
                 synchronized (queue) {
                     // double-check to avoid race condition if a submission to an event stream just emptied the queue
-                    if (!queue.isEmpty())
+                    if (!queue.isEmpty()) {
                         r = queue.remove();
+                        running = true;
+                    }
                 }
                 if (r != null) {
                     try {
@@ -156,6 +191,12 @@ public class PythonCallerThread extends Thread {
                         PyChartPlugin.logError(e);
                         break outer;
                     }
+                    finally {
+                        synchronized (queue) {
+                            running = false;
+                            queue.notifyAll(); // for waitUntilIdle()
+                        }
+                    }
                 }
             }
         }
@@ -9,8 +9,8 @@ package org.omnetpp.scave.pychart;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.omnetpp.common.Debug;
 
@@ -28,7 +28,7 @@ public class PythonOutputMonitoringThread extends Thread {
         void outputReceived(String content, boolean stdErr);
     }
 
-    List<IOutputListener> outputListeners = new ArrayList<IOutputListener>();
+    List<IOutputListener> outputListeners = new CopyOnWriteArrayList<IOutputListener>();
 
     public PythonOutputMonitoringThread(PythonProcess process, boolean monitorStdErr) {
         super("Python output monitoring for " + (monitorStdErr ? "stderr" : "stdout") + " of PythonProcess " + process.getProcess().pid());
@@ -40,6 +40,14 @@ public class PythonOutputMonitoringThread extends Thread {
         outputListeners.add(listener);
     }
 
+    public void removeOutputListener(IOutputListener listener) {
+        outputListeners.remove(listener);
+    }
+
+    public void removeAllOutputListeners() {
+        outputListeners.clear();
+    }
+
     @Override
     public void run() {
         byte[] readBuffer = new byte[4096];
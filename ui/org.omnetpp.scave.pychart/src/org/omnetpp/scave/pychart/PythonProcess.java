@@ -29,6 +29,7 @@ public class PythonProcess {
     private Process process;
     private ClientServer clientServer = null;
     private boolean killedByUs = false;
+    private int useCount = 0; // number of times handed out by a PythonProcessPool
 
     protected InterruptedFlag interruptedFlag = new InterruptedFlag();
 
@@ -149,6 +150,14 @@ public class PythonProcess {
         return "Python process: " + process + " isAlive: " + isAlive() + " killed by us: " + killedByUs + " exitCode: " + (process.isAlive() ? "none" : Integer.toString(process.exitValue()));
     }
 
+    public int getUseCount() {
+        return useCount;
+    }
+
+    void incrementUseCount() {
+        useCount++;
+    }
+
     public InterruptedFlag getInterruptedFlag() {
         return interruptedFlag;
     }
@@ -12,8 +12,11 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URISyntaxException;
 import java.security.SecureRandom;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.omnetpp.common.Debug;
 
@@ -24,12 +27,47 @@ import py4j.ClientServer;
  * ready to use. Each of them is a running python3 interpreter process, with a
  * Py4J connection to it. This was added to reduce the latency of repeated chart
  * script executions.
+ *
+ * Processes are pre-warmed, i.e. the Py4J connection is established and some
+ * modules are imported before they are handed out. Processes may be returned
+ * to the pool with releaseProcess(), which resets them to their clean state in
+ * the background, and makes them available again, unless they have been used
+ * too many times or have grown too large; these are killed instead.
+ * Processes that are handed out or being reset count towards the pool size, so
+ * new processes are only launched for ones that will not come back, or when
+ * getProcess() callers are waiting. Batch jobs can temporarily raise the number
+ * of processes kept ready with reserveProcesses(), without changing the pool size.
+ *
+ * Two shared instances are available: one for chart viewers (using our
+ * Matplotlib backend), and one for chart export (using the "agg" backend).
  */
 public class PythonProcessPool {
+    // Note: omnetpp.scave.ideplot (and modules that import it, like omnetpp.scave.utils)
+    // must not be pre-imported, as it selects its implementation on import.
+    public static final String DEFAULT_PREWARM_IMPORTS = "import omnetpp.scave.results, omnetpp.scave.chart";
+    public static final int DEFAULT_MAX_USES = 50;
+    public static final long DEFAULT_MEMORY_LIMIT = 1024L * 1024 * 1024; // bytes
+    private static final long IDLE_TIMEOUT_MILLIS = 5000; // see releaseProcessWhenIdle()
+
+    private static PythonProcessPool sharedPool;
+    private static PythonProcessPool sharedExportPool;
+
     private boolean shouldSetOmnetppMplBackend = true;
+    private int size;
+    private int numReserved = 0; // guarded by "this"; see reserveProcesses()
+    private String prewarmImports = DEFAULT_PREWARM_IMPORTS;
+    private int maxUses = DEFAULT_MAX_USES;
+    private long memoryLimit = DEFAULT_MEMORY_LIMIT;
+
+    // the following fields are guarded by "this"
     private ArrayList<PythonProcess> availableProcesses = new ArrayList<PythonProcess>();
+    private ArrayDeque<PythonProcess> processesToReset = new ArrayDeque<PythonProcess>();
+    private Set<PythonProcess> handedOutProcesses = new HashSet<PythonProcess>();
+    private int numProcessesBeingReset = 0;
+    private int numWaitingCallers = 0;
     private String errorMessage = null;
     private boolean threadExit = false;
+
     private Thread launcherThread;
 
     public PythonProcessPool() {
@@ -37,37 +75,191 @@ public class PythonProcessPool {
     }
 
     public PythonProcessPool(int N) {
+        this(N, true);
+    }
+
+    public PythonProcessPool(int N, boolean shouldSetOmnetppMplBackend) {
+        this.size = N;
+        this.shouldSetOmnetppMplBackend = shouldSetOmnetppMplBackend;
 
         launcherThread = new Thread(() -> {
-            while (!threadExit) {
-                if (availableProcesses.size() < N) {
+            while (true) {
+                PythonProcess toReset = null;
+                synchronized (this) {
+                    // wait until there is something to do
+                    while (!threadExit && processesToReset.isEmpty() && !needsNewProcess()) {
+                        try {
+                            wait(1000);
+                        }
+                        catch (InterruptedException e) {
+                            // check again
+                        }
+                        availableProcesses.removeIf(p -> !p.isAlive());
+                        handedOutProcesses.removeIf(p -> !p.isAlive()); // killed by their users
+                    }
+                    if (threadExit)
+                        break;
+                    toReset = processesToReset.poll();
+                    if (toReset != null)
+                        numProcessesBeingReset++;
+                }
+
+                if (toReset != null) {
                     try {
-                        availableProcesses.add(createProcess());
+                        recycleProcess(toReset);
                     }
-                    catch (IOException e) {
-                        errorMessage = e.getMessage();
-                        threadExit = true;
+                    finally {
+                        synchronized (this) {
+                            numProcessesBeingReset--;
+                            notifyAll();
+                        }
                     }
-                    if (PythonProcess.debug)
-                        Debug.println("We have " + availableProcesses.size() + " processes.");
-                }
-                try {
-                    Thread.sleep(1000);
                 }
-                catch (InterruptedException e) {
-                    // need to create a process right away - most likely
+                else {
+                    PythonProcess process = null;
+                    try {
+                        process = createProcess();
+                        process.getEntryPoint().warmUp(prewarmImports);
+                        if (!addAvailableProcess(process))
+                            process.kill(); // pool was shrunk or disposed meanwhile
+                    }
+                    catch (IOException | RuntimeException e) {
+                        if (process != null)
+                            process.kill();
+                        synchronized (this) {
+                            errorMessage = e.getMessage(); // reported by the next getProcess() call, which also re-enables launching
+                            notifyAll();
+                        }
+                    }
                 }
             }
-        });
+        }, "Python process launcher");
 
         launcherThread.setDaemon(true);
         launcherThread.start();
     }
 
+    /**
+     * Returns true if the launcher should start a new process: when processes that are
+     * available, handed out or being reset fall short of the target size, or when there
+     * are more callers waiting in getProcess() than processes about to become available.
+     */
+    private synchronized boolean needsNewProcess() {
+        if (errorMessage != null)
+            return false;
+        int numComingBack = processesToReset.size() + numProcessesBeingReset;
+        return availableProcesses.size() + handedOutProcesses.size() + numComingBack < getTargetSize() ||
+                numWaitingCallers > availableProcesses.size() + numComingBack;
+    }
+
+    /**
+     * Returns the shared pool for chart viewers, which uses our own Matplotlib backend.
+     */
+    public static synchronized PythonProcessPool getSharedPool() {
+        if (sharedPool == null)
+            sharedPool = new PythonProcessPool(2, true);
+        return sharedPool;
+    }
+
+    /**
+     * Returns the shared pool for chart export, which uses the "agg" Matplotlib backend.
+     */
+    public static synchronized PythonProcessPool getSharedExportPool() {
+        if (sharedExportPool == null)
+            sharedExportPool = new PythonProcessPool(1, false);
+        return sharedExportPool;
+    }
+
+    public static synchronized void disposeSharedPools() {
+        if (sharedPool != null)
+            sharedPool.dispose();
+        if (sharedExportPool != null)
+            sharedExportPool.dispose();
+        sharedPool = sharedExportPool = null;
+    }
+
     public void setShouldSetOmnetppMplBackend(boolean value) {
         this.shouldSetOmnetppMplBackend = value;
     }
 
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * Sets the number of processes to keep ready for use.
+     */
+    public synchronized void setSize(int size) {
+        this.size = size;
+        killExcessProcesses();
+    }
+
+    /**
+     * Asks the pool to keep (at least) n processes ready for a batch of jobs that
+     * are about to run concurrently, so they don't have to wait for launches one
+     * after the other. Reservations of concurrent callers add up, and the pool
+     * keeps the larger of its size and the total reservation. The pool size is
+     * not affected. Must be paired with a releaseReservation(n) call.
+     */
+    public synchronized void reserveProcesses(int n) {
+        numReserved += n;
+        notifyAll();
+    }
+
+    /**
+     * Cancels a reservation made with reserveProcesses(n).
+     */
+    public synchronized void releaseReservation(int n) {
+        numReserved = Math.max(0, numReserved - n);
+        killExcessProcesses();
+    }
+
+    private synchronized int getTargetSize() {
+        return Math.max(size, numReserved);
+    }
+
+    private synchronized void killExcessProcesses() {
+        while (availableProcesses.size() > getTargetSize())
+            availableProcesses.remove(availableProcesses.size() - 1).kill();
+        notifyAll();
+    }
+
+    public String getPrewarmImports() {
+        return prewarmImports;
+    }
+
+    /**
+     * Sets the Python statements executed in new processes before they are handed
+     * out. Only affects processes launched afterwards.
+     */
+    public void setPrewarmImports(String prewarmImports) {
+        this.prewarmImports = prewarmImports;
+    }
+
+    public int getMaxUses() {
+        return maxUses;
+    }
+
+    /**
+     * Sets the number of times a process may be handed out before it is killed
+     * (instead of reset) on release.
+     */
+    public void setMaxUses(int maxUses) {
+        this.maxUses = maxUses;
+    }
+
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /**
+     * Sets the resident memory size (in bytes) above which released processes are
+     * killed instead of being reused. Zero means no limit.
+     */
+    public void setMemoryLimit(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
     private PythonProcess createProcess() throws IOException {
         if (PythonProcess.debug)
             Debug.println("connecting...");
@@ -150,27 +342,142 @@ public class PythonProcessPool {
     }
 
     public void dispose() {
-        threadExit = true;
+        synchronized (this) {
+            threadExit = true;
+            notifyAll();
+            for (PythonProcess pr : availableProcesses)
+                pr.kill();
+            availableProcesses.clear();
+            for (PythonProcess pr : processesToReset)
+                pr.kill();
+            processesToReset.clear();
+            handedOutProcesses.clear(); // they are killed on release
+        }
         launcherThread.interrupt();
-        for (PythonProcess pr : availableProcesses)
-            pr.kill();
-        availableProcesses.clear();
     }
 
+    /**
+     * Returns a ready-to-use process, waiting for one to be launched if needed.
+     * The process should be given back with releaseProcess(), or killed.
+     */
     public PythonProcess getProcess() {
+        PythonProcess pr;
+        synchronized (this) {
+            while (true) {
+                if (threadExit)
+                    throw new IllegalStateException("Python process pool already disposed");
+                availableProcesses.removeIf(p -> !p.isAlive());
+                if (!availableProcesses.isEmpty())
+                    break;
+                if (errorMessage != null) {
+                    String message = errorMessage;
+                    errorMessage = null; // let the launcher try again next time
+                    notifyAll();
+                    throw new RuntimeException(message);
+                }
+                notifyAll(); // wake up the launcher
+                numWaitingCallers++;
+                try {
+                    wait(1000);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for a Python process");
+                }
+                finally {
+                    numWaitingCallers--;
+                }
+            }
+
+            pr = availableProcesses.remove(0);
+            handedOutProcesses.add(pr);
+            // waking up the launcher to replenish the supply of processes
+            notifyAll();
+        }
+
+        pr.incrementUseCount();
+        return pr;
+    }
 
-        while (availableProcesses.isEmpty()) {
-            launcherThread.interrupt();
-            // TODO: make sure to wait for a process to become available
+    /**
+     * Gives back a process obtained from getProcess(). If it is idle and still
+     * fit for use, it is reset to its clean state in the background and made
+     * available again; otherwise it is killed. Output listeners are removed.
+     */
+    public void releaseProcess(PythonProcess pr) {
+        pr.outputMonitoringThread.removeAllOutputListeners();
+        pr.errorMonitoringThread.removeAllOutputListeners();
+
+        if (pr.isAlive() && pr.pythonCallerThread.isIdle())
+            enqueueForReset(pr);
+        else
+            discardProcess(pr); // dead, or still running something: cannot be reused
+    }
+
+    /**
+     * Like releaseProcess(), but for use in completion callbacks of code executed
+     * on the process' PythonCallerThread, i.e. when the Python call is known to be
+     * over, but the caller thread is not idle yet. The process is reused if the
+     * caller thread becomes idle within a few seconds.
+     */
+    public void releaseProcessWhenIdle(PythonProcess pr) {
+        pr.outputMonitoringThread.removeAllOutputListeners();
+        pr.errorMonitoringThread.removeAllOutputListeners();
+
+        if (pr.isAlive())
+            enqueueForReset(pr);
+        else
+            discardProcess(pr);
+    }
 
-            if (errorMessage != null)
-                throw new RuntimeException(errorMessage);
+    private void enqueueForReset(PythonProcess pr) {
+        synchronized (this) {
+            handedOutProcesses.remove(pr);
+            notifyAll();
+            if (!threadExit && pr.getUseCount() < maxUses) {
+                processesToReset.add(pr);
+                return;
+            }
         }
+        pr.kill();
+    }
 
-        PythonProcess pr = availableProcesses.remove(0);
-        // waking up the launcher to replenish the supply of processes
-        launcherThread.interrupt();
+    private void discardProcess(PythonProcess pr) {
+        synchronized (this) {
+            handedOutProcesses.remove(pr);
+            notifyAll(); // a replacement may be needed
+        }
+        pr.kill();
+    }
 
-        return pr;
+    private void recycleProcess(PythonProcess pr) {
+        try {
+            if (!pr.pythonCallerThread.waitUntilIdle(IDLE_TIMEOUT_MILLIS)) {
+                pr.kill();
+                return;
+            }
+            long memoryUsage = pr.getEntryPoint().reset().longValue();
+            if (PythonProcess.debug)
+                Debug.println("Python process " + pr.getProcess().pid() + " was reset, using " + memoryUsage + " bytes");
+            if (memoryLimit <= 0 || memoryUsage <= memoryLimit) {
+                if (addAvailableProcess(pr))
+                    return;
+            }
+        }
+        catch (RuntimeException e) {
+            if (PythonProcess.debug)
+                Debug.println("Could not reset Python process: " + e.getMessage());
+        }
+        pr.kill();
+    }
+
+    private synchronized boolean addAvailableProcess(PythonProcess pr) {
+        if (threadExit || availableProcesses.size() >= getTargetSize() || !pr.isAlive())
+            return false;
+        availableProcesses.add(pr);
+        if (PythonProcess.debug)
+            Debug.println("We have " + availableProcesses.size() + " processes.");
+        notifyAll();
+        return true;
     }
 }
@@ -495,7 +495,9 @@ public class ChartScriptEditor extends PyEdit {  //TODO ChartEditor?
 
         @Override
         public void resultFileManagerChanged(ResultFileManagerChangeEvent event) {
-            if (autoRefreshChart)
+            // only rerun the script if the data it used may have changed
+            ChartViewerBase chartViewer = getChartViewer();
+            if (autoRefreshChart && (chartViewer == null || chartViewer.isAffectedBy(event)))
                 rerunChartScriptJob.restartTimer();
         }
 
@@ -1,14 +1,23 @@
 package org.omnetpp.scave.editors;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+
 import org.omnetpp.scave.engine.IDList;
 import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.engineext.ResultFileManagerChangeEvent;
 import org.omnetpp.scave.model2.ScaveModelUtil;
 
 /**
- * Result filtering cache for methods of ResultProvider.
+ * Result filtering cache for methods of ResultProvider. It is thread-safe,
+ * as it may be shared by several Python processes (e.g. during chart export).
+ * When result files are added, removed or reloaded, resultFilesChanged() only
+ * discards the filter results affected by the change.
  *
  * @author andras
  */
@@ -63,7 +72,7 @@ public class FilterCache {
         }
     }
 
-    public IDList getFilterResult(int resultTypes, String filterExpression, boolean includeFields) {
+    public synchronized IDList getFilterResult(int resultTypes, String filterExpression, boolean includeFields) {
         checkSerial();
         return filterCache.get(new Key(resultTypes, filterExpression, includeFields));
     }
@@ -72,7 +81,7 @@ public class FilterCache {
         return getFilterResult(resultTypes, filterExpression, false);
     }
 
-    public void putFilterResult(int resultTypes, String filterExpression, boolean includeFields, IDList result) {
+    public synchronized void putFilterResult(int resultTypes, String filterExpression, boolean includeFields, IDList result) {
         checkSerial();
         filterCache.put(new Key(resultTypes, filterExpression, includeFields), result);
     }
@@ -81,7 +90,102 @@ public class FilterCache {
         putFilterResult(resultTypes, filterExpression, false, result);
     }
 
-    public void clear() {
+    /**
+     * Evaluates each filter expression once over all result items, and stores
+     * the results for the result type combinations ResultsProvider queries
+     * (without fields). Existing entries are left alone. Must be called with
+     * the read lock of the ResultFileManager held.
+     */
+    public void precomputeFilterResults(Collection<String> filterExpressions, IProgressMonitor monitor) {
+        final int[] resultTypesToStore = {
+            ResultFileManager.PARAMETER | ResultFileManager.SCALAR | ResultFileManager.VECTOR | ResultFileManager.STATISTICS | ResultFileManager.HISTOGRAM,
+            ResultFileManager.PARAMETER,
+            ResultFileManager.SCALAR,
+            ResultFileManager.VECTOR,
+            ResultFileManager.STATISTICS | ResultFileManager.HISTOGRAM,
+            ResultFileManager.HISTOGRAM
+        };
+        IDList allItems = manager.getAllItems(false);
+        for (String filterExpression : filterExpressions) {
+            if (monitor != null && monitor.isCanceled())
+                return;
+            IDList filtered;
+            try {
+                filtered = manager.filterIDList(allItems, filterExpression);
+            }
+            catch (RuntimeException e) {
+                continue; // invalid filter; the chart will report it
+            }
+            // note: filterByTypes() preserves the order in which getAllXxx() would list the items
+            for (int resultTypes : resultTypesToStore)
+                if (getFilterResult(resultTypes, filterExpression) == null)
+                    putFilterResult(resultTypes, filterExpression, filtered.filterByTypes(resultTypes));
+        }
+    }
+
+    /**
+     * Discards the filter results that may be different after the given change
+     * in the loaded result files: those that contain removed items, and those
+     * whose filter expression matches any of the added items.
+     */
+    public void resultFilesChanged(ResultFileManagerChangeEvent event) {
+        if (event.isFullChange()) {
+            clear();
+            return;
+        }
+
+        Map<Key,IDList> entries;
+        synchronized (this) {
+            entries = new HashMap<>(filterCache);
+        }
+
+        // evaluate each filter expression only once on the added items
+        IDList addedItems = event.getAddedItems();
+        IDList removedItems = event.getRemovedItems();
+        Map<String,IDList> addedMatches = new HashMap<>();
+        List<Key> affectedKeys = new ArrayList<>();
+        ResultFileManager.runWithReadLock(manager, () -> {
+            for (Map.Entry<Key,IDList> entry : entries.entrySet()) {
+                Key key = entry.getKey();
+                IDList idList = entry.getValue();
+                if (!removedItems.isEmpty() && !idList.isEmpty()) {
+                    int n = (int)idList.size();
+                    int[] flags = new int[n];
+                    idList.getMembershipFlags(removedItems, flags, n); // leaves idList's order alone
+                    boolean containsRemoved = false;
+                    for (int flag : flags)
+                        if (flag != 0) {
+                            containsRemoved = true;
+                            break;
+                        }
+                    if (containsRemoved) {
+                        affectedKeys.add(key);
+                        continue;
+                    }
+                }
+                if (!addedItems.isEmpty()) {
+                    IDList matches = addedMatches.computeIfAbsent(key.filterExpression, expr -> {
+                        try {
+                            return manager.filterIDList(addedItems, expr);
+                        }
+                        catch (RuntimeException e) {
+                            return addedItems; // invalid filter: let it be re-evaluated
+                        }
+                    });
+                    if (!matches.filterByTypes(key.resultTypes).isEmpty())
+                        affectedKeys.add(key);
+                }
+            }
+        });
+
+        synchronized (this) {
+            for (Key key : affectedKeys)
+                filterCache.remove(key);
+            currentSerial = manager.getSerial();
+        }
+    }
+
+    public synchronized void clear() {
         filterCache.clear();
     }
 
@@ -1,17 +1,31 @@
 package org.omnetpp.scave.editors;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.core.runtime.Assert;
 import org.omnetpp.common.util.StringUtils;
 import org.omnetpp.scave.engine.ByteVector;
+import org.omnetpp.scave.engine.IDList;
 import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.engineext.ResultFileManagerChangeEvent;
 
 /**
- * Memoization cache for methods of ResultProvider.
+ * Memoization cache for methods of ResultProvider. It is thread-safe, as
+ * it may be shared by several Python processes (e.g. during chart export).
+ * To avoid computing the same reply concurrently, computations can be
+ * coordinated using beginComputation() and endComputation().
+ *
+ * Replies may be stored with a Dependency, which describes what they were
+ * computed from. When result files are added, removed or reloaded,
+ * resultFilesChanged() only discards the replies affected by the change;
+ * other changes of the ResultFileManager (see its serial) clear the cache.
  *
  * @author andras
  */
@@ -55,7 +69,94 @@ public class MemoizationCache {
         }
     }
 
+    /**
+     * Describes the data a memoized reply was computed from: the result items
+     * matching a filter expression, or the given runs.
+     */
+    public static class Dependency {
+        private final String filterExpression;
+        private final List<String> runNames;
+        private volatile IDList items; // the items the reply was computed from; null if unknown
+        private ResultFileManagerChangeEvent lastEvent; // for caching the result of isAffectedBy()
+        private boolean lastResult;
+
+        private Dependency(String filterExpression, List<String> runNames) {
+            this.filterExpression = filterExpression;
+            this.runNames = runNames;
+        }
+
+        /**
+         * For replies computed from the items (or runs) matching the filter
+         * expression; call setItems() with the matching items if possible.
+         */
+        public static Dependency onFilter(String filterExpression) {
+            return new Dependency(filterExpression, null);
+        }
+
+        /**
+         * For replies computed from the runs with the given names.
+         */
+        public static Dependency onRuns(List<String> runNames) {
+            return new Dependency(null, new ArrayList<>(runNames));
+        }
+
+        public void setItems(IDList items) {
+            this.items = items;
+        }
+
+        /**
+         * Returns true if the reply may be different after the given change.
+         * The result is remembered for the last event, so that the check is
+         * cheap if several parties ask about the same dependency.
+         */
+        public synchronized boolean isAffectedBy(ResultFileManagerChangeEvent event) {
+            if (event != lastEvent) {
+                lastResult = computeIsAffectedBy(event);
+                lastEvent = event;
+            }
+            return lastResult;
+        }
+
+        private boolean computeIsAffectedBy(ResultFileManagerChangeEvent event) {
+            if (event.isFullChange())
+                return true;
+            if (event.isEmpty())
+                return false;
+            if (runNames != null)
+                return !Collections.disjoint(runNames, event.getAffectedRunNames());
+            IDList items = this.items;
+            if (items == null)
+                return true; // e.g. run filters: we don't know what exactly it depends on
+            if (intersects(items, event.getRemovedItems()))
+                return true;
+            IDList addedItems = event.getAddedItems();
+            if (addedItems.isEmpty())
+                return false;
+            ResultFileManager manager = event.getResultFileManager();
+            try {
+                return ResultFileManager.callWithReadLock(manager, () -> !manager.filterIDList(addedItems, filterExpression).isEmpty());
+            }
+            catch (RuntimeException e) {
+                return true;
+            }
+        }
+
+        private static boolean intersects(IDList items, IDList ids) {
+            if (items.isEmpty() || ids.isEmpty())
+                return false;
+            int n = (int)items.size();
+            int[] flags = new int[n];
+            items.getMembershipFlags(ids, flags, n); // note: sorts ids, but leaves items alone
+            for (int flag : flags)
+                if (flag != 0)
+                    return true;
+            return false;
+        }
+    }
+
     private Map<Key,List<ByteVector>> cache = new LinkedHashMap<>(); // for FIFO order
+    private Map<Key,Dependency> dependencies = new HashMap<>(); // for entries in cache that have one
+    private Map<Key,CompletableFuture<List<ByteVector>>> inFlight = new HashMap<>(); // computations in progress
 
     public MemoizationCache(ResultFileManager rfm) {
         this(rfm, Long.MAX_VALUE);
@@ -70,56 +171,161 @@ public class MemoizationCache {
     private void checkSerial() {
         if (currentSerial != rfm.getSerial()) {
             cache.clear();
+            dependencies.clear();
             memoryUsed = 0;
             currentSerial = rfm.getSerial();
+            // let waiting threads compute the reply themselves, from the new data
+            for (CompletableFuture<List<ByteVector>> future : inFlight.values())
+                future.complete(null);
+            inFlight.clear();
         }
     }
 
-    public boolean contains(Key key) {
+    public synchronized boolean contains(Key key) {
         checkSerial();
         return cache.containsKey(key);
     }
 
-    public List<ByteVector> get(Key key) {
+    public synchronized List<ByteVector> get(Key key) {
         checkSerial();
         return cache.get(key);
     }
 
+    /**
+     * Returns the dependency the reply for the key was stored with, or null.
+     */
+    public synchronized Dependency getDependency(Key key) {
+        checkSerial();
+        return dependencies.get(key);
+    }
+
+    /**
+     * To be called when get() returned null. If another thread is already
+     * computing the reply for the key, returns a future that completes with
+     * that reply (or with null if that computation fails). Otherwise, the caller
+     * becomes responsible for computing the reply, and this method returns null;
+     * the caller must then call endComputation() when done, even on failure.
+     */
+    public synchronized CompletableFuture<List<ByteVector>> beginComputation(Key key) {
+        checkSerial();
+        List<ByteVector> reply = cache.get(key);
+        if (reply != null) // computed meanwhile
+            return CompletableFuture.completedFuture(reply);
+        CompletableFuture<List<ByteVector>> future = inFlight.get(key);
+        if (future != null)
+            return future;
+        inFlight.put(key, new CompletableFuture<>());
+        return null;
+    }
+
+    /**
+     * Ends a computation started with beginComputation(), and passes the reply
+     * (or null on failure) to the threads waiting for it. Does not store the
+     * reply in the cache; use put() for that.
+     */
+    public synchronized void endComputation(Key key, List<ByteVector> reply) {
+        CompletableFuture<List<ByteVector>> future = inFlight.remove(key);
+        if (future != null)
+            future.complete(reply);
+    }
+
     public boolean isCacheable(Key key, long replySize) {
         return replySize <= memoryLimit;
     }
 
-    public void put(Key key, ByteVector reply) {
+    public synchronized void put(Key key, ByteVector reply) {
         // note: using this API, memory consumption can temporarily exceed memoryLimit
         checkSerial();
         Assert.isTrue(reply.size() <= memoryLimit);
         memoryUsed += reply.size();
-        cache.put(key, List.of(reply));
+        dependencies.remove(key);
+        List<ByteVector> oldReply = cache.put(key, List.of(reply));
+        if (oldReply != null)
+            for (ByteVector v : oldReply)
+                memoryUsed -= v.size();
         while (memoryUsed > memoryLimit)
             discardFirst();
     }
 
-    public void put(Key key, List<ByteVector> reply) {
+    public synchronized void put(Key key, List<ByteVector> reply) {
+        put(key, reply, null);
+    }
+
+    /**
+     * Stores the reply, along with the data it was computed from (may be null).
+     */
+    public synchronized void put(Key key, List<ByteVector> reply, Dependency dependency) {
         // note: using this API, memory consumption can temporarily exceed memoryLimit
         checkSerial();
+        if (dependency != null)
+            dependencies.put(key, dependency);
+        else
+            dependencies.remove(key);
         long totalSize = 0;
         for (ByteVector v : reply)
             totalSize += v.size();
         memoryUsed += totalSize;
         Assert.isTrue(totalSize <= memoryLimit);
-        cache.put(key, reply);
+        List<ByteVector> oldReply = cache.put(key, reply);
+        if (oldReply != null)
+            for (ByteVector v : oldReply)
+                memoryUsed -= v.size();
         while (memoryUsed > memoryLimit)
             discardFirst();
     }
 
     private void discardFirst() {
         Map.Entry<Key,List<ByteVector>> entry = cache.entrySet().iterator().next();
-        memoryUsed -= entry.getValue().size();
+        for (ByteVector v : entry.getValue())
+            memoryUsed -= v.size();
         cache.remove(entry.getKey());
+        dependencies.remove(entry.getKey());
+    }
+
+    /**
+     * Discards the replies that may be affected by the given change in the
+     * loaded result files, and keeps the rest. Replies without a dependency
+     * are always discarded.
+     */
+    public void resultFilesChanged(ResultFileManagerChangeEvent event) {
+        if (event.isFullChange()) {
+            clear();
+            return;
+        }
+
+        // note: checking dependencies needs the read lock of the manager, so do it
+        // without holding our own lock, to avoid lock ordering problems
+        Map<Key,Dependency> entries;
+        synchronized (this) {
+            entries = new HashMap<>();
+            for (Key key : cache.keySet())
+                entries.put(key, dependencies.get(key));
+        }
+
+        List<Key> affectedKeys = new ArrayList<>();
+        for (Map.Entry<Key,Dependency> entry : entries.entrySet())
+            if (entry.getValue() == null || entry.getValue().isAffectedBy(event))
+                affectedKeys.add(entry.getKey());
+
+        synchronized (this) {
+            for (Key key : affectedKeys) {
+                List<ByteVector> reply = cache.remove(key);
+                if (reply != null)
+                    for (ByteVector v : reply)
+                        memoryUsed -= v.size();
+                dependencies.remove(key);
+            }
+            // entries stored meanwhile were computed from the new content, too
+            currentSerial = rfm.getSerial();
+            for (CompletableFuture<List<ByteVector>> future : inFlight.values())
+                future.complete(null);
+            inFlight.clear();
+        }
     }
 
-    public void clear() {
+    public synchronized void clear() {
         cache.clear();
+        dependencies.clear();
         memoryUsed = 0;
     }
 
@@ -14,6 +14,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.eclipse.core.resources.IContainer;
@@ -41,10 +45,13 @@ import org.omnetpp.common.util.DisplayUtils;
 import org.omnetpp.common.util.StringUtils;
 import org.omnetpp.scave.ScavePlugin;
 import org.omnetpp.scave.common.ScaveMarkers;
+import org.omnetpp.scave.engine.FileRunList;
+import org.omnetpp.scave.engine.IDList;
 import org.omnetpp.scave.engine.InterruptedFlag;
 import org.omnetpp.scave.engine.ResultFile;
 import org.omnetpp.scave.engine.ResultFileList;
 import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.engine.RunList;
 import org.omnetpp.scave.engineext.IResultFilesChangeListener;
 import org.omnetpp.scave.engineext.ResultFileManagerChangeEvent;
 import org.omnetpp.scave.engineext.ResultFileManagerEx;
@@ -117,10 +124,8 @@ public class ResultFilesTracker implements IModelChangeListener {
         DisplayUtils.runNowOrSyncInUIThread(() -> {
             List<String> filesThatFailedToLoad = new ArrayList<>();
             TimeTriggeredProgressMonitorDialog2.runWithDialog("Loading result files", (monitor)-> {
-                ResultFileManager.runWithWriteLock(manager, () -> {
-                    InterruptedFlag interruptedFlag = TimeTriggeredProgressMonitorDialog2.getActiveInstance().getInterruptedFlag();
-                    doSynchronize(reload, monitor, interruptedFlag, filesThatFailedToLoad);
-                });
+                InterruptedFlag interruptedFlag = TimeTriggeredProgressMonitorDialog2.getActiveInstance().getInterruptedFlag();
+                doSynchronize(reload, monitor, interruptedFlag, filesThatFailedToLoad);
             });
 
             if (!filesThatFailedToLoad.isEmpty()) {
@@ -136,11 +141,92 @@ public class ResultFilesTracker implements IModelChangeListener {
         });
     }
 
-    protected void doSynchronize(boolean reload, IProgressMonitor monitor, InterruptedFlag interruptedFlag, List<String> filesThatFailedToLoad) {
-        manager.checkWriteLock(); // must run with write lock
+    /**
+     * A file to be loaded, and the outcome of loading it.
+     */
+    private static class FileToLoad {
+        final String inputName;
+        final String filePath;
+        final String fileLocation;
+        boolean upToDate; // already loaded, and unchanged since
+        ResultFileManager staging; // the manager it was loaded into
+        ResultFile stagedFile; // null if it was skipped (e.g. locked)
+        Exception error;
+
+        FileToLoad(String inputName, String filePath, String fileLocation) {
+            this.inputName = inputName;
+            this.filePath = filePath;
+            this.fileLocation = fileLocation;
+        }
+    }
+
+    /**
+     * Collects the changes made by doSynchronize(), for ResultFileManagerChangeEvent.
+     * Must be used with the write lock held.
+     */
+    private class Delta {
+        Set<String> addedFiles = new HashSet<>();
+        Set<String> removedFiles = new HashSet<>();
+        Set<String> changedFiles = new HashSet<>();
+        Set<String> affectedRunNames = new HashSet<>();
+        FileRunList addedFileRuns = new FileRunList();
+        IDList addedItems = new IDList();
+        IDList removedItems = new IDList();
+
+        /** To be called before the file is unloaded or replaced by a new version. */
+        void removingFile(ResultFile file, boolean isReloaded) {
+            (isReloaded ? changedFiles : removedFiles).add(file.getFilePath());
+            collectRunNames(file);
+            IDList items = manager.getItems(manager.getFileRunsInFile(file), ~0, true);
+            removedItems = removedItems.unionWith(items);
+        }
+
+        void addedFile(ResultFile file, boolean isReloaded) {
+            if (!isReloaded)
+                addedFiles.add(file.getFilePath());
+            collectRunNames(file);
+            FileRunList fileRuns = manager.getFileRunsInFile(file);
+            for (int i = 0; i < fileRuns.size(); i++)
+                addedFileRuns.add(fileRuns.get(i));
+        }
 
+        /** Merges the changes collected in another Delta into this one. */
+        void addAll(Delta other) {
+            addedFiles.addAll(other.addedFiles);
+            removedFiles.addAll(other.removedFiles);
+            changedFiles.addAll(other.changedFiles);
+            affectedRunNames.addAll(other.affectedRunNames);
+            for (int i = 0; i < other.addedFileRuns.size(); i++)
+                addedFileRuns.add(other.addedFileRuns.get(i));
+            removedItems = removedItems.unionWith(other.removedItems);
+        }
+
+        /** To be called after all changes were made; items of added files are only valid then. */
+        void collectItems() {
+            addedItems = manager.getItems(addedFileRuns, ~0, true);
+            addedFileRuns = null;
+        }
+
+        private void collectRunNames(ResultFile file) {
+            RunList runs = manager.getRunsInFile(file);
+            for (int i = 0; i < runs.size(); i++)
+                affectedRunNames.add(runs.get(i).getRunName());
+        }
+
+        ResultFileManagerChangeEvent toEvent() {
+            return new ResultFileManagerChangeEvent(manager, addedFiles, removedFiles, changedFiles, affectedRunNames, addedItems, removedItems);
+        }
+    }
+
+    /**
+     * Files are parsed (and indexed if needed) in parallel, each worker thread
+     * into its own "staging" ResultFileManager, without holding any lock on the
+     * manager. The results are then moved over into the manager under a write
+     * lock, which is held only for that (short) time.
+     */
+    protected void doSynchronize(boolean reload, IProgressMonitor monitor, InterruptedFlag interruptedFlag, List<String> filesThatFailedToLoad) {
         if (reload)
-            manager.clear();
+            ResultFileManager.runWithWriteLock(manager, () -> manager.clear());
 
         SubMonitor subMonitor = SubMonitor.convert(monitor, 100);
 
@@ -153,71 +239,153 @@ public class ResultFilesTracker implements IModelChangeListener {
                 files.put(input.getName(), collectResultFiles(input.getName(), anfFolder));
         });
 
-        Debug.time("Loading files", debug, 1, () -> {
-            int numFiles = files.values().stream().collect(Collectors.summingInt((map) -> map.size()));
-            subMonitor.setTaskName("Loading " + StringUtils.formatCounted(numFiles, "file"));
-
-            subMonitor.setWorkRemaining(numFiles);
-
-            int progressBatchSize = 1+numFiles/1000; // if there are many files, report them in batches (performance)
-            int filesUnreported = 0;
-            int loadFlags = ResultFileManagerEx.RELOAD_IF_CHANGED | ResultFileManagerEx.ALLOW_INDEXING | ResultFileManagerEx.SKIP_IF_LOCKED;
-            outer: for (String inputName : files.keySet()) {
-                for (Entry<String,String> entry : files.get(inputName).entrySet()) {
-                    String filePath = entry.getKey();
-                    String fileLocation = entry.getValue();
-                    try {
-                        ResultFile file = manager.loadFile(filePath, fileLocation, loadFlags, interruptedFlag);
-                        if (file != null)
-                            manager.setFileInput(file, inputName);
-                    }
-                    catch (Exception e) {
-                        filesThatFailedToLoad.add(filePath);
-                        ScavePlugin.logError("Could not load result file: " + fileLocation, e);
-                        IResource resource = ResourcesPlugin.getWorkspace().getRoot().findMember(filePath);
-                        if (resource instanceof IFile) // better be
-                            ScaveMarkers.setMarker((IFile)resource, ScaveMarkers.MARKERTYPE_SCAVEPROBLEM, IMarker.SEVERITY_ERROR, "Could not load result file. Reason: "+e.getMessage(), -1);
-                    }
+        List<FileToLoad> allFiles = new ArrayList<>();
+        for (String inputName : files.keySet())
+            for (Entry<String,String> entry : files.get(inputName).entrySet())
+                allFiles.add(new FileToLoad(inputName, entry.getKey(), entry.getValue()));
+
+        ResultFileManager.runWithReadLock(manager, () -> {
+            for (FileToLoad f : allFiles)
+                f.upToDate = manager.isFileUpToDate(f.filePath, f.fileLocation);
+        });
 
-                    if (interruptedFlag.getFlag())
-                        break outer;
+        List<ResultFileManager> stagingManagers = new ArrayList<>();
+        Delta delta = new Delta();
+        try {
+            Debug.time("Loading files", debug, 1, () -> {
+                List<FileToLoad> filesToLoad = allFiles.stream().filter(f -> !f.upToDate).collect(Collectors.toList());
+                int numFiles = allFiles.size();
+                subMonitor.setTaskName("Loading " + StringUtils.formatCounted(numFiles, "file"));
+
+                subMonitor.setWorkRemaining(numFiles);
+                subMonitor.worked(numFiles - filesToLoad.size());
+
+                int progressBatchSize = 1+numFiles/1000; // if there are many files, report them in batches (performance)
+                int loadFlags = ResultFileManagerEx.RELOAD_IF_CHANGED | ResultFileManagerEx.ALLOW_INDEXING | ResultFileManagerEx.SKIP_IF_LOCKED;
+                int numThreads = Math.min(Runtime.getRuntime().availableProcessors(), filesToLoad.size());
+
+                AtomicInteger nextIndex = new AtomicInteger();
+                AtomicInteger filesDone = new AtomicInteger();
+                ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, numThreads));
+                for (int i = 0; i < numThreads; i++) {
+                    ResultFileManager staging = new ResultFileManager();
+                    stagingManagers.add(staging);
+                    executor.execute(() -> {
+                        int index;
+                        while (!interruptedFlag.getFlag() && (index = nextIndex.getAndIncrement()) < filesToLoad.size()) {
+                            FileToLoad f = filesToLoad.get(index);
+                            try {
+                                f.stagedFile = staging.loadFile(f.filePath, f.fileLocation, loadFlags, interruptedFlag);
+                                f.staging = staging;
+                            }
+                            catch (Exception e) {
+                                f.error = e;
+                            }
+                            filesDone.incrementAndGet();
+                        }
+                    });
+                }
+                executor.shutdown();
 
-                    if (++filesUnreported == progressBatchSize) {
-                        subMonitor.worked(filesUnreported);
-                        filesUnreported = 0;
+                int filesReported = 0;
+                try {
+                    while (!executor.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+                        if (monitor.isCanceled())
+                            interruptedFlag.setFlag(true);
+                        int filesUnreported = filesDone.get() - filesReported;
+                        if (filesUnreported >= progressBatchSize) {
+                            subMonitor.worked(filesUnreported);
+                            filesReported += filesUnreported;
+                        }
                     }
                 }
-            }
-            subMonitor.worked(filesUnreported);
-        });
+                catch (InterruptedException e) {
+                    interruptedFlag.setFlag(true);
+                    executor.shutdownNow();
+                    Thread.currentThread().interrupt();
+                }
+                subMonitor.worked(filesDone.get() - filesReported);
+            });
 
-        Debug.time("Unloading extra files", debug, 1, () -> {
-            subMonitor.setTaskName("Unloading extra files");
-            subMonitor.setWorkRemaining(10);
-            // collect set of file names from 'files'
-            Set<String> fileSet = new HashSet<>();
-            for (Map<String,String> pathToLocation : files.values())
-                fileSet.addAll(pathToLocation.keySet());
-
-            // determine list of files to be unloaded
-            ResultFileList loadFiles = ResultFileManagerEx.callWithReadLock(manager, () -> manager.getFiles());
-            List<ResultFile> filesToBeUnloaded = new ArrayList<>();
-            for (int i = 0; i < loadFiles.size(); i++)
-                if (!fileSet.contains(loadFiles.get(i).getFilePath()))
-                    filesToBeUnloaded.add(loadFiles.get(i));
-
-            // unload
-            if (!filesToBeUnloaded.isEmpty())
-                for (ResultFile file : filesToBeUnloaded)
-                    manager.unloadFile(file);
-        });
+            for (FileToLoad f : allFiles)
+                if (f.error != null)
+                    reportFileFailedToLoad(f, filesThatFailedToLoad);
+
+            ResultFileManager.runWithWriteLock(manager, () -> {
+                Debug.time("Merging loaded files", debug, 1, () -> {
+                    subMonitor.setTaskName("Merging loaded files");
+                    for (FileToLoad f : allFiles) {
+                        ResultFile file = null;
+                        if (f.upToDate)
+                            file = manager.getFile(f.filePath);
+                        else if (f.stagedFile != null) {
+                            ResultFile oldFile = manager.getFile(f.filePath);
+                            Delta removal = new Delta(); // only merged into delta if the file is adopted
+                            if (oldFile != null)
+                                removal.removingFile(oldFile, true);
+                            try {
+                                file = manager.adoptFile(f.staging, f.stagedFile);
+                                delta.addAll(removal);
+                                delta.addedFile(file, oldFile != null);
+                            }
+                            catch (Exception e) {
+                                // e.g. run attributes conflicting with another file; the manager is left
+                                // unchanged, i.e. the previous version of the file (if any) stays loaded
+                                f.error = e;
+                                reportFileFailedToLoad(f, filesThatFailedToLoad);
+                                file = oldFile;
+                            }
+                        }
+                        if (file != null)
+                            manager.setFileInput(file, f.inputName);
+                    }
+                });
 
-        // notify listeners (maybe if there was actually any change?)
-        notifyListeners(new ResultFileManagerChangeEvent(manager));
+                Debug.time("Unloading extra files", debug, 1, () -> {
+                    subMonitor.setTaskName("Unloading extra files");
+                    subMonitor.setWorkRemaining(10);
+                    // collect set of file names from 'files'
+                    Set<String> fileSet = new HashSet<>();
+                    for (Map<String,String> pathToLocation : files.values())
+                        fileSet.addAll(pathToLocation.keySet());
+
+                    // determine list of files to be unloaded
+                    ResultFileList loadFiles = manager.getFiles();
+                    List<ResultFile> filesToBeUnloaded = new ArrayList<>();
+                    for (int i = 0; i < loadFiles.size(); i++)
+                        if (!fileSet.contains(loadFiles.get(i).getFilePath()))
+                            filesToBeUnloaded.add(loadFiles.get(i));
+
+                    // unload
+                    if (!filesToBeUnloaded.isEmpty())
+                        for (ResultFile file : filesToBeUnloaded) {
+                            delta.removingFile(file, false);
+                            manager.unloadFile(file);
+                        }
+                });
+
+                delta.collectItems();
+            });
+        }
+        finally {
+            // files not adopted (e.g. after an error) are freed with their staging manager
+            for (ResultFileManager staging : stagingManagers)
+                staging.delete();
+        }
+
+        // notify listeners (also if there was no change, as file inputs may have changed)
+        notifyListeners(reload ? new ResultFileManagerChangeEvent(manager) : delta.toEvent());
 
         monitor.done();
     }
 
+    private void reportFileFailedToLoad(FileToLoad f, List<String> filesThatFailedToLoad) {
+        filesThatFailedToLoad.add(f.filePath);
+        ScavePlugin.logError("Could not load result file: " + f.fileLocation, f.error);
+        IResource resource = ResourcesPlugin.getWorkspace().getRoot().findMember(f.filePath);
+        if (resource instanceof IFile) // better be
+            ScaveMarkers.setMarker((IFile)resource, ScaveMarkers.MARKERTYPE_SCAVEPROBLEM, IMarker.SEVERITY_ERROR, "Could not load result file. Reason: "+f.error.getMessage(), -1);
+    }
 
     protected Map<String, String> collectResultFiles(String input, IContainer anfFolder) {
         Map<String,String> filesToLoad = new LinkedHashMap<>();  // workspacePath -> filesystemPath
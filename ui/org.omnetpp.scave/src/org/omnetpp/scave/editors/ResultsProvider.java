@@ -3,9 +3,14 @@ package org.omnetpp.scave.editors;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.core.runtime.Assert;
 import org.omnetpp.common.Debug;
+import org.omnetpp.scave.editors.MemoizationCache.Dependency;
 import org.omnetpp.scave.editors.MemoizationCache.Key;
 import org.omnetpp.scave.engine.ByteVector;
 import org.omnetpp.scave.engine.IDList;
@@ -16,6 +21,7 @@ import org.omnetpp.scave.engine.ShmSendBuffer;
 import org.omnetpp.scave.engine.ShmSendBufferManager;
 import org.omnetpp.scave.engine.ShmSendBufferVector;
 import org.omnetpp.scave.engine.StringVector;
+import org.omnetpp.scave.engineext.ResultFileManagerChangeEvent;
 import org.omnetpp.scave.pychart.IScaveResultsPickleProvider;
 import org.omnetpp.scave.pychart.PythonProcess;
 
@@ -31,6 +37,19 @@ import net.razorvine.pickle.PickleException;
  *
  * If no cached result is found, the pickled data is generated using
  * the ResultsPickler (implemented in C++) from the nativelibs package.
+ * Identical requests arriving concurrently (e.g. from the Python processes
+ * of a batch chart export that share the MemoizationCache) are computed
+ * only once: the others wait for the result, and get their own copy of it.
+ *
+ * Note that only the filtering and pickling work is shared: every reply,
+ * memoized or not, is delivered in a new shared memory segment of the
+ * requesting process' ShmSendBufferManager. Segments cannot be handed out
+ * more than once, because the reader marks a segment as consumed, after
+ * which it is released (see ShmSendBuffer).
+ *
+ * It also records what data the replies were computed from, so that after a
+ * change in the loaded result files, isAffectedBy() can tell whether the
+ * chart script would get different data if it were run again.
  *
  * @author attila, andras
  */
@@ -41,6 +60,7 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
     private MemoizationCache memoizationCache;
     private FilterCache filterCache;
     private InterruptedFlag interrupted;
+    private List<Dependency> dependencies = new ArrayList<>(); // of the replies served so far
 
     public ResultsProvider(ResultFileManager rfm, PythonProcess proc, MemoizationCache mc, FilterCache fc) {
         this.manager = rfm;
@@ -59,24 +79,33 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
         ShmSendBufferVector call() throws PickleException, IOException;
     };
 
-    private String memoize(Key key, PicklerFunction pickler) throws PickleException, IOException {
-        List<ByteVector> cachedReply = memoizationCache.get(key);
+    private String memoize(Key key, Dependency dependency, PicklerFunction pickler) throws PickleException, IOException {
+        List<ByteVector> cachedReply = getMemoizedOrBeginComputation(key);
+        addDependency(cachedReply != null ? memoizationCache.getDependency(key) : dependency);
 
         if (cachedReply != null) {
             Assert.isTrue(cachedReply.size() == 1);
             Debug.println("ResultsProvider." + key.getMethodName() + ": returning memoized reply");
-            return sendBufferManager.create("memoized", cachedReply.get(0)).getNameAndTotalSize();
+            return sendBufferManager.create("memoized", cachedReply.get(0)).getNameAndTotalSize(); // a fresh copy, see class comment
         }
         else {
             Debug.println("ResultsProvider." + key.getMethodName() + ": computing and memoizing reply");
-            ShmSendBuffer pickle = Debug.timed("ResultsProvider." + key.getMethodName(), 100, () -> pickler.call());
-            memoizationCache.put(key, pickle.getContentCopy());
-            return pickle.getNameAndTotalSize();
+            List<ByteVector> reply = null;
+            try {
+                ShmSendBuffer pickle = Debug.timed("ResultsProvider." + key.getMethodName(), 100, () -> pickler.call());
+                reply = List.of(pickle.getContentCopy());
+                memoizationCache.put(key, reply, dependency);
+                return pickle.getNameAndTotalSize();
+            }
+            finally {
+                memoizationCache.endComputation(key, reply);
+            }
         }
     }
 
-    private List<String> memoize(Key key, PicklerFunctionVec pickler) throws PickleException, IOException {
-        List<ByteVector> cachedReply = memoizationCache.get(key);
+    private List<String> memoize(Key key, Dependency dependency, PicklerFunctionVec pickler) throws PickleException, IOException {
+        List<ByteVector> cachedReply = getMemoizedOrBeginComputation(key);
+        addDependency(cachedReply != null ? memoizationCache.getDependency(key) : dependency);
         List<String> result = new ArrayList<String>();
         if (cachedReply != null) {
             Debug.println("ResultsProvider." + key.getMethodName() + ": returning memoized reply");
@@ -85,87 +114,157 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
         }
         else {
             Debug.println("ResultsProvider." + key.getMethodName() + ": computing and memoizing reply");
-            ShmSendBufferVector pickles;
+            List<ByteVector> intoCache = null;
             try {
-                pickles = Debug.timed("ResultsProvider." + key.getMethodName(), 100, () -> pickler.call());
-            }
-            catch (RuntimeException e) {
-                throw new ResultFileException(e.getMessage() + " -- try reloading result files", e);
+                ShmSendBufferVector pickles;
+                try {
+                    pickles = Debug.timed("ResultsProvider." + key.getMethodName(), 100, () -> pickler.call());
+                }
+                catch (RuntimeException e) {
+                    throw new ResultFileException(e.getMessage() + " -- try reloading result files", e);
+                }
+                List<ByteVector> contents = new ArrayList<>();
+                for (int i = 0; i < pickles.size(); ++i) {
+                    ShmSendBuffer buf = pickles.get(i);
+                    result.add(buf.getNameAndTotalSize());
+                    contents.add(buf.getContentCopy());
+                }
+                intoCache = contents;
+                memoizationCache.put(key, intoCache, dependency);
             }
-            List<ByteVector> intoCache = new ArrayList<>();
-            for (int i = 0; i < pickles.size(); ++i) {
-                ShmSendBuffer buf = pickles.get(i);
-                result.add(buf.getNameAndTotalSize());
-                intoCache.add(buf.getContentCopy());
+            finally {
+                memoizationCache.endComputation(key, intoCache);
             }
-            memoizationCache.put(key, intoCache);
         }
         return result;
     }
 
+    /**
+     * Returns the memoized reply for the key. If there is none, but another
+     * ResultsProvider (e.g. one serving another Python process) is computing it,
+     * waits for that instead of computing it again. Otherwise returns null, and
+     * the caller must compute the reply, and call endComputation() afterwards.
+     */
+    private List<ByteVector> getMemoizedOrBeginComputation(Key key) {
+        while (true) {
+            List<ByteVector> cachedReply = memoizationCache.get(key);
+            if (cachedReply != null)
+                return cachedReply;
+            CompletableFuture<List<ByteVector>> computation = memoizationCache.beginComputation(key);
+            if (computation == null)
+                return null; // it's ours
+            Debug.println("ResultsProvider." + key.getMethodName() + ": waiting for identical request in progress");
+            List<ByteVector> reply = waitFor(computation);
+            if (reply != null)
+                return reply;
+            // other computation failed, try again (possibly computing it ourselves)
+        }
+    }
+
+    private List<ByteVector> waitFor(CompletableFuture<List<ByteVector>> computation) {
+        while (true) {
+            if (interrupted.getFlag())
+                throw new RuntimeException("Interrupted");
+            try {
+                return computation.get(100, TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException e) {
+                // check the interrupted flag, then continue waiting
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted", e);
+            }
+            catch (ExecutionException e) {
+                return null; // not used: computations are always completed normally
+            }
+        }
+    }
+
+    private synchronized void addDependency(Dependency dependency) {
+        dependencies.add(dependency); // null means unknown
+    }
+
+    /**
+     * Returns true if any of the replies served so far may be different after
+     * the given change in the loaded result files.
+     */
+    public boolean isAffectedBy(ResultFileManagerChangeEvent event) {
+        List<Dependency> dependenciesCopy;
+        synchronized (this) {
+            dependenciesCopy = new ArrayList<>(dependencies);
+        }
+        for (Dependency dependency : dependenciesCopy)
+            if (dependency == null || dependency.isAffectedBy(event))
+                return true;
+        return false;
+    }
+
     public int getSerial() {
         return manager.getSerial();
     }
 
     public String getRunsPickle(String filterExpression) throws PickleException, IOException {
         Key key = new Key("getRunsPickle", filterExpression);
-        return memoize(key, () -> pickler.getRunsPickle(filterExpression));
+        return memoize(key, Dependency.onFilter(filterExpression), () -> pickler.getRunsPickle(filterExpression));
     }
 
     public String getRunAttrsPickle(String filterExpression) throws PickleException, IOException {
         Key key = new Key("getRunAttrsPickle", filterExpression);
-        return memoize(key, () -> pickler.getRunattrsPickle(filterExpression));
+        return memoize(key, Dependency.onFilter(filterExpression), () -> pickler.getRunattrsPickle(filterExpression));
     }
 
     @Override
     public String getRunAttrsForRunsPickle(List<String> runIDs) throws PickleException, IOException {
         Key key = new Key("getRunAttrsPickle", runIDs);
-        return memoize(key, () -> pickler.getRunattrsForRunsPickle(toStringVector(runIDs)));
+        return memoize(key, Dependency.onRuns(runIDs), () -> pickler.getRunattrsForRunsPickle(toStringVector(runIDs)));
     }
 
     @Override
     public String getItervarsPickle(String filterExpression) throws PickleException, IOException {
         Key key = new Key("getItervarsPickle", filterExpression);
-        return memoize(key, () -> pickler.getItervarsPickle(filterExpression));
+        return memoize(key, Dependency.onFilter(filterExpression), () -> pickler.getItervarsPickle(filterExpression));
     }
 
     @Override
     public String getItervarsForRunsPickle(List<String> runIDs) throws PickleException, IOException {
         Key key = new Key("getItervarsPickle", runIDs);
-        return memoize(key, () -> pickler.getItervarsForRunsPickle(toStringVector(runIDs)));
+        return memoize(key, Dependency.onRuns(runIDs), () -> pickler.getItervarsForRunsPickle(toStringVector(runIDs)));
     }
 
     @Override
     public String getParamAssignmentsPickle(String filterExpression) throws PickleException, IOException {
         Key key = new Key("getParamAssignmentsPickle", filterExpression);
-        return memoize(key, () -> pickler.getParamAssignmentsPickle(filterExpression));
+        return memoize(key, Dependency.onFilter(filterExpression), () -> pickler.getParamAssignmentsPickle(filterExpression));
     }
 
     @Override
     public String getParamAssignmentsForRunsPickle(List<String> runIDs) throws PickleException, IOException {
         Key key = new Key("getParamAssignmentsPickle", runIDs);
-        return memoize(key, () -> pickler.getParamAssignmentsForRunsPickle(toStringVector(runIDs)));
+        return memoize(key, Dependency.onRuns(runIDs), () -> pickler.getParamAssignmentsForRunsPickle(toStringVector(runIDs)));
     }
 
     @Override
     public String getConfigEntriesPickle(String filterExpression) throws PickleException, IOException {
         Key key = new Key("getConfigEntriesPickle", filterExpression);
-        return memoize(key, () -> pickler.getConfigEntriesPickle(filterExpression));
+        return memoize(key, Dependency.onFilter(filterExpression), () -> pickler.getConfigEntriesPickle(filterExpression));
     }
 
     @Override
     public String getConfigEntriesForRunsPickle(List<String> runIDs) throws PickleException, IOException {
         Key key = new Key("getConfigEntriesForRunsPickle", runIDs);
-        return memoize(key, () -> pickler.getConfigEntriesForRunsPickle(toStringVector(runIDs)));
+        return memoize(key, Dependency.onRuns(runIDs), () -> pickler.getConfigEntriesForRunsPickle(toStringVector(runIDs)));
     }
 
     public List<String> getResultsPickle(String filterExpression, List<String> rowTypes, boolean omitUnusedColumns, boolean includeFieldsAsScalars, double simTimeStart, double simTimeEnd) throws PickleException, IOException {
         Key key = new Key("getResultsPickle", filterExpression, rowTypes, omitUnusedColumns, includeFieldsAsScalars, simTimeStart, simTimeEnd);
-        List<String> names = memoize(key, (PicklerFunctionVec) () -> {
+        Dependency dependency = Dependency.onFilter(filterExpression);
+        List<String> names = memoize(key, dependency, (PicklerFunctionVec) () -> {
             int allTypes = ResultFileManager.PARAMETER | ResultFileManager.SCALAR | ResultFileManager.VECTOR | ResultFileManager.STATISTICS | ResultFileManager.HISTOGRAM;
             IDList idList = filterCache.getFilterResult(allTypes, filterExpression, includeFieldsAsScalars);
             if (idList == null)
                 idList = manager.filterIDList(manager.getAllItems(includeFieldsAsScalars), filterExpression); // no need to cache, as result will be (likely) memoized
+            dependency.setItems(idList);
             return pickler.getCsvResultsPickle(idList, toStringVector(rowTypes), omitUnusedColumns, simTimeStart, simTimeEnd);
         });
         return names;
@@ -174,10 +273,12 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
     @Override
     public String getParamValuesPickle(String filterExpression, boolean includeAttrs) throws PickleException, IOException {
         Key key = new Key("getParamValuesPickle", filterExpression, includeAttrs);
-        return memoize(key, () -> {
+        Dependency dependency = Dependency.onFilter(filterExpression);
+        return memoize(key, dependency, () -> {
             IDList idList = filterCache.getFilterResult(ResultFileManager.PARAMETER, filterExpression);
             if (idList == null)
                 idList = manager.filterIDList(manager.getAllParameters(), filterExpression); // no need to cache, as result will be (likely) memoized
+            dependency.setItems(idList);
             return pickler.getParamValuesPickle(idList, includeAttrs);
         });
     }
@@ -185,22 +286,37 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
     @Override
     public String getScalarsPickle(String filterExpression, boolean includeAttrs, boolean includeFields) throws PickleException, IOException {
         Key key = new Key("getScalarsPickle", filterExpression, includeAttrs, includeFields);
-        return memoize(key, () -> {
+        Dependency dependency = Dependency.onFilter(filterExpression);
+        return memoize(key, dependency, () -> {
             IDList idList = filterCache.getFilterResult(ResultFileManager.SCALAR, filterExpression, includeFields);
             if (idList == null)
                 idList = manager.filterIDList(manager.getAllScalars(includeFields), filterExpression, -1, interrupted); // no need to cache, as result will be (likely) memoized
+            dependency.setItems(idList);
             return pickler.getScalarsPickle(idList, includeAttrs);
         });
     }
 
     @Override
     public List<String> getVectorsPickle(String filterExpression, boolean includeAttrs, double simTimeStart, double simTimeEnd) throws PickleException, IOException {
-        Key key = new Key("getVectorsPickle", filterExpression, includeAttrs, simTimeStart, simTimeEnd);
-        List<String> names = memoize(key, (PicklerFunctionVec) () -> {
+        return getVectorsPickle(filterExpression, includeAttrs, simTimeStart, simTimeEnd, -1);
+    }
+
+    /**
+     * With a nonnegative maxPointsPerVector, the vectors are decimated on the
+     * fly (see VectorDecimator) while being read, so that at most that many
+     * points per vector are transferred. The chart may re-query a narrower
+     * time interval (e.g. when zooming) to get more detail.
+     */
+    @Override
+    public List<String> getVectorsPickle(String filterExpression, boolean includeAttrs, double simTimeStart, double simTimeEnd, int maxPointsPerVector) throws PickleException, IOException {
+        Key key = new Key("getVectorsPickle", filterExpression, includeAttrs, simTimeStart, simTimeEnd, maxPointsPerVector);
+        Dependency dependency = Dependency.onFilter(filterExpression);
+        List<String> names = memoize(key, dependency, (PicklerFunctionVec) () -> {
             IDList idList = filterCache.getFilterResult(ResultFileManager.VECTOR, filterExpression);
             if (idList == null)
                 idList = manager.filterIDList(manager.getAllVectors(), filterExpression, -1, interrupted); // no need to cache, as result will be (likely) memoized
-            return pickler.getVectorsPickle(idList, includeAttrs, simTimeStart, simTimeEnd);
+            dependency.setItems(idList);
+            return pickler.getVectorsPickle(idList, includeAttrs, simTimeStart, simTimeEnd, maxPointsPerVector);
         });
         return names;
     }
@@ -208,12 +324,14 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
     @Override
     public String getStatisticsPickle(String filterExpression, boolean includeAttrs) throws PickleException, IOException {
         Key key = new Key("getStatisticsPickle", filterExpression, includeAttrs);
-        return memoize(key, () -> {
+        Dependency dependency = Dependency.onFilter(filterExpression);
+        return memoize(key, dependency, () -> {
             IDList idList = filterCache.getFilterResult(ResultFileManager.STATISTICS | ResultFileManager.HISTOGRAM, filterExpression);
             if (idList != null)
                     idList = idList.filterByTypes(ResultFileManager.STATISTICS);
             if (idList == null)
                 idList = manager.filterIDList(manager.getAllStatistics(), filterExpression, -1, interrupted); // no need to cache, as result will be (likely) memoized
+            dependency.setItems(idList);
             return pickler.getStatisticsPickle(idList, includeAttrs);
         });
     }
@@ -221,12 +339,14 @@ public class ResultsProvider implements IScaveResultsPickleProvider {
     @Override
     public String getHistogramsPickle(String filterExpression, boolean includeAttrs) throws PickleException, IOException {
         Key key = new Key("getHistogramsPickle", filterExpression, includeAttrs);
-        return memoize(key, () -> {
+        Dependency dependency = Dependency.onFilter(filterExpression);
+        return memoize(key, dependency, () -> {
             IDList idList = filterCache.getFilterResult(ResultFileManager.HISTOGRAM | ResultFileManager.HISTOGRAM, filterExpression);
             if (idList != null)
                 idList = idList.filterByTypes(ResultFileManager.HISTOGRAM);
             if (idList == null)
                 idList = manager.filterIDList(manager.getAllHistograms(), filterExpression, -1, interrupted); // no need to cache, as result will be (likely) memoized
+            dependency.setItems(idList);
             return pickler.getHistogramsPickle(idList, includeAttrs);
         });
     }
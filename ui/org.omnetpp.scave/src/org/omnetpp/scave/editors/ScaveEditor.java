@@ -161,7 +161,7 @@ public class ScaveEditor extends MultiPageEditorPartExt
 
     private Map<AnalysisItem, Control> closablePages = new LinkedHashMap<AnalysisItem, Control>();
 
-    private PythonProcessPool processPool = new PythonProcessPool(2);
+    private PythonProcessPool processPool = PythonProcessPool.getSharedPool();
     private ChartTemplateRegistry chartTemplateRegistry = new ChartTemplateRegistry();
 
     private Map<String,Integer> numChartsCreatedByTemplateId = new HashMap<>();
@@ -323,8 +323,6 @@ public class ScaveEditor extends MultiPageEditorPartExt
     @Override
     public void dispose() {
 
-        processPool.dispose();
-
         if (tracker != null)
             analysis.removeListener(tracker);
 
@@ -487,6 +485,10 @@ public class ScaveEditor extends MultiPageEditorPartExt
         tracker = new ResultFilesTracker(manager, analysis.getInputs(), inputFile.getParent());
         memoizationCache = new MemoizationCache(manager);
         filterCache = new FilterCache(manager);
+        tracker.addChangeListener((event) -> { // note: must precede the listeners of the charts
+            memoizationCache.resultFilesChanged(event);
+            filterCache.resultFilesChanged(event);
+        });
         analysis.addListener(this);
         analysis.addListener(tracker);
     }
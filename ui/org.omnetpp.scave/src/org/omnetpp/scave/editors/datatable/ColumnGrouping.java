@@ -0,0 +1,147 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2020 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.scave.editors.datatable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import org.omnetpp.scave.engine.IDList;
+
+/**
+ * Partitions the positions of an IDList into groups according to an integer
+ * key column (see NameColumn), using a stable counting sort. Groups are
+ * ordered by the rank assigned to their key. Large inputs are processed
+ * in parallel.
+ */
+public class ColumnGrouping {
+    public static final int PARALLEL_THRESHOLD = 100000;
+
+    private final int[] permutation; // positions in the input, ordered by group
+    private final int[] groupStart;  // group g occupies permutation[groupStart[g]..groupStart[g+1]-1]
+
+    private ColumnGrouping(int[] permutation, int[] groupStart) {
+        this.permutation = permutation;
+        this.groupStart = groupStart;
+    }
+
+    /**
+     * Groups positions 0..keys.length-1 by keys[i]. rankOfKey[k] is the index
+     * of the group that key k belongs to, or -1 if positions with that key
+     * should be left out. Within a group, positions remain in increasing order.
+     */
+    public static ColumnGrouping create(int[] keys, int[] rankOfKey, int numGroups) {
+        int n = keys.length;
+        int[] groupStart = new int[numGroups + 1];
+        if (n < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < n; i++) {
+                int rank = rankOfKey[keys[i]];
+                if (rank != -1)
+                    groupStart[rank + 1]++;
+            }
+            for (int g = 0; g < numGroups; g++)
+                groupStart[g + 1] += groupStart[g];
+            int[] next = Arrays.copyOf(groupStart, numGroups);
+            int[] permutation = new int[groupStart[numGroups]];
+            for (int i = 0; i < n; i++) {
+                int rank = rankOfKey[keys[i]];
+                if (rank != -1)
+                    permutation[next[rank]++] = i;
+            }
+            return new ColumnGrouping(permutation, groupStart);
+        }
+        else {
+            // count per chunk, compute per-chunk write offsets, then scatter; chunks are
+            // contiguous and processed in order, so the result is the same as the sequential one
+            int numChunks = Math.min(4 * ForkJoinPool.getCommonPoolParallelism(), n / (PARALLEL_THRESHOLD / 4));
+            int chunkSize = (n + numChunks - 1) / numChunks;
+            int[][] offsets = new int[numChunks][];
+            IntStream.range(0, numChunks).parallel().forEach(c -> {
+                int[] counts = new int[numGroups];
+                int end = Math.min(n, (c + 1) * chunkSize);
+                for (int i = c * chunkSize; i < end; i++) {
+                    int rank = rankOfKey[keys[i]];
+                    if (rank != -1)
+                        counts[rank]++;
+                }
+                offsets[c] = counts;
+            });
+            int pos = 0;
+            for (int g = 0; g < numGroups; g++) {
+                groupStart[g] = pos;
+                for (int c = 0; c < numChunks; c++) {
+                    int count = offsets[c][g];
+                    offsets[c][g] = pos;
+                    pos += count;
+                }
+            }
+            groupStart[numGroups] = pos;
+            int[] permutation = new int[pos];
+            IntStream.range(0, numChunks).parallel().forEach(c -> {
+                int[] next = offsets[c];
+                int end = Math.min(n, (c + 1) * chunkSize);
+                for (int i = c * chunkSize; i < end; i++) {
+                    int rank = rankOfKey[keys[i]];
+                    if (rank != -1)
+                        permutation[next[rank]++] = i;
+                }
+            });
+            return new ColumnGrouping(permutation, groupStart);
+        }
+    }
+
+    /**
+     * Sorts the given labels with the comparator, and returns the rank of each
+     * label (i.e. its index in the sorted order).
+     */
+    public static int[] rank(String[] labels, Comparator<String> comparator) {
+        Integer[] order = new Integer[labels.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Comparator<Integer> byLabel = (a, b) -> comparator.compare(labels[a], labels[b]);
+        if (order.length < PARALLEL_THRESHOLD / 10)
+            Arrays.sort(order, byLabel);
+        else
+            Arrays.parallelSort(order, byLabel);
+        int[] rank = new int[labels.length];
+        for (int r = 0; r < order.length; r++)
+            rank[order[r]] = r;
+        return rank;
+    }
+
+    public int getNumGroups() {
+        return groupStart.length - 1;
+    }
+
+    public int getGroupSize(int group) {
+        return groupStart[group + 1] - groupStart[group];
+    }
+
+    /**
+     * Returns the first position (in the input IDList) that belongs to the given group.
+     */
+    public int getFirstPosition(int group) {
+        return permutation[groupStart[group]];
+    }
+
+    /**
+     * Returns the positions that belong to the groups in [fromGroup, toGroup).
+     */
+    public int[] getPositions(int fromGroup, int toGroup) {
+        return Arrays.copyOfRange(permutation, groupStart[fromGroup], groupStart[toGroup]);
+    }
+
+    /**
+     * Returns the IDs of the groups in [fromGroup, toGroup) as an IDList, with a
+     * single JNI call.
+     */
+    public IDList getIDs(IDList idList, int fromGroup, int toGroup) {
+        return idList.getSubsetByIndices(getPositions(fromGroup, toGroup));
+    }
+}
@@ -9,12 +9,20 @@ package org.omnetpp.scave.editors.datatable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.ListenerList;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.action.IMenuManager;
 import org.eclipse.jface.action.MenuManager;
 import org.eclipse.jface.preference.IPreferenceStore;
@@ -48,7 +56,6 @@ import org.omnetpp.common.engine.UnitConversion;
 import org.omnetpp.common.engineext.IMatchableObject;
 import org.omnetpp.common.largetable.AbstractLargeTableRowRenderer;
 import org.omnetpp.common.largetable.LargeTable;
-import org.omnetpp.common.ui.TimeTriggeredProgressMonitorDialog2;
 import org.omnetpp.common.util.CsvWriter;
 import org.omnetpp.common.util.DisplayUtils;
 import org.omnetpp.common.util.StringUtils;
@@ -194,7 +201,10 @@ public class DataTable extends LargeTable implements IDataControl {
 
     private PanelType type;
     private ResultFileManagerEx manager;
-    private IDList idList = new IDList();
+    private IDList inputIdList = new IDList(); // as received in setIDList(), i.e. unsorted
+    private IDList idList = new IDList(); // as displayed: inputIdList sorted, or a previous order while sorting is in progress
+    private SortJob sortJob; // the sorting currently in progress, or null
+    private SortCache sortCache = new SortCache();
     private boolean numberFormattingEnabled = true;
     private int numericPrecision = 6;
     private ListenerList<IDataListener> listeners;
@@ -378,7 +388,7 @@ public class DataTable extends LargeTable implements IDataControl {
     }
 
     public void setIDList(IDList newIdList) {
-        if (newIdList.equals(this.idList))
+        if (newIdList.equals(this.inputIdList))
             return;
 
         // save old focus. note: saving the selection is not done because:
@@ -387,10 +397,11 @@ public class DataTable extends LargeTable implements IDataControl {
         long focusID = getFocusedID();
         clearSelection();  // not really needed, as setItemCount() does it too
 
-        // set new input
+        // set new input; it is displayed unsorted until sorting (done in the background) completes
         setItemCount(newIdList.size()); // includes another clearSelection() & firing empty selection change
+        this.inputIdList = newIdList;
         this.idList = newIdList;
-        restoreSortOrder(); // in-place sorts the IDList
+        restoreSortOrder(); // uses the cached order if available, otherwise starts a SortJob
 
         // try restoring old focus
         setFocusedID(focusID); // note: this indirectly fires selection change, so state should be fully updated at this point
@@ -617,40 +628,200 @@ public class DataTable extends LargeTable implements IDataControl {
         int sortDirection = getSortDirection();
         if (sortColumn != null && sortDirection != SWT.NONE)
             sortRows(sortColumn, sortDirection);
+        else
+            cancelSortJob();
     }
 
     public void setSorting(TableColumn tableColumn, int sortDirection) {
         setSortColumn(tableColumn);
         setSortDirection(sortDirection);
-        sortRows(tableColumn, sortDirection);
-        refresh();
-        fireContentChangedEvent();
+        if (!sortRows(tableColumn, sortDirection)) {
+            // order stays as it is, but the sort indicator has changed
+            refresh();
+            fireContentChangedEvent();
+        }
     }
 
-    protected void sortRows(TableColumn sortColumn, int sortDirection) {
-        if (manager == null || idList.isEmpty()) // no/empty input
-            return;
+    /**
+     * Shows the rows in the order of the given column. If the order was computed
+     * previously for the current input (in either direction), it is applied
+     * immediately; otherwise a background SortJob is started, and the current
+     * order remains displayed until it completes, and the table is refreshed
+     * when the new order is applied. Returns false if the displayed order stays
+     * as it is (no input, the column has no sort key, or the rows are already
+     * in this order); the table is not refreshed then.
+     */
+    protected boolean sortRows(TableColumn sortColumn, int sortDirection) {
+        cancelSortJob();
+
+        if (manager == null || inputIdList.isEmpty()) // no/empty input
+            return false;
 
         ColumnRole column = (ColumnRole)sortColumn.getData(COLUMNROLE_KEY);
         if (column == null) // requested column has no sort key
-            return;
+            return false;
+
+        boolean ascending = sortDirection == SWT.UP;
+        SortKey key = new SortKey(inputIdList, manager.getSerial(), column, ascending);
+        IDList sorted = sortCache.get(key);
+        if (sorted == null) {
+            // the opposite direction only differs in the order of rows with equal keys, so it is good enough
+            IDList reverseSorted = sortCache.get(new SortKey(inputIdList, manager.getSerial(), column, !ascending));
+            if (reverseSorted != null)
+                sortCache.put(key, sorted = reverse(reverseSorted));
+        }
+
+        if (sorted != null)
+            return showSortedIDList(sorted);
+        sortJob = new SortJob(key);
+        sortJob.schedule();
+        return true;
+    }
+
+    protected void cancelSortJob() {
+        if (sortJob != null) {
+            sortJob.cancel();
+            sortJob = null;
+        }
+    }
+
+    protected static IDList reverse(IDList idList) {
+        int n = idList.size();
+        int[] indices = new int[n];
+        for (int i = 0; i < n; i++)
+            indices[i] = n - 1 - i;
+        return idList.getSubsetByIndices(indices);
+    }
+
+    /**
+     * Replaces the displayed IDList with the given reordering of it, preserving the
+     * selection and the focus. Returns false if it is already displayed.
+     */
+    protected boolean showSortedIDList(IDList sorted) {
+        if (sorted == idList)
+            return false;
 
-        boolean allSelected = getSelectionCount() == idList.size();
-        IntVector tmpSelectionIndices = allSelected ? new IntVector() : IntVector.fromArray(getSelectionIndices().toArray()); // optimize the common & expensive case when all items are selected
         long focusID = getFocusedID();
+        int selectionCount = getSelectionCount();
+        boolean allSelected = selectionCount == idList.size();
+        IDList selectedIDs = (selectionCount == 0 || allSelected) ? null : getSelectedIDs();  // optimize the common & expensive case when all items are selected
 
-        TimeTriggeredProgressMonitorDialog2.runWithDialog("Sorting", (monitor) -> {
-            InterruptedFlag interrupted = TimeTriggeredProgressMonitorDialog2.getActiveInstance().getInterruptedFlag();
-            Debug.time("sorting", 1, () -> sortBy(idList, tmpSelectionIndices, column, sortDirection, interrupted)); // sort idList together with tmpSelectionIndices
-        });
+        idList = sorted;
 
-        if (!allSelected) {
-            int[] array = tmpSelectionIndices.toArray();
-            Arrays.sort(array);
-            setSelectionIndices(array);
+        if (selectedIDs != null) {
+            Set<Long> selectedSet = new HashSet<>(selectedIDs.size());
+            for (int i = 0; i < selectedIDs.size(); i++)
+                selectedSet.add(selectedIDs.get(i));
+            int[] indices = new int[selectedSet.size()];
+            int count = 0;
+            for (int i = 0; i < idList.size() && count < indices.length; i++)
+                if (selectedSet.contains(idList.get(i)))
+                    indices[count++] = i;
+            setSelectionIndices(Arrays.copyOf(indices, count));
         }
 
         setFocusedID(focusID);
+        refresh();
+        fireContentChangedEvent();
+        return true;
+    }
+
+    /**
+     * Identifies a sorted order of an input IDList.
+     */
+    protected static class SortKey {
+        final IDList idList;
+        final int serial; // ResultFileManager serial, as IDs may be reused after reload
+        final ColumnRole column;
+        final boolean ascending;
+        final int hashCode; // cached, as IDList.hashCode() is O(n)
+
+        public SortKey(IDList idList, int serial, ColumnRole column, boolean ascending) {
+            this.idList = idList;
+            this.serial = serial;
+            this.column = column;
+            this.ascending = ascending;
+            this.hashCode = Objects.hash(idList.hashCode(), serial, column, ascending);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || getClass() != obj.getClass())
+                return false;
+            SortKey other = (SortKey) obj;
+            return hashCode == other.hashCode && serial == other.serial && column == other.column &&
+                    ascending == other.ascending && (idList == other.idList || idList.equals(other.idList));
+        }
+    }
+
+    /**
+     * LRU cache of sorted IDLists.
+     */
+    @SuppressWarnings("serial")
+    protected static class SortCache extends LinkedHashMap<SortKey,IDList> {
+        public static final int MAX_ENTRIES = 8;
+
+        public SortCache() {
+            super(16, 0.75f, true); // access order
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SortKey,IDList> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    }
+
+    /**
+     * Sorts a copy of the input IDList in the background, then displays it and stores
+     * it in the cache. Cancelling the job interrupts the sorting.
+     */
+    protected class SortJob extends Job {
+        private SortKey key;
+        private InterruptedFlag interrupted = new InterruptedFlag();
+
+        public SortJob(SortKey key) {
+            super("Sorting " + key.idList.size() + " items by " + key.column.getLabel());
+            this.key = key;
+            setSystem(key.idList.size() < 100000);
+        }
+
+        @Override
+        protected void canceling() {
+            interrupted.setFlag(true);
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            try {
+                IDList sorted = key.idList.getRange(0, key.idList.size());
+                Debug.time("sorting", 1, () -> sortBy(sorted, new IntVector(), key.column, key.ascending ? SWT.UP : SWT.DOWN, interrupted));
+                if (monitor.isCanceled())
+                    return Status.CANCEL_STATUS;
+                Display.getDefault().asyncExec(() -> {
+                    if (isDisposed() || sortJob != this)
+                        return;
+                    sortJob = null;
+                    sortCache.put(key, sorted);
+                    showSortedIDList(sorted);
+                });
+                return Status.OK_STATUS;
+            }
+            catch (RuntimeException e) {
+                if (interrupted.getFlag())
+                    return Status.CANCEL_STATUS;
+                return ScavePlugin.getErrorStatus(0, "Could not sort table", e);
+            }
+            finally {
+                monitor.done();
+            }
+        }
     }
 
     protected void sortBy(IDList idList, IntVector selectionIndices, ColumnRole column, int direction, InterruptedFlag interrupted) {
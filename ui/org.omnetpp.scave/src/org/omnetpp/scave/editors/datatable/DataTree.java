@@ -157,8 +157,9 @@ public class DataTree extends Tree implements IDataControl {
             TreeItem[] treeItems = getSelection();
             for (TreeItem treeItem : treeItems) {
                 Node node = (Node)treeItem.getData();
-                if (node != null && node.ids != null)
-                    ids.append(node.ids);
+                IDList nodeIds = node == null ? null : node.getIds();
+                if (nodeIds != null)
+                    ids.append(nodeIds);
             }
             return ids.toIDList();
         });
@@ -223,7 +224,7 @@ public class DataTree extends Tree implements IDataControl {
                 showItem(treeItem);
                 Node node = (Node)treeItem.getData();
                 if (node != null)
-                    ids = ids.subtract(node.ids);
+                    ids = ids.subtract(node.getIds());
             }
             if (interrupted.getFlag())
                 throw new InterruptedException();
@@ -244,10 +245,11 @@ public class DataTree extends Tree implements IDataControl {
         // items must be queried first, because getData does not fill up the item
         TreeItem[] childTreeItems = treeItem.getItems();
         Node node = (Node)treeItem.getData();
-        if (node != null && node.ids == null)
+        IDList nodeIds = node == null ? null : node.getIds();
+        if (node != null && nodeIds == null)
             return null;
-        else if (node != null && node.ids != null) {
-            if (node.ids.isSubsetOf(ids))
+        else if (nodeIds != null) {
+            if (nodeIds.isSubsetOf(ids))
                 return treeItem;
         }
         for (TreeItem childTreeItem : childTreeItems) {
@@ -8,6 +8,7 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiFunction;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.text.WordUtils;
@@ -41,6 +42,7 @@ import org.omnetpp.scave.engine.StatisticsResult;
 import org.omnetpp.scave.engine.StringMap;
 import org.omnetpp.scave.engine.StringVector;
 import org.omnetpp.scave.engine.VectorResult;
+import org.omnetpp.scave.engineext.NameColumn;
 import org.omnetpp.scave.engineext.ResultFileManagerEx;
 
 /**
@@ -124,10 +126,8 @@ public class DataTreeContentProvider {
         if (cachedChildren != null)
             return cachedChildren;
 
-        // not cached, compute
+        // not cached, compute (note: large child lists are already split into groups of GROUPSIZE)
         Node[] children = ResultFileManager.callWithReadLock(manager, () -> computeChildren(path));
-        if (children.length > GROUPSIZE)
-            children = makeGroups(children);
 
         // update cache
         if (parentNode == null)
@@ -139,6 +139,19 @@ public class DataTreeContentProvider {
     }
 
     public Node[] makeGroups(Node[] children) {
+        return makeGroups(children, (pos, end) -> {
+            IDListBuffer groupIds = new IDListBuffer();
+            for (int i = pos; i < end; i++)
+                groupIds.append(children[i].getIds());
+            return groupIds.toIDList();
+        });
+    }
+
+    /**
+     * Splits children into groups of GROUPSIZE. The IDs of each group are produced by
+     * groupIdsFunction from the index range [pos,end) of the group's children.
+     */
+    protected Node[] makeGroups(Node[] children, BiFunction<Integer,Integer,IDList> groupIdsFunction) {
         List<Node> groups = new ArrayList<>();
         Debug.time("Making groups", 10, () -> {
             for (int pos = 0; pos < children.length; pos += GROUPSIZE) {
@@ -146,10 +159,7 @@ public class DataTreeContentProvider {
                 String label = "[" + pos + ".." + (end-1) + "]";
                 GroupNode group = new GroupNode(label, children[pos].getImage());
                 group.children = Arrays.copyOfRange(children, pos, end);
-                IDListBuffer groupIds = new IDListBuffer();
-                for (Node child : group.children)
-                    groupIds.append(child.ids);
-                group.ids = groupIds.toIDList();
+                group.ids = groupIdsFunction.apply(pos, end);
                 groups.add(group);
             }
         });
@@ -189,8 +199,13 @@ public class DataTreeContentProvider {
         if (nextLevelClass == null)
             return new Node[0];
 
+        IDList currentLevelIdList = firstNode == null ? inputIdList : firstNode.getIds();
+        if (nextLevelClass.equals(ModulePathNode.class) || nextLevelClass.equals(ModuleNameNode.class) || nextLevelClass.equals(ResultItemNode.class)) {
+            // these levels only depend on the module name or the result name, so work on bulk-extracted name columns
+            return computeChildrenFromNameColumn(path, currentLevelIdList, nextLevelClass, collector);
+        }
+
         // sort the IDs into different child nodes, according to nextLevelClass
-        IDList currentLevelIdList = firstNode == null ? inputIdList : firstNode.ids;
         Map<Node, IDListBuffer> nodeIdsMap = sortIdListToChildNodes(path, currentLevelIdList, nextLevelClass, collector);
 
         // get nodes[] from keyset, sort if necessary
@@ -205,17 +220,136 @@ public class DataTreeContentProvider {
         }
 
         // fill in ids[], value
-        for (Node node : nodes) {
+        for (Node node : nodes)
             node.ids = nodeIdsMap.get(node).toIDList();
-            // add quick value if applicable
-            if (node.ids.size() == 1 && !collector && StringUtils.isEmpty(node.value) &&
-                (!(node instanceof ModuleNameNode) || ((ModuleNameNode)node).leaf))
+        addQuickValues(nodes, collector);
+
+        return nodes.length > GROUPSIZE ? makeGroups(nodes) : nodes;
+    }
+
+    protected void addQuickValues(Node[] nodes, boolean collector) {
+        if (collector)
+            return;
+        for (Node node : nodes) {
+            // note: ResultItemNodes of individual items compute their value in getColumnText()
+            if (node.getIds().size() == 1 && StringUtils.isEmpty(node.value) &&
+                (!(node instanceof ModuleNameNode) || ((ModuleNameNode)node).leaf) &&
+                (!(node instanceof ResultItemNode) || ((ResultItemNode)node).name != null))
             {
-                ResultItem resultItem = manager.getItem(node.ids.get(0));
+                ResultItem resultItem = manager.getItem(node.getIds().get(0));
                 node.value = getResultItemShortDescription(resultItem);
             }
         }
-        return nodes;
+    }
+
+    /**
+     * Computes the child nodes for the ModulePathNode, ModuleNameNode and ResultItemNode
+     * levels. Instead of fetching every ResultItem through JNI, it obtains the module or
+     * result names of the whole IDList in columnar form, and does the classification,
+     * the sorting and the splitting into groups of GROUPSIZE on primitive arrays.
+     */
+    protected Node[] computeChildrenFromNameColumn(List<Node> path, IDList idList, Class<? extends Node> nextLevelClass, boolean collector) {
+        boolean byResultName = nextLevelClass.equals(ResultItemNode.class);
+        NameColumn column = Debug.timed("Getting name column", 1, () -> byResultName ? manager.getResultNameColumn(idList) : manager.getModuleNameColumn(idList));
+        String[] names = column.getNames();
+        int[] indices = column.getIndices();
+
+        // map each distinct name to a child label; with ModuleNameNode, several names may map to the same child
+        int[] childOfName = new int[names.length];
+        String[] labels;
+        boolean[] leafOfName = null;
+        if (nextLevelClass.equals(ModuleNameNode.class)) {
+            String modulePrefix = getModulePrefix(path, null);
+            Map<String,Integer> childIndices = new HashMap<>();
+            List<String> childLabels = new ArrayList<>();
+            leafOfName = new boolean[names.length];
+            for (int k = 0; k < names.length; k++) {
+                String moduleName = names[k];
+                if (!moduleName.startsWith(modulePrefix))
+                    childOfName[k] = -1;
+                else {
+                    String remainingName = StringUtils.removeStart(StringUtils.removeStart(moduleName, modulePrefix), ".");
+                    String name = StringUtils.substringBefore(remainingName, ".");
+                    String label = StringUtils.isEmpty(name) ? "." : name;
+                    leafOfName[k] = !remainingName.contains(".");
+                    Integer childIndex = childIndices.get(label);
+                    if (childIndex == null) {
+                        childIndices.put(label, childIndex = childLabels.size());
+                        childLabels.add(label);
+                    }
+                    childOfName[k] = childIndex;
+                }
+            }
+            labels = childLabels.toArray(new String[0]);
+        }
+        else {
+            for (int k = 0; k < names.length; k++)
+                childOfName[k] = k;
+            labels = names;
+        }
+
+        // sort children by label, and partition the IDs accordingly
+        int[] rankOfChild = Debug.timed("Sorting labels", 1, () -> ColumnGrouping.rank(labels, StringUtils.dictionaryComparator));
+        int[] rankOfName = new int[names.length];
+        for (int k = 0; k < names.length; k++)
+            rankOfName[k] = childOfName[k] == -1 ? -1 : rankOfChild[childOfName[k]];
+        ColumnGrouping grouping = Debug.timed("Grouping IDs", 1, () -> ColumnGrouping.create(indices, rankOfName, labels.length));
+        String[] sortedLabels = new String[labels.length];
+        for (int i = 0; i < labels.length; i++)
+            sortedLabels[rankOfChild[i]] = labels[i];
+
+        if (nextLevelClass.equals(ResultItemNode.class) && !collector)
+            return computeResultItemNodes(idList, grouping);
+
+        int numGroups = grouping.getNumGroups();
+        Node[] nodes = new Node[numGroups];
+        for (int g = 0; g < numGroups; g++) {
+            Node node;
+            if (nextLevelClass.equals(ModulePathNode.class))
+                node = new ModulePathNode(sortedLabels[g]);
+            else if (nextLevelClass.equals(ModuleNameNode.class))
+                node = new ModuleNameNode(sortedLabels[g], leafOfName[indices[grouping.getFirstPosition(g)]]); // leaf flag comes from the first matching ID
+            else
+                node = new ResultItemNode(manager, -1, sortedLabels[g]);
+            node.ids = grouping.getIDs(idList, g, g+1);
+            nodes[g] = node;
+        }
+        addQuickValues(nodes, collector);
+
+        return nodes.length > GROUPSIZE ? makeGroups(nodes, (pos, end) -> grouping.getIDs(idList, pos, end)) : nodes;
+    }
+
+    /**
+     * Creates one ResultItemNode per ID, ordered by result name and item type,
+     * from the grouping of the IDs by result name.
+     */
+    protected Node[] computeResultItemNodes(IDList idList, ColumnGrouping grouping) {
+        long[] ids = idList.toArray(); // in one go, instead of one JNI call per item
+        int numGroups = grouping.getNumGroups();
+        int[] order = grouping.getPositions(0, numGroups);
+        for (int g = 0, pos = 0; g < numGroups; pos += grouping.getGroupSize(g), g++) {
+            // items with the same name are ordered by type, as in their labels
+            int groupSize = grouping.getGroupSize(g);
+            if (groupSize > 1 && Integer.bitCount(grouping.getIDs(idList, g, g+1).getItemTypes()) > 1) {
+                Integer[] positions = new Integer[groupSize];
+                String[] typeNames = new String[groupSize];
+                for (int i = 0; i < groupSize; i++) {
+                    positions[i] = i;
+                    typeNames[i] = getReadableTypeName(ResultFileManager.getTypeOf(ids[order[pos + i]]));
+                }
+                Arrays.sort(positions, (a, b) -> StringUtils.dictionaryCompare(typeNames[a], typeNames[b]));
+                int[] groupOrder = Arrays.copyOfRange(order, pos, pos + groupSize);
+                for (int i = 0; i < groupSize; i++)
+                    order[pos + i] = groupOrder[positions[i]];
+            }
+        }
+
+        // note: the IDList of these nodes is only created when asked for, see ResultItemNode.getIds()
+        Node[] nodes = new Node[order.length];
+        for (int i = 0; i < order.length; i++)
+            nodes[i] = new ResultItemNode(manager, ids[order[i]], null);
+
+        return nodes.length > GROUPSIZE ? makeGroups(nodes, (pos, end) -> idList.getSubsetByIndices(Arrays.copyOfRange(order, pos, end))) : nodes;
     }
 
     protected Map<Node, IDListBuffer> sortIdListToChildNodes(List<Node> path, IDList idList, Class<? extends Node> nextLevelClass, boolean collector) {
@@ -276,23 +410,7 @@ public class DataTreeContentProvider {
                 MatchContext matchContext = new MatchContext(manager, id);
                 if (nextLevelClass.equals(FileNameRunIdNode.class)) // this one should be done by partitioning by FileRuns, but we don't care, this isn't a very useful classification
                     add(nodeIdsMap, new FileNameRunIdNode(matchContext.getResultFile().getFileName(), matchContext.getRun().getRunName()), id);
-                else if (nextLevelClass.equals(ModuleNameNode.class)) {
-                    String moduleName = matchContext.getResultItem().getModuleName();
-                    String modulePrefix = getModulePrefix(path, null);
-                    if (moduleName.startsWith(modulePrefix)) {
-                        String remainingName = StringUtils.removeStart(StringUtils.removeStart(moduleName, modulePrefix), ".");
-                        String name = StringUtils.substringBefore(remainingName, ".");
-                        add(nodeIdsMap, new ModuleNameNode(StringUtils.isEmpty(name) ? "." : name, !remainingName.contains(".")), id);
-                    }
-                }
-                else if (nextLevelClass.equals(ModulePathNode.class))
-                    add(nodeIdsMap, new ModulePathNode(matchContext.getResultItem().getModuleName()), id);
-                else if (nextLevelClass.equals(ResultItemNode.class)) {
-                    if (collector)
-                        add(nodeIdsMap, new ResultItemNode(manager, -1, matchContext.getResultItem().getName()), id);
-                    else
-                        add(nodeIdsMap, new ResultItemNode(manager, id, null), id);
-                }
+                // note: ModuleNameNode, ModulePathNode and ResultItemNode are handled in computeChildrenFromNameColumn()
                 else if (nextLevelClass.equals(ResultItemFieldOrAttributeNode.class)) {
                     ResultItem resultItem = matchContext.getResultItem();
                     ResultItem.DataType type = resultItem.getDataType();
@@ -464,6 +582,21 @@ public class DataTreeContentProvider {
         return resultItem.getClass().getSimpleName().replaceAll("Result", "").toLowerCase();
     }
 
+    protected static String getReadableTypeName(int type) { // must agree with getResultItemReadableClassName()
+        if (type == ResultFileManager.PARAMETER)
+            return "parameter";
+        else if (type == ResultFileManager.SCALAR)
+            return "scalar";
+        else if (type == ResultFileManager.VECTOR)
+            return "vector";
+        else if (type == ResultFileManager.STATISTICS)
+            return "statistics";
+        else if (type == ResultFileManager.HISTOGRAM)
+            return "histogram";
+        else
+            throw new IllegalArgumentException();
+    }
+
     /**
      * This class apparently doesn't do much, it just caches the results of various getters.
      */
@@ -558,10 +691,14 @@ public class DataTreeContentProvider {
     }
 
     protected static abstract class Node {
-        public IDList ids;
+        protected IDList ids;
         public Node[] children;
         public String value = "";
 
+        public IDList getIds() {
+            return ids;
+        }
+
         public boolean isExpandedByDefault() {
             return false;
         }
@@ -1234,6 +1371,13 @@ public class DataTreeContentProvider {
             }
         }
 
+        @Override
+        public IDList getIds() {
+            if (ids == null && id != -1)
+                ids = new IDList(id);
+            return ids;
+        }
+
         @Override
         public boolean matches(List<Node> path, long id, MatchContext matchContext) {
             if (name != null)
@@ -1245,7 +1389,7 @@ public class DataTreeContentProvider {
         @Override
         public Image getImage() {
             if (name != null) {
-                int allType = ids.getItemTypes();
+                int allType = getIds().getItemTypes();
                 if (allType == ResultFileManager.SCALAR)
                     return ScavePlugin.getCachedImage(ScaveImages.IMG_OBJ16_SCALAR);
                 else if (allType == ResultFileManager.VECTOR)
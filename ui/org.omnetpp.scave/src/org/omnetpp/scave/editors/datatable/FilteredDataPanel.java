@@ -81,6 +81,7 @@ public class FilteredDataPanel extends Composite implements IHasFocusManager {
         if (changed) {
             filterCache.clear();
             filterBar.getFilterExpressionProposalProvider().setIDList(dataControl.getResultFileManager(), idlist);
+            filterHintsCache.precomputeHints(dataControl.getResultFileManager(), idlist);
             runFilter();
         }
     }
@@ -10,8 +10,10 @@ package org.omnetpp.scave.jobs;
 import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -85,9 +87,7 @@ public class ChartExport {
         protected IStatus run(final IProgressMonitor monitor) {
             try {
                 ResultFileManager.runWithReadLock(context.manager, () -> {
-                    PythonProcessPool processPool = new PythonProcessPool(1);
-                    processPool.setShouldSetOmnetppMplBackend(false);
-                    runChartScript(chart, processPool, context, monitor);
+                    runChartScript(chart, PythonProcessPool.getSharedExportPool(), context, monitor);
                 });
                 return Status.OK_STATUS;
             }
@@ -112,6 +112,35 @@ public class ChartExport {
 
         @Override
         protected IStatus run(IProgressMonitor monitor) {
+            // have processes for all concurrent jobs warmed up right away
+            PythonProcessPool processPool = PythonProcessPool.getSharedExportPool();
+            processPool.reserveProcesses(context.numConcurrentProcesses);
+            try {
+                return runExport(monitor);
+            }
+            finally {
+                processPool.releaseReservation(context.numConcurrentProcesses);
+            }
+        }
+
+        protected IStatus runExport(IProgressMonitor monitor) {
+            // evaluate each distinct chart filter only once; concurrent identical
+            // ResultsProvider requests are merged by the shared MemoizationCache.
+            // Note that data is read once per distinct request, not once per vector:
+            // charts whose filters select overlapping vectors still read them separately.
+            Set<String> filters = new LinkedHashSet<>();
+            for (Chart chart : charts) {
+                String filter = chart.getPropertyValue("filter");
+                if (!StringUtils.isBlank(filter))
+                    filters.add(filter);
+            }
+            if (!filters.isEmpty() && context.filterCache != null) {
+                monitor.subTask("Evaluating chart filters");
+                ResultFileManager.runWithReadLock(context.manager, () -> context.filterCache.precomputeFilterResults(filters, monitor));
+                if (monitor.isCanceled())
+                    return Status.CANCEL_STATUS;
+            }
+
             JobGroup jobGroup = new JobGroup("Exporting charts", context.numConcurrentProcesses, charts.size()) {
                 @Override
                 protected boolean shouldCancel(IStatus lastCompletedJobResult, int numberOfFailedJobs, int numberOfCanceledJobs) {
@@ -276,8 +305,10 @@ public class ChartExport {
             }
         }
 
-        proc.kill();
-        processPool.dispose();
+        if (executionDone[0])
+            processPool.releaseProcessWhenIdle(proc); // reset and reuse it for the next chart
+        else
+            proc.kill();
     }
 
 }
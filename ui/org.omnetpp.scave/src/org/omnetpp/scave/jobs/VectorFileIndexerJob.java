@@ -9,14 +9,19 @@ package org.omnetpp.scave.jobs;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.WorkspaceJob;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.jobs.MultiRule;
@@ -24,11 +29,15 @@ import org.omnetpp.scave.common.IndexFileUtils;
 
 /**
  * This job generates index files for vector files in the workspace.
+ * Files are indexed concurrently, using a small thread pool (indexing
+ * is mostly I/O bound, so using all cores would not pay off).
  *
  * @author tomi
  */
 public class VectorFileIndexerJob extends WorkspaceJob {
 
+    private static final int MAX_THREADS = 4;
+
     private List<IFile> filesToBeIndexed;
 
     public VectorFileIndexerJob(String name, IFile[] filesToBeIndexed) {
@@ -54,27 +63,62 @@ public class VectorFileIndexerJob extends WorkspaceJob {
     public IStatus runInWorkspace(IProgressMonitor monitor)
             throws CoreException {
 
-        if (!filesToBeIndexed.isEmpty()) {
-            try {
-                monitor.beginTask(getName(), filesToBeIndexed.size());
+        if (filesToBeIndexed.isEmpty())
+            return Status.OK_STATUS;
 
-                for (IFile file : filesToBeIndexed) {
-                    if (monitor.isCanceled())
-                        return Status.CANCEL_STATUS;
-
-                    monitor.subTask("Indexing "+file.getName());
-                    if (file.exists() && IndexFileUtils.isExistingVectorFile(file) && !IndexFileUtils.isIndexFileUpToDate(file)) {
-                        IProgressMonitor subMonitor = new SubProgressMonitor(monitor, 1);
-                        IndexFileUtils.performIndexing(file, subMonitor);
-                        if (subMonitor.isCanceled())
-                            return Status.CANCEL_STATUS;
-                    }
+        int numThreads = Math.min(Math.min(Runtime.getRuntime().availableProcessors(), MAX_THREADS), filesToBeIndexed.size());
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            monitor.beginTask(getName(), filesToBeIndexed.size());
+
+            // the progress monitor may only be used from this thread, so the indexer
+            // threads get monitors that only propagate cancellation
+            IProgressMonitor cancelMonitor = new NullProgressMonitor() {
+                @Override
+                public boolean isCanceled() {
+                    return monitor.isCanceled();
                 }
+            };
+
+            ExecutorCompletionService<IFile> completionService = new ExecutorCompletionService<>(executor);
+            for (IFile file : filesToBeIndexed) {
+                completionService.submit(() -> {
+                    if (!cancelMonitor.isCanceled() && file.exists() && IndexFileUtils.isExistingVectorFile(file) && !IndexFileUtils.isIndexFileUpToDate(file))
+                        IndexFileUtils.performIndexing(file, cancelMonitor);
+                    return file;
+                });
+            }
+
+            for (int i = 0; i < filesToBeIndexed.size(); i++) {
+                Future<IFile> done;
+                while ((done = completionService.poll(100, TimeUnit.MILLISECONDS)) == null)
+                    if (monitor.isCanceled())
+                        break;
+                if (done == null)
+                    break;
+                monitor.subTask("Indexed " + done.get().getName());
+                monitor.worked(1);
+            }
+            return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+        }
+        catch (InterruptedException e) {
+            return Status.CANCEL_STATUS;
+        }
+        catch (Exception e) {
+            // performIndexing() reports problems as markers, so this should not happen
+            throw new RuntimeException(e);
+        }
+        finally {
+            // wait for the running tasks: they hold native resources and write the index files
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.SECONDS))
+                    ;
             }
-            finally {
-                monitor.done();
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
+            monitor.done();
         }
-        return Status.OK_STATUS;
     }
 }
@@ -16,12 +16,22 @@ import static org.omnetpp.scave.model2.FilterField.TYPE;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.ArrayUtils;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.omnetpp.common.collections.Trie;
 import org.omnetpp.common.engine.PatternMatcher;
+import org.omnetpp.common.util.StringUtils;
 import org.omnetpp.scave.engine.IDList;
 import org.omnetpp.scave.engine.ResultFileList;
 import org.omnetpp.scave.engine.ResultFileManager;
@@ -31,55 +41,248 @@ import org.omnetpp.scave.model2.FilterField.Kind;
 
 /**
  * Given an IDList, produces hints for different filter fields such as
- * module name, statistic name, run attributes etc.
+ * module name, statistic name, run attributes etc. Hints are cached for the
+ * most recently used IDLists, and can be precomputed in the background.
  *
  * @author tomi, andras
  */
 public class FilterHintsCache {
-    //TODO cache hints for more than one IDList
-    private ResultFileManager lastManager = null;
-    private IDList lastIdList = null;
-    private RunList cachedRunList = null;
-    private Map<FilterField.Kind,String[]> cachedNameHints = new HashMap<>();
-    private Map<FilterField,String[]> cachedValueHints = new HashMap<>();
+    public static final int MAX_ENTRIES = 8;
+
+    // fields whose hints are precomputed, i.e. those offered in the filter combos
+    public static final FilterField[] PRECOMPUTED_FIELDS = {
+            FilterField.EXPERIMENT, FilterField.MEASUREMENT, FilterField.REPLICATION, MODULE, NAME };
+
+    /**
+     * Hint strings, indexed by a trie for fast lookup. The trie contains each
+     * hint, and its tails that start at a word boundary (e.g. "host[0].app" and
+     * "app" for "host[0].app"), so hints that contain the typed text at the start
+     * of a word are found without scanning all hints. Matching is case insensitive,
+     * so the trie is keyed by the lowercase strings.
+     */
+    public static class Hints {
+        private final String[] values;
+        private final Trie<List<Integer>> trie; // maps lowercase hints and word-start tails to the indices of the hints in values; null if some hint is not ASCII
+
+        public Hints(String[] values) {
+            this.values = values;
+            this.trie = buildTrie(values);
+        }
+
+        private static Trie<List<Integer>> buildTrie(String[] values) {
+            try {
+                Trie<List<Integer>> trie = new Trie<>();
+                for (int i = 0; i < values.length; i++) {
+                    String lowercaseValue = values[i].toLowerCase(Locale.ROOT);
+                    if (lowercaseValue.length() != values[i].length())
+                        return null; // not ASCII
+                    for (int start = 0; start < values[i].length(); start++) {
+                        if (start == 0 || isWordStart(values[i], start)) {
+                            String key = lowercaseValue.substring(start);
+                            List<Integer> indices = trie.get(key);
+                            if (indices == null)
+                                trie.put(key, indices = new ArrayList<>(1));
+                            indices.add(i);
+                        }
+                    }
+                }
+                return trie;
+            }
+            catch (IllegalArgumentException e) { // Trie only accepts printable ASCII
+                return null;
+            }
+        }
+
+        /**
+         * A word starts with a letter or digit after a non-alphanumeric character,
+         * or with an uppercase letter after a lowercase one (camel case).
+         */
+        private static boolean isWordStart(String s, int pos) {
+            char ch = s.charAt(pos), prev = s.charAt(pos - 1);
+            if (!Character.isLetterOrDigit(ch))
+                return false;
+            return !Character.isLetterOrDigit(prev) || (Character.isUpperCase(ch) && Character.isLowerCase(prev));
+        }
+
+        public String[] getValues() {
+            return values;
+        }
+
+        /**
+         * See FilterHintsCache.filter(). If the prefix is plain text, the hints
+         * that start with it, or contain it at the start of a word, are looked
+         * up in the trie, and returned in their original order. The cost is
+         * proportional to the length of the prefix and the number of matches,
+         * not to the number of hints.
+         */
+        public String[] filter(String prefix) {
+            if (trie == null || prefix == null || prefix.isEmpty() || !isLiteral(prefix))
+                return FilterHintsCache.filter(values, prefix);
+
+            // if prefix is a complete value: return all values, but make prefix the first
+            String lowercasePrefix = prefix.toLowerCase(Locale.ROOT);
+            List<Integer> sameIgnoringCase = trie.get(lowercasePrefix);
+            if (sameIgnoringCase != null)
+                for (int i : sameIgnoringCase)
+                    if (values[i].equals(prefix))
+                        return moveToFront(values, i);
+
+            List<List<Integer>> matches = new ArrayList<>();
+            trie.collectValuesWithPrefix(lowercasePrefix, matches);
+            List<Integer> indices = new ArrayList<>();
+            for (List<Integer> list : matches)
+                indices.addAll(list);
+            Collections.sort(indices); // keep original order
+            List<String> tmp = new ArrayList<>();
+            for (int k = 0; k < indices.size(); k++)
+                if (k == 0 || !indices.get(k).equals(indices.get(k-1))) // a hint may match at several word starts
+                    tmp.add(values[indices.get(k)]);
+            return tmp.toArray(new String[]{});
+        }
+    }
+
+    protected static class Key {
+        final ResultFileManager manager;
+        final int serial;
+        final IDList idlist;
+        final int hashCode; // cached, as IDList.hashCode() is O(n)
+
+        public Key(ResultFileManager manager, IDList idlist) {
+            this.manager = manager;
+            this.serial = manager.getSerial();
+            this.idlist = idlist;
+            this.hashCode = Objects.hash(manager, serial, idlist.hashCode());
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || getClass() != obj.getClass())
+                return false;
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && manager.equals(other.manager) && serial == other.serial &&
+                    (idlist == other.idlist || idlist.equals(other.idlist));
+        }
+    }
+
+    // hints for one IDList; hints are computed outside any lock, so the
+    // same hints may occasionally be computed twice concurrently
+    protected static class Entry {
+        final Map<FilterField.Kind,Hints> nameHints = new ConcurrentHashMap<>();
+        final Map<FilterField,Hints> valueHints = new ConcurrentHashMap<>();
+    }
+
+    @SuppressWarnings("serial")
+    private final Map<Key,Entry> entries = new LinkedHashMap<Key,Entry>(16, 0.75f, true) { // access order
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key,Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private Job precomputeJob; // the most recently started one
 
     public FilterHintsCache() {
     }
 
     public String[] getValueHints(ResultFileManager manager, IDList idlist, FilterField field, String prefix) {
-        return filter(getValueHints(manager, idlist, field), prefix);
+        return getValueHintsObject(manager, idlist, field).filter(prefix);
     }
 
     public String[] getValueHints(ResultFileManager manager, IDList idlist, FilterField field) {
-        setCachedIDList(manager, idlist);
-
-        if (!cachedValueHints.containsKey(field))
-            cachedValueHints.put(field,  computeValueHints(manager, idlist, field));
-
-        return cachedValueHints.get(field);
+        return getValueHintsObject(manager, idlist, field).getValues();
     }
 
     public String[] getNameHints(ResultFileManager manager, IDList idlist, FilterField.Kind kind, String prefix) {
-        return filter(getNameHints(manager, idlist, kind), prefix);
+        return getNameHintsObject(manager, idlist, kind).filter(prefix);
     }
 
     public String[] getNameHints(ResultFileManager manager, IDList idlist, FilterField.Kind kind) {
-        setCachedIDList(manager, idlist);
+        return getNameHintsObject(manager, idlist, kind).getValues();
+    }
 
-        if (!cachedNameHints.containsKey(kind))
-            cachedNameHints.put(kind,  computeNameHints(manager, idlist, kind));
+    protected Hints getValueHintsObject(ResultFileManager manager, IDList idlist, FilterField field) {
+        Entry entry = getEntry(manager, idlist);
+        Hints hints = entry.valueHints.get(field);
+        if (hints == null) {
+            hints = new Hints(computeValueHints(manager, idlist, field));
+            Hints existing = entry.valueHints.putIfAbsent(field, hints);
+            if (existing != null)
+                hints = existing;
+        }
+        return hints;
+    }
+
+    protected Hints getNameHintsObject(ResultFileManager manager, IDList idlist, FilterField.Kind kind) {
+        Entry entry = getEntry(manager, idlist);
+        Hints hints = entry.nameHints.get(kind);
+        if (hints == null) {
+            hints = new Hints(computeNameHints(manager, idlist, kind));
+            Hints existing = entry.nameHints.putIfAbsent(kind, hints);
+            if (existing != null)
+                hints = existing;
+        }
+        return hints;
+    }
 
-        return cachedNameHints.get(kind);
+    protected Entry getEntry(ResultFileManager manager, IDList idlist) {
+        synchronized (entries) {
+            // look for the same IDList instance first (e.g. the one being filtered as the user
+            // types), so that IDList.hashCode(), which is O(n), is only computed once per instance
+            int serial = manager.getSerial();
+            for (Key key : entries.keySet())
+                if (key.idlist == idlist && key.serial == serial && key.manager.equals(manager))
+                    return entries.get(key); // also updates the access order
+            return entries.computeIfAbsent(new Key(manager, idlist), k -> new Entry());
+        }
     }
 
-    protected void setCachedIDList(ResultFileManager manager, IDList idlist) {
-        if (manager != lastManager || !idlist.equals(lastIdList)) {
-            cachedNameHints.clear();
-            cachedValueHints.clear();
-            cachedRunList = null;
-            lastManager = manager;
-            lastIdList = idlist;
+    /**
+     * Starts computing the hints of the filter combo fields and the field
+     * names for the given IDList in a background job, so that they are
+     * readily available when the user starts typing. The job started by the
+     * previous call is canceled, as its hints are no longer needed.
+     */
+    public synchronized void precomputeHints(ResultFileManager manager, IDList idlist) {
+        if (precomputeJob != null) {
+            precomputeJob.cancel();
+            precomputeJob = null;
         }
+        if (manager == null || idlist.isEmpty())
+            return;
+        Job job = new Job("Computing filter hints") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                try {
+                    ResultFileManager.runWithReadLock(manager, () -> {
+                        for (FilterField field : PRECOMPUTED_FIELDS) {
+                            if (monitor.isCanceled())
+                                return;
+                            getValueHintsObject(manager, idlist, field);
+                        }
+                        for (FilterField.Kind kind : FilterField.Kind.values()) {
+                            if (monitor.isCanceled())
+                                return;
+                            getNameHintsObject(manager, idlist, kind);
+                        }
+                    });
+                }
+                catch (RuntimeException e) {
+                    // ignore: hints are only a convenience, and will be computed on demand if needed (e.g. the manager was disposed meanwhile)
+                }
+                return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.setPriority(Job.DECORATE);
+        job.schedule();
+        precomputeJob = job;
     }
 
     public static String[] computeValueHints(ResultFileManager manager, IDList idlist, FilterField field) {
@@ -144,13 +347,8 @@ public class FilterHintsCache {
 
         // if prefix is a complete value: return all values, but make prefix the first
         int index = ArrayUtils.indexOf(v, prefix);
-        if (index >= 0) {
-            String[] result = Arrays.copyOf(v, v.length);
-            for (int i = index; i > 0; --i)
-                result[i] = result[i-1];
-            result[0] = prefix;
-            return result;
-        }
+        if (index >= 0)
+            return moveToFront(v, index);
 
         PatternMatcher prefixAsPattern = new PatternMatcher(prefix, true, false /*=substring*/, false /*=ignorecase*/);
         List<String> tmp = new ArrayList<>();
@@ -160,7 +358,19 @@ public class FilterHintsCache {
         return tmp.toArray(new String[]{});
     }
 
-    public RunList getRunList() {
-        return cachedRunList;
+    private static String[] moveToFront(String[] v, int index) {
+        String[] result = Arrays.copyOf(v, v.length);
+        for (int i = index; i > 0; --i)
+            result[i] = result[i-1];
+        result[0] = v[index];
+        return result;
+    }
+
+    /**
+     * Returns true if the string contains no pattern metacharacters, i.e.
+     * substring matching it as a pattern is the same as a plain substring search.
+     */
+    private static boolean isLiteral(String s) {
+        return StringUtils.containsNone(s, "?*[]{}\\");
     }
 }
@@ -1,17 +1,18 @@
 package org.omnetpp.scave.model2;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.omnetpp.common.Debug;
 import org.omnetpp.common.util.StringUtils;
 import org.omnetpp.scave.editors.IDListSelection;
+import org.omnetpp.scave.editors.datatable.ColumnGrouping;
 import org.omnetpp.scave.editors.datatable.FilteredDataPanel;
 import org.omnetpp.scave.editors.datatable.PanelType;
 import org.omnetpp.scave.engine.IDList;
@@ -20,6 +21,7 @@ import org.omnetpp.scave.engine.ResultFileManager;
 import org.omnetpp.scave.engine.ResultItem;
 import org.omnetpp.scave.engine.RunList;
 import org.omnetpp.scave.engine.Scave;
+import org.omnetpp.scave.engine.StringVector;
 
 /**
  * Given a set of selected results (an IDList of selected items, out of an IDList
@@ -30,13 +32,60 @@ public class ResultSelectionFilterGenerator {
 
     protected static boolean debug = Debug.isChannelEnabled("resultfiltergenerator");
 
-    static class AttributeValueCounts {
-        int targetCount;
-        int nonTargetCount;
+    /**
+     * Default time budget for getFilter(). When it is exceeded, the search stops,
+     * and the items not yet covered are listed one by one.
+     */
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 3000;
+
+    // the item properties which filter terms are made of
+    private static final String[] FIELDS = new String[] {
+            Scave.TYPE,
+            Scave.RUNATTR_PREFIX + Scave.EXPERIMENT,
+            Scave.RUNATTR_PREFIX + Scave.MEASUREMENT,
+            Scave.RUNATTR_PREFIX + Scave.REPLICATION,
+            Scave.MODULE,
+            Scave.NAME
+    };
+
+    /**
+     * The values of one item property for all items, as codes into the
+     * table of distinct values, plus the number of selected and unselected
+     * items for each value.
+     */
+    static class Column {
+        String field;
+        int[] codes;       // for each position in the "all" IDList
+        String[] values;   // distinct values
+        int[] targetCounts;
+        int[] nonTargetCounts;
+        ColumnGrouping positions; // positions of each value
+
+        int getCount(int value, boolean target) {
+            return target ? targetCounts[value] : nonTargetCounts[value];
+        }
     }
 
-    static class ColumnValueCounts {
-        Map<String, AttributeValueCounts> valueCounts;
+    /**
+     * A term of the filter expression (a single "field =~ value", or the AND of
+     * two such), and the positions of the items it matches.
+     */
+    static class Term {
+        final String expression;
+        final int cost; // number of atoms
+        final int[] positions;
+        int gain; // number of uncovered positions it covers; decreases as the search proceeds
+
+        Term(String expression, int cost, int[] positions) {
+            this.expression = expression;
+            this.cost = cost;
+            this.positions = positions;
+            this.gain = positions.length;
+        }
+
+        double getScore() {
+            return (double)gain / cost;
+        }
     }
 
     /**
@@ -45,14 +94,24 @@ public class ResultSelectionFilterGenerator {
      * when used to filter the second one. Tries to keep the expression short and reasonable.
      */
     public static String getFilter(IDList target, IDList all, ResultFileManager manager, IProgressMonitor monitor, InterruptedFlag interrupted) throws InterruptedException {
+        return getFilter(target, all, manager, monitor, interrupted, DEFAULT_TIME_BUDGET_MILLIS);
+    }
+
+    /**
+     * Like getFilter(), but with an explicit time budget. When the budget is
+     * exceeded, the best filter found so far is completed by listing the
+     * remaining items one by one, so the result is still exact, just longer.
+     */
+    public static String getFilter(IDList target, IDList all, ResultFileManager manager, IProgressMonitor monitor, InterruptedFlag interrupted, long timeBudgetMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeBudgetMillis;
         return ResultFileManager.callWithReadLock(manager, () -> {
             if (monitor != null)
-                monitor.beginTask("Generating filter", 1);
+                monitor.beginTask("Generating filter", 4);
 
             if (!target.isSubsetOf(all))
                 throw new IllegalArgumentException("IDs to be selected must be a subset of all IDs");
 
-            String filter = doGetFilter(target, all, manager, monitor, interrupted);
+            String filter = doGetFilter(target, all, manager, monitor, interrupted, deadline);
 
             if (debug) {
                 Debug.println("filter expression: " + filter);
@@ -63,212 +122,236 @@ public class ResultSelectionFilterGenerator {
         });
     }
 
-    protected static String doGetFilter(IDList target, IDList all, ResultFileManager manager, IProgressMonitor monitor, InterruptedFlag interrupted) throws InterruptedException {
+    /**
+     * Covers the target items (or the non-target ones, and negates the result)
+     * with terms which match only such items, choosing greedily the terms which
+     * cover the most not yet covered items per atom. Item property values are
+     * extracted in bulk (one JNI call per field), and all set operations are done
+     * on positions within "all", so no filterIDList() calls are needed.
+     */
+    protected static String doGetFilter(IDList target, IDList all, ResultFileManager manager, IProgressMonitor monitor, InterruptedFlag interrupted, long deadline) throws InterruptedException {
+        int n = all.size();
+        if (target.size() == n)
+            return "*";
 
-        checkMonitor(monitor);
+        if (debug)
+            Debug.println("getFilter, trying to reduce " + n + " IDs to " + target.size());
 
-        String approxFilter = getApproximateFilter(target, all, manager, interrupted);
+        int[] isTarget = new int[n];
+        all.getMembershipFlags(target, isTarget);
 
+        Column[] columns = Debug.timed("extracting columns", 1, () -> extractColumns(all, isTarget, manager));
         checkMonitor(monitor);
+        checkInterruptedFlag(interrupted);
 
-        if (debug) {
-            Debug.println("getFilter, trying to reduce " + all.size() + " IDs to " + target.size());
-            Debug.println("approx filter is: " + approxFilter);
-        }
-
-
-        IDList approxMatching = Debug.timed("approxfilter", 1, () -> manager.filterIDList(all, approxFilter, -1, interrupted));
-
+        boolean complementFirst = target.size() > n / 2;
+        String best = findCover(all, columns, isTarget, !complementFirst, manager, interrupted, deadline);
         checkMonitor(monitor);
 
-        if (debug)
-            Debug.println("approx matching count: " + approxMatching.size());
-
-        IDList approxNotMatching = all.subtract(approxMatching);
-
-        IDList toBeExcluded = approxMatching.subtract(target);
-        IDList toBeIncluded = target.subtract(approxMatching);
-
-        String includeFilter = null;
-        if (!toBeIncluded.isEmpty()) {
-            if (debug)
-                Debug.println("computing include filter...");
-            includeFilter = doGetFilter(toBeIncluded, approxNotMatching,  manager, monitor, interrupted);
-            if (debug)
-                Debug.println("include filter: " + includeFilter);
-        }
-
-        String excludeFilter = null;
-        if (!toBeExcluded.isEmpty()) {
-            if (debug)
-                Debug.println("computing exclude filter...");
-            excludeFilter = doGetFilter(toBeExcluded, approxMatching, manager, monitor, interrupted);
-            if (debug)
-                Debug.println("exclude filter: " + excludeFilter);
+        if (System.currentTimeMillis() < deadline) {
+            String other = findCover(all, columns, isTarget, complementFirst, manager, interrupted, deadline);
+            if (other.length() < best.length())
+                best = other;
         }
+        checkMonitor(monitor);
 
-        boolean haveInclude = includeFilter != null && !includeFilter.equals("(\n    *\n)");
-        boolean haveExclude = excludeFilter != null && !excludeFilter.equals("(\n    *\n)");
+        return best;
+    }
 
-        if (approxFilter.equals("*")) {
-            String result = "";
+    /**
+     * Extracts the values of FIELDS for all items, and counts the target and
+     * non-target items for each value. Columns are processed in parallel.
+     */
+    protected static Column[] extractColumns(IDList all, int[] isTarget, ResultFileManager manager) {
+        int n = all.size();
+        Column[] columns = new Column[FIELDS.length];
+        for (int c = 0; c < FIELDS.length; c++) {
+            Column column = new Column();
+            column.field = FIELDS[c];
+            column.codes = new int[n];
+            StringVector values = new StringVector();
+            manager.getItemPropertyIndices(all, column.field, column.codes, values);
+            column.values = values.toArray();
+            columns[c] = column;
+        }
 
-            if (haveInclude) {
-                if (haveExclude)
-                    result += " (\n" + StringUtils.indentLines(includeFilter, "    ") + "\n)";
+        Arrays.stream(columns).parallel().forEach(column -> {
+            int numValues = column.values.length;
+            column.targetCounts = new int[numValues];
+            column.nonTargetCounts = new int[numValues];
+            int[] codes = column.codes;
+            for (int i = 0; i < n; i++) {
+                if (isTarget[i] != 0)
+                    column.targetCounts[codes[i]]++;
                 else
-                    result += includeFilter;
+                    column.nonTargetCounts[codes[i]]++;
             }
+            int[] identity = new int[numValues];
+            for (int v = 0; v < numValues; v++)
+                identity[v] = v;
+            column.positions = ColumnGrouping.create(codes, identity, numValues);
+        });
 
-            if (haveExclude) {
-                if (haveInclude)
-                    result += "\n AND \n";
-
-                result += "NOT (\n" + StringUtils.indentLines(excludeFilter, "    ") + "\n)";
-            }
-
-            return result.isEmpty() ? "*" : result;
-        }
-        else {
-            if (!haveInclude && !haveExclude)
-                return approxFilter;
-            else {
-                String result = "(\n" + StringUtils.indentLines(approxFilter, "    ") + "\n)";
-
-                if (haveInclude)
-                    result += " OR (\n" + StringUtils.indentLines(includeFilter, "    ") + "\n)";
-
-                if (haveExclude)
-                    result += " AND NOT (\n" + StringUtils.indentLines(excludeFilter, "    ") + "\n)";
+        if (debug)
+            for (Column column : columns)
+                Debug.println("column " + column.field + ": " + column.values.length + " distinct values");
 
-                return result;
-            }
-        }
+        return columns;
     }
 
-    // TODO reasonable name
-    protected static ColumnValueCounts computeColumnData(IDList target, IDList all, String attrName, ResultFileManager manager, InterruptedFlag interrupted) throws InterruptedException {
-
-        IDList nonTarget = all.subtract(target);
-
-        Map<String, AttributeValueCounts> valueCounts = new HashMap<String, AttributeValueCounts>();
-
-        for (int i = 0; i < target.size(); ++i) {
-            String value = manager.getItemProperty(target.get(i), attrName);
-            if (!valueCounts.containsKey(value))
-                valueCounts.put(value, new AttributeValueCounts());
+    /**
+     * Returns a filter that matches exactly the target items if coverTarget is true;
+     * otherwise it covers the non-target items, and returns the negation of that.
+     */
+    protected static String findCover(IDList all, Column[] columns, int[] isTarget, boolean coverTarget, ResultFileManager manager, InterruptedFlag interrupted, long deadline) throws InterruptedException {
+        int n = all.size();
+        int wanted = coverTarget ? 1 : 0;
+        BitSet uncovered = new BitSet(n);
+        for (int i = 0; i < n; i++)
+            if (isTarget[i] == wanted)
+                uncovered.set(i);
+
+        String cover = uncovered.cardinality() == n ? "*" : uncovered.isEmpty() ? null : doFindCover(all, columns, isTarget, coverTarget, uncovered, manager, interrupted, deadline);
+
+        if (coverTarget)
+            return cover == null ? "NOT (\n    *\n)" : cover;
+        else
+            return cover == null ? "*" : "NOT (\n" + StringUtils.indentLines(cover, "    ") + "\n)";
+    }
 
-            valueCounts.get(value).targetCount += 1;
+    private static String doFindCover(IDList all, Column[] columns, int[] isTarget, boolean coverTarget, BitSet uncovered, ResultFileManager manager, InterruptedFlag interrupted, long deadline) throws InterruptedException {
+        List<Term> candidates = Debug.timed("collecting candidate terms", 1, () -> collectCandidates(columns, isTarget, coverTarget, deadline));
+        checkInterruptedFlag(interrupted);
 
-            if ((i & 0xffff) == 0)
+        if (debug)
+            Debug.println(candidates.size() + " candidate terms for covering " + uncovered.cardinality() + " " + (coverTarget ? "target" : "non-target") + " items");
+
+        // lazy greedy set cover: gains can only decrease, so a term whose recomputed
+        // score is still not worse than the best stored one can be accepted right away
+        PriorityQueue<Term> queue = new PriorityQueue<>(Math.max(1, candidates.size()),
+                (a, b) -> a.getScore() != b.getScore() ? Double.compare(b.getScore(), a.getScore()) : Integer.compare(a.cost, b.cost));
+        queue.addAll(candidates);
+
+        List<Term> chosen = new ArrayList<>();
+        int iteration = 0;
+        while (!queue.isEmpty() && !uncovered.isEmpty()) {
+            if ((++iteration & 0xff) == 0) {
                 checkInterruptedFlag(interrupted);
-        }
-
-        for (int i = 0; i < nonTarget.size(); ++i) {
-            String value = manager.getItemProperty(nonTarget.get(i), attrName);
-            if (!valueCounts.containsKey(value))
-                valueCounts.put(value, new AttributeValueCounts());
-
-            valueCounts.get(value).nonTargetCount += 1;
+                if (System.currentTimeMillis() > deadline) {
+                    if (debug)
+                        Debug.println("time budget exceeded, " + uncovered.cardinality() + " items left uncovered");
+                    break;
+                }
+            }
 
-            if ((i & 0xffff) == 0)
-                checkInterruptedFlag(interrupted);
-        }
+            Term term = queue.poll();
+            int gain = 0;
+            for (int pos : term.positions)
+                if (uncovered.get(pos))
+                    gain++;
+            term.gain = gain;
+            if (gain == 0)
+                continue;
+            if (!queue.isEmpty() && term.getScore() < queue.peek().getScore()) {
+                queue.add(term);
+                continue;
+            }
 
-        if (debug)
-            Debug.println("counters for " + attrName);
-        for (String v : valueCounts.keySet()) {
-            AttributeValueCounts c = valueCounts.get(v);
-            if (debug)
-                Debug.println("   " + v + " : target = " + c.targetCount + " , nonTarget = " + c.nonTargetCount);
+            for (int pos : term.positions)
+                uncovered.clear(pos);
+            chosen.add(term);
         }
 
-        ColumnValueCounts result = new ColumnValueCounts();
-        result.valueCounts = valueCounts;
-        return result;
-    }
-
-    protected static String getApproximateFilter(IDList target, IDList all, ResultFileManager manager, InterruptedFlag interrupted) throws InterruptedException {
-
-        if (target.size() >= all.size() * 0.9)
-            return "*";
-
-        String[] fields = new String[] {"runattr:experiment", "runattr:measurement", "runattr:replication", "module", "name"};
-
-        Map<String, ColumnValueCounts> columnData = new HashMap<String, ColumnValueCounts>();
-
-        for (String f : fields) {
-            columnData.put(f, computeColumnData(target, all, f, manager, interrupted));
-            checkInterruptedFlag(interrupted);
+        StringBuilder sb = new StringBuilder();
+        for (Term term : chosen) {
+            if (sb.length() > 0)
+                sb.append(" OR\n");
+            sb.append(term.expression);
         }
 
-        String bestAttr = null;
-        float bestScore = 0;
-
-        for (String f : fields) {
-            ColumnValueCounts cd = columnData.get(f);
-
-            float columnScore = 0;
-            int numVals = 0;
-
-            for (String v : cd.valueCounts.keySet()) {
-                AttributeValueCounts ad = cd.valueCounts.get(v);
-
-                float tc = (float)ad.targetCount / (ad.nonTargetCount + ad.targetCount);
-                float ntc = (float)ad.nonTargetCount / (ad.nonTargetCount + ad.targetCount);
-
-                columnScore += Math.max(tc, ntc);
-                numVals += 1;
-            }
-
-            columnScore /= numVals;
-
-            if (debug)
-                Debug.println("column score for " + f + " is: " + columnScore);
-
-            if (columnScore > bestScore) {
-                bestAttr = f;
-                bestScore = columnScore;
-            }
+        // list the items that could not be covered (or we ran out of time for) one by one
+        if (!uncovered.isEmpty()) {
+            int[] remaining = uncovered.stream().toArray();
+            String quickFilter = doMakeQuickFilter(all.getSubsetByIndices(remaining), manager);
+            if (sb.length() == 0)
+                return quickFilter;
+            sb.append(" OR (\n").append(StringUtils.indentLines(quickFilter, "    ")).append("\n)");
         }
 
-        if (debug)
-            Debug.println("best attr: " + bestAttr);
-
-        Set<String> selectedValues = new HashSet<String>();
-
-        ColumnValueCounts bcd = columnData.get(bestAttr);
-        for (String k : bcd.valueCounts.keySet()) {
-            AttributeValueCounts vcd = bcd.valueCounts.get(k);
-
-            if (vcd.targetCount > vcd.nonTargetCount)
-                selectedValues.add(k);
-        }
+        return sb.toString();
+    }
 
-        if (bestScore >= 0.8) {
-
-            String newTerm = "";
-            if (!selectedValues.isEmpty()) {
-                if (selectedValues.size() == 1)
-                    newTerm = bestAttr + " =~ " + AndFilter.quoteStringIfNeeded(selectedValues.iterator().next());
-                else {
-                    newTerm += "(";
-                    String[] vals = selectedValues.toArray(new String[]{});
-                    boolean first = true;
-                    for (String v : vals) {
-                        if (!first)
-                            newTerm += " OR ";
-                        newTerm += bestAttr + " =~ " + AndFilter.quoteStringIfNeeded(v);
-                        first = false;
+    /**
+     * Collects the terms that only match items to be covered: single "field =~ value"
+     * terms, and the AND of two such where neither matches only such items alone.
+     */
+    private static List<Term> collectCandidates(Column[] columns, int[] isTarget, boolean coverTarget, long deadline) {
+        int wanted = coverTarget ? 1 : 0;
+        List<Term> result = new ArrayList<>();
+        for (Column column : columns)
+            for (int v = 0; v < column.values.length; v++)
+                if (column.getCount(v, coverTarget) > 0 && column.getCount(v, !coverTarget) == 0 && isUsableValue(column.values[v]))
+                    result.add(new Term(makeTerm(column, v), 1, column.positions.getPositions(v, v+1)));
+
+        @SuppressWarnings("unchecked")
+        List<Term>[] pairTerms = new List[columns.length];
+        IntStream.range(0, columns.length).parallel().forEach(c1 -> {
+            List<Term> terms = new ArrayList<>();
+            Column column1 = columns[c1];
+            for (int c2 = c1 + 1; c2 < columns.length; c2++) {
+                Column column2 = columns[c2];
+                int[] wantedCounts = new int[column2.values.length];
+                int[] otherCounts = new int[column2.values.length];
+                for (int v1 = 0; v1 < column1.values.length; v1++) {
+                    if (column1.getCount(v1, coverTarget) < 2 || column1.getCount(v1, !coverTarget) == 0 || !isUsableValue(column1.values[v1]))
+                        continue;
+                    if (System.currentTimeMillis() > deadline)
+                        break;
+
+                    int[] positions = column1.positions.getPositions(v1, v1+1);
+                    int[] byValue = column2.codes;
+                    for (int pos : positions) {
+                        if (isTarget[pos] == wanted)
+                            wantedCounts[byValue[pos]]++;
+                        else
+                            otherCounts[byValue[pos]]++;
+                    }
+                    for (int pos : positions) {
+                        int v2 = byValue[pos];
+                        // if v2 alone only matches items to be covered, that is a better term
+                        if (wantedCounts[v2] >= 2 && otherCounts[v2] == 0 && column2.getCount(v2, !coverTarget) != 0 && isUsableValue(column2.values[v2])) {
+                            int[] pairPositions = new int[wantedCounts[v2]];
+                            int k = 0;
+                            for (int p : positions)
+                                if (byValue[p] == v2)
+                                    pairPositions[k++] = p;
+                            terms.add(new Term("(" + makeTerm(column1, v1) + " AND " + makeTerm(column2, v2) + ")", 2, pairPositions));
+                            wantedCounts[v2] = 0; // only add it once
+                        }
+                    }
+                    for (int pos : positions) {
+                        wantedCounts[byValue[pos]] = 0;
+                        otherCounts[byValue[pos]] = 0;
                     }
-                    newTerm += ")";
                 }
-
-                return newTerm;
             }
-        }
+            pairTerms[c1] = terms;
+        });
+        for (List<Term> terms : pairTerms)
+            if (terms != null)
+                result.addAll(terms);
+        return result;
+    }
+
+    private static String makeTerm(Column column, int value) {
+        return column.field + " =~ " + AndFilter.quoteStringIfNeeded(column.values[value]);
+    }
 
-        return doMakeQuickFilter(target, manager);
+    /**
+     * Values that contain wildcard characters cannot be matched literally.
+     */
+    private static boolean isUsableValue(String value) {
+        return StringUtils.containsNone(value, "*?{}\\");
     }
 
 /*
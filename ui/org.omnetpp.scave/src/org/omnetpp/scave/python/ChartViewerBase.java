@@ -21,6 +21,7 @@ import org.omnetpp.scave.editors.FilterCache;
 import org.omnetpp.scave.editors.MemoizationCache;
 import org.omnetpp.scave.editors.ResultsProvider;
 import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.engineext.ResultFileManagerChangeEvent;
 import org.omnetpp.scave.model.Chart;
 import org.omnetpp.scave.pychart.PythonCallerThread.ExceptionHandler;
 import org.omnetpp.scave.pychart.PythonOutputMonitoringThread.IOutputListener;
@@ -44,6 +45,7 @@ public abstract class ChartViewerBase {
     protected List<IStateChangeListener> stateChangeListeners = new ArrayList<IStateChangeListener>();
 
     private ChartProvider chartProvider;
+    private ResultsProvider resultsProvider;
 
     public ChartViewerBase(Chart chart, PythonProcessPool processPool, ResultFileManager rfm, MemoizationCache memoizationCache, FilterCache filterCache, IPlotWarningAnnotator warningAnnotator) {
         this.processPool = processPool;
@@ -63,6 +65,28 @@ public abstract class ChartViewerBase {
             proc.kill();
     }
 
+    /**
+     * Gives the Python process back to the pool for reuse (or kills it, if
+     * it is still running a script).
+     */
+    public void releasePythonProcess() {
+        if (proc != null) {
+            processPool.releaseProcess(proc);
+            proc = null;
+        }
+    }
+
+    /**
+     * Like releasePythonProcess(), but for use in the completion callback of
+     * the chart script, which runs on the process' caller thread.
+     */
+    protected void releasePythonProcessWhenDone() {
+        if (proc != null) {
+            processPool.releaseProcessWhenIdle(proc);
+            proc = null;
+        }
+    }
+
     public boolean isAlive() {
         return proc != null && proc.isAlive();
     }
@@ -76,7 +100,7 @@ public abstract class ChartViewerBase {
     }
 
     protected void acquireNewProcess() {
-        killPythonProcess();
+        releasePythonProcess();
 
         proc = processPool.getProcess();
         Debug.println("acquired new python process for chartviewerbase: PID " + proc.getProcess().pid());
@@ -89,7 +113,7 @@ public abstract class ChartViewerBase {
             proc.errorMonitoringThread.addOutputListener(l);
         }
 
-        proc.getEntryPoint().setResultsProvider(new ResultsProvider(rfm, proc, memoizationCache, filterCache));
+        proc.getEntryPoint().setResultsProvider(resultsProvider = new ResultsProvider(rfm, proc, memoizationCache, filterCache));
         proc.getEntryPoint().setChartProvider(chartProvider = new ChartProvider(chart));
 
         proc.getProcess().onExit().thenRun(() -> {
@@ -123,7 +147,7 @@ public abstract class ChartViewerBase {
     }
 
     public void dispose() {
-        killPythonProcess();
+        releasePythonProcess();
     }
 
     public String getSuggestedChartName() {
@@ -134,6 +158,15 @@ public abstract class ChartViewerBase {
         return chartProvider == null ? null : chartProvider.getObservedColumnNames();
     }
 
+    /**
+     * Returns true if the chart may look different after the given change in
+     * the loaded result files, i.e. the data the chart script obtained in its
+     * last run may have changed.
+     */
+    public boolean isAffectedBy(ResultFileManagerChangeEvent event) {
+        return resultsProvider == null || resultsProvider.isAffectedBy(event);
+    }
+
     // Note: runAfterError is only used for fatal (internal) errors - most Python exceptions
     // are supposed to be caught and reported back through a IPlotWarningAnnotator.
     public abstract void runPythonScript(String script, File workingDir, List<String> additionalPythonPath, Runnable runAfterDone, ExceptionHandler runAfterError);
@@ -100,7 +100,7 @@ public class MatplotlibChartViewer extends ChartViewerBase {
             // ignore, since this is mostly a convenience feature
         }
 
-        killPythonProcess();
+        releasePythonProcess();
         plotWidget.setWarning(null);
 
         if (script == null || script.isEmpty()) {
@@ -250,6 +250,14 @@ public class MatplotlibChartViewer extends ChartViewerBase {
         cp.setContents(new ImageTransferable(ImageUtils.convertToAWT(image)), owner);
     }
 
+    @Override
+    public void releasePythonProcess() {
+        // the widget must not send events to the process once it's back in the pool
+        if (plotWidget != null && !plotWidget.isDisposed())
+            plotWidget.unbindProcess();
+        super.releasePythonProcess();
+    }
+
     @Override
     public void dispose() {
         super.dispose();
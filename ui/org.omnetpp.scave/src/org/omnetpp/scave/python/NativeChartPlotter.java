@@ -174,4 +174,14 @@ class NativeChartPlotter implements INativeChartPlotter {
         result.addAll(Arrays.asList(plot.getPropertyNames()));
         return result;
     }
+
+    @Override
+    public int getPlotWidth() {
+        final int width[] = new int[] { 0 };
+        Display.getDefault().syncExec(() -> {
+            if (!plot.isDisposed())
+                width[0] = plot.getClientArea().width;
+        });
+        return width[0];
+    }
 }
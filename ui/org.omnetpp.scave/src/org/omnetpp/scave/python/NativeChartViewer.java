@@ -81,7 +81,7 @@ public class NativeChartViewer extends ChartViewerBase {
 
         int itemCount = plot.getLegend().getItemCount();
 
-        killPythonProcess();
+        releasePythonProcess();
         plot.setWarningText(null);
 
         if (script == null || script.isEmpty()) {
@@ -171,7 +171,7 @@ public class NativeChartViewer extends ChartViewerBase {
                         if (oldItems.get(i).first.equals(legend.getItemText(i)))
                             legend.setItemEnabled(i, oldItems.get(i).second);
 
-                killPythonProcess();
+                releasePythonProcessWhenDone();
             });
         };
 
@@ -0,0 +1,119 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.ned;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.junit.Test;
+import org.omnetpp.common.IConstants;
+import org.omnetpp.ned.core.NedResources;
+import org.omnetpp.ned.core.NedValidator;
+import org.omnetpp.ned.model.SysoutNedErrorStore;
+import org.omnetpp.ned.model.interfaces.INedTypeResolver;
+
+/**
+ * Tests that immutable copies of NedResources taken before and after an edit
+ * share the trees of unaffected files, and that both copies remain usable.
+ */
+public class ImmutableCopyTest extends TestCase {
+    private IProject project;
+    private NedResources nedResources;
+
+    @Override
+    protected void setUp() throws CoreException {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject("test-immutablecopy");
+        if (project.exists())
+            project.delete(true, true, null);
+        project.create(null);
+        project.open(null);
+        IProjectDescription description = project.getDescription();
+        description.setNatureIds(new String[] {IConstants.OMNETPP_NATURE_ID});
+        project.setDescription(description, null);
+
+        createFile("Base.ned", "simple Base { gates: inout g; }\n");
+        createFile("Derived.ned", "simple Derived extends Base { }\n");
+        createFile("Net.ned", "network Net { submodules: a: Derived; b: Base; connections: a.g <--> b.g; }\n");
+        createFile("Other.ned", "simple Other { }\n");
+
+        nedResources = NedResources.getInstance();
+        nedResources.rebuildProjectsTable();
+        nedResources.readMissingNedFiles();
+    }
+
+    @Override
+    protected void tearDown() throws CoreException {
+        project.delete(true, true, null);
+    }
+
+    @Test
+    public void testUnrelatedEdit() throws CoreException {
+        INedTypeResolver before = nedResources.getImmutableCopy();
+        editFile("Other.ned", "simple Other { parameters: int x; }\n");
+        INedTypeResolver after = nedResources.getImmutableCopy();
+
+        assertNotSame(before, after);
+        assertShared(before, after, "Base.ned", true);
+        assertShared(before, after, "Derived.ned", true);
+        assertShared(before, after, "Net.ned", true);
+        assertShared(before, after, "Other.ned", false);
+        assertNull(before.getToplevelNedType("Other", project).getParamDeclarations().get("x"));
+        assertNotNull(after.getToplevelNedType("Other", project).getParamDeclarations().get("x"));
+
+        assertValid(before);
+        assertValid(after);
+    }
+
+    @Test
+    public void testEditWithDependents() throws CoreException {
+        INedTypeResolver before = nedResources.getImmutableCopy();
+        editFile("Derived.ned", "simple Derived extends Base { parameters: int x = 1; }\n");
+        INedTypeResolver after = nedResources.getImmutableCopy();
+
+        assertShared(before, after, "Base.ned", true);
+        assertShared(before, after, "Other.ned", true);
+        assertShared(before, after, "Derived.ned", false);
+        assertShared(before, after, "Net.ned", false); // refers to Derived
+        assertNull(before.getToplevelNedType("Derived", project).getParamDeclarations().get("x"));
+        assertNotNull(after.getToplevelNedType("Derived", project).getParamDeclarations().get("x"));
+
+        assertValid(before);
+        assertValid(after);
+    }
+
+    private void createFile(String name, String content) throws CoreException {
+        project.getFile(name).create(new ByteArrayInputStream(content.getBytes()), true, null);
+    }
+
+    private void editFile(String name, String content) throws CoreException {
+        IFile file = project.getFile(name);
+        file.setContents(new ByteArrayInputStream(content.getBytes()), IResource.FORCE, null);
+        nedResources.readNedFile(file);
+    }
+
+    private void assertShared(INedTypeResolver before, INedTypeResolver after, String name, boolean shared) {
+        IFile file = project.getFile(name);
+        assertEquals(name, shared, before.getNedFileElement(file) == after.getNedFileElement(file));
+    }
+
+    private void assertValid(INedTypeResolver resolver) {
+        for (IFile file : resolver.getNedFiles(project)) {
+            SysoutNedErrorStore errorStore = new SysoutNedErrorStore();
+            errorStore.setFile(file);
+            new NedValidator(resolver, project, errorStore).validate(resolver.getNedFileElement(file));
+            assertEquals(file.getName(), 0, errorStore.getNumProblems());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.scave;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.junit.Test;
+import org.omnetpp.scave.common.ScaveMarkers;
+import org.omnetpp.scave.editors.ResultFilesTracker;
+import org.omnetpp.scave.engine.InterruptedFlag;
+import org.omnetpp.scave.engine.ResultFileManager;
+import org.omnetpp.scave.engineext.IResultFilesChangeListener;
+import org.omnetpp.scave.engineext.ResultFileManagerChangeEvent;
+import org.omnetpp.scave.model.InputFile;
+import org.omnetpp.scave.model.Inputs;
+
+/**
+ * Tests that ResultFilesTracker skips (and reports) files that cannot be
+ * merged into the ResultFileManager because their runs conflict with those
+ * of already loaded files, and carries on with the rest.
+ */
+public class ResultFilesTrackerTest extends TestCase {
+    private IProject project;
+    private ResultFileManager manager;
+    private Inputs inputs;
+    private TestTracker tracker;
+    private List<ResultFileManagerChangeEvent> events = new ArrayList<>();
+
+    /**
+     * Gives access to the synchronization without the progress and error dialogs.
+     */
+    private static class TestTracker extends ResultFilesTracker {
+        public TestTracker(ResultFileManager manager, Inputs inputs, IProject project) {
+            super(manager, inputs, project);
+        }
+
+        public List<String> synchronizeFiles() {
+            List<String> filesThatFailedToLoad = new ArrayList<>();
+            doSynchronize(false, new NullProgressMonitor(), new InterruptedFlag(), filesThatFailedToLoad);
+            return filesThatFailedToLoad;
+        }
+    }
+
+    @Override
+    protected void setUp() throws CoreException {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject("test-resultfilestracker");
+        if (project.exists())
+            project.delete(true, true, null);
+        project.create(null);
+        project.open(null);
+
+        manager = new ResultFileManager();
+        inputs = new Inputs();
+        tracker = new TestTracker(manager, inputs, project);
+        tracker.addChangeListener(new IResultFilesChangeListener() {
+            public void resultFileManagerChanged(ResultFileManagerChangeEvent event) {
+                events.add(event);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws CoreException {
+        manager.delete();
+        project.delete(true, true, null);
+    }
+
+    private IFile writeScalarFile(String name, String runName, String configName, String scalarName) throws CoreException {
+        String content = "version 3\n" +
+                "run " + runName + "\n" +
+                "attr configname " + configName + "\n" +
+                "attr runnumber 0\n" +
+                "\n" +
+                "scalar net.host " + scalarName + " 1\n";
+        IFile file = project.getFile(name);
+        if (file.exists())
+            file.setContents(new ByteArrayInputStream(content.getBytes()), IResource.FORCE, null);
+        else
+            file.create(new ByteArrayInputStream(content.getBytes()), true, null);
+        return file;
+    }
+
+    private boolean hasErrorMarker(IFile file) throws CoreException {
+        for (IMarker marker : file.findMarkers(ScaveMarkers.MARKERTYPE_SCAVEPROBLEM, true, IResource.DEPTH_ZERO))
+            if (marker.getAttribute(IMarker.SEVERITY, -1) == IMarker.SEVERITY_ERROR)
+                return true;
+        return false;
+    }
+
+    private ResultFileManagerChangeEvent lastEvent() {
+        assertFalse(events.isEmpty());
+        return events.get(events.size() - 1);
+    }
+
+    @Test
+    public void testConflictingRunAttributes() throws CoreException {
+        IFile a = writeScalarFile("a.sca", "shared-0", "General", "a");
+        IFile b = writeScalarFile("b.sca", "shared-0", "Other", "b"); // same run as a.sca, different attribute value
+        IFile c = writeScalarFile("c.sca", "other-0", "General", "c");
+        String pathA = a.getFullPath().toString(), pathB = b.getFullPath().toString(), pathC = c.getFullPath().toString();
+
+        // load a.sca alone first, so that b.sca is certainly merged into the manager separately
+        inputs.addInput(new InputFile("a.sca"));
+        assertEquals(Arrays.asList(), tracker.synchronizeFiles());
+        assertNotNull(manager.getFile(pathA));
+
+        // b.sca conflicts with a.sca; it must be skipped, but c.sca still loaded
+        inputs.addInput(new InputFile("b.sca"));
+        inputs.addInput(new InputFile("c.sca"));
+        assertEquals(Arrays.asList(pathB), tracker.synchronizeFiles());
+        assertNotNull(manager.getFile(pathA));
+        assertNull(manager.getFile(pathB));
+        assertNotNull(manager.getFile(pathC));
+        assertEquals(1, manager.getRunByName("shared-0").getFileRuns().size());
+        assertEquals("General", manager.getRunByName("shared-0").getAttribute("configname"));
+        assertTrue(hasErrorMarker(b));
+
+        ResultFileManagerChangeEvent event = lastEvent();
+        assertEquals(new HashSet<>(Arrays.asList(pathC)), event.getAddedFiles());
+        assertTrue(event.getChangedFiles().isEmpty());
+        assertTrue(event.getRemovedFiles().isEmpty());
+        assertEquals(1, event.getAddedItems().size());
+        assertEquals(0, event.getRemovedItems().size());
+
+        // a new version of c.sca that conflicts with a.sca: the previous version must stay loaded,
+        // and must not be reported as changed
+        writeScalarFile("c.sca", "shared-0", "Other", "c2");
+        assertEquals(Arrays.asList(pathB, pathC), tracker.synchronizeFiles());
+        assertNotNull(manager.getFile(pathC));
+        assertNotNull(manager.getRunByName("other-0"));
+        assertTrue(hasErrorMarker(c));
+
+        event = lastEvent();
+        assertTrue(event.getAddedFiles().isEmpty());
+        assertTrue(event.getChangedFiles().isEmpty());
+        assertEquals(0, event.getRemovedItems().size());
+    }
+}
@@ -0,0 +1,143 @@
+/*--------------------------------------------------------------*
+  Copyright (C) 2006-2015 OpenSim Ltd.
+
+  This file is distributed WITHOUT ANY WARRANTY. See the file
+  'License' for details on this and other legal matters.
+*--------------------------------------------------------------*/
+
+package org.omnetpp.test.unit.scave;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.junit.Test;
+import org.omnetpp.scave.builder.TailingVectorFileIndexerJob;
+import org.omnetpp.scave.common.IndexFileUtils;
+
+/**
+ * Tests that TailingVectorFileIndexerJob produces an up-to-date index for a
+ * vector file that grows while the job is running, and that it keeps running
+ * while a simulation is running.
+ */
+public class TailingVectorFileIndexerJobTest extends TestCase {
+    private static final int NUM_CHUNKS = 100;
+    private static final int LINES_PER_CHUNK = 50;
+
+    private IProject project;
+    private volatile boolean simulationRunning;
+
+    /**
+     * Stands in for a simulation launched from the IDE.
+     */
+    private class FakeSimulationJob extends Job {
+        public FakeSimulationJob() {
+            super("fake simulation");
+            setSystem(true);
+        }
+
+        @Override
+        public boolean belongsTo(Object family) {
+            return "simulation".equals(family);
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            try {
+                while (simulationRunning)
+                    Thread.sleep(10);
+            }
+            catch (InterruptedException e) {
+            }
+            return Status.OK_STATUS;
+        }
+    }
+
+    @Override
+    protected void setUp() throws CoreException {
+        project = ResourcesPlugin.getWorkspace().getRoot().getProject("test-tailingindexer");
+        if (project.exists())
+            project.delete(true, true, null);
+        project.create(null);
+        project.open(null);
+    }
+
+    @Override
+    protected void tearDown() throws CoreException {
+        simulationRunning = false;
+        project.delete(true, true, null);
+    }
+
+    @Test
+    public void testIndexWhileWriting() throws Exception {
+        IFile vectorFile = project.getFile("growing.vec");
+        File path = vectorFile.getLocation().toFile();
+
+        simulationRunning = true;
+        Job simulation = new FakeSimulationJob();
+        simulation.schedule();
+        while (!TailingVectorFileIndexerJob.isSimulationRunning())
+            Thread.sleep(10);
+
+        TailingVectorFileIndexerJob job;
+        try (Writer writer = new FileWriter(path)) {
+            writer.write("version 2\nrun test-0\n\nvector 0 net.host value TV\nvector 1 net.host count TV\n");
+            writer.flush();
+            job = TailingVectorFileIndexerJob.startFor(vectorFile);
+            assertNotNull(job);
+            assertTrue(TailingVectorFileIndexerJob.isTailing(vectorFile));
+            assertNull(TailingVectorFileIndexerJob.startFor(vectorFile));
+
+            // write in chunks, with pauses longer than the poll interval
+            int line = 0;
+            for (int chunk=0; chunk<NUM_CHUNKS; chunk++) {
+                for (int i=0; i<LINES_PER_CHUNK; i++, line++)
+                    writer.write((line % 2) + "\t" + line + "\t" + (line * 0.5) + "\n");
+                writer.flush();
+                if (chunk % 20 == 0)
+                    Thread.sleep(TailingVectorFileIndexerJob.DEFAULT_POLL_INTERVAL_MILLIS + 200);
+            }
+        }
+        assertEquals(Job.RUNNING, job.getState()); // the simulation is still running
+
+        simulationRunning = false;
+        simulation.join();
+        job.join();
+        assertFalse(TailingVectorFileIndexerJob.isTailing(vectorFile));
+        assertTrue(IndexFileUtils.isIndexFileUpToDate(vectorFile));
+
+        Map<String,Long> counts = readCounts(IndexFileUtils.getIndexFileFor(path));
+        assertEquals(NUM_CHUNKS * LINES_PER_CHUNK / 2, (long)counts.get("0"));
+        assertEquals(NUM_CHUNKS * LINES_PER_CHUNK / 2, (long)counts.get("1"));
+    }
+
+    /**
+     * Returns the number of values per vector ID, from the block lines of the index file.
+     */
+    private static Map<String,Long> readCounts(File indexFile) throws IOException {
+        Map<String,Long> counts = new HashMap<String,Long>();
+        for (String line : Files.readAllLines(indexFile.toPath())) {
+            if (line.isEmpty() || !Character.isDigit(line.charAt(0)))
+                continue;
+            String[] fields = line.split("\\s+"); // id, offset, size, [events], times, count, min, max, sum, sqrsum
+            String id = fields[0];
+            long count = Long.parseLong(fields[fields.length - 5]);
+            counts.put(id, counts.containsKey(id) ? counts.get(id) + count : count);
+        }
+        return counts;
+    }
+}